@@ -0,0 +1,40 @@
+/**
+ * Copyright 2011 Pablo Mendes, Max Jakob
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dbpedia.spotlight.exceptions;
+
+/**
+ * Thrown when a request is rejected before processing because the service is saturated,
+ * either by the number of requests in flight or by the amount of text waiting to be processed.
+ */
+public class OverloadException extends AnnotationException {
+
+    private final boolean characterBudgetExceeded;
+
+    public OverloadException(String msg, boolean characterBudgetExceeded) {
+        super(msg);
+        this.characterBudgetExceeded = characterBudgetExceeded;
+    }
+
+    /**
+     * @return true if the request was rejected because of the amount of queued text,
+     *         false if it was rejected because of the number of requests in flight.
+     */
+    public boolean isCharacterBudgetExceeded() {
+        return characterBudgetExceeded;
+    }
+
+}
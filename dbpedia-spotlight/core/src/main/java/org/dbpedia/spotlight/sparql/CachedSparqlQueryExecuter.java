@@ -0,0 +1,227 @@
+/*
+ * Copyright 2011 DBpedia Spotlight Development Team
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  Check our project website for information on how to acknowledge the authors and how to contribute to the project: http://spotlight.dbpedia.org
+ */
+
+package org.dbpedia.spotlight.sparql;
+
+import org.apache.log4j.Logger;
+import org.dbpedia.spotlight.db.model.ResourceStore;
+import org.dbpedia.spotlight.exceptions.DBpediaResourceNotFoundException;
+import org.dbpedia.spotlight.exceptions.SparqlExecutionException;
+import org.dbpedia.spotlight.model.DBpediaResource;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SPARQL query executer that keeps the results of recent queries as sorted arrays of resource IDs
+ * from the {@link ResourceStore}. Resources that are not in the store can never be annotated and
+ * are dropped from the results.
+ *
+ * Queries are normalized before they are used as cache keys, but they are sent to the endpoint as
+ * they were given, since whitespace can be significant in literals and ends # comments. Entries
+ * expire after a fixed time and the least recently used entry is evicted when the cache is full.
+ * Concurrent requests for the same query share a single request to the endpoint. Queries can be started ahead of time with
+ * {@link #prefetch(String)}, so that the request overlaps with spotting and disambiguation.
+ */
+public class CachedSparqlQueryExecuter extends SparqlQueryExecuter {
+
+    private final static Logger LOG = Logger.getLogger(CachedSparqlQueryExecuter.class);
+
+    private final ResourceStore resourceStore;
+    private final long ttlMillis;
+
+    private final Map<String, Entry> cache;
+    private final ConcurrentHashMap<String, FutureTask<int[]>> inFlight = new ConcurrentHashMap<String, FutureTask<int[]>>();
+    private final ExecutorService prefetcher;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private static class Entry {
+        final int[] ids;
+        final long expires;
+
+        Entry(int[] ids, long expires) {
+            this.ids = ids;
+            this.expires = expires;
+        }
+    }
+
+    public CachedSparqlQueryExecuter(String mainGraph, String sparqlUrl, ResourceStore resourceStore, final int maxEntries, long ttlMillis, int prefetchThreads) {
+        super(mainGraph, sparqlUrl);
+        this.resourceStore = resourceStore;
+        this.ttlMillis = ttlMillis;
+        this.cache = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.prefetcher = Executors.newFixedThreadPool(prefetchThreads, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "sparql-prefetch");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Normalizes the query text for use as a cache key: surrounding whitespace is removed and
+     * all other whitespace is collapsed into a single space. The normalized text is only used as
+     * a key and is never executed.
+     */
+    public static String normalize(String query) {
+        return query.trim().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Returns the sorted IDs of all resources in the store that are returned by the query.
+     */
+    public int[] queryIds(String query) throws SparqlExecutionException {
+        final String key = normalize(query);
+
+        Entry entry;
+        synchronized (cache) {
+            entry = cache.get(key);
+        }
+        if (entry != null && entry.expires > System.currentTimeMillis()) {
+            hits.incrementAndGet();
+            return entry.ids;
+        }
+        misses.incrementAndGet();
+
+        try {
+            return fetch(key, query, false).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SparqlExecutionException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SparqlExecutionException)
+                throw (SparqlExecutionException) e.getCause();
+            throw new SparqlExecutionException(e);
+        }
+    }
+
+    /**
+     * Starts executing the query in the background if its results are not cached.
+     */
+    public void prefetch(String query) {
+        final String key = normalize(query);
+        synchronized (cache) {
+            Entry entry = cache.get(key);
+            if (entry != null && entry.expires > System.currentTimeMillis())
+                return;
+        }
+        fetch(key, query, true);
+    }
+
+    /**
+     * Returns the running request for the query or starts a new one (single-flight). The query is
+     * executed as given, the key is its normalized form.
+     */
+    private Future<int[]> fetch(final String key, final String query, boolean async) {
+        FutureTask<int[]> task = new FutureTask<int[]>(new Callable<int[]>() {
+            public int[] call() throws Exception {
+                try {
+                    //The previous request may have completed since the cache was checked:
+                    synchronized (cache) {
+                        Entry entry = cache.get(key);
+                        if (entry != null && entry.expires > System.currentTimeMillis())
+                            return entry.ids;
+                    }
+
+                    int[] ids = resolve(query(query));
+                    synchronized (cache) {
+                        cache.put(key, new Entry(ids, System.currentTimeMillis() + ttlMillis));
+                    }
+                    return ids;
+                } finally {
+                    inFlight.remove(key);
+                }
+            }
+        });
+
+        FutureTask<int[]> running = inFlight.putIfAbsent(key, task);
+        if (running != null)
+            return running;
+
+        if (async)
+            prefetcher.execute(task);
+        else
+            task.run();
+        return task;
+    }
+
+    private int[] resolve(List<DBpediaResource> resources) {
+        int[] ids = new int[resources.size()];
+        int n = 0;
+        for (DBpediaResource resource : resources) {
+            try {
+                ids[n] = resourceStore.getResourceByName(resource.uri()).id();
+                n++;
+            } catch (DBpediaResourceNotFoundException e) {
+                //The resource is not in the model and cannot be annotated.
+            }
+        }
+
+        ids = Arrays.copyOf(ids, n);
+        Arrays.sort(ids);
+        LOG.debug(String.format("-- %d of %d resources in the model.", n, resources.size()));
+        return ids;
+    }
+
+    /**
+     * Returns the ID of the resource, looking it up in the store if it was not created by the store.
+     */
+    public int idOf(DBpediaResource resource) {
+        if (resource.id() > 0)
+            return resource.id();
+        try {
+            return resourceStore.getResourceByName(resource.uri()).id();
+        } catch (DBpediaResourceNotFoundException e) {
+            return -1;
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+}
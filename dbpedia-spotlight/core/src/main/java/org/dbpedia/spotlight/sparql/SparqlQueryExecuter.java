@@ -22,6 +22,7 @@ import org.apache.commons.httpclient.DefaultHttpMethodRetryHandler;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpException;
 import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.httpclient.params.HttpMethodParams;
 import org.apache.log4j.Logger;
@@ -53,8 +54,16 @@ public class SparqlQueryExecuter {
 
 	private final static Logger LOG = Logger.getLogger(SparqlQueryExecuter.class);
 
-       // Create an instance of HttpClient.
-    private static HttpClient client = new HttpClient();
+    // Shared HttpClient. The connection manager pools connections per host, so that concurrent requests
+    // neither block on a single connection nor open a new one for every query.
+    private static HttpClient client = createClient(Integer.parseInt(System.getProperty("sparql.connections.max", "20")));
+
+    private static HttpClient createClient(int maxConnections) {
+        MultiThreadedHttpConnectionManager connectionManager = new MultiThreadedHttpConnectionManager();
+        connectionManager.getParams().setDefaultMaxConnectionsPerHost(maxConnections);
+        connectionManager.getParams().setMaxTotalConnections(maxConnections);
+        return new HttpClient(connectionManager);
+    }
 
     String mainGraph;
     String sparqlUrl;
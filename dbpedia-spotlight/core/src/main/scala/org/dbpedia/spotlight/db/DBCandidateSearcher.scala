@@ -1,6 +1,7 @@
 package org.dbpedia.spotlight.db
 
 import org.dbpedia.spotlight.db.model.{CandidateMapStore, ResourceStore, SurfaceFormStore}
+import org.dbpedia.spotlight.disambiguate.CandidateFilter
 import org.dbpedia.spotlight.exceptions.SurfaceFormNotFoundException
 import org.dbpedia.spotlight.model._
 
@@ -46,6 +47,37 @@ class DBCandidateSearcher(val resStore: ResourceStore, val sfStore: SurfaceFormS
   }
 
 
+  /**
+   * Retrieves the DBpedia Resources that can be confused with surface form sf and are accepted by the filter.
+   *
+   * @param sf the surface form
+   * @param filter filters pushed down from the request
+   * @return
+   */
+  def getCandidates(sf: SurfaceForm, filter: CandidateFilter): Set[Candidate] = {
+    getCandidates(sf).filter(c => filter.accepts(c.resource))
+  }
+
+
+  /**
+   * Retrieves the ambiguity profile of the surface form sf. There is no profile for surface forms
+   * that are not in the store, since their candidates are collected from similar surface forms.
+   *
+   * @param sf the surface form
+   * @return
+   */
+  def getAmbiguityProfile(sf: SurfaceForm): Option[AmbiguityProfile] = {
+    if(sf.id > 0)
+      candidateMap.getAmbiguityProfile(sf)
+    else
+      try {
+        candidateMap.getAmbiguityProfile(sfStore.getSurfaceForm(sf.name))
+      } catch {
+        case e: SurfaceFormNotFoundException => None
+      }
+  }
+
+
   /**
    * Retrieves the number of DBpedia Resources that can be confused with surface form sf.
    *
@@ -10,6 +10,7 @@ import org.dbpedia.spotlight.exceptions.SurfaceFormNotFoundException
 import org.dbpedia.spotlight.log.SpotlightLog
 import org.dbpedia.spotlight.model._
 import org.dbpedia.spotlight.spot.Spotter
+import org.dbpedia.spotlight.util.{Deadline, Metrics, Trace}
 
 import scala.collection.mutable.ListBuffer
 import scala.util.control.Breaks._
@@ -44,12 +45,20 @@ abstract class DBSpotter(
     if (tokenizer != null)
       tokenizer.tokenizeMaybe(text)
 
+    val spotStart = Metrics.start()
     var spots = ListBuffer[SurfaceFormOccurrence]()
     val sentences: List[List[Token]] = DBSpotter.tokensToSentences(text.featureValue[List[Token]]("tokens").get)
 
+    //Work counters for the trace of the request
+    var chunks = 0
+    var lookups = 0
+
     //Go through all sentences
     sentences.foreach{ sentence: List[Token] =>
+      Deadline.check(text, "spotting")
+
       val spans = generateCandidates(sentence)
+      chunks += spans.size
 
       val tokenTypes = sentence.map(_.tokenType).toArray
 
@@ -82,6 +91,7 @@ abstract class DBSpotter(
               //SpotlightLog.info(this.getClass, spot + ":" + chunkSpan.getType)
 
               val confidence = text.featureValue[Double]("confidence").getOrElse(0.5)
+              lookups += 1
               val sfMatch = surfaceFormMatch(spot, confidence=math.max(MIN_CONFIDENCE, confidence))
 
               SpotlightLog.debug(this.getClass, "type:"+chunkSpan.getType)
@@ -99,7 +109,16 @@ abstract class DBSpotter(
       })
     }
 
-    dropOverlappingSpots(spots)
+    val result = dropOverlappingSpots(spots)
+    Metrics.stop(Metrics.Spot, spotStart, text)
+
+    Trace.of(text).foreach { trace: Trace =>
+      trace.count("sentences", sentences.size)
+      trace.count("chunks", chunks)
+      trace.count("sub_chunk_lookups", lookups)
+      trace.count("spots", result.size)
+    }
+    result
   }
 
 
@@ -3,12 +3,14 @@ package org.dbpedia.spotlight.db
 import breeze.linalg
 import org.dbpedia.spotlight.db.model._
 import org.dbpedia.spotlight.db.similarity.ContextSimilarity
-import org.dbpedia.spotlight.disambiguate.ParagraphDisambiguator
+import org.dbpedia.spotlight.disambiguate.{CandidateFilter, DisambiguationMode, ParagraphDisambiguator}
 import org.dbpedia.spotlight.disambiguate.mixtures.Mixture
 import org.dbpedia.spotlight.exceptions.InputException
 import org.dbpedia.spotlight.log.SpotlightLog
 import org.dbpedia.spotlight.model._
-import org.dbpedia.spotlight.util.MathUtil
+import org.dbpedia.spotlight.util.{Deadline, MathUtil, Metrics, Trace}
+
+import java.util.concurrent.atomic.AtomicLong
 
 import scala.Predef._
 import scala.collection.JavaConversions._
@@ -41,10 +43,20 @@ class DBTwoStepDisambiguator(
 
 
   //maximum number of considered candidates
-  val MAX_CANDIDATES = 10
+  val MAX_CANDIDATES = DisambiguationMode.Full.maxCandidates
 
   //maximum context window in tokens in both directions
-  val MAX_CONTEXT = 200
+  val MAX_CONTEXT = DisambiguationMode.Full.maxContext
+
+  //minimum prior margin of a surface form (see AmbiguityProfile) for its occurrences to take the fast path:
+  //only the candidate with the highest prior is scored against the context, the other candidates get its
+  //context score or the NIL context score if that is lower, so they cannot overtake it by context. Unambiguous
+  //surface forms always qualify, for them the result is the same as for the full path. Disabled if negative.
+  var fastPathMinMargin: Double = -1.0
+
+  //number of occurrences that were disambiguated via the fast path and in total
+  val fastPathOccurrences = new AtomicLong()
+  val totalOccurrences    = new AtomicLong()
 
 
   def bestK(paragraph: Paragraph, k: Int): Map[SurfaceFormOccurrence, List[DBpediaResourceOccurrence]] = {
@@ -63,8 +75,12 @@ class DBTwoStepDisambiguator(
 
     val sentences = DBSpotter.tokensToSentences(paragraph.text.featureValue[List[Token]]("tokens").get)
 
-    if (sentences.size <= MAX_CONTEXT)
-      bestK_(paragraph, paragraph.getOccurrences().toList, sentences.flatMap(_.map(_.tokenType)), k)
+    //The mode may have been reduced for expensive texts, see CostModel:
+    val mode = DisambiguationMode.of(paragraph.text).getOrElse(DisambiguationMode.Full)
+    val maxContext = mode.maxContext
+
+    if (sentences.size <= maxContext)
+      bestK_(paragraph, paragraph.getOccurrences().toList, sentences.flatMap(_.map(_.tokenType)), k, mode)
     else {
       val occurrenceStack = paragraph.getOccurrences().toBuffer
       val currentTokens = ArrayBuffer[Token]()
@@ -74,7 +90,7 @@ class DBTwoStepDisambiguator(
 
           currentTokens ++= sentence
 
-          if (currentTokens.size >= MAX_CONTEXT || sentence.equals(sentences.last)) {
+          if (currentTokens.size >= maxContext || sentence.equals(sentences.last)) {
 
             //Take all surface form occurrences within the current token window and remove them afterwards.
             val sliceOccs = occurrenceStack.takeWhile{ occ: SurfaceFormOccurrence => occ.textOffset <= currentTokens.last.offset}.toList
@@ -85,7 +101,7 @@ class DBTwoStepDisambiguator(
             currentTokens.clear()
 
             //Disambiguate all occs in the current window:
-            Some( bestK_(paragraph, sliceOccs, sliceTokens, k) )
+            Some( bestK_(paragraph, sliceOccs, sliceTokens, k, mode) )
           } else {
             None
           }
@@ -95,13 +111,25 @@ class DBTwoStepDisambiguator(
   }
 
 
-  def bestK_(paragraph: Paragraph, occurrences: List[SurfaceFormOccurrence], tokens: Seq[TokenType], k: Int): Map[SurfaceFormOccurrence, List[DBpediaResourceOccurrence]] = {
+  def bestK_(paragraph: Paragraph, occurrences: List[SurfaceFormOccurrence], tokens: Seq[TokenType], k: Int, mode: DisambiguationMode = DisambiguationMode.Full): Map[SurfaceFormOccurrence, List[DBpediaResourceOccurrence]] = {
 
     if (occurrences.size == 0)
       return Map[SurfaceFormOccurrence, List[DBpediaResourceOccurrence]]()
 
+    Deadline.check(paragraph.text, "disambiguation")
+
     // step1: get candidates for all surface forms
     var allCandidateResources = Set[DBpediaResource]()
+
+    //whitelist filters of the request that are applied to the candidates (see CandidateFilter)
+    val candidateFilter = CandidateFilter.of(paragraph.text)
+
+    //occurrences that are ranked by their priors only (see DisambiguationMode.priorOnlyMaxAmbiguity)
+    var priorOnly = Set[SurfaceFormOccurrence]()
+
+    //occurrences on the fast path and their candidate with the highest prior (see fastPathMinMargin)
+    var fastPath = Map[SurfaceFormOccurrence, DBpediaResource]()
+    val searchStart = Metrics.start()
     val occs = occurrences.foldLeft(
       Map[SurfaceFormOccurrence, List[Candidate]]())(
       (acc, sfOcc) => {
@@ -110,29 +138,60 @@ class DBTwoStepDisambiguator(
 
         val candidateRes = {
 
-          val cands = candidateSearcher.getCandidates(sfOcc.surfaceForm)
+          val cands = candidateFilter match {
+            case Some(filter) => candidateSearcher.getCandidates(sfOcc.surfaceForm, filter)
+            case None => candidateSearcher.getCandidates(sfOcc.surfaceForm)
+          }
           SpotlightLog.debug(this.getClass, "# candidates for: %s = %s.", sfOcc.surfaceForm, cands.size)
+          Metrics.record(Metrics.CandidatesPerSpot, cands.size)
 
-          if (cands.size > MAX_CANDIDATES) {
-            SpotlightLog.debug(this.getClass, "Reducing number of candidates to %d.", MAX_CANDIDATES)
-            cands.toList.sortBy( -_.prior ).take(MAX_CANDIDATES).toSet
+          if (cands.size > mode.maxCandidates) {
+            SpotlightLog.debug(this.getClass, "Reducing number of candidates to %d.", mode.maxCandidates)
+            cands.toList.sortBy( -_.prior ).take(mode.maxCandidates).toSet
           } else {
             cands
           }
         }
 
-        allCandidateResources ++= candidateRes.map(_.resource)
+        if (isFastPath(sfOcc.surfaceForm) && candidateRes.nonEmpty) {
+          val top = candidateRes.maxBy(_.prior).resource
+          fastPath += (sfOcc -> top)
+          allCandidateResources += top
+        } else if (candidateRes.size <= mode.priorOnlyMaxAmbiguity)
+          priorOnly += sfOcc
+        else
+          allCandidateResources ++= candidateRes.map(_.resource)
         acc + (sfOcc -> candidateRes.toList)
       })
+    Metrics.stop(Metrics.CandidateSearch, searchStart, paragraph.text)
+
+    totalOccurrences.addAndGet(occurrences.size)
+    if (fastPath.nonEmpty) {
+      fastPathOccurrences.addAndGet(fastPath.size)
+      SpotlightLog.debug(this.getClass, "Fast path for %d of %d occurrences in paragraph %s.", fastPath.size, occurrences.size, paragraph.id)
+    }
 
     val tokensDistinct = tokens.distinct.sortBy(_.id)
 
     // step2: query once for the paragraph context, get scores for each candidate resource
+    val scoringStart = Metrics.start()
     val contextScores = contextSimilarity.score(tokensDistinct, allCandidateResources)
+    Metrics.stop(Metrics.ContextScoring, scoringStart, paragraph.text)
+
+    Trace.of(paragraph.text).foreach { trace: Trace =>
+      trace.count("windows", 1)
+      trace.count("occurrences", occurrences.size)
+      trace.count("candidates", occs.values.map(_.size).sum)
+      trace.count("candidates_scored", allCandidateResources.size)
+      trace.count("fast_path_occurrences", fastPath.size)
+      trace.count("prior_only_occurrences", priorOnly.size)
+    }
 
     // pick the best k for each surface form
     occs.keys.foldLeft(Map[SurfaceFormOccurrence, List[DBpediaResourceOccurrence]]())( (acc, aSfOcc) => {
 
+      Deadline.check(paragraph.text, "disambiguation")
+
       //Get the NIL entity:
       val eNIL = new DBpediaResourceOccurrence(
         new DBpediaResource("--nil--"),
@@ -148,6 +207,15 @@ class DBTwoStepDisambiguator(
 
       val nilContextScore = contextSimilarity.nilScore(tokensDistinct)
 
+      //Prior-only occurrences get the NIL context score for every candidate, so that the context
+      //does not influence the ranking nor the comparison with the NIL entity:
+      val isPriorOnly = priorOnly.contains(aSfOcc)
+
+      //On the fast path, only the candidate with the highest prior has a context score. The other candidates
+      //are bounded by it, since the NIL context score alone would favour them if the top candidate is below NIL:
+      val fastPathTop = fastPath.get(aSfOcc)
+      val fastPathBound = fastPathTop.map(top => math.min(contextScores(top), nilContextScore))
+
       eNIL.setFeature(new Score("P(c|e)", nilContextScore))
       eNIL.setFeature(new Score("P(e)",   MathUtil.ln( 1 / surfaceFormStore.getTotalAnnotatedCount.toDouble ) )) //surfaceFormStore.getTotalAnnotatedCount = total number of entity mentions
       val nilEntityScore = mixture.getScore(eNIL)
@@ -164,7 +232,9 @@ class DBTwoStepDisambiguator(
           Provenance.Undefined,
           0.0,
           0.0,
-          contextScores(cand.resource)
+          if (isPriorOnly) nilContextScore
+          else if (fastPathTop.exists(_ != cand.resource)) fastPathBound.get
+          else contextScores(cand.resource)
         )
 
         //Set the scores as features for the resource occurrence:
@@ -209,6 +279,20 @@ class DBTwoStepDisambiguator(
   }
 
 
+  /**
+   * Checks whether occurrences of the surface form can be disambiguated by the prior alone.
+   */
+  private def isFastPath(sf: SurfaceForm): Boolean = {
+    if (fastPathMinMargin < 0)
+      return false
+
+    candidateSearcher.getAmbiguityProfile(sf) match {
+      case Some(profile) => profile.isUnambiguous || profile.priorMargin >= fastPathMinMargin
+      case None => false
+    }
+  }
+
+
   @throws(classOf[InputException])
   def disambiguate(paragraph: Paragraph): List[DBpediaResourceOccurrence] = {
     // return first from each candidate set
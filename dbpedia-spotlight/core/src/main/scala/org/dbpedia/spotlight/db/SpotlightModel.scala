@@ -19,7 +19,7 @@ import org.dbpedia.spotlight.exceptions.ConfigurationException
 import org.dbpedia.spotlight.model.SpotlightConfiguration.DisambiguationPolicy
 import org.dbpedia.spotlight.model.SpotterConfiguration.SpotterPolicy
 import org.dbpedia.spotlight.spot.{SpotXmlParser, Spotter}
-import org.dbpedia.spotlight.util.MathUtil
+import org.dbpedia.spotlight.util.{MathUtil, Metrics}
 
 import scala.collection.JavaConverters._
 
@@ -27,7 +27,8 @@ import scala.collection.JavaConverters._
 class SpotlightModel(val tokenizer: TextTokenizer,
                      val spotters: java.util.Map[SpotterPolicy, Spotter],
                      val disambiguators: java.util.Map[DisambiguationPolicy, ParagraphDisambiguatorJ],
-                     val properties: Properties)
+                     val properties: Properties,
+                     val resourceStore: ResourceStore = null)
 
 object SpotlightModel {
 
@@ -56,7 +57,8 @@ object SpotlightModel {
     val candMapStore = MemoryStore.loadCandidateMapStore(new FileInputStream(new File(modelDataFolder, "candmap.mem")), resStore, quantizedCountsStore)
 
 
-    val contextStore = if (new File(modelDataFolder, "vectors.mem").exists()){
+    val vectorFile = new File(modelDataFolder, "vectors.bin")
+    val contextStore = if (vectorFile.exists() || new File(modelDataFolder, "vectors.mem").exists()){
       null
     } else if (new File(modelDataFolder, "context.mem").exists()) {
       MemoryStore.loadContextStore(new FileInputStream(new File(modelDataFolder, "context.mem")), tokenTypeStore, quantizedCountsStore)
@@ -64,13 +66,22 @@ object SpotlightModel {
       null
     }
 
-    val vectorStore = if (new File(modelDataFolder, "vectors.mem").exists()){
+    val vectorStore = if (vectorFile.exists()) {
+      MemoryVectorStore.loadMapped(vectorFile)
+    } else if (new File(modelDataFolder, "vectors.mem").exists()){
       MemoryStore.loadVectorStore(new FileInputStream(new File(modelDataFolder, "vectors.mem")))
     } else {
       null
     }
 
-
+    //Report the size of each loaded store, see Metrics
+    List("quantized_counts", "tokens", "sf", "res", "candmap", "context", "vectors").foreach { store: String =>
+      val storeFile = new File(modelDataFolder, store + ".mem")
+      if (storeFile.exists())
+        Metrics.setStoreBytes(store, storeFile.length())
+    }
+    if (vectorFile.exists())
+      Metrics.setStoreBytes("vectors", vectorFile.length())
 
     (tokenTypeStore, sfStore, resStore, candMapStore, contextStore, vectorStore)
   }
@@ -134,14 +145,19 @@ object SpotlightModel {
     }
 
     val searcher      = new DBCandidateSearcher(resStore, sfStore, candMapStore)
-    val disambiguator = new ParagraphDisambiguatorJ(new DBTwoStepDisambiguator(
+    val twoStepDisambiguator = new DBTwoStepDisambiguator(
       tokenTypeStore,
       sfStore,
       resStore,
       searcher,
       new UnweightedMixture(Set("P(e)", "P(c|e)", "P(s|e)")),
       contextSimilarity()
-    ))
+    )
+
+    //Occurrences of surface forms with a dominant candidate may only score that candidate against the context:
+    twoStepDisambiguator.fastPathMinMargin = properties.getProperty("fast_path_margin", "-1").toDouble
+
+    val disambiguator = new ParagraphDisambiguatorJ(twoStepDisambiguator)
 
     //If there is at least one NE model or a chunker, use the OpenNLP spotter:
     val spotter = if( new File(modelFolder, "opennlp").exists() && new File(modelFolder, "opennlp").list().exists(f => f.startsWith("ner-") || f.startsWith("chunker")) ) {
@@ -180,6 +196,6 @@ object SpotlightModel {
 
     val spotters: java.util.Map[SpotterPolicy, Spotter] = Map(SpotterPolicy.SpotXmlParser -> new SpotXmlParser(), SpotterPolicy.Default -> spotter).asJava
     val disambiguators: java.util.Map[DisambiguationPolicy, ParagraphDisambiguatorJ] = Map(DisambiguationPolicy.Default -> disambiguator).asJava
-    new SpotlightModel(tokenizer, spotters, disambiguators, properties)
+    new SpotlightModel(tokenizer, spotters, disambiguators, properties, resStore)
   }
 }
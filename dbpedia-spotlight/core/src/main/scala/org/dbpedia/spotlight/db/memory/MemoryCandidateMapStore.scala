@@ -1,7 +1,7 @@
 package org.dbpedia.spotlight.db.memory
 
 import org.dbpedia.spotlight.db.model.{CandidateMapStore, ResourceStore}
-import org.dbpedia.spotlight.model.{Candidate, SurfaceForm}
+import org.dbpedia.spotlight.model.{AmbiguityProfile, Candidate, SurfaceForm}
 
 /**
  *
@@ -17,11 +17,30 @@ class MemoryCandidateMapStore
   var candidates      = Array[Array[Int]]()
   var candidateCounts = Array[Array[Short]]()
 
+  //Ambiguity profile: prior margin for each surface form ID, the candidate count is the length of the candidate array.
+  //Models written before the profile was introduced do not contain it, it is then computed when the store is loaded.
+  var priorMargins: Array[Float] = null
+
   def size = candidates.size
 
   @transient
   var resourceStore: ResourceStore = null
 
+  override def loaded() {
+    if (priorMargins == null)
+      computePriorMargins()
+  }
+
+  /**
+   * Computes the prior margins from the stored candidate counts, i.e. from the same counts the candidate
+   * priors are based on. Stores that change the candidates must call this before they are written.
+   */
+  def computePriorMargins() {
+    priorMargins = candidateCounts.map { counts: Array[Short] =>
+      if (counts == null) 0.0f else AmbiguityProfile.priorMargin(counts.map(qc))
+    }
+  }
+
   def getCandidates(surfaceform: SurfaceForm): Set[Candidate] = {
     try {
       candidates(surfaceform.id).zip(candidateCounts(surfaceform.id)).map {
@@ -32,4 +51,12 @@ class MemoryCandidateMapStore
     }
   }
 
+  override def getAmbiguityProfile(surfaceform: SurfaceForm): Option[AmbiguityProfile] = {
+    val id = surfaceform.id
+    if (priorMargins == null || id <= 0 || id >= candidates.length || candidates(id) == null)
+      None
+    else
+      Some(new AmbiguityProfile(candidates(id).length, priorMargins(id)))
+  }
+
 }
@@ -2,21 +2,26 @@ package org.dbpedia.spotlight.db.memory
 
 import org.dbpedia.spotlight.db.model.QuantizedCountStore
 
+import scala.collection.JavaConversions._
 import scala.collection.mutable
 
 class MemoryQuantizedCountStore extends MemoryStore with QuantizedCountStore {
 
-  var countMap: java.util.Map[Short, Int] = new java.util.HashMap[Short, Int]()
+  //Counts can be added by concurrent build steps while others read them:
+  var countMap: java.util.Map[Short, Int] = new java.util.concurrent.ConcurrentHashMap[Short, Int]()
 
   def getCount(quantized: Short): Int = countMap.get(quantized)
 
   @transient
   var countLookup: mutable.HashMap[Int, Short] = null
 
-  def addCount(count: Int): Short = {
+  def addCount(count: Int): Short = synchronized {
 
-    if(countLookup == null)
+    if(countLookup == null) {
+      //A loaded store already contains counts, reuse their quantized values:
       countLookup = mutable.HashMap[Int, Short]()
+      countMap.foreach { case (s, c) => countLookup.put(c, s) }
+    }
 
     countLookup.get(count) match {
       case Some(s) => s
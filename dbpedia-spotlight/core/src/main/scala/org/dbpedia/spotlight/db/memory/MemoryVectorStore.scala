@@ -1,5 +1,9 @@
 package org.dbpedia.spotlight.db.memory
 
+import java.io.{File, IOException, RandomAccessFile}
+import java.nio.channels.FileChannel
+import java.nio.{ByteOrder, FloatBuffer}
+
 import breeze.linalg.{DenseMatrix, DenseVector, Transpose}
 import com.esotericsoftware.kryo.io.{Input, Output}
 import com.esotericsoftware.kryo.{Kryo, KryoSerializable}
@@ -21,29 +25,62 @@ class MemoryVectorStore extends MemoryStore with KryoSerializable{
   @transient
   var tokenTypeIdToVectorIndex: Map[Int, Int] = null
 
-  override def size: Int = vectors.rows
+  //Vectors and sorted ID maps of a store loaded with MemoryVectorStore.loadMapped:
+  @transient
+  private var segments: Array[FloatBuffer] = null
+
+  @transient
+  private var rowsPerSegment, rows, columns = 0
+
+  @transient
+  private var resourceIDs, resourceIndexes, tokenIDs, tokenIndexes: Array[Int] = null
+
+  override def size: Int = if (segments != null) rows else vectors.rows
 
   def lookupItem(id: Int) = {
     // look up vector, if it isn't there, simply ignore the word
-    if(id != -1){
+    if (segments != null) {
+      val v = DenseVector.zeros[Float](columns)
+      if (id != -1) {
+        val segment = segments(id / rowsPerSegment)
+        val offset = (id % rowsPerSegment) * columns
+        var i = 0
+        while (i < columns) {
+          v(i) = segment.get(offset + i)
+          i += 1
+        }
+      }
+      v.t
+    } else if(id != -1){
       vectors(id, ::)
     }else{
       DenseVector.zeros[Float](vectors.cols).t
     }
   }
 
+  private def mappedIndex(ids: Array[Int], indexes: Array[Int], id: Int): Option[Int] = {
+    val i = java.util.Arrays.binarySearch(ids, id)
+    if (i >= 0) Some(indexes(i)) else None
+  }
+
+  private def resourceIndex(id: Int): Option[Int] =
+    if (segments != null) mappedIndex(resourceIDs, resourceIndexes, id) else resourceIdToVectorIndex.get(id)
+
+  private def tokenIndex(id: Int): Option[Int] =
+    if (segments != null) mappedIndex(tokenIDs, tokenIndexes, id) else tokenTypeIdToVectorIndex.get(id)
+
   def onNilIndex(string: String) = {
     SpotlightLog.warn(this.getClass, "Warning: token " + string + " not in dictionary! Lookup returning null vector.")
     -1
   }
 
   def lookup(resource: DBpediaResource): Transpose[DenseVector[Float]]={
-    lookupItem(resourceIdToVectorIndex.getOrElse(resource.id, onNilIndex(resource.getFullUri)))
+    lookupItem(resourceIndex(resource.id).getOrElse(onNilIndex(resource.getFullUri)))
 
   }
 
   def lookup(token: TokenType): Transpose[DenseVector[Float]]={
-    lookupItem(tokenTypeIdToVectorIndex.getOrElse(token.id, onNilIndex(token.tokenType)))
+    lookupItem(tokenIndex(token.id).getOrElse(onNilIndex(token.tokenType)))
 
   }
 
@@ -102,3 +139,69 @@ class MemoryVectorStore extends MemoryStore with KryoSerializable{
     input.close()
   }
 }
+
+/**
+ * Layout of vectors.bin, the memory-mappable format of the vector store. All values are little endian:
+ *
+ *  - header of HEADER_BYTES bytes: magic, version, rows, columns, number of resources, number of tokens
+ *  - rows * columns floats, row by row
+ *  - resource IDs (sorted) and the vector index of each of them
+ *  - token type IDs (sorted) and the vector index of each of them
+ *
+ * The vectors are not loaded onto the heap but mapped, the ID maps are read into int arrays.
+ */
+object MemoryVectorStore {
+
+  val MAGIC = 0x53505643
+  val VERSION = 1
+  val HEADER_BYTES = 32
+  val ORDER = ByteOrder.LITTLE_ENDIAN
+
+  def mapsOffset(rows: Int, columns: Int): Long = HEADER_BYTES + 4L * rows * columns
+
+  /**
+   * Maps the vectors of a vectors.bin file.
+   *
+   * @param maxSegmentBytes maximum size of each mapped segment of the matrix, at most 2 GB
+   */
+  def loadMapped(file: File, maxSegmentBytes: Long = Int.MaxValue): MemoryVectorStore = {
+    SpotlightLog.info(this.getClass, "Mapping vectors from %s...", file)
+    val raf = new RandomAccessFile(file, "r")
+    try {
+      val channel = raf.getChannel
+      val header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES).order(ORDER)
+      if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+        throw new IOException("%s is not a vector store of version %d.".format(file, VERSION))
+
+      val store = new MemoryVectorStore()
+      store.rows = header.getInt(8)
+      store.columns = header.getInt(12)
+      val resources = header.getInt(16)
+      val tokens = header.getInt(20)
+
+      val maps = channel.map(FileChannel.MapMode.READ_ONLY, mapsOffset(store.rows, store.columns), 8L * (resources + tokens)).order(ORDER).asIntBuffer()
+      def read(n: Int) = {
+        val a = new Array[Int](n)
+        maps.get(a)
+        a
+      }
+      store.resourceIDs = read(resources)
+      store.resourceIndexes = read(resources)
+      store.tokenIDs = read(tokens)
+      store.tokenIndexes = read(tokens)
+
+      //A mapping is limited to 2 GB, larger matrices are mapped in segments of whole rows:
+      store.rowsPerSegment = math.max(1L, math.min(maxSegmentBytes, Int.MaxValue) / (4L * math.max(store.columns, 1))).toInt
+      store.segments = (0 until store.rows by store.rowsPerSegment).map { first =>
+        val n = math.min(store.rowsPerSegment, store.rows - first)
+        channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + 4L * first * store.columns, 4L * n * store.columns).order(ORDER).asFloatBuffer()
+      }.toArray
+
+      SpotlightLog.info(this.getClass, "Mapped %d vectors of dimension %d for %d resources and %d tokens.", store.rows, store.columns, resources, tokens)
+      store
+    } finally {
+      raf.close()
+    }
+  }
+
+}
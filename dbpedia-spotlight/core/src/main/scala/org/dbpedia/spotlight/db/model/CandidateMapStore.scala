@@ -1,6 +1,6 @@
 package org.dbpedia.spotlight.db.model
 
-import org.dbpedia.spotlight.model.{Candidate, SurfaceForm}
+import org.dbpedia.spotlight.model.{AmbiguityProfile, Candidate, SurfaceForm}
 
 
 /**
@@ -20,4 +20,13 @@ trait CandidateMapStore {
    */
   def getCandidates(surfaceform: SurfaceForm): Set[Candidate]
 
+  /**
+   * Returns the ambiguity profile (number of candidates and prior margin) of a surface form,
+   * if the store provides one.
+   *
+   * @param surfaceform the surface form object
+   * @return the ambiguity profile or None if the surface form is unknown or the store has no profiles
+   */
+  def getAmbiguityProfile(surfaceform: SurfaceForm): Option[AmbiguityProfile] = None
+
 }
@@ -2,6 +2,7 @@ package org.dbpedia.spotlight.db.tokenize
 
 import org.dbpedia.spotlight.db.model.{Stemmer, StringTokenizer, TextTokenizer, TokenTypeStore}
 import org.dbpedia.spotlight.model.{Feature, Text, Token, TokenType}
+import org.dbpedia.spotlight.util.Metrics
 
 
 abstract class BaseTextTokenizer(tokenTypeStore: TokenTypeStore, stemmer: Stemmer) extends TextTokenizer {
@@ -9,8 +10,11 @@ abstract class BaseTextTokenizer(tokenTypeStore: TokenTypeStore, stemmer: Stemme
   def tokenize(text: Text): List[Token]
 
   def tokenizeMaybe(text: Text) {
-    if(text.feature("tokens").isEmpty)
+    if(text.feature("tokens").isEmpty) {
+      val start = Metrics.start()
       text.setFeature(new Feature("tokens", tokenize(text)))
+      Metrics.stop(Metrics.Tokenize, start, text)
+    }
   }
 
   protected def getStemmedTokenType(token: String): TokenType = tokenTypeStore.getTokenType(stemmer.stem(token))
@@ -0,0 +1,50 @@
+package org.dbpedia.spotlight.disambiguate
+
+import org.dbpedia.spotlight.filter.annotations.TypeMask
+import org.dbpedia.spotlight.model.{DBpediaResource, DBpediaType, Feature, Text}
+
+/**
+ * Whitelist filters that are applied to the candidates of a surface form before disambiguation
+ * ("pushdown"), so that candidates that would be removed after disambiguation are not scored.
+ *
+ * Note that this changes the result of the filters: without pushdown, an occurrence is dropped if its
+ * best candidate is filtered out. With pushdown, the best of the remaining candidates is returned if it
+ * is still scored higher than the NIL entity, which is compared to the remaining candidates only.
+ *
+ * @param minSupport candidates must have a support larger than this (see SupportFilter)
+ * @param typeMask candidates must have one of the types in the mask (see TypeFilter), null for all types
+ */
+class CandidateFilter(val minSupport: Int, val typeMask: TypeMask) {
+
+  private val showUntyped = typeMask != null && typeMask.types.contains(DBpediaType.UNKNOWN)
+
+  def isEmpty: Boolean = minSupport <= 0 && (typeMask == null || typeMask.types.isEmpty)
+
+  def accepts(resource: DBpediaResource): Boolean = {
+    if (resource.support <= minSupport)
+      false
+    else if (typeMask == null || typeMask.types.isEmpty)
+      true
+    else
+      (showUntyped && resource.types.isEmpty) || typeMask.matches(resource)
+  }
+
+  override def toString = "CandidateFilter[support>%d, types=%s]".format(minSupport, if (typeMask == null) "all" else typeMask.types.mkString(","))
+
+}
+
+object CandidateFilter {
+
+  val FEATURE_NAME = "candidate_filter"
+
+  /**
+   * Attaches the filter to the text, so that the disambiguator applies it to the candidates.
+   */
+  def set(text: Text, filter: CandidateFilter) {
+    if (!filter.isEmpty)
+      text.setFeature(new Feature(FEATURE_NAME, filter))
+  }
+
+  def of(text: Text): Option[CandidateFilter] = text.featureValue[CandidateFilter](FEATURE_NAME)
+
+}
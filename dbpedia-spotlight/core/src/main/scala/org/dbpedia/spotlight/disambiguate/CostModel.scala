@@ -0,0 +1,61 @@
+package org.dbpedia.spotlight.disambiguate
+
+import java.util.Properties
+
+/**
+ * Estimates the cost of disambiguating a text and chooses a [[org.dbpedia.spotlight.disambiguate.DisambiguationMode]].
+ *
+ * The estimated cost is linear in the length of the text (tokenization, context scoring) and
+ * in the number of spots (candidate search, scoring of all candidates of each spot). Texts whose
+ * cost exceeds the threshold are disambiguated in the reduced mode.
+ *
+ * @param characterCost cost per character of text
+ * @param spotCost cost per spotted surface form occurrence
+ * @param reducedThreshold estimated cost above which the reduced mode is used (<= 0: never)
+ * @param reduced the mode to use for expensive texts
+ */
+class CostModel(val characterCost: Double, val spotCost: Double, val reducedThreshold: Double, val reduced: DisambiguationMode) {
+
+  def estimate(textLength: Int, spotCount: Int): Double = characterCost * textLength + spotCost * spotCount
+
+  def choose(textLength: Int, spotCount: Int): DisambiguationMode = {
+    if (reducedThreshold > 0 && estimate(textLength, spotCount) > reducedThreshold)
+      reduced
+    else
+      DisambiguationMode.Full
+  }
+
+  override def toString = "CostModel[%.1f/char, %.1f/spot, reduced (%d candidates, %d context, prior-only <= %d) above %.0f]".format(
+    characterCost, spotCost, reduced.maxCandidates, reduced.maxContext, reduced.priorOnlyMaxAmbiguity, reducedThreshold)
+
+}
+
+object CostModel {
+
+  /**
+   * Creates a cost model from the properties:
+   *
+   *  cost.character, cost.spot, cost.reduced.threshold,
+   *  cost.reduced.candidates, cost.reduced.context, cost.reduced.priorOnlyAmbiguity
+   *
+   * The reduced mode is only used if cost.reduced.threshold is set, otherwise the cost model
+   * behaves like [[org.dbpedia.spotlight.disambiguate.CostModel.Disabled]].
+   */
+  def fromProperties(properties: Properties): CostModel = new CostModel(
+    properties.getProperty("cost.character", "1.0").toDouble,
+    properties.getProperty("cost.spot", "50.0").toDouble,
+    properties.getProperty("cost.reduced.threshold", "0").toDouble,
+    DisambiguationMode(
+      "reduced",
+      properties.getProperty("cost.reduced.candidates", "3").toInt,
+      properties.getProperty("cost.reduced.context", "50").toInt,
+      properties.getProperty("cost.reduced.priorOnlyAmbiguity", "2").toInt
+    )
+  )
+
+  /**
+   * A cost model that always chooses the full mode.
+   */
+  val Disabled = new CostModel(0.0, 0.0, 0.0, DisambiguationMode.Full)
+
+}
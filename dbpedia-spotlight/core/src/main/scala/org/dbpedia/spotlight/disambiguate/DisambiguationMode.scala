@@ -0,0 +1,41 @@
+package org.dbpedia.spotlight.disambiguate
+
+import org.dbpedia.spotlight.model.{Feature, Text}
+
+/**
+ * Settings that determine how much work the disambiguator spends on a text.
+ *
+ * @param name name of the mode, reported to clients
+ * @param maxCandidates maximum number of candidates considered per surface form occurrence
+ * @param maxContext size of the context window in tokens
+ * @param priorOnlyMaxAmbiguity occurrences with at most this many candidates are ranked
+ *                              by their priors only, without context scoring (0 to disable)
+ */
+case class DisambiguationMode(name: String, maxCandidates: Int, maxContext: Int, priorOnlyMaxAmbiguity: Int) {
+  override def toString = name
+}
+
+object DisambiguationMode {
+
+  val FEATURE_NAME = "disambiguation_mode"
+
+  val Full = DisambiguationMode("full", 10, 200, 0)
+
+  /**
+   * Attaches the mode to the text, so that the disambiguator picks it up.
+   */
+  def set(text: Text, mode: DisambiguationMode) {
+    text.setFeature(new Feature(FEATURE_NAME, mode))
+  }
+
+  def of(text: Text): Option[DisambiguationMode] = text.featureValue[DisambiguationMode](FEATURE_NAME)
+
+  /**
+   * Java-friendly version of of(text), returns the name of the mode or null if none was chosen.
+   */
+  def nameOf(text: Text): String = of(text) match {
+    case Some(mode) => mode.name
+    case None => null
+  }
+
+}
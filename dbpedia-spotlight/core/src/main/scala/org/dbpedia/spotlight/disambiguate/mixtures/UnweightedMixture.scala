@@ -1,6 +1,6 @@
 package org.dbpedia.spotlight.disambiguate.mixtures
 
-import org.dbpedia.spotlight.model.{DBpediaResourceOccurrence, Feature}
+import org.dbpedia.spotlight.model.DBpediaResourceOccurrence
 import org.dbpedia.spotlight.util.MathUtil
 
 /**
@@ -11,9 +11,18 @@ import org.dbpedia.spotlight.util.MathUtil
 
 class UnweightedMixture(features: Set[String]) extends Mixture(1) {
 
+  private val featureNames = features.toArray
+
   def getScore(occurrence: DBpediaResourceOccurrence): Double = {
-    val fs = occurrence.features.values.filter({ f: Feature => features.contains(f.featureName) }).map(_.value.asInstanceOf[Double])
-    MathUtil.lnproduct(fs)
+    var score = MathUtil.ln(1.0)
+    var i = 0
+    while (i < featureNames.length) {
+      val f = occurrence.getFeature(featureNames(i))
+      if (f != null)
+        score = MathUtil.lnproduct(score, f.value.asInstanceOf[Double])
+      i += 1
+    }
+    score
   }
 
   override def toString = "UnweightedMixture[%s]".format(features.mkString(","))
@@ -17,7 +17,7 @@
 package org.dbpedia.spotlight.filter.annotations
 
 import org.dbpedia.spotlight.log.SpotlightLog
-import org.dbpedia.spotlight.model.{DBpediaResourceOccurrence, SurfaceForm}
+import org.dbpedia.spotlight.model.DBpediaResourceOccurrence
 
 /**
  * this is a heuristic and has nothing to do with proper coreference resolution!!!
@@ -29,54 +29,41 @@ class CoreferenceFilter extends AnnotationFilter {
 
     override def filterOccs(occs : Traversable[DBpediaResourceOccurrence]) : Traversable[DBpediaResourceOccurrence] = {
         // this is a heuristic and has nothing to do with proper coreference resolution!!!
-        val occList = occs.toList
-        var backwardIdx = occList.length
-        occList.reverse.map(laterOcc => {
-            backwardIdx -= 1
-            val coreferentOcc = occs.slice(0, backwardIdx).find(prevOcc => {
-                val coreferring = isCoreferent(prevOcc.surfaceForm, laterOcc.surfaceForm)
-                if (coreferring)
-                    SpotlightLog.info(this.getClass, "found coreferent: %s at position %d probably coreferring to %s at position %d; copying %s", laterOcc.surfaceForm, laterOcc.textOffset, prevOcc.surfaceForm, prevOcc.textOffset, prevOcc.resource)
-                coreferring
-            })
+        // A single-word occurrence refers to the first previous occurrence whose words are all capitalized
+        // and contain the word. Sweeping forward, each word is mapped to the first such occurrence, so that
+        // every occurrence is looked up and indexed once.
+        val firstMention = new java.util.HashMap[String, DBpediaResourceOccurrence]()
+
+        occs.toList.map(laterOcc => {
+            val laterSFWords = laterOcc.surfaceForm.name.split(" ")
+
+            val coreferentOcc = if (laterSFWords.length == 1) Option(firstMention.get(laterSFWords.head)) else None
+
+            // index the occurrence for the following ones
+            if (laterSFWords.forall(isCapitalized))
+                laterSFWords.foreach(word => if (!firstMention.containsKey(word)) firstMention.put(word, laterOcc))
+
             if (coreferentOcc != None) {
+                val prevOcc = coreferentOcc.get
+                SpotlightLog.info(this.getClass, "found coreferent: %s at position %d probably coreferring to %s at position %d; copying %s", laterOcc.surfaceForm, laterOcc.textOffset, prevOcc.surfaceForm, prevOcc.textOffset, prevOcc.resource)
                 new DBpediaResourceOccurrence(laterOcc.id,
-                    coreferentOcc.get.resource,
+                    prevOcc.resource,
                     laterOcc.surfaceForm,
                     laterOcc.context,
                     laterOcc.textOffset,
                     laterOcc.provenance,
-                    coreferentOcc.get.similarityScore,           // what to put here?
-                    coreferentOcc.get.percentageOfSecondRank)    // what to put here?
+                    prevOcc.similarityScore,           // what to put here?
+                    prevOcc.percentageOfSecondRank)    // what to put here?
             }
             else {
                 laterOcc
             }
-        }).reverse
-
-        //        occs.reverse.filterNot(laterOcc => {
-        //            val laterSFWords = laterOcc.surfaceForm.name.split(" ")
-        //            backwardIdx -= 1
-        //            occs.slice(0, backwardIdx).find(prevOcc => {
-        //                val prevSFWords = prevOcc.surfaceForm.name.split(" ")
-        //                val isCoreferent = ( (laterSFWords.length == 1 && prevSFWords.contains(laterSFWords.head)) ||
-        //                                     (prevSFWords.last equals laterSFWords.last) )
-        //                if (isCoreferent)
-        //                    SpotlightLog.info(this.getClass, "filtered out as coreferent: %s at position %d probably coreferring to %s at position %d", laterOcc.surfaceForm, laterOcc.textOffset, prevOcc.surfaceForm, prevOcc.textOffset)
-        //                isCoreferent
-        //            }) != None
-        //        }).reverse
+        })
     }
 
-    private def isCoreferent(previous : SurfaceForm, later : SurfaceForm) : Boolean = {
-        val prevSFWords = previous.name.split(" ")
-        val laterSFWords = later.name.split(" ")
-        ( (laterSFWords.length == 1 &&
-                prevSFWords.filterNot(word => word.substring(0,1) equals word.substring(0,1).toUpperCase).isEmpty &&
-                prevSFWords.contains(laterSFWords.head))
-                //|| (prevSFWords.last equals laterSFWords.last)
-                )
-      }
+    private def isCapitalized(word : String) : Boolean = {
+        word.nonEmpty && (word.substring(0,1) equals word.substring(0,1).toUpperCase)
+    }
 
       def touchOcc(occ : DBpediaResourceOccurrence) : Option[DBpediaResourceOccurrence] = {
           // this filter has to operate on a complete set of occurrences in order to find coreferents
@@ -23,7 +23,7 @@ import java.util
 import org.dbpedia.spotlight.filter.visitor.{FilterElement, FilterOccsVisitor}
 import org.dbpedia.spotlight.log.SpotlightLog
 import org.dbpedia.spotlight.model.{DBpediaResource, DBpediaResourceOccurrence}
-import org.dbpedia.spotlight.sparql.SparqlQueryExecuter
+import org.dbpedia.spotlight.sparql.{CachedSparqlQueryExecuter, SparqlQueryExecuter}
 
 import scala.collection.JavaConversions._
 import scala.collection.JavaConverters._
@@ -31,23 +31,39 @@ import scala.collection.JavaConverters._
 
 class SparqlFilter(val executer : SparqlQueryExecuter, val sparqlQuery: String, val listColor : FilterPolicy.ListColor) extends AnnotationFilter with FilterElement  {
 
-    val uriSet =
-        if(sparqlQuery != null && sparqlQuery != "") {
-            val s = executer.query(sparqlQuery).asScala.map( r => r.uri ).toSet
-            SpotlightLog.debug(this.getClass, "SPARQL %s:%s", listColor, s)
-            s
+    private val hasQuery = sparqlQuery != null && sparqlQuery != ""
+
+    /**
+     * A caching executer returns the sorted IDs of the resources in the model,
+     * otherwise the URIs of the resources are compared.
+     */
+    private val contains: DBpediaResource => Boolean = executer match {
+        case cached: CachedSparqlQueryExecuter if hasQuery => {
+            val ids = cached.queryIds(sparqlQuery)
+            SpotlightLog.debug(this.getClass, "SPARQL %s: %d resources", listColor, ids.length)
+            (resource: DBpediaResource) => util.Arrays.binarySearch(ids, cached.idOf(resource)) >= 0
         }
-        else {
-            Set[String]()
+        case _ => {
+            val uriSet =
+                if(hasQuery) {
+                    val s = executer.query(sparqlQuery).asScala.map( r => r.uri ).toSet
+                    SpotlightLog.debug(this.getClass, "SPARQL %s:%s", listColor, s)
+                    s
+                }
+                else {
+                    Set[String]()
+                }
+            (resource: DBpediaResource) => uriSet.contains(resource.uri)
         }
+    }
 
     private val acceptable = listColor match {
-        case FilterPolicy.Whitelist => (resource : DBpediaResource) =>  uriSet.contains(resource.uri)
-        case FilterPolicy.Blacklist => (resource : DBpediaResource) => !uriSet.contains(resource.uri)
+        case FilterPolicy.Whitelist => (resource : DBpediaResource) =>  contains(resource)
+        case FilterPolicy.Blacklist => (resource : DBpediaResource) => !contains(resource)
     }
 
     override def touchOcc(occ : DBpediaResourceOccurrence) : Option[DBpediaResourceOccurrence] = {
-        if(sparqlQuery == null || sparqlQuery == "") {
+        if(!hasQuery) {
             Some(occ)
         }
         else if(acceptable(occ.resource)) {
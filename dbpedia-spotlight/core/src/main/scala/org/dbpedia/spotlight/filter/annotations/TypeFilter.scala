@@ -24,7 +24,11 @@ import org.dbpedia.spotlight.model.{DBpediaResource, DBpediaResourceOccurrence,
 
 import scala.collection.JavaConversions._
 
-class TypeFilter(var ontologyTypes : List[OntologyType], val blacklistOrWhitelist : FilterPolicy.ListColor) extends AnnotationFilter  with FilterElement {
+/**
+ * Filters occurrences by the types of their resources. If a compiled [[org.dbpedia.spotlight.filter.annotations.TypeMask]]
+ * is given, resources are matched by their type IDs instead of comparing the types.
+ */
+class TypeFilter(var ontologyTypes : List[OntologyType], val blacklistOrWhitelist : FilterPolicy.ListColor, mask: TypeMask = null) extends AnnotationFilter  with FilterElement {
 
     if (ontologyTypes==null)
         ontologyTypes = List[OntologyType]()
@@ -34,11 +38,15 @@ class TypeFilter(var ontologyTypes : List[OntologyType], val blacklistOrWhitelis
     if(ontologyTypes.isEmpty) SpotlightLog.debug(this.getClass, "types are empty: showing all types")  // see comment below
 
 
+    private val matches: DBpediaResource => Boolean =
+        if (mask != null)
+            mask.matches
+        else
+            (resource : DBpediaResource) => resource.types.filter(given => ontologyTypes.find(listed => given equals listed) != None).nonEmpty
+
     private val acceptable = blacklistOrWhitelist match {
-        case FilterPolicy.Whitelist => (resource : DBpediaResource) =>
-            resource.types.filter(given => ontologyTypes.find(listed => given equals listed) != None).nonEmpty
-        case FilterPolicy.Blacklist => (resource : DBpediaResource) =>
-            resource.types.filter(given => ontologyTypes.find(listed => given equals listed) != None).isEmpty
+        case FilterPolicy.Whitelist => (resource : DBpediaResource) =>  matches(resource)
+        case FilterPolicy.Blacklist => (resource : DBpediaResource) => !matches(resource)
     }
 
     private val showUntyped = ontologyTypes.find(t => DBpediaType.UNKNOWN equals t) != None
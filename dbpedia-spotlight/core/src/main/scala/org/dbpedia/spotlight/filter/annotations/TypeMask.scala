@@ -0,0 +1,100 @@
+/*
+ * Copyright 2011 DBpedia Spotlight Development Team
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  Check our project website for information on how to acknowledge the authors and how to contribute to the project: http://spotlight.dbpedia.org
+ */
+
+package org.dbpedia.spotlight.filter.annotations
+
+import org.dbpedia.spotlight.db.memory.MemoryResourceStore
+import org.dbpedia.spotlight.model.{DBpediaResource, Factory, OntologyType}
+
+
+/**
+ * A type filter compiled against the ontology type IDs of a [[org.dbpedia.spotlight.db.memory.MemoryResourceStore]].
+ * Each requested type sets one bit, so that a resource is matched by testing the bits of its type IDs
+ * instead of comparing [[org.dbpedia.spotlight.model.OntologyType]] objects.
+ *
+ * @param types the requested types
+ * @param bits bit set over the type IDs of the requested types that are known to the model
+ * @param resourceStore store holding the type IDs of each resource
+ */
+class TypeMask(val types: List[OntologyType], bits: Array[Long], resourceStore: MemoryResourceStore) {
+
+  def contains(typeID: Short): Boolean = {
+    val i = typeID & 0xffff
+    (i >> 6) < bits.length && (bits(i >> 6) & (1L << i)) != 0
+  }
+
+  /**
+   * Checks whether the resource has at least one of the requested types. Resources that were not
+   * created by the resource store are compared by their types.
+   */
+  def matches(resource: DBpediaResource): Boolean = {
+    if (resource.id > 0 && resource.id < resourceStore.typesForID.length) {
+      val typeIDs = resourceStore.typesForID(resource.id)
+      var i = 0
+      while (typeIDs != null && i < typeIDs.length) {
+        if (contains(typeIDs(i)))
+          return true
+        i += 1
+      }
+      false
+    } else {
+      resource.types.exists(types.contains)
+    }
+  }
+
+}
+
+
+/**
+ * Compiles the comma-separated type lists of requests into [[org.dbpedia.spotlight.filter.annotations.TypeMask]]s
+ * and keeps the most recently used ones, since clients tend to send the same few type lists.
+ *
+ * @param resourceStore resource store of the model
+ * @param maxEntries number of compiled masks to keep
+ */
+class TypeMaskCompiler(resourceStore: MemoryResourceStore, maxEntries: Int = 256) {
+
+  private val compiled = new java.util.LinkedHashMap[String, TypeMask](16, 0.75f, true) {
+    override def removeEldestEntry(eldest: java.util.Map.Entry[String, TypeMask]): Boolean = size() > maxEntries
+  }
+
+  def compile(ontologyTypes: String): TypeMask = {
+    val key = if (ontologyTypes == null) "" else ontologyTypes.trim
+
+    compiled.synchronized {
+      val mask = compiled.get(key)
+      if (mask != null)
+        return mask
+    }
+
+    val types = Factory.ontologyType.fromCSVString(key).filter(_.typeID.trim.nonEmpty)
+    val typeIDs = types.flatMap { t: OntologyType =>
+      Option(resourceStore.ontologyTypeStore.getOntologyTypeByName(t.typeID)).map(_.id & 0xffff)
+    }
+
+    val bits = new Array[Long](if (typeIDs.isEmpty) 0 else (typeIDs.max >> 6) + 1)
+    typeIDs.foreach { i: Int => bits(i >> 6) |= 1L << i }
+
+    val mask = new TypeMask(types, bits, resourceStore)
+    compiled.synchronized {
+      compiled.put(key, mask)
+    }
+    mask
+  }
+
+}
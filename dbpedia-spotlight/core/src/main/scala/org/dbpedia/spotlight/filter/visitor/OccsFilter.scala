@@ -26,7 +26,8 @@ import scala.collection.JavaConverters._
 
 class OccsFilter(confidence: Double, support: Int,
                  ontologyTypes: String, sparqlQuery: String, blacklist: Boolean, coreferenceResolution: Boolean,
-                 simThresholds: java.util.List[java.lang.Double], sparqlExecuter: SparqlQueryExecuter) extends FilterElement {
+                 simThresholds: java.util.List[java.lang.Double], sparqlExecuter: SparqlQueryExecuter,
+                 typeMasks: TypeMaskCompiler) extends FilterElement {
 
   //Converting thresholds to scala list
   private val thresholds: List[Double] = simThresholds.asScala.map(v => v.toDouble).toList
@@ -62,8 +63,13 @@ class OccsFilter(confidence: Double, support: Int,
    * @return
    */
   private def typeFilter(ontologyTypes: String, listColor: FilterPolicy.ListColor) = {
-    val dbpediaTypes = ontologyType.fromCSVString(ontologyTypes)
-    new TypeFilter(dbpediaTypes.toList, listColor)
+    if (typeMasks != null) {
+      val mask = typeMasks.compile(ontologyTypes)
+      new TypeFilter(mask.types, listColor, mask)
+    } else {
+      val dbpediaTypes = ontologyType.fromCSVString(ontologyTypes)
+      new TypeFilter(dbpediaTypes.toList, listColor)
+    }
   }
 
 
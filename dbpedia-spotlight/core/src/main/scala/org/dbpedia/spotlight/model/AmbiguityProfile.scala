@@ -0,0 +1,42 @@
+package org.dbpedia.spotlight.model
+
+/**
+ * Describes how ambiguous a surface form is, computed at indexing time from the candidate counts.
+ *
+ * @param candidateCount number of candidates of the surface form
+ * @param priorMargin difference between the share of annotations of the most frequent and the
+ *                    second most frequent candidate (1.0 if there is only one candidate)
+ */
+class AmbiguityProfile(val candidateCount: Int, val priorMargin: Float) {
+
+  def isUnambiguous: Boolean = candidateCount == 1
+
+  override def toString = "AmbiguityProfile[%d candidates, margin %.3f]".format(candidateCount, priorMargin)
+
+}
+
+object AmbiguityProfile {
+
+  /**
+   * Computes the prior margin from the candidate counts of a surface form.
+   */
+  def priorMargin(counts: Array[Int]): Float = {
+    if (counts == null || counts.length == 0)
+      return 0.0f
+
+    var first, second = 0
+    var total = 0L
+    counts.foreach { c: Int =>
+      total += c
+      if (c > first) {
+        second = first
+        first = c
+      } else if (c > second) {
+        second = c
+      }
+    }
+
+    if (total == 0) 0.0f else ((first - second) / total.toDouble).toFloat
+  }
+
+}
@@ -0,0 +1,48 @@
+package org.dbpedia.spotlight.model
+
+/**
+ * Fixed slot layout for the features that are set on every object in the
+ * annotation hot path (tokens, spots and resource occurrences).
+ *
+ * Features listed here are stored in a small array indexed by their slot instead
+ * of a per-object hash map, see [[org.dbpedia.spotlight.model.HasFeatures]].
+ * Any other feature name is still accepted and kept in a lazily allocated map.
+ */
+
+object FeatureSchema {
+
+  val names = Array(
+    //Token features:
+    "token-prob",
+    "pos",
+    "pos-prob",
+    "end-of-sentence",
+
+    //Text features:
+    "tokens",
+    "confidence",
+
+    //Surface form occurrence features:
+    "spot_type",
+    "token_types",
+
+    //Resource occurrence features:
+    "P(e)",
+    "P(c|e)",
+    "P(s|e)",
+    "finalScore",
+    "contextualScore",
+    "percentageOfSecondRank"
+  )
+
+  val size = names.length
+
+  private val slots: Map[String, Int] = names.zipWithIndex.toMap
+
+  /**
+   * Returns the slot of a well-known feature or -1 if the feature
+   * is not part of the schema.
+   */
+  def slotOf(featureName: String): Int = slots.getOrElse(featureName, -1)
+
+}
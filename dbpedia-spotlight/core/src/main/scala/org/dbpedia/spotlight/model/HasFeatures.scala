@@ -3,30 +3,86 @@ package org.dbpedia.spotlight.model
 import scala.collection.mutable.HashMap
 
 /**
+ * Features attached to a model object.
+ *
+ * Features known to the [[org.dbpedia.spotlight.model.FeatureSchema]] are kept in a
+ * fixed slot array, all other features in a map. Both are only allocated once the
+ * first feature of their kind is set, so objects without features (e.g. most tokens
+ * when no POS tagger is used) carry no per-object collection at all.
+ *
  * @author Joachim Daiber
  */
 
 trait HasFeatures {
 
-  val features = HashMap[String, Feature]()
+  private var featureSlots: Array[Feature] = null
+  private var otherFeatures: HashMap[String, Feature] = null
 
-  def feature(featureName: String): Option[Feature] = {
-    features.get(featureName)
+  /**
+   * All features of this object. This is a snapshot, use setFeature to add features.
+   * In the annotation hot path, use getFeature or foreachFeature, which do not allocate.
+   */
+  def features: Map[String, Feature] = {
+    var m = Map[String, Feature]()
+    foreachFeature( f => m += (f.featureName -> f) )
+    m
+  }
+
+  /**
+   * Applies f to all features of this object, schema features first in slot order.
+   */
+  def foreachFeature(f: Feature => Unit) {
+    if (featureSlots != null) {
+      var i = 0
+      while (i < featureSlots.length) {
+        if (featureSlots(i) != null)
+          f(featureSlots(i))
+        i += 1
+      }
+    }
+    if (otherFeatures != null)
+      otherFeatures.values.foreach(f)
+  }
+
+  def hasFeatures: Boolean = {
+    (featureSlots != null && featureSlots.exists(_ != null)) || (otherFeatures != null && otherFeatures.nonEmpty)
+  }
+
+  def feature(featureName: String): Option[Feature] = Option(getFeature(featureName))
+
+  /**
+   * Returns the feature or null if it is not set.
+   */
+  def getFeature(featureName: String): Feature = {
+    val slot = FeatureSchema.slotOf(featureName)
+    if (slot >= 0)
+      if (featureSlots == null) null else featureSlots(slot)
+    else
+      if (otherFeatures == null) null else otherFeatures.getOrElse(featureName, null)
   }
 
   def featureValue[T](featureName: String): Option[T] = {
-    features.get(featureName) match {
+    feature(featureName) match {
       case Some(f) => Option(f.value.asInstanceOf[T])
       case _ => None
     }
   }
 
   def featureValueJava(featureName: String): Object = {
-    features.get(featureName).getOrElse(null)
+    feature(featureName).getOrElse(null)
   }
 
   def setFeature(feature: Feature) {
-    features.put(feature.featureName, feature)
+    val slot = FeatureSchema.slotOf(feature.featureName)
+    if (slot >= 0) {
+      if (featureSlots == null)
+        featureSlots = new Array[Feature](FeatureSchema.size)
+      featureSlots(slot) = feature
+    } else {
+      if (otherFeatures == null)
+        otherFeatures = HashMap[String, Feature]()
+      otherFeatures.put(feature.featureName, feature)
+    }
   }
 
 }
@@ -0,0 +1,34 @@
+package org.dbpedia.spotlight.util
+
+import org.dbpedia.spotlight.exceptions.TimeoutException
+import org.dbpedia.spotlight.model.{Feature, Text}
+
+/**
+ * Per-request deadlines.
+ *
+ * The deadline is attached to the input [[org.dbpedia.spotlight.model.Text]] as a feature
+ * (an absolute value of System.nanoTime), so that it travels with the text through spotting
+ * and disambiguation. Long running loops call check() and give up with a
+ * [[org.dbpedia.spotlight.exceptions.TimeoutException]] once the deadline has passed.
+ */
+object Deadline {
+
+  val FEATURE_NAME = "deadline"
+
+  def set(text: Text, timeoutMillis: Long) {
+    if (timeoutMillis > 0)
+      text.setFeature(new Feature(FEATURE_NAME, System.nanoTime + timeoutMillis * 1000000L))
+  }
+
+  def isExpired(text: Text): Boolean = text.featureValue[Long](FEATURE_NAME) match {
+    case Some(deadline) => System.nanoTime - deadline > 0
+    case None => false
+  }
+
+  @throws(classOf[TimeoutException])
+  def check(text: Text, stage: String) {
+    if (isExpired(text))
+      throw new TimeoutException("Request deadline exceeded during %s.".format(stage))
+  }
+
+}
@@ -0,0 +1,108 @@
+package org.dbpedia.spotlight.util
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.LongAdder
+
+import org.HdrHistogram.ConcurrentHistogram
+import org.dbpedia.spotlight.model.Text
+
+/**
+ * Distribution of a measured value, e.g. the latency of a pipeline stage in nanoseconds
+ * or the number of spots per request. Values are recorded in an HdrHistogram with two
+ * significant digits, values above maxValue are recorded as maxValue.
+ */
+class Distribution(val name: String, val help: String, maxValue: Long) {
+
+  private val histogram = new ConcurrentHistogram(maxValue, 2)
+  private val total = new LongAdder()
+
+  def record(value: Long) {
+    val v = math.min(math.max(value, 0L), maxValue)
+    histogram.recordValue(v)
+    total.add(v)
+  }
+
+  def count: Long = histogram.getTotalCount
+
+  def sum: Long = total.sum()
+
+  def quantile(q: Double): Long = histogram.getValueAtPercentile(q * 100.0)
+
+}
+
+/**
+ * Process-wide operational metrics of the annotation pipeline.
+ *
+ * Stages are timed with start() and stop(stage, start), which cost two calls to System.nanoTime
+ * and a histogram update per stage and request. Passing the text to stop() also records the time
+ * in the [[org.dbpedia.spotlight.util.Trace]] of the request. The REST server exports the metrics at /metrics.
+ */
+object Metrics {
+
+  @volatile var enabled = true
+
+  private val MAX_LATENCY = 3600L * 1000000000L
+
+  private def stage(name: String, help: String) = new Distribution(name, help, MAX_LATENCY)
+
+  val Tokenize        = stage("tokenize", "Tokenization of the input text")
+  val Spot            = stage("spot", "Spotting of surface forms")
+  val CandidateSearch = stage("candidate_search", "Candidate search for all spots of a paragraph")
+  val ContextScoring  = stage("context_scoring", "Context similarity scoring of all candidates of a paragraph")
+  val Filter          = stage("filter", "Filtering of the disambiguated occurrences")
+  val Serialize       = stage("serialize", "Serialization of the response")
+
+  val stages = List(Tokenize, Spot, CandidateSearch, ContextScoring, Filter, Serialize)
+
+  val SpotsPerRequest   = new Distribution("spots_per_request", "Number of spots found in a request", 1000000L)
+  val CandidatesPerSpot = new Distribution("candidates_per_spot", "Number of candidates retrieved for a spot", 1000000L)
+
+  val requests   = new LongAdder()
+  val characters = new LongAdder()
+
+  private val storeBytes = new ConcurrentHashMap[String, java.lang.Long]()
+
+  def start(): Long = System.nanoTime()
+
+  def stop(stage: Distribution, start: Long) {
+    if (enabled)
+      stage.record(System.nanoTime() - start)
+  }
+
+  /**
+   * Records the time since start for the stage, and in the trace of the request if it has one.
+   */
+  def stop(stage: Distribution, start: Long, trace: Trace) {
+    val elapsed = System.nanoTime() - start
+    if (enabled)
+      stage.record(elapsed)
+    if (trace != null)
+      trace.time(stage.name, elapsed)
+  }
+
+  def stop(stage: Distribution, start: Long, text: Text) {
+    stop(stage, start, Trace.of(text).orNull)
+  }
+
+  def recordRequest(textLength: Int) {
+    if (enabled) {
+      requests.increment()
+      characters.add(textLength)
+    }
+  }
+
+  def record(distribution: Distribution, value: Long) {
+    if (enabled)
+      distribution.record(value)
+  }
+
+  /**
+   * Sets the size of a model store in bytes (the size of its serialized file).
+   */
+  def setStoreBytes(store: String, bytes: Long) {
+    storeBytes.put(store, bytes)
+  }
+
+  def getStoreBytes: java.util.Map[String, java.lang.Long] = java.util.Collections.unmodifiableMap(storeBytes)
+
+}
@@ -0,0 +1,51 @@
+package org.dbpedia.spotlight.util
+
+import org.dbpedia.spotlight.model.{Feature, Text}
+
+/**
+ * Timings and work counters of a single request, e.g. for debugging a slow document.
+ *
+ * Like the [[org.dbpedia.spotlight.util.Deadline]], the trace is attached to the input
+ * [[org.dbpedia.spotlight.model.Text]] as a feature. Stages are timed via
+ * [[org.dbpedia.spotlight.util.Metrics]], counters are added by the spotter and disambiguator.
+ * Texts without a trace only pay for the feature lookup.
+ */
+class Trace {
+
+  private val timings  = new java.util.LinkedHashMap[String, java.lang.Long]()
+  private val counters = new java.util.LinkedHashMap[String, java.lang.Long]()
+
+  def time(stage: String, nanos: Long) {
+    add(timings, stage, nanos)
+  }
+
+  def count(counter: String, n: Long) {
+    add(counters, counter, n)
+  }
+
+  private def add(values: java.util.Map[String, java.lang.Long], key: String, n: Long) {
+    values.synchronized {
+      val current = values.get(key)
+      values.put(key, if (current == null) n else current + n)
+    }
+  }
+
+  /** Total nanoseconds per stage, in the order in which the stages were first recorded. */
+  def getTimings: java.util.Map[String, java.lang.Long] = timings.synchronized { new java.util.LinkedHashMap(timings) }
+
+  def getCounters: java.util.Map[String, java.lang.Long] = counters.synchronized { new java.util.LinkedHashMap(counters) }
+
+}
+
+object Trace {
+
+  val FEATURE_NAME = "trace"
+
+  def set(text: Text, trace: Trace) {
+    if (trace != null)
+      text.setFeature(new Feature(FEATURE_NAME, trace))
+  }
+
+  def of(text: Text): Option[Trace] = text.featureValue[Trace](FEATURE_NAME)
+
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2011 DBpedia Spotlight Development Team
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  Check our project website for information on how to acknowledge the authors and how to contribute to the project: http://spotlight.dbpedia.org
+ */
+
+package org.dbpedia.spotlight.sparql;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.dbpedia.spotlight.db.model.ResourceStore;
+import org.dbpedia.spotlight.exceptions.DBpediaResourceNotFoundException;
+import org.dbpedia.spotlight.model.DBpediaResource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the caching SPARQL executer against a local stub endpoint.
+ */
+public class CachedSparqlQueryExecuterTest {
+
+    private static final String RESULT = "{\"head\":{\"vars\":[\"s\"]},\"results\":{\"bindings\":[" +
+            "{\"s\":{\"type\":\"uri\",\"value\":\"http://dbpedia.org/resource/Berlin\"}}," +
+            "{\"s\":{\"type\":\"uri\",\"value\":\"http://dbpedia.org/resource/Unknown\"}}," +
+            "{\"s\":{\"type\":\"uri\",\"value\":\"http://dbpedia.org/resource/Barack_Obama\"}}]}}";
+
+    private HttpServer endpoint;
+    private ExecutorService endpointExecutor;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicReference<String> lastQuery = new AtomicReference<String>();
+
+    private final ResourceStore resourceStore = new ResourceStore() {
+        private final Map<String, Integer> ids = new HashMap<String, Integer>();
+        {
+            ids.put("Barack_Obama", 7);
+            ids.put("Berlin", 3);
+        }
+
+        public DBpediaResource getResource(int id) throws DBpediaResourceNotFoundException {
+            throw new DBpediaResourceNotFoundException("Not used.");
+        }
+
+        public DBpediaResource getResourceByName(String name) throws DBpediaResourceNotFoundException {
+            if (!ids.containsKey(name))
+                throw new DBpediaResourceNotFoundException(name);
+            DBpediaResource resource = new DBpediaResource(name);
+            resource.id_$eq(ids.get(name));
+            return resource;
+        }
+    };
+
+    @Before
+    public void startEndpoint() throws IOException {
+        endpoint = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        endpoint.createContext("/sparql", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                for (String parameter : exchange.getRequestURI().getRawQuery().split("&")) {
+                    if (parameter.startsWith("query="))
+                        lastQuery.set(URLDecoder.decode(parameter.substring("query=".length()), "UTF-8"));
+                }
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                byte[] body = RESULT.getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        endpointExecutor = Executors.newCachedThreadPool();
+        endpoint.setExecutor(endpointExecutor);
+        endpoint.start();
+    }
+
+    @After
+    public void stopEndpoint() {
+        endpoint.stop(0);
+        endpointExecutor.shutdownNow();
+    }
+
+    private CachedSparqlQueryExecuter executer(long ttl) {
+        String url = "http://localhost:" + endpoint.getAddress().getPort() + "/sparql";
+        return new CachedSparqlQueryExecuter("http://dbpedia.org", url, resourceStore, 10, ttl, 2);
+    }
+
+    @Test
+    public void resultsAreSortedIDsOfKnownResources() throws Exception {
+        int[] ids = executer(60000).queryIds("select ?s where { ?s a ?t }");
+        assertArrayEquals(new int[]{3, 7}, ids);
+    }
+
+    @Test
+    public void normalizedQueriesAreServedFromTheCache() throws Exception {
+        CachedSparqlQueryExecuter executer = executer(60000);
+        executer.queryIds("select ?s where { ?s a ?t }");
+        executer.queryIds("  select ?s\n where {  ?s a ?t }\n");
+
+        assertEquals(1, requests.get());
+        assertEquals(1, executer.getHits());
+    }
+
+    @Test
+    public void queriesAreSentAsGiven() throws Exception {
+        //Normalizing this query would comment out everything after the comment and change the literal:
+        String query = "# resources with a label\n" +
+                "select ?s where {\n" +
+                "  ?s <http://www.w3.org/2000/01/rdf-schema#label> \"Berlin   Mitte\" .\n" +
+                "}\n";
+        CachedSparqlQueryExecuter executer = executer(60000);
+        executer.queryIds(query);
+        assertEquals(query, lastQuery.get());
+
+        //Queries that only differ in whitespace share the cache entry:
+        executer.queryIds(CachedSparqlQueryExecuter.normalize(query));
+        assertEquals(1, requests.get());
+        assertEquals(1, executer.getHits());
+    }
+
+    @Test
+    public void expiredEntriesAreQueriedAgain() throws Exception {
+        CachedSparqlQueryExecuter executer = executer(0);
+        executer.queryIds("select ?s where { ?s a ?t }");
+        executer.queryIds("select ?s where { ?s a ?t }");
+
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void concurrentQueriesShareOneRequest() throws Exception {
+        final CachedSparqlQueryExecuter executer = executer(60000);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<int[]>> results = new ArrayList<Future<int[]>>();
+        for (int i = 0; i < 8; i++) {
+            results.add(pool.submit(new Callable<int[]>() {
+                public int[] call() throws Exception {
+                    return executer.queryIds("select ?s where { ?s a ?t }");
+                }
+            }));
+        }
+        for (Future<int[]> result : results)
+            assertArrayEquals(new int[]{3, 7}, result.get());
+        pool.shutdown();
+
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void prefetchedQueriesAreNotRequestedAgain() throws Exception {
+        CachedSparqlQueryExecuter executer = executer(60000);
+        executer.prefetch("select ?s where { ?s a ?t }");
+        assertArrayEquals(new int[]{3, 7}, executer.queryIds("select ?s where { ?s a ?t }"));
+
+        assertEquals(1, requests.get());
+    }
+
+}
@@ -0,0 +1,181 @@
+package org.dbpedia.spotlight.db
+
+import org.dbpedia.spotlight.db.memory.MemoryQuantizedCountStore
+import org.dbpedia.spotlight.db.similarity.ContextSimilarity
+import org.dbpedia.spotlight.disambiguate.DisambiguationMode
+import org.dbpedia.spotlight.disambiguate.mixtures.UnweightedMixture
+import org.dbpedia.spotlight.model._
+import org.dbpedia.spotlight.util.MemoryStoreUtil
+import org.junit.Assert._
+import org.junit.Test
+
+import scala.collection.mutable
+
+class DBTwoStepDisambiguatorTest {
+
+  /**
+   * A context similarity with a fixed score per resource that remembers which resources it scored.
+   */
+  class FixedContextSimilarity(scores: Map[String, Double]) extends ContextSimilarity {
+
+    val scored = mutable.Set[String]()
+
+    def score(query: Seq[TokenType], candidates: Set[DBpediaResource]): mutable.Map[DBpediaResource, Double] = {
+      scored ++= candidates.map(_.uri)
+      mutable.Map(candidates.toSeq.map(res => res -> scores(res.uri)): _*)
+    }
+
+    def nilScore(query: Seq[TokenType]): Double = -50.0
+
+  }
+
+  val quantizedCountStore = new MemoryQuantizedCountStore()
+
+  val sfStore = MemoryStoreUtil.createSurfaceFormStore(List(("Berlin", 100, 200), ("Paris", 10, 20), ("Tegel", 5, 10)), quantizedCountStore)
+
+  val resStore = MemoryStoreUtil.createResourceStore(List(
+    ("Berlin", 60), ("Berlin_(band)", 30), ("West_Berlin", 10), ("Paris", 9), ("Paris_Hilton", 1), ("Berlin_Tegel_Airport", 5)
+  ), quantizedCountStore)
+
+  val candMapStore = MemoryStoreUtil.createCandidateMapStore(Map(
+    1 -> List((1, 60), (2, 30), (3, 10)),
+    2 -> List((4, 9), (5, 1)),
+    3 -> List((6, 5))
+  ), 3, resStore, quantizedCountStore)
+
+  //The context favours the least frequent candidate of each surface form:
+  val contextSimilarity = new FixedContextSimilarity(Map(
+    "Berlin" -> -20.0, "Berlin_(band)" -> -20.0, "West_Berlin" -> -1.0, "Paris" -> -20.0, "Paris_Hilton" -> -1.0,
+    "Berlin_Tegel_Airport" -> -2.0
+  ))
+
+  //The context agrees with the prior of Paris:
+  val agreeingScores = Map(
+    "Berlin" -> -20.0, "Berlin_(band)" -> -20.0, "West_Berlin" -> -1.0, "Paris" -> -5.0, "Paris_Hilton" -> -30.0,
+    "Berlin_Tegel_Airport" -> -2.0
+  )
+
+  def createDisambiguator(contextSimilarity: ContextSimilarity, fastPathMinMargin: Double = -1.0): DBTwoStepDisambiguator = {
+    val disambiguator = new DBTwoStepDisambiguator(
+      null,
+      sfStore,
+      resStore,
+      new DBCandidateSearcher(resStore, sfStore, candMapStore),
+      new UnweightedMixture(Set("P(e)", "P(c|e)", "P(s|e)")),
+      contextSimilarity
+    )
+    disambiguator.fastPathMinMargin = fastPathMinMargin
+    disambiguator
+  }
+
+  val disambiguator = createDisambiguator(contextSimilarity)
+
+  val text = new Text("Berlin and Paris, Tegel")
+  val berlin = new SurfaceFormOccurrence(sfStore.getSurfaceForm("Berlin"), text, 0)
+  val paris = new SurfaceFormOccurrence(sfStore.getSurfaceForm("Paris"), text, 11)
+  val tegel = new SurfaceFormOccurrence(sfStore.getSurfaceForm("Tegel"), text, 18)
+
+  def disambiguate(mode: DisambiguationMode): Map[SurfaceFormOccurrence, List[DBpediaResourceOccurrence]] =
+    disambiguator.bestK_(new Paragraph(text, List(berlin, paris)), List(berlin, paris), Seq[TokenType](), 10, mode)
+
+  @Test
+  def fullModeScoresAllCandidatesInContext() {
+    val best = disambiguate(DisambiguationMode.Full)
+
+    assertEquals(Set("Berlin", "Berlin_(band)", "West_Berlin", "Paris", "Paris_Hilton"), contextSimilarity.scored.toSet)
+    assertEquals(3, best(berlin).size)
+    assertEquals("West_Berlin", best(berlin).head.resource.uri)
+    assertEquals("Paris_Hilton", best(paris).head.resource.uri)
+  }
+
+  @Test
+  def reducedModeCapsCandidatesByPrior() {
+    val best = disambiguate(DisambiguationMode("reduced", 2, 50, 0))
+
+    assertFalse(contextSimilarity.scored.contains("West_Berlin"))
+    assertEquals(List("Berlin", "Berlin_(band)"), best(berlin).map(_.resource.uri).sorted)
+    assertEquals("Berlin", best(berlin).head.resource.uri)
+  }
+
+  @Test
+  def reducedModeRanksLowAmbiguityByPriorOnly() {
+    val best = disambiguate(DisambiguationMode("reduced", 10, 50, 2))
+
+    //Paris has two candidates and is ranked without context scores, Berlin has three:
+    assertEquals(Set("Berlin", "Berlin_(band)", "West_Berlin"), contextSimilarity.scored.toSet)
+    assertEquals("West_Berlin", best(berlin).head.resource.uri)
+    assertEquals("Paris", best(paris).head.resource.uri)
+    best(paris).foreach { o =>
+      assertEquals(-50.0, o.getFeature("P(c|e)").value.asInstanceOf[Double], 0.0)
+    }
+  }
+
+  @Test
+  def ambiguityProfileUsesStoredCounts() {
+    assertEquals(0.8f, candMapStore.getAmbiguityProfile(paris.surfaceForm).get.priorMargin, 1e-6f)
+    assertEquals(0.3f, candMapStore.getAmbiguityProfile(berlin.surfaceForm).get.priorMargin, 1e-6f)
+    assertTrue(candMapStore.getAmbiguityProfile(tegel.surfaceForm).get.isUnambiguous)
+  }
+
+  @Test
+  def fastPathMatchesFullPath() {
+    val occurrences = List(paris, tegel)
+    val paragraph = new Paragraph(text, occurrences)
+
+    val full = createDisambiguator(new FixedContextSimilarity(agreeingScores)).bestK_(paragraph, occurrences, Seq[TokenType](), 10)
+
+    //Paris has a dominant prior (margin 0.8), Tegel is unambiguous:
+    val fastContextSimilarity = new FixedContextSimilarity(agreeingScores)
+    val fastDisambiguator = createDisambiguator(fastContextSimilarity, 0.7)
+    val fast = fastDisambiguator.bestK_(paragraph, occurrences, Seq[TokenType](), 10)
+
+    assertEquals(2L, fastDisambiguator.fastPathOccurrences.get)
+    assertEquals(Set("Paris", "Berlin_Tegel_Airport"), fastContextSimilarity.scored.toSet)
+
+    occurrences.foreach { occ =>
+      val expected = full(occ).head
+      val actual = fast(occ).head
+      assertEquals(expected.resource, actual.resource)
+      assertEquals(expected.similarityScore, actual.similarityScore, 1e-9)
+      assertEquals(expected.contextualScore, actual.contextualScore, 1e-9)
+      assertEquals(expected.getFeature("P(c|e)").value.asInstanceOf[Double], actual.getFeature("P(c|e)").value.asInstanceOf[Double], 0.0)
+    }
+  }
+
+  @Test
+  def fastPathMatchesFullPathIfTopCandidateIsBelowNil() {
+    //Berlin takes the fast path with a margin of 0.3. The context score of its top candidate is below NIL,
+    //with the NIL context score Berlin_(band) would overtake it:
+    val scores = agreeingScores ++ Map("Berlin" -> -52.0, "Berlin_(band)" -> -60.0, "West_Berlin" -> -60.0)
+    val paragraph = new Paragraph(text, List(berlin))
+
+    val full = createDisambiguator(new FixedContextSimilarity(scores)).bestK_(paragraph, List(berlin), Seq[TokenType](), 10)
+
+    val fastContextSimilarity = new FixedContextSimilarity(scores)
+    val fastDisambiguator = createDisambiguator(fastContextSimilarity, 0.25)
+    val fast = fastDisambiguator.bestK_(paragraph, List(berlin), Seq[TokenType](), 10)
+
+    assertEquals(1L, fastDisambiguator.fastPathOccurrences.get)
+    assertEquals(Set("Berlin"), fastContextSimilarity.scored.toSet)
+
+    assertEquals("Berlin", full(berlin).head.resource.uri)
+    assertEquals(full(berlin).head.resource, fast(berlin).head.resource)
+    fast(berlin).tail.foreach { o =>
+      assertEquals(-52.0, o.getFeature("P(c|e)").value.asInstanceOf[Double], 0.0)
+    }
+  }
+
+  @Test
+  def fastPathKeepsNilComparison() {
+    //Without context support, the only candidate of Tegel is worse than the NIL entity on both paths:
+    val scores = agreeingScores + ("Berlin_Tegel_Airport" -> -80.0)
+    val paragraph = new Paragraph(text, List(tegel))
+
+    val full = createDisambiguator(new FixedContextSimilarity(scores)).bestK_(paragraph, List(tegel), Seq[TokenType](), 10)
+    val fast = createDisambiguator(new FixedContextSimilarity(scores), 0.7).bestK_(paragraph, List(tegel), Seq[TokenType](), 10)
+
+    assertTrue(full(tegel).isEmpty)
+    assertTrue(fast(tegel).isEmpty)
+  }
+
+}
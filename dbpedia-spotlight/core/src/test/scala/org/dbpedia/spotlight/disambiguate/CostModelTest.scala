@@ -0,0 +1,48 @@
+package org.dbpedia.spotlight.disambiguate
+
+import java.util.Properties
+
+import org.junit.Assert._
+import org.junit.Test
+
+class CostModelTest {
+
+  @Test
+  def defaultPropertiesNeverReduce() {
+    val costModel = CostModel.fromProperties(new Properties())
+
+    assertEquals(0.0, costModel.reducedThreshold, 0.0)
+    assertEquals(DisambiguationMode.Full, costModel.choose(10000000, 100000))
+  }
+
+  @Test
+  def disabledNeverReduces() {
+    assertEquals(DisambiguationMode.Full, CostModel.Disabled.choose(10000000, 100000))
+  }
+
+  @Test
+  def estimateIsLinearInLengthAndSpots() {
+    val costModel = new CostModel(2.0, 10.0, 0.0, DisambiguationMode.Full)
+
+    assertEquals(2.0 * 1000 + 10.0 * 30, costModel.estimate(1000, 30), 0.0)
+  }
+
+  @Test
+  def thresholdEnablesReducedMode() {
+    val properties = new Properties()
+    properties.setProperty("cost.reduced.threshold", "10000")
+    properties.setProperty("cost.reduced.candidates", "2")
+    val costModel = CostModel.fromProperties(properties)
+
+    //1.0 per character and 50.0 per spot:
+    assertEquals(DisambiguationMode.Full, costModel.choose(5000, 100))
+    assertEquals(DisambiguationMode.Full, costModel.choose(5000, 20))
+
+    val reduced = costModel.choose(5000, 101)
+    assertEquals("reduced", reduced.name)
+    assertEquals(2, reduced.maxCandidates)
+    assertEquals(50, reduced.maxContext)
+    assertEquals(2, reduced.priorOnlyMaxAmbiguity)
+  }
+
+}
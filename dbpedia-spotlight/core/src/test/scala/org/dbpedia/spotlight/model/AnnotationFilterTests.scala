@@ -51,4 +51,23 @@ class AnnotationFilterTests {
         assertTrue(coreferentEntities.forall( r => r.uri=="Marilyn_Manson" ))
     }
 
+    /**
+     * Only single-word occurrences refer to previous capitalized occurrences, and always to the first one.
+     */
+    @Test
+    def testCoreferenceFirstMention {
+        val text = new Text("Barack Obama met Michelle Obama. obama and Obama left, Michelle stayed.")
+        def occ(uri: String, sf: String, offset: Int) = new DBpediaResourceOccurrence(new DBpediaResource(uri), new SurfaceForm(sf), text, offset)
+        val occs = List(
+            occ("Barack_Obama", "Barack Obama", 0),
+            occ("Michelle_Obama", "Michelle Obama", 17),
+            occ("Obama_(disambiguation)", "obama", 33),
+            occ("Obama_(disambiguation)", "Obama", 43),
+            occ("Michelle_(song)", "Michelle", 55)
+        )
+
+        val filtered = new CoreferenceFilter().filterOccs(occs).map(_.resource.uri).toList
+        assertEquals(List("Barack_Obama", "Michelle_Obama", "Obama_(disambiguation)", "Barack_Obama", "Michelle_Obama"), filtered)
+    }
+
 }
\ No newline at end of file
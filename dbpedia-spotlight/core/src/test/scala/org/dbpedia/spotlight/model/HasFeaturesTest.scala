@@ -0,0 +1,64 @@
+package org.dbpedia.spotlight.model
+
+import org.dbpedia.spotlight.disambiguate.mixtures.UnweightedMixture
+import org.junit.Assert._
+import org.junit.Test
+
+
+class HasFeaturesTest {
+
+  @Test
+  def testSchemaAndOtherFeatures() {
+    val token = new Token("Berlin", 0, TokenType.UNKNOWN)
+    assertFalse(token.hasFeatures)
+    assertNull(token.getFeature("pos"))
+    assertNull(token.getFeature("some-feature"))
+
+    token.setFeature(new Feature("pos", "NNP"))
+    token.setFeature(new Feature("some-feature", 42))
+    assertTrue(token.hasFeatures)
+    assertTrue(FeatureSchema.slotOf("pos") >= 0)
+    assertEquals(-1, FeatureSchema.slotOf("some-feature"))
+
+    assertEquals(Some("NNP"), token.featureValue[String]("pos"))
+    assertEquals(Some(42), token.featureValue[Int]("some-feature"))
+    assertEquals(Set("pos", "some-feature"), token.features.keySet)
+  }
+
+  @Test
+  def testSettingAFeatureAgainReplacesIt() {
+    val token = new Token("Berlin", 0, TokenType.UNKNOWN)
+    token.setFeature(new Feature("pos", "NN"))
+    token.setFeature(new Feature("pos", "NNP"))
+    token.setFeature(new Feature("some-feature", 1))
+    token.setFeature(new Feature("some-feature", 2))
+
+    assertEquals("NNP", token.getFeature("pos").value)
+    assertEquals(2, token.getFeature("some-feature").value)
+
+    var n = 0
+    token.foreachFeature(f => n += 1)
+    assertEquals(2, n)
+  }
+
+  @Test
+  def testFeaturesIsASnapshot() {
+    val token = new Token("Berlin", 0, TokenType.UNKNOWN)
+    token.setFeature(new Feature("pos", "NNP"))
+    val snapshot = token.features
+    token.setFeature(new Feature("pos-prob", 0.9))
+    assertEquals(Set("pos"), snapshot.keySet)
+    assertEquals(Set("pos", "pos-prob"), token.features.keySet)
+  }
+
+  @Test
+  def testUnweightedMixtureReadsOnlyItsFeatures() {
+    val occ = new DBpediaResourceOccurrence(new DBpediaResource("Berlin"), new SurfaceForm("Berlin"), new Text("Berlin"), 0)
+    occ.setFeature(new Score("P(e)", -1.0))
+    occ.setFeature(new Score("P(c|e)", -2.0))
+    occ.setFeature(new Score("other-score", -4.0))
+
+    assertEquals(-3.0, new UnweightedMixture(Set("P(e)", "P(c|e)", "P(s|e)")).getScore(occ), 1e-9)
+  }
+
+}
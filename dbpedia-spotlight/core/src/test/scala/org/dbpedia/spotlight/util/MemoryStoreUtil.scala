@@ -1,7 +1,7 @@
 package org.dbpedia.spotlight.util
 
-import org.dbpedia.spotlight.db.memory.{MemoryContextStore, MemoryQuantizedCountStore, MemoryTokenTypeStore}
-import org.dbpedia.spotlight.db.model.TokenTypeStore
+import org.dbpedia.spotlight.db.memory._
+import org.dbpedia.spotlight.db.model.{ResourceStore, TokenTypeStore}
 import org.dbpedia.spotlight.model.{DBpediaResource, TokenType}
 
 
@@ -47,4 +47,62 @@ object MemoryStoreUtil {
     contextStore
   }
 
+  /**
+   * Creates a surface form store from (surface form, annotated count, total count) triples, the
+   * surface forms get the IDs 1..n in the order of the list.
+   */
+  def createSurfaceFormStore(surfaceForms: List[(String, Int, Int)], quantizedCountStore: MemoryQuantizedCountStore): MemorySurfaceFormStore = {
+
+    val sfStore = new MemorySurfaceFormStore()
+    val zero = quantizedCountStore.addCount(0)
+
+    sfStore.stringForID = (null :: surfaceForms.map(_._1)).toArray
+    sfStore.annotatedCountForID = (zero :: surfaceForms.map(sf => quantizedCountStore.addCount(sf._2))).toArray
+    sfStore.totalCountForID = (zero :: surfaceForms.map(sf => quantizedCountStore.addCount(sf._3))).toArray
+    sfStore.lowercaseMap = new java.util.HashMap[String, Array[Int]]()
+    sfStore.quantizedCountStore = quantizedCountStore
+    sfStore.loaded()
+
+    sfStore
+  }
+
+  /**
+   * Creates a resource store from (URI, support) pairs, the resources get the IDs 1..n in the order of the list.
+   */
+  def createResourceStore(resources: List[(String, Int)], quantizedCountStore: MemoryQuantizedCountStore): MemoryResourceStore = {
+
+    val resStore = new MemoryResourceStore()
+    val zero = quantizedCountStore.addCount(0)
+
+    resStore.uriForID = (null :: resources.map(_._1)).toArray
+    resStore.supportForID = (zero :: resources.map(res => quantizedCountStore.addCount(res._2))).toArray
+    resStore.typesForID = Array.fill(resources.size + 1)(Array[java.lang.Short]())
+    resStore.quantizedCountStore = quantizedCountStore
+    resStore.loaded()
+
+    resStore
+  }
+
+  /**
+   * Creates a candidate map store from the (resource ID, count) pairs of each surface form ID.
+   */
+  def createCandidateMapStore(candidates: Map[Int, List[(Int, Int)]], numberOfSurfaceForms: Int, resourceStore: ResourceStore,
+                              quantizedCountStore: MemoryQuantizedCountStore): MemoryCandidateMapStore = {
+
+    val candMapStore = new MemoryCandidateMapStore()
+    candMapStore.candidates = new Array[Array[Int]](numberOfSurfaceForms + 1)
+    candMapStore.candidateCounts = new Array[Array[Short]](numberOfSurfaceForms + 1)
+
+    candidates.foreach { case (sfID, cands) =>
+      candMapStore.candidates(sfID) = cands.map(_._1).toArray
+      candMapStore.candidateCounts(sfID) = cands.map(c => quantizedCountStore.addCount(c._2)).toArray
+    }
+
+    candMapStore.resourceStore = resourceStore
+    candMapStore.quantizedCountStore = quantizedCountStore
+    candMapStore.loaded()
+
+    candMapStore
+  }
+
 }
@@ -0,0 +1,309 @@
+package org.dbpedia.spotlight.db
+
+import java.io.{File, FileInputStream}
+import java.util.Properties
+
+import org.apache.commons.io.FileUtils
+import org.dbpedia.extraction.util.WikiUtil
+import org.dbpedia.spotlight.db.memory._
+import org.dbpedia.spotlight.io.WikipediaHeldoutCorpus
+import org.dbpedia.spotlight.log.SpotlightLog
+import org.dbpedia.spotlight.model.SpotlightConfiguration.DisambiguationPolicy
+import org.dbpedia.spotlight.model.{Factory, SurfaceForm}
+
+import scala.collection.JavaConversions._
+import scala.collection.mutable.ArrayBuffer
+
+/**
+ * This script creates a smaller copy of an existing Spotlight model folder. Surface forms, candidates and
+ * context entries below the thresholds are pruned, resources without candidates are removed and the IDs of
+ * surface forms and resources are renumbered densely in all stores. The FSA dictionary of the spotter is
+ * rebuilt if the set of spottable surface forms changed.
+ *
+ * A report of the size of each store before and after compaction is written to compaction_report.txt in the
+ * output folder. If a held-out corpus (the Pig held-out format, see [[org.dbpedia.spotlight.io.WikipediaHeldoutCorpus]])
+ * is given as heldout=file, the disambiguation accuracy of both models on its first paragraphs is added to the report.
+ *
+ * Thresholds are given as key=value arguments, see [[org.dbpedia.spotlight.db.CompactSpotlightModel.Thresholds]].
+ */
+object CompactSpotlightModel {
+
+  /**
+   * Pruning thresholds, the defaults keep all surface forms, candidates and context entries. Surface forms
+   * without candidates and resources that are not a candidate of any surface form are removed with any thresholds.
+   *
+   * @param sfMinCount minimum annotated count of a surface form (sf_min_count)
+   * @param sfMinProbability minimum annotation probability of a surface form (sf_min_probability)
+   * @param candidateMinCount minimum count of a candidate (candidate_min_count)
+   * @param candidateMinProbability minimum share of a candidate in the counts of its surface form (candidate_min_probability)
+   * @param contextMinCount minimum count of a token in the context of a resource (context_min_count)
+   * @param resourceMinSupport minimum support of a resource (resource_min_support)
+   * @param heldoutParagraphs number of held-out paragraphs used for the accuracy estimate (heldout_paragraphs)
+   */
+  case class Thresholds(sfMinCount: Int = 1,
+                        sfMinProbability: Double = 0.0,
+                        candidateMinCount: Int = 1,
+                        candidateMinProbability: Double = 0.0,
+                        contextMinCount: Int = 1,
+                        resourceMinSupport: Int = 0,
+                        heldoutParagraphs: Int = 1000)
+
+  def main(args: Array[String]) {
+
+    val (baseFolder: File, outputFolder: File) = try {
+      (
+        new File(args(0)), // base model folder
+        new File(args(1))  // output folder
+      )
+    } catch {
+      case e: Exception => {
+        e.printStackTrace()
+        System.err.println("Usage:")
+        System.err.println(" mvn scala:run -DmainClass=org.dbpedia.spotlight.db.CompactSpotlightModel -Dexec.args=\"/data/en /data/en-compact [heldout=/data/heldout.txt] [candidate_min_count=2 context_min_count=3 ...]\"")
+        System.exit(1)
+      }
+    }
+
+    //Remaining arguments: thresholds and the held-out corpus as key=value
+    var thresholds = Thresholds()
+    var heldout: Option[File] = None
+    args.drop(2).foreach { arg =>
+      arg.split("=", 2) match {
+        case Array("sf_min_count", v)              => thresholds = thresholds.copy(sfMinCount = v.toInt)
+        case Array("sf_min_probability", v)        => thresholds = thresholds.copy(sfMinProbability = v.toDouble)
+        case Array("candidate_min_count", v)       => thresholds = thresholds.copy(candidateMinCount = v.toInt)
+        case Array("candidate_min_probability", v) => thresholds = thresholds.copy(candidateMinProbability = v.toDouble)
+        case Array("context_min_count", v)         => thresholds = thresholds.copy(contextMinCount = v.toInt)
+        case Array("resource_min_support", v)      => thresholds = thresholds.copy(resourceMinSupport = v.toInt)
+        case Array("heldout_paragraphs", v)        => thresholds = thresholds.copy(heldoutParagraphs = v.toInt)
+        case Array("heldout", file)                => heldout = Some(new File(file))
+        case _ => {
+          System.err.println("Unknown argument %s.".format(arg))
+          System.exit(1)
+        }
+      }
+    }
+
+    if(!outputFolder.mkdir()) {
+      System.err.println("Folder %s already exists, I am too afraid to overwrite it!".format(outputFolder.toString))
+      System.exit(1)
+    }
+
+    compact(baseFolder, outputFolder, thresholds, heldout)
+  }
+
+  def compact(baseFolder: File, outputFolder: File, thresholds: Thresholds, heldout: Option[File]) {
+    val baseModelFolder = new File(baseFolder, "model")
+    val modelDataFolder = new File(outputFolder, "model")
+    modelDataFolder.mkdir()
+
+    val properties = new Properties()
+    properties.load(new FileInputStream(new File(baseFolder, "model.properties")))
+
+    val quantizedCountStore = MemoryStore.loadQuantizedCountStore(new FileInputStream(new File(baseModelFolder, "quantized_counts.mem")))
+    val resStore = MemoryStore.loadResourceStore(new FileInputStream(new File(baseModelFolder, "res.mem")), quantizedCountStore)
+    val sfStore = MemoryStore.loadSurfaceFormStore(new FileInputStream(new File(baseModelFolder, "sf.mem")), quantizedCountStore)
+    val candMapStore = MemoryStore.loadCandidateMapStore(new FileInputStream(new File(baseModelFolder, "candmap.mem")), resStore, quantizedCountStore)
+    val baseSpottable = UpdateSpotlightModel.spottableSurfaceForms(sfStore)
+    def qc(count: Short) = quantizedCountStore.getCount(count)
+
+    val report = ArrayBuffer[String]()
+    report += "Thresholds: %s".format(thresholds)
+
+    //Surface forms and resources that pass their own thresholds:
+    val sfPassed = (0 until sfStore.size).map { id =>
+      id > 0 && sfStore.stringForID(id) != null && {
+        val sf = new SurfaceForm(sfStore.stringForID(id), id, qc(sfStore.annotatedCountForID(id)), qc(sfStore.totalCountForID(id)))
+        sf.annotatedCount >= thresholds.sfMinCount && sf.annotationProbability >= thresholds.sfMinProbability
+      }
+    }
+    val resPassed = (0 until resStore.size).map { id =>
+      id > 0 && resStore.uriForID(id) != null && qc(resStore.supportForID(id)) >= thresholds.resourceMinSupport
+    }
+
+    //Candidates of the remaining surface forms and resources, as positions in the row of the surface form:
+    val candidates = candMapStore.candidates
+    val candidateCounts = candMapStore.candidateCounts
+    val rows = new Array[Array[Int]](sfStore.size)
+    val resReferenced = new Array[Boolean](resStore.size)
+    var candidatesBefore, candidatesAfter = 0L
+    (0 until math.min(sfStore.size, candidates.length)).foreach { sfID =>
+      if (candidates(sfID) != null) {
+        val counts = candidateCounts(sfID).map(qc)
+        candidatesBefore += counts.length
+        if (sfPassed(sfID)) {
+          val total = counts.sum.toDouble
+          val kept = counts.indices.filter { i =>
+            val resID = candidates(sfID)(i)
+            resID < resPassed.length && resPassed(resID) && counts(i) >= thresholds.candidateMinCount && counts(i) / total >= thresholds.candidateMinProbability
+          }.toArray
+          if (kept.nonEmpty) {
+            rows(sfID) = kept
+            kept.foreach(i => resReferenced(candidates(sfID)(i)) = true)
+            candidatesAfter += kept.length
+          }
+        }
+      }
+    }
+
+    //Surface forms without candidates and resources that are not a candidate of any surface form are removed,
+    //ID 0 is not used in either store:
+    val sfOldToNew = renumber(sfStore.size, id => id == 0 || rows(id) != null)
+    val resOldToNew = renumber(resStore.size, id => id == 0 || resReferenced(id))
+    val numberOfSurfaceForms = sfOldToNew.count(_ >= 0)
+    val numberOfResources = resOldToNew.count(_ >= 0)
+    report += "Surface forms: %d -> %d".format(sfStore.size, numberOfSurfaceForms)
+    report += "Resources: %d -> %d".format(resStore.size, numberOfResources)
+    report += "Candidates: %d -> %d".format(candidatesBefore, candidatesAfter)
+
+    //Surface form store:
+    val keptSFs = (0 until sfStore.size).filter(sfOldToNew(_) >= 0)
+    val lowercaseMap = new java.util.HashMap[String, Array[Int]]()
+    Option(sfStore.lowercaseMap).getOrElse(new java.util.HashMap[String, Array[Int]]()).foreach { case (lowercase, countAndIDs) =>
+      val ids = countAndIDs.tail.map(sfOldToNew(_)).filter(_ > 0)
+      if (ids.nonEmpty)
+        lowercaseMap.put(lowercase, countAndIDs.head +: ids)
+    }
+    sfStore.stringForID = keptSFs.map(sfStore.stringForID(_)).toArray
+    sfStore.annotatedCountForID = keptSFs.map(sfStore.annotatedCountForID(_)).toArray
+    sfStore.totalCountForID = keptSFs.map(sfStore.totalCountForID(_)).toArray
+    sfStore.lowercaseMap = lowercaseMap
+    sfStore.createReverseLookup()
+
+    //Resource store:
+    val keptResources = (0 until resStore.size).filter(resOldToNew(_) >= 0)
+    resStore.supportForID = keptResources.map(resStore.supportForID(_)).toArray
+    resStore.uriForID = keptResources.map(resStore.uriForID(_)).toArray
+    resStore.typesForID = keptResources.map(resStore.typesForID(_)).toArray
+    resStore.createReverseLookup()
+
+    //Candidate map, the quantized counts are not changed:
+    candMapStore.candidates = new Array[Array[Int]](numberOfSurfaceForms)
+    candMapStore.candidateCounts = new Array[Array[Short]](numberOfSurfaceForms)
+    keptSFs.foreach { oldID =>
+      if (rows(oldID) != null) {
+        val id = sfOldToNew(oldID)
+        candMapStore.candidates(id) = rows(oldID).map(i => resOldToNew(candidates(oldID)(i)))
+        candMapStore.candidateCounts(id) = rows(oldID).map(candidateCounts(oldID)(_))
+      }
+    }
+    candMapStore.computePriorMargins()
+
+    //Contexts:
+    val tokenStore = MemoryStore.loadTokenTypeStore(new FileInputStream(new File(baseModelFolder, "tokens.mem")))
+    val contextFile = new File(baseModelFolder, "context.mem")
+    if (contextFile.exists()) {
+      val contextStore = MemoryStore.loadContextStore(new FileInputStream(contextFile), tokenStore, quantizedCountStore)
+      val tokens = new Array[Array[Int]](numberOfResources)
+      val counts = new Array[Array[Short]](numberOfResources)
+      var entriesBefore, entriesAfter = 0L
+      (0 until contextStore.size).foreach { oldID =>
+        if (contextStore.tokens(oldID) != null) {
+          entriesBefore += contextStore.tokens(oldID).length
+          val id = if (oldID < resOldToNew.length) resOldToNew(oldID) else -1
+          if (id >= 0) {
+            val kept = contextStore.tokens(oldID).indices.filter(i => qc(contextStore.counts(oldID)(i)) >= thresholds.contextMinCount)
+            if (kept.nonEmpty) {
+              tokens(id) = kept.map(contextStore.tokens(oldID)(_)).toArray
+              counts(id) = kept.map(contextStore.counts(oldID)(_)).toArray
+              entriesAfter += kept.size
+            }
+          }
+        }
+      }
+      contextStore.tokens = tokens
+      contextStore.counts = counts
+      report += "Context entries: %d -> %d".format(entriesBefore, entriesAfter)
+      MemoryStore.dump(contextStore, new File(modelDataFolder, "context.mem"))
+    }
+
+    MemoryStore.dump(sfStore, new File(modelDataFolder, "sf.mem"))
+    sfStore.quantizedCountStore = quantizedCountStore
+    MemoryStore.dump(resStore, new File(modelDataFolder, "res.mem"))
+    MemoryStore.dump(candMapStore, new File(modelDataFolder, "candmap.mem"))
+
+    //Vectors:
+    UpdateSpotlightModel.remapVectors(baseModelFolder, modelDataFolder, resOldToNew)
+
+    //Spotter dictionary:
+    if (UpdateSpotlightModel.spottableSurfaceForms(sfStore) != baseSpottable) {
+      SpotlightLog.info(this.getClass, "The set of spottable surface forms changed, rebuilding the FSA dictionary.")
+      MemoryStore.dump(FSASpotter.buildDictionary(sfStore, UpdateSpotlightModel.createTokenizer(baseFolder, properties, tokenStore)), new File(outputFolder, "fsa_dict.mem"))
+    }
+
+    //Everything that was not written is taken from the base model:
+    UpdateSpotlightModel.copyMissing(baseFolder, outputFolder)
+
+    //Store sizes on disk, the same measure as in Metrics:
+    var bytesBefore, bytesAfter = 0L
+    (baseModelFolder.listFiles().map(f => "model/" + f.getName) :+ "fsa_dict.mem").sorted.foreach { name =>
+      val before = new File(baseFolder, name)
+      val after = new File(outputFolder, name)
+      if (before.isFile) {
+        report += "%-30s %10d KB -> %10d KB".format(name, before.length() / 1024, after.length() / 1024)
+        bytesBefore += before.length()
+        bytesAfter += after.length()
+      }
+    }
+    report += "Total: %d MB -> %d MB (%.1f%% saved)".format(bytesBefore / (1024 * 1024), bytesAfter / (1024 * 1024), 100.0 * (bytesBefore - bytesAfter) / math.max(bytesBefore, 1L))
+
+    heldout.foreach { corpus =>
+      List("Base model" -> baseFolder, "Compacted model" -> outputFolder).foreach { case (name, folder) =>
+        val (occurrences, correct, noCandidates) = evaluate(folder, corpus, thresholds.heldoutParagraphs)
+        report += "%s: %d of %d held-out occurrences correct (%.2f%%), %d without candidates".format(
+          name, correct, occurrences, 100.0 * correct / math.max(occurrences, 1), noCandidates)
+      }
+    }
+
+    report.foreach(line => SpotlightLog.info(this.getClass, line))
+    FileUtils.writeLines(new File(outputFolder, "compaction_report.txt"), report)
+  }
+
+  /**
+   * Assigns dense new IDs to the IDs that are kept.
+   *
+   * @return the new ID of each old ID, -1 for IDs that are not kept
+   */
+  private def renumber(size: Int, keep: Int => Boolean): Array[Int] = {
+    val oldToNew = new Array[Int](size)
+    var next = 0
+    (0 until size).foreach { id =>
+      if (keep(id)) {
+        oldToNew(id) = next
+        next += 1
+      } else {
+        oldToNew(id) = -1
+      }
+    }
+    oldToNew
+  }
+
+  /**
+   * Disambiguates the annotated occurrences of the first paragraphs of the held-out corpus.
+   *
+   * @return number of occurrences, correctly disambiguated occurrences, occurrences without candidates
+   */
+  private def evaluate(modelFolder: File, corpus: File, maxParagraphs: Int): (Int, Int, Int) = {
+    val model = SpotlightModel.fromFolder(modelFolder)
+    val disambiguator = model.disambiguators.get(DisambiguationPolicy.Default).disambiguator
+
+    var occurrences, correct, noCandidates = 0
+    WikipediaHeldoutCorpus.fromFile(corpus).take(maxParagraphs).foreach { annotated =>
+      if (annotated.occurrences.nonEmpty) {
+        val paragraph = Factory.Paragraph.from(annotated)
+        model.tokenizer.tokenizeMaybe(paragraph.text)
+        val best = disambiguator.bestK(paragraph, 1).map { case (sfOcc, resOccs) => sfOcc.textOffset -> resOccs }
+
+        annotated.occurrences.foreach { gold =>
+          occurrences += 1
+          best.get(gold.textOffset) match {
+            case Some(top :: _) => if (top.resource.uri == WikiUtil.wikiEncode(gold.resource.uri)) correct += 1
+            case _ => noCandidates += 1
+          }
+        }
+      }
+    }
+    (occurrences, correct, noCandidates)
+  }
+
+}
@@ -0,0 +1,242 @@
+package org.dbpedia.spotlight.db
+
+import java.io.File
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.{Callable, Executors, Future, ThreadFactory}
+
+import it.unimi.dsi.fastutil.ints.IntArrayList
+import it.unimi.dsi.fastutil.longs.LongArrayList
+import org.dbpedia.spotlight.db.io.util.{ByteTokenOccurrenceParser, ChunkedFileReader, TokenDictionary}
+import org.dbpedia.spotlight.db.model.{ResourceStore, TokenTypeStore}
+import org.dbpedia.spotlight.exceptions.{DBpediaResourceNotFoundException, NotADBpediaResourceException}
+import org.dbpedia.spotlight.log.SpotlightLog
+
+/**
+ * Context store in compressed sparse row format: the tokens of the resource with ID i are
+ * tokens(offsets(i) until offsets(i+1)), sorted by token ID, with the counts at the same positions.
+ */
+class ContextCSR(val offsets: Array[Int], val tokens: Array[Int], val counts: Array[Int]) {
+
+  def numberOfResources: Int = offsets.length - 1
+
+}
+
+/**
+ * Builds a [[org.dbpedia.spotlight.db.ContextCSR]] from the tokenCounts file produced by Pig.
+ *
+ * The file is split into chunks that are memory-mapped and parsed in parallel with a
+ * [[org.dbpedia.spotlight.db.io.util.ByteTokenOccurrenceParser]]. A row (the token counts of a resource) is
+ * stored as a sorted array of longs with the token ID in the upper and the count in the lower 32 bits, so
+ * that a row is sorted in place with a primitive sort and rows of the same resource (e.g. from redirects)
+ * are merged with a linear merge.
+ *
+ * @param numberOfResources number of resource IDs, resource IDs must be smaller
+ * @param threads number of parser threads
+ * @param chunkSize approximate size of a chunk in bytes
+ */
+class ContextStoreBuilder(numberOfResources: Int, threads: Int = Runtime.getRuntime.availableProcessors(), chunkSize: Int = 16 * 1024 * 1024) {
+
+  private val rows = new Array[Array[Long]](numberOfResources)
+
+  /** Rows parsed from one chunk, in the order of the file. */
+  private class Chunk {
+    val resources = new IntArrayList()
+    val ends = new IntArrayList()
+    val entries = new LongArrayList()
+  }
+
+  /**
+   * Adds the token counts of all resources in the file.
+   *
+   * @param json true if the token counts are in JSON format, false for Pig bags
+   */
+  def addPigFile(tokenFile: File, tokenTypeStore: TokenTypeStore, wikipediaToDBpediaClosure: WikipediaToDBpediaClosure, resStore: ResourceStore, json: Boolean = false) {
+    val parser = new ByteTokenOccurrenceParser(json, new TokenDictionary(tokenTypeStore), tokenTypeStore.getTokenType(_).id)
+    val chunks = ChunkedFileReader.chunks(tokenFile, chunkSize)
+    SpotlightLog.info(this.getClass, "Reading %s in %d chunks with %d threads...", tokenFile.getName, chunks.size, threads)
+
+    val executor = Executors.newFixedThreadPool(threads, new ThreadFactory {
+      def newThread(r: Runnable): Thread = {
+        val t = new Thread(r, "context-store-builder")
+        t.setDaemon(true)
+        t
+      }
+    })
+
+    try {
+      val pending = new java.util.ArrayDeque[Future[Chunk]]()
+      var submitted = 0
+      var resources = 0
+      while (submitted < chunks.size || !pending.isEmpty) {
+        while (submitted < chunks.size && pending.size < 2 * threads) {
+          val (start, end) = chunks(submitted)
+          pending.add(executor.submit(new Callable[Chunk] {
+            def call() = parseChunk(tokenFile, start, end, parser, wikipediaToDBpediaClosure, resStore)
+          }))
+          submitted += 1
+        }
+
+        val chunk = pending.poll().get()
+        addChunk(chunk)
+        resources += chunk.resources.size
+        SpotlightLog.info(this.getClass, "Read context for %d resources...", resources)
+      }
+    } finally {
+      executor.shutdown()
+    }
+  }
+
+  private def parseChunk(tokenFile: File, start: Long, end: Long, parser: ByteTokenOccurrenceParser, wikipediaToDBpediaClosure: WikipediaToDBpediaClosure, resStore: ResourceStore): Chunk = {
+    val chunk = new Chunk()
+    val tokens = new IntArrayList()
+    val counts = new IntArrayList()
+
+    ChunkedFileReader.foreachMappedLine(tokenFile, start, end) { (buffer: ByteBuffer, lineStart: Int, lineEnd: Int) =>
+      var from = lineStart
+      var to = lineEnd
+      while (from < to && buffer.get(from) <= ' ') from += 1
+      while (to > from && buffer.get(to - 1) <= ' ') to -= 1
+
+      if (from < to) {
+        var tab = from
+        while (tab < to && buffer.get(tab) != '\t') tab += 1
+        if (tab == to)
+          throw new IllegalArgumentException("Missing tab in line at byte %d of chunk %d.".format(from, start))
+
+        try {
+          val wikiurl = ContextStoreBuilder.decode(buffer, from, tab)
+          val resID = resStore.getResourceByName(wikipediaToDBpediaClosure.wikipediaToDBpediaURI(wikiurl)).id
+
+          tokens.clear()
+          counts.clear()
+          parser.parse(buffer, tab + 1, to, 0, tokens, counts)
+
+          val rowStart = chunk.entries.size
+          var i = 0
+          while (i < tokens.size) {
+            chunk.entries.add(ContextStoreBuilder.entry(tokens.getInt(i), counts.getInt(i)))
+            i += 1
+          }
+          val rowEnd = ContextStoreBuilder.sortRow(chunk.entries.elements(), rowStart, chunk.entries.size)
+          chunk.entries.size(rowEnd)
+
+          chunk.resources.add(resID)
+          chunk.ends.add(rowEnd)
+        } catch {
+          case e: DBpediaResourceNotFoundException =>
+          case e: NotADBpediaResourceException     =>
+        }
+      }
+    }
+    chunk
+  }
+
+  private def addChunk(chunk: Chunk) {
+    val entries = chunk.entries.elements()
+    var from = 0
+    (0 until chunk.resources.size).foreach { i =>
+      val resID = chunk.resources.getInt(i)
+      val to = chunk.ends.getInt(i)
+      val row = java.util.Arrays.copyOfRange(entries, from, to)
+      rows(resID) = if (rows(resID) == null) row else ContextStoreBuilder.mergeRows(rows(resID), row)
+      from = to
+    }
+  }
+
+  /**
+   * Copies all rows into a CSR context store. The rows are released while they are copied.
+   */
+  def build(): ContextCSR = {
+    val offsets = new Array[Int](numberOfResources + 1)
+    (0 until numberOfResources).foreach { i =>
+      offsets(i + 1) = offsets(i) + (if (rows(i) == null) 0 else rows(i).length)
+    }
+
+    val tokens = new Array[Int](offsets(numberOfResources))
+    val counts = new Array[Int](offsets(numberOfResources))
+    (0 until numberOfResources).foreach { i =>
+      if (rows(i) != null) {
+        var j = 0
+        while (j < rows(i).length) {
+          tokens(offsets(i) + j) = ContextStoreBuilder.token(rows(i)(j))
+          counts(offsets(i) + j) = ContextStoreBuilder.count(rows(i)(j))
+          j += 1
+        }
+        rows(i) = null
+      }
+    }
+
+    SpotlightLog.info(this.getClass, "Built context store with %d token counts for %d resources.", tokens.length, numberOfResources)
+    new ContextCSR(offsets, tokens, counts)
+  }
+
+}
+
+object ContextStoreBuilder {
+
+  private def decode(buffer: ByteBuffer, from: Int, to: Int): String = {
+    val bytes = new Array[Byte](to - from)
+    var i = 0
+    while (i < bytes.length) {
+      bytes(i) = buffer.get(from + i)
+      i += 1
+    }
+    new String(bytes, StandardCharsets.UTF_8)
+  }
+
+  def entry(token: Int, count: Int): Long = (token.toLong << 32) | (count.toLong & 0xFFFFFFFFL)
+
+  def token(entry: Long): Int = (entry >>> 32).toInt
+
+  def count(entry: Long): Int = entry.toInt
+
+  /**
+   * Sorts the entries in [from, to) by token ID and sums the counts of equal tokens in place.
+   *
+   * @return the end of the merged row
+   */
+  def sortRow(entries: Array[Long], from: Int, to: Int): Int = {
+    if (to - from < 2)
+      return to
+
+    java.util.Arrays.sort(entries, from, to)
+    var last = from
+    var i = from + 1
+    while (i < to) {
+      if (token(entries(i)) == token(entries(last)))
+        entries(last) = entry(token(entries(last)), count(entries(last)) + count(entries(i)))
+      else {
+        last += 1
+        entries(last) = entries(i)
+      }
+      i += 1
+    }
+    last + 1
+  }
+
+  /**
+   * Merges two sorted rows, summing the counts of tokens that occur in both.
+   */
+  def mergeRows(a: Array[Long], b: Array[Long]): Array[Long] = {
+    val merged = new Array[Long](a.length + b.length)
+    var i, j, k = 0
+    while (i < a.length && j < b.length) {
+      val ta = token(a(i))
+      val tb = token(b(j))
+      if (ta < tb) {
+        merged(k) = a(i); i += 1
+      } else if (tb < ta) {
+        merged(k) = b(j); j += 1
+      } else {
+        merged(k) = entry(ta, count(a(i)) + count(b(j))); i += 1; j += 1
+      }
+      k += 1
+    }
+    while (i < a.length) { merged(k) = a(i); i += 1; k += 1 }
+    while (j < b.length) { merged(k) = b(j); j += 1; k += 1 }
+
+    if (k == merged.length) merged else java.util.Arrays.copyOf(merged, k)
+  }
+
+}
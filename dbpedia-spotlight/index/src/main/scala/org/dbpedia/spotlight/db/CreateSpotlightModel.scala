@@ -2,7 +2,7 @@ package org.dbpedia.spotlight.db
 
 import io._
 import java.io.{FileOutputStream, FileInputStream, File}
-import org.dbpedia.spotlight.db.memory.{MemoryQuantizedCountStore, MemoryStore}
+import org.dbpedia.spotlight.db.memory.{MemoryQuantizedCountStore, MemoryResourceStore, MemoryStore, MemorySurfaceFormStore, MemoryTokenTypeStore}
 import model.{TextTokenizer, StringTokenizer, Stemmer}
 import org.dbpedia.spotlight.log.SpotlightLog
 import scala.io.Source
@@ -38,6 +38,7 @@ object CreateSpotlightModel {
 			val minimumSFCounts = mutable.Map("en" -> 2).withDefaultValue(1)
 
 			val OPENNLP_FOLDER = "opennlp"
+			val CHECKPOINT_FOLDER = ".checkpoints"
 
 			def main(args: Array[String]) {
 
@@ -74,10 +75,15 @@ object CreateSpotlightModel {
 							}
 				}
 
-		if(!outputFolder.mkdir()) {
+		//A build that failed can be resumed, the stages that were done are not built again:
+		val checkpointFolder = new File(outputFolder, CHECKPOINT_FOLDER)
+		if (checkpointFolder.exists()) {
+			SpotlightLog.info(this.getClass, "Resuming the model build in %s.", outputFolder)
+		} else if(!outputFolder.mkdir()) {
 			System.err.println("Folder %s already exists, I am too afraid to overwrite it!".format(outputFolder.toString))
 			System.exit(1)
 		}
+		checkpointFolder.mkdir()
 
 		FileUtils.copyFile(stopwordsFile, new File(outputFolder, "stopwords.list"))
 
@@ -161,138 +167,191 @@ object CreateSpotlightModel {
 				val modelDataFolder = new File(outputFolder, "model")
 				modelDataFolder.mkdir()
 
-				val quantizedCountStore = new MemoryQuantizedCountStore()
+				val countsCheckpoint = new File(checkpointFolder, "quantized_counts.mem")
+				val quantizedCountStore =
+					if (countsCheckpoint.exists())
+						MemoryStore.loadQuantizedCountStore(new FileInputStream(countsCheckpoint))
+					else
+						new MemoryQuantizedCountStore()
 				val memoryIndexer = new MemoryStoreIndexer(modelDataFolder, quantizedCountStore)
 
 				val diskIndexer = new JDBMStoreIndexer(new File("data/"))
 
-				val wikipediaToDBpediaClosure =
-				if (new File(rawDataFolder, "redirects.nt").exists() && new File(rawDataFolder, "disambiguations.nt").exists() && new File(rawDataFolder, "wikidata_redirects.nt").exists() && new File(rawDataFolder, "wikidata_disambiguations.nt").exists()) {
-					new WikipediaToDBpediaClosure(
-							namespace,
-							new FileInputStream(new File(rawDataFolder, "redirects.nt")),
-							new FileInputStream(new File(rawDataFolder, "disambiguations.nt")),
-							new FileInputStream(new File(rawDataFolder, "wikidata_redirects.nt")),
-							new FileInputStream(new File(rawDataFolder, "wikidata_disambiguations.nt"))
-							)
+				//Saves the quantized counts of all stages that are done, so that their stores can be loaded when the build is resumed:
+				def checkpointCounts() {
+					quantizedCountStore.synchronized {
+						val tmp = new File(checkpointFolder, "quantized_counts.mem.tmp")
+						MemoryStore.dump(quantizedCountStore, tmp)
+						tmp.renameTo(countsCheckpoint)
+					}
 				}
-				else {
-					SpotlightLog.warn(this.getClass,
-							"No redirects and disambiguations supplied! Not loading WikipediaToDBpediaClosure."
+
+				if(new File(stopwordsFile.getParentFile, "spotter_thresholds.txt").exists())
+					FileUtils.copyFile(new File(stopwordsFile.getParentFile, "spotter_thresholds.txt"), new File(outputFolder, "spotter_thresholds.txt"))
+				else
+					FileUtils.write(
+							new File(outputFolder, "spotter_thresholds.txt"),
+							"1.0 0.2 -0.2 0.1" //Defaults!
 							)
-					System.exit(1)
-					null
+
+				//Stores built by one stage and used by later stages:
+				var wikipediaToDBpediaClosure: WikipediaToDBpediaClosure = null
+				var sfStore: MemorySurfaceFormStore = null
+				var resStore: MemoryResourceStore = null
+				var tokenStore: MemoryTokenTypeStore = null
+
+				//Independent stages can run at the same time with -Dbuild.threads=n, they run one by one by default:
+				val pipeline = new ModelBuildPipeline(checkpointFolder, Integer.parseInt(System.getProperty("build.threads", "1")))
+
+				pipeline.stage("redirect closure") {
+					wikipediaToDBpediaClosure =
+						if (new File(rawDataFolder, "redirects.nt").exists() && new File(rawDataFolder, "disambiguations.nt").exists() && new File(rawDataFolder, "wikidata_redirects.nt").exists() && new File(rawDataFolder, "wikidata_disambiguations.nt").exists()) {
+							//The closure is computed once and reused by later model builds from the same raw data:
+							val closureSources = List("redirects.nt", "disambiguations.nt", "wikidata_redirects.nt", "wikidata_disambiguations.nt").map(new File(rawDataFolder, _))
+							val redirectClosure = RedirectClosure.cached(new File(rawDataFolder, "redirect_closure.bin"), namespace, closureSources) {
+								WikipediaToDBpediaClosure.buildClosure(
+										namespace,
+										new File(rawDataFolder, "redirects.nt"),
+										new File(rawDataFolder, "disambiguations.nt"),
+										new File(rawDataFolder, "wikidata_redirects.nt"),
+										new File(rawDataFolder, "wikidata_disambiguations.nt")
+										)
+							}
+							new WikipediaToDBpediaClosure(namespace, redirectClosure)
+						}
+						else {
+							throw new java.io.FileNotFoundException(
+									"No redirects and disambiguations supplied in %s! Cannot create WikipediaToDBpediaClosure.".format(rawDataFolder)
+									)
+						}
 				}
 
-		memoryIndexer.tokenizer = Some(rawTokenizer)
-				memoryIndexer.addSurfaceForms(
-						SurfaceFormSource.fromPigFiles(
-								new File(rawDataFolder, "sfAndTotalCounts"),
-								wikiClosure=wikipediaToDBpediaClosure
-								),
-						SurfaceFormSource.lowercaseCountsFromPigInputStream(new FileInputStream(new File(rawDataFolder, "sfAndTotalCounts"))),
-						minimumSFCounts(lang)
-						)
+				pipeline.checkpointedStage("surface forms", "redirect closure") {
+					memoryIndexer.tokenizer = Some(rawTokenizer)
+					memoryIndexer.addSurfaceForms(
+							SurfaceFormSource.fromPigFiles(
+									new File(rawDataFolder, "sfAndTotalCounts"),
+									wikiClosure=wikipediaToDBpediaClosure
+									),
+							SurfaceFormSource.lowercaseCountsFromPigInputStream(new FileInputStream(new File(rawDataFolder, "sfAndTotalCounts"))),
+							minimumSFCounts(lang)
+							)
+					sfStore = memoryIndexer.surfaceFormStore
+					checkpointCounts()
+				} {
+					sfStore = MemoryStore.loadSurfaceFormStore(new FileInputStream(new File(modelDataFolder, "sf.mem")), quantizedCountStore)
+				}
 
-				memoryIndexer.addResources(
-						DBpediaResourceSource.fromPigFiles(
-								wikipediaToDBpediaClosure,
-								new File(rawDataFolder, "uriCounts"),
-								if (new File(rawDataFolder, "instance_types.nt").exists())
-									new File(rawDataFolder, "instance_types.nt")
+				pipeline.checkpointedStage("resources", "redirect closure") {
+					memoryIndexer.addResources(
+							DBpediaResourceSource.fromPigFiles(
+									wikipediaToDBpediaClosure,
+									new File(rawDataFolder, "uriCounts"),
+									if (new File(rawDataFolder, "instance_types.nt").exists())
+										new File(rawDataFolder, "instance_types.nt")
 									else if (new File(rawDataFolder, "instanceTypes.tsv").exists())
 										new File(rawDataFolder, "instanceTypes.tsv")
-										else
-											null,
-											if (new File(rawDataFolder, "wikidata_instance_types.nt").exists())
-												new File(rawDataFolder, "wikidata_instance_types.nt")
-												else if (new File(rawDataFolder, "wikidata_instanceTypes.tsv").exists())
-													new File(rawDataFolder, "wikidata_instanceTypes.tsv")
-													else
-														null,
-														namespace
-								)
-						)
+									else
+										null,
+									if (new File(rawDataFolder, "wikidata_instance_types.nt").exists())
+										new File(rawDataFolder, "wikidata_instance_types.nt")
+									else if (new File(rawDataFolder, "wikidata_instanceTypes.tsv").exists())
+										new File(rawDataFolder, "wikidata_instanceTypes.tsv")
+									else
+										null,
+									namespace
+									)
+							)
+					resStore = memoryIndexer.resourceStore
+					checkpointCounts()
+				} {
+					resStore = MemoryStore.loadResourceStore(new FileInputStream(new File(modelDataFolder, "res.mem")), quantizedCountStore)
+				}
 
-				val resStore = MemoryStore.loadResourceStore(new FileInputStream(new File(modelDataFolder, "res.mem")), quantizedCountStore)
-				val sfStore  = MemoryStore.loadSurfaceFormStore(new FileInputStream(new File(modelDataFolder, "sf.mem")), quantizedCountStore)
-
-				memoryIndexer.addCandidatesByID(
-						CandidateMapSource.fromPigFiles(
-								new File(rawDataFolder, "pairCounts"),
-								wikipediaToDBpediaClosure,
-								resStore,
-								sfStore
-								),
-						sfStore.size
-						)
+				pipeline.checkpointedStage("candidates", "redirect closure", "surface forms", "resources") {
+					memoryIndexer.addCandidatesCSR(
+							CandidateMapSource.fromPigFilesExternal(
+									new File(rawDataFolder, "pairCounts"),
+									wikipediaToDBpediaClosure,
+									resStore,
+									sfStore,
+									sfStore.size,
+									modelDataFolder
+									)
+							)
+					checkpointCounts()
+				} {}
+
+				pipeline.checkpointedStage("token types", "surface forms") {
+					memoryIndexer.addTokenTypes(
+							TokenSource.fromPigFile(
+									new File(rawDataFolder, "tokenCounts"),
+									additionalTokens = Some(TokenSource.fromSFStore(sfStore, rawTokenizer)),
+									minimumContextCounts(lang)
+									)
+							)
+					tokenStore = memoryIndexer.tokenTypeStore
+				} {
+					tokenStore = MemoryStore.loadTokenTypeStore(new FileInputStream(new File(modelDataFolder, "tokens.mem")))
+				}
 
-				memoryIndexer.addTokenTypes(
-						TokenSource.fromPigFile(
-								new File(rawDataFolder, "tokenCounts"),
-								additionalTokens = Some(TokenSource.fromSFStore(sfStore, rawTokenizer)),
-								minimumContextCounts(lang)
+				pipeline.checkpointedStage("contexts", "redirect closure", "resources", "token types") {
+					memoryIndexer.createContextStore(resStore.size)
+					val contextStoreBuilder = new ContextStoreBuilder(resStore.size)
+					contextStoreBuilder.addPigFile(
+							new File(rawDataFolder, "tokenCounts"),
+							tokenStore,
+							wikipediaToDBpediaClosure,
+							resStore
+							)
+					memoryIndexer.addTokenOccurrencesCSR(contextStoreBuilder.build())
+					memoryIndexer.writeTokenOccurrences()
+					checkpointCounts()
+				} {}
+
+				pipeline.checkpointedStage("fsa dictionary", "surface forms", "token types") {
+					val tokenizer: TextTokenizer = if (opennlpFolder.isDefined) {
+						val opennlpOut = new File(outputFolder, OPENNLP_FOLDER)
+						val oToken = new TokenizerME(new TokenizerModel(new FileInputStream(new File(opennlpOut, "token.bin"))))
+						val oSent = new SentenceDetectorME(new SentenceModel(new FileInputStream(new File(opennlpOut, "sent.bin"))))
+
+						new OpenNLPTokenizer(
+								oToken,
+								Set[String](),
+								stemmer,
+								oSent,
+								null,
+								tokenStore
 								)
-						)
 
-				val tokenStore = MemoryStore.loadTokenTypeStore(new FileInputStream(new File(modelDataFolder, "tokens.mem")))
+					} else {
+						new LanguageIndependentTokenizer(Set[String](), stemmer, locale, tokenStore)
+					}
+					val fsaDict = FSASpotter.buildDictionary(sfStore, tokenizer)
+
+					MemoryStore.dump(fsaDict, new File(outputFolder, "fsa_dict.mem"))
+				} {}
 
-				memoryIndexer.createContextStore(resStore.size)
-				memoryIndexer.addTokenOccurrences(
-						TokenOccurrenceSource.fromPigFile(
-								new File(rawDataFolder, "tokenCounts"),
-								tokenStore,
-								wikipediaToDBpediaClosure,
-								resStore,
-								minimumContextCounts(lang)
-								)
+				pipeline.checkpointedStage("vectors", "resources", "token types") {
+					if (new File(rawDataFolder, "wiki2vec_syn0.csv").exists() && new File(rawDataFolder, "wiki2vec_ids.txt").exists()){
+						SpotlightLog.debug(this.getClass, "Found vector file, building vectors.bin store.")
+						val vectorStoreIndexer = new StreamingVectorStoreIndexer(
+							new File(rawDataFolder, "wiki2vec_syn0.csv"),
+							new File(rawDataFolder, "wiki2vec_ids.txt")
 						)
-				memoryIndexer.writeTokenOccurrences()
-				memoryIndexer.writeQuantizedCounts()
+						vectorStoreIndexer.write(tokenStore, resStore, new File(modelDataFolder, "vectors.bin"))
 
-				val tokenizer: TextTokenizer = if (opennlpFolder.isDefined) {
-					val opennlpOut = new File(outputFolder, OPENNLP_FOLDER)
-							val oToken = new TokenizerME(new TokenizerModel(new FileInputStream(new File(opennlpOut, "token.bin"))))
-							val oSent = new SentenceDetectorME(new SentenceModel(new FileInputStream(new File(opennlpOut, "sent.bin"))))
-
-							new OpenNLPTokenizer(
-									oToken,
-									Set[String](),
-									stemmer,
-									oSent,
-									null,
-									tokenStore
-									)
+					} else {
+						SpotlightLog.info(this.getClass, "No vectors supplied, not building memory vector store.")
+					}
+				} {}
 
-				} else {
-					new LanguageIndependentTokenizer(Set[String](), stemmer, locale, tokenStore)
+				pipeline.stage("quantized counts", "surface forms", "resources", "candidates", "contexts") {
+					memoryIndexer.writeQuantizedCounts()
 				}
-				val fsaDict = FSASpotter.buildDictionary(sfStore, tokenizer)
-
-						MemoryStore.dump(fsaDict, new File(outputFolder, "fsa_dict.mem"))
-
-						if(new File(stopwordsFile.getParentFile, "spotter_thresholds.txt").exists())
-							FileUtils.copyFile(new File(stopwordsFile.getParentFile, "spotter_thresholds.txt"), new File(outputFolder, "spotter_thresholds.txt"))
-							else
-								FileUtils.write(
-										new File(outputFolder, "spotter_thresholds.txt"),
-										"1.0 0.2 -0.2 0.1" //Defaults!
-										)
-
-
-								if (new File(rawDataFolder, "wiki2vec_syn0.csv").exists() && new File(rawDataFolder, "wiki2vec_ids.txt").exists()){
-									SpotlightLog.debug(this.getClass, "Found vector file, building vectors.mem store.")
-									val memoryVectorStoreIndexer: MemoryVectorStoreIndexer =
-									new MemoryVectorStoreIndexer(
-											new File(rawDataFolder, "wiki2vec_syn0.csv"),
-											new File(rawDataFolder, "wiki2vec_ids.txt")
-											)
-									memoryVectorStoreIndexer.loadVectorDict(tokenStore, resStore)
-									memoryVectorStoreIndexer.loadVectorsAndWriteToStore(new File(modelDataFolder, "vectors.mem"))
 
-								} else {
-									SpotlightLog.info(this.getClass, "No vectors supplied, not building memory vector store.")
-								}
+				pipeline.run()
+				FileUtils.deleteDirectory(checkpointFolder)
 
 	}
 
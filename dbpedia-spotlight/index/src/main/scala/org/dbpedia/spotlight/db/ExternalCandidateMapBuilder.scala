@@ -0,0 +1,183 @@
+package org.dbpedia.spotlight.db
+
+import java.io._
+import java.nio.file.Files
+
+import it.unimi.dsi.fastutil.ints.IntArrayList
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap
+import org.dbpedia.spotlight.log.SpotlightLog
+
+import scala.collection.mutable.ArrayBuffer
+
+/**
+ * Candidate map in compressed sparse row format: the candidates of the surface form with ID i are
+ * resourceIDs(offsets(i) until offsets(i+1)) with the counts at the same positions, sorted by resource ID.
+ */
+class CandidateMapCSR(val offsets: Array[Int], val resourceIDs: Array[Int], val counts: Array[Int]) {
+
+  def numberOfSurfaceForms: Int = offsets.length - 1
+
+  def candidateCount(sfID: Int): Int = offsets(sfID + 1) - offsets(sfID)
+
+}
+
+/**
+ * Builds a [[org.dbpedia.spotlight.db.CandidateMapCSR]] from a stream of (surface form ID, resource ID, count)
+ * triples with bounded heap.
+ *
+ * Counts are summed in a buffer of at most maxBufferedPairs pairs. Full buffers are sorted and spilled to
+ * temporary files, which are merged in a single pass when the map is built, so building the map takes
+ * O(n log n) time and memory for the buffer and the result only.
+ *
+ * The spill files are written to a temporary folder in tmpDir, which is deleted by build() or close().
+ *
+ * @param tmpDir parent folder of the folder for the spill files
+ * @param maxBufferedPairs maximum number of distinct pairs held in memory before spilling
+ */
+class ExternalCandidateMapBuilder(tmpDir: File, maxBufferedPairs: Int = 4000000) {
+
+  private var buffer = newBuffer()
+  private val spills = ArrayBuffer[File]()
+  private var spillDir: File = null
+
+  private def newBuffer() = {
+    val map = new Long2IntOpenHashMap()
+    map.defaultReturnValue(0)
+    map
+  }
+
+  private def key(sfID: Int, resID: Int): Long = (sfID.toLong << 32) | (resID.toLong & 0xFFFFFFFFL)
+
+  def add(sfID: Int, resID: Int, count: Int) {
+    val k = key(sfID, resID)
+    buffer.put(k, buffer.get(k) + count)
+    if (buffer.size >= maxBufferedPairs)
+      spill()
+  }
+
+  private def spill() {
+    if (buffer.isEmpty)
+      return
+
+    val keys = buffer.keySet.toLongArray
+    java.util.Arrays.sort(keys)
+
+    if (spillDir == null)
+      spillDir = Files.createTempDirectory(tmpDir.toPath, "candmap-").toFile
+    val file = new File(spillDir, "%d.spill".format(spills.size))
+    spills += file
+    val out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))
+    try {
+      out.writeInt(keys.length)
+      keys.foreach { k =>
+        out.writeLong(k)
+        out.writeInt(buffer.get(k))
+      }
+    } finally {
+      out.close()
+    }
+
+    SpotlightLog.info(this.getClass, "Spilled %d candidate pairs to %s.", keys.length, file)
+    buffer = newBuffer()
+  }
+
+  private class SpillReader(file: File) {
+    private val in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))
+    private var remaining = in.readInt()
+    var key = 0L
+    var count = 0
+
+    def advance(): Boolean = {
+      if (remaining == 0) {
+        close()
+        false
+      } else {
+        key = in.readLong()
+        count = in.readInt()
+        remaining -= 1
+        true
+      }
+    }
+
+    def close() {
+      in.close()
+    }
+  }
+
+  /**
+   * Deletes the spill files and their folder.
+   */
+  def close() {
+    spills.foreach(_.delete())
+    spills.clear()
+    if (spillDir != null) {
+      spillDir.delete()
+      spillDir = null
+    }
+  }
+
+  /**
+   * Merges all pairs into the CSR candidate map.
+   *
+   * @param numberOfSurfaceForms number of surface form IDs, surface form IDs must be smaller
+   */
+  def build(numberOfSurfaceForms: Int): CandidateMapCSR = {
+    val readers = ArrayBuffer[SpillReader]()
+    try {
+      spill()
+
+      val queue = new java.util.PriorityQueue[SpillReader](math.max(1, spills.size), new java.util.Comparator[SpillReader] {
+        def compare(a: SpillReader, b: SpillReader): Int = java.lang.Long.compare(a.key, b.key)
+      })
+      spills.foreach { file =>
+        val reader = new SpillReader(file)
+        readers += reader
+        if (reader.advance())
+          queue.add(reader)
+      }
+
+      merge(queue, numberOfSurfaceForms)
+    } finally {
+      readers.foreach(_.close())
+      close()
+    }
+  }
+
+  private def merge(queue: java.util.PriorityQueue[SpillReader], numberOfSurfaceForms: Int): CandidateMapCSR = {
+    val offsets = new Array[Int](numberOfSurfaceForms + 1)
+    val resourceIDs = new IntArrayList()
+    val counts = new IntArrayList()
+
+    var currentKey = -1L
+    var currentCount = 0
+
+    def emit() {
+      if (currentKey >= 0) {
+        offsets((currentKey >>> 32).toInt + 1) += 1
+        resourceIDs.add(currentKey.toInt)
+        counts.add(currentCount)
+      }
+    }
+
+    while (!queue.isEmpty) {
+      val reader = queue.poll()
+      if (reader.key == currentKey) {
+        currentCount += reader.count
+      } else {
+        emit()
+        currentKey = reader.key
+        currentCount = reader.count
+      }
+      if (reader.advance())
+        queue.add(reader)
+    }
+    emit()
+
+    //Turn the number of candidates per surface form into offsets:
+    (1 to numberOfSurfaceForms).foreach(i => offsets(i) += offsets(i - 1))
+
+    SpotlightLog.info(this.getClass, "Built candidate map with %d candidates for %d surface forms.", resourceIDs.size, numberOfSurfaceForms)
+    new CandidateMapCSR(offsets, resourceIDs.toIntArray, counts.toIntArray)
+  }
+
+}
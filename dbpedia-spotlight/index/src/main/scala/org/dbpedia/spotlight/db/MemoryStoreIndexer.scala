@@ -33,6 +33,17 @@ class MemoryStoreIndexer(val baseDir: File, val quantizedCountStore: MemoryQuant
   with TokenOccurrenceIndexer
 {
 
+  //Stores built by this indexer, ready to be used by later build steps without loading them from disk:
+  var surfaceFormStore: MemorySurfaceFormStore = null
+  var resourceStore: MemoryResourceStore = null
+  var tokenTypeStore: MemoryTokenTypeStore = null
+
+  private def keep[T <: MemoryStore](store: T): T = {
+    store.quantizedCountStore = quantizedCountStore
+    store.loaded()
+    store
+  }
+
   //SURFACE FORMS
 
   def addSurfaceForm(sf: SurfaceForm, annotatedCount: Int, totalCount: Int) {
@@ -142,6 +153,7 @@ class MemoryStoreIndexer(val baseDir: File, val quantizedCountStore: MemoryQuant
     sfStore.totalCountForID = totalCountForID.map(quantizedCountStore.addCount)
 
     MemoryStore.dump(sfStore, new File(baseDir, "sf.mem"))
+    surfaceFormStore = keep(sfStore)
   }
 
 
@@ -185,6 +197,7 @@ class MemoryStoreIndexer(val baseDir: File, val quantizedCountStore: MemoryQuant
     resStore.typesForID = typesForID.array
 
     MemoryStore.dump(resStore, new File(baseDir, "res.mem"))
+    resourceStore = keep(resStore)
   }
 
 
@@ -214,36 +227,56 @@ class MemoryStoreIndexer(val baseDir: File, val quantizedCountStore: MemoryQuant
 
     candmapStore.candidates = (candidates map { l: ListBuffer[Int] => if(l != null) l.toArray else null} ).toArray
     candmapStore.candidateCounts = (candidateCounts map { l: ListBuffer[Int] => if(l != null) l.map(quantizedCountStore.addCount).toArray else null} ).toArray
+    candmapStore.quantizedCountStore = quantizedCountStore
+    candmapStore.computePriorMargins()
 
     MemoryStore.dump(candmapStore, new File(baseDir, "candmap.mem"))
   }
 
   def addCandidatesByID(cands: Map[Pair[Int, Int], Int], numberOfSurfaceForms: Int) {
-    val candmapStore = new MemoryCandidateMapStore()
-
-    val candidates      = new Array[Array[Int]](numberOfSurfaceForms)
-    val candidateCounts = new Array[Array[Int]](numberOfSurfaceForms)
-
+    //Count the candidates of each surface form to find the start of its candidates:
+    val offsets = new Array[Int](numberOfSurfaceForms + 1)
+    cands.keys.foreach { p: Pair[Int, Int] => offsets(p._1 + 1) += 1 }
+    (1 to numberOfSurfaceForms).foreach(i => offsets(i) += offsets(i - 1))
+
+    //Place each candidate as (resource ID, count) and sort the candidates of each surface form by resource ID:
+    val entries = new Array[Long](offsets(numberOfSurfaceForms))
+    val next = offsets.clone()
     cands.foreach {
       p: (Pair[Int, Int], Int) => {
+        entries(next(p._1._1)) = (p._1._2.toLong << 32) | (p._2.toLong & 0xFFFFFFFFL)
+        next(p._1._1) += 1
+      }
+    }
+    (0 until numberOfSurfaceForms).foreach(i => java.util.Arrays.sort(entries, offsets(i), offsets(i + 1)))
 
-        if(candidates(p._1._1) == null) {
-          candidates(p._1._1)      = Array[Int]()
-          candidateCounts(p._1._1) = Array[Int]()
-        }
+    addCandidatesCSR(new CandidateMapCSR(offsets, entries.map(e => (e >>> 32).toInt), entries.map(_.toInt)))
+  }
+
+  /**
+   * Writes the candidate map store from a CSR candidate map. Surface forms without candidates
+   * have no candidate array, as in the other addCandidates methods.
+   */
+  def addCandidatesCSR(cands: CandidateMapCSR) {
+    val candmapStore = new MemoryCandidateMapStore()
+
+    val n = cands.numberOfSurfaceForms
+    val candidates      = new Array[Array[Int]](n)
+    val candidateCounts = new Array[Array[Short]](n)
 
-        candidates(p._1._1)      :+= p._1._2
-        candidateCounts(p._1._1) :+= p._2
+    (0 until n).foreach { sfID =>
+      val from = cands.offsets(sfID)
+      val to   = cands.offsets(sfID + 1)
+      if (to > from) {
+        candidates(sfID)      = java.util.Arrays.copyOfRange(cands.resourceIDs, from, to)
+        candidateCounts(sfID) = java.util.Arrays.copyOfRange(cands.counts, from, to).map(quantizedCountStore.addCount)
       }
     }
 
     candmapStore.candidates = candidates
-    candmapStore.candidateCounts = candidateCounts.map(cs =>
-      if (cs == null)
-        null
-      else
-        cs.map(quantizedCountStore.addCount).array
-    )
+    candmapStore.candidateCounts = candidateCounts
+    candmapStore.quantizedCountStore = quantizedCountStore
+    candmapStore.computePriorMargins()
 
     MemoryStore.dump(candmapStore, new File(baseDir, "candmap.mem"))
   }
@@ -270,6 +303,7 @@ class MemoryStoreIndexer(val baseDir: File, val quantizedCountStore: MemoryQuant
     tokenTypeStore.counts = counts.array
 
     MemoryStore.dump(tokenTypeStore, new File(baseDir, "tokens.mem"))
+    this.tokenTypeStore = keep(tokenTypeStore)
   }
 
 
@@ -305,33 +339,67 @@ class MemoryStoreIndexer(val baseDir: File, val quantizedCountStore: MemoryQuant
         val Triple(res, tokens, counts) = t
         if (res != null) {
           assert (tokens.size == counts.size)
-          if(contextStore.tokens(res.id) != null) {
-            val (mergedTokens, mergedCounts) = (tokens.map{ t: TokenType => t.id }.array.zip(counts.array) ++ contextStore.tokens(res.id).zip( contextStore.counts(res.id).map(quantizedCountStore.getCount) )).groupBy(_._1).map{ case(k, v) => (k, v.map{ p => p._2}.sum ) }.unzip
-            contextStore.tokens(res.id) = mergedTokens.toArray.array
-            contextStore.counts(res.id) = mergedCounts.asInstanceOf[Iterable[Int]].map(quantizedCountStore.addCount).toArray.array
-          } else{
-            contextStore.tokens(res.id) = tokens.map{ t: TokenType => t.id }.array
-            contextStore.counts(res.id) = counts.map(quantizedCountStore.addCount).array
+          val entries = Array.tabulate(tokens.size)(i => ContextStoreBuilder.entry(tokens(i).id, counts(i)))
+          val row = java.util.Arrays.copyOf(entries, ContextStoreBuilder.sortRow(entries, 0, entries.length))
+
+          val merged = if(contextStore.tokens(res.id) != null) {
+            val previous = contextStore.tokens(res.id).zip(contextStore.counts(res.id)).map {
+              case (token, count) => ContextStoreBuilder.entry(token, quantizedCountStore.getCount(count))
+            }
+            ContextStoreBuilder.mergeRows(previous, row)
+          } else {
+            row
           }
+
+          contextStore.tokens(res.id) = merged.map(ContextStoreBuilder.token)
+          contextStore.counts(res.id) = merged.map(e => quantizedCountStore.addCount(ContextStoreBuilder.count(e)))
         }
       }
     }
   }
 
+  /**
+   * Sets the token occurrences of all resources from a CSR context store.
+   */
+  def addTokenOccurrencesCSR(occs: ContextCSR) {
+    (0 until occs.numberOfResources).foreach { resID =>
+      val from = occs.offsets(resID)
+      val to   = occs.offsets(resID + 1)
+      if (to > from) {
+        contextStore.tokens(resID) = java.util.Arrays.copyOfRange(occs.tokens, from, to)
+        contextStore.counts(resID) = java.util.Arrays.copyOfRange(occs.counts, from, to).map(quantizedCountStore.addCount)
+      }
+    }
+  }
+
 
   /**
-   * Iterates the Context Store sorting the tokens by their token Id.
+   * Iterates the Context Store sorting the tokens by their token Id. Rows that are already
+   * sorted are left as they are.
    */
   def sortTokensInContextStore(){
-    for((currentTokens, i) <- contextStore.tokens.zipWithIndex){
-      if (currentTokens.isInstanceOf[Array[Int]] && currentTokens.size > 1){
-        val (sortedTokens, counts) = currentTokens.zip(contextStore.counts(i)).sortBy(_._1).unzip
-        contextStore.tokens(i) = sortedTokens.toArray
-        contextStore.counts(i) = counts.toArray
+    contextStore.tokens.indices.foreach { i =>
+      val currentTokens = contextStore.tokens(i)
+      if (currentTokens != null && !isSorted(currentTokens)) {
+        val currentCounts = contextStore.counts(i)
+        val entries = Array.tabulate(currentTokens.length)(j => ContextStoreBuilder.entry(currentTokens(j), currentCounts(j) & 0xFFFF))
+        java.util.Arrays.sort(entries)
+        contextStore.tokens(i) = entries.map(ContextStoreBuilder.token)
+        contextStore.counts(i) = entries.map(e => ContextStoreBuilder.count(e).toShort)
       }
     }
   }
 
+  private def isSorted(tokens: Array[Int]): Boolean = {
+    var j = 1
+    while (j < tokens.length) {
+      if (tokens(j - 1) > tokens(j))
+        return false
+      j += 1
+    }
+    true
+  }
+
   def writeTokenOccurrences() {
     sortTokensInContextStore()
     MemoryStore.dump(contextStore, new File(baseDir, "context.mem"))
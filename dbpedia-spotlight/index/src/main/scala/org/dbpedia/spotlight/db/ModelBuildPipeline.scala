@@ -0,0 +1,155 @@
+package org.dbpedia.spotlight.db
+
+import java.io.File
+import java.lang.management.ManagementFactory
+import java.util.concurrent.{CompletableFuture, ConcurrentHashMap, Executors, ThreadFactory}
+
+import org.dbpedia.spotlight.log.SpotlightLog
+
+import scala.collection.JavaConversions._
+import scala.collection.mutable
+
+/**
+ * Runs the steps of a model build as a DAG: a stage starts as soon as all stages it depends on are
+ * done, so independent stages can run concurrently if there is more than one thread.
+ *
+ * A stage with a checkpoint writes a marker to the checkpoint folder when it is done. If the build is
+ * run again after a failure, such stages are not built again; their restore function is run instead,
+ * e.g. to load the stores they wrote. The time and the peak heap usage while each stage was running are
+ * logged when the build is done.
+ *
+ * @param checkpointFolder folder for the checkpoint markers
+ * @param threads number of stages that can run at the same time, by default the stages are run one by one
+ */
+class ModelBuildPipeline(checkpointFolder: File, threads: Int = 1) {
+
+  private case class Stage(name: String, dependencies: Seq[String], checkpoint: Boolean, build: () => Unit, restore: () => Unit)
+
+  private class Report(val name: String, val restored: Boolean) {
+    @volatile var nanos = 0L
+    @volatile var peakHeap = 0L
+  }
+
+  private val stages = mutable.LinkedHashMap[String, Stage]()
+  private val running = new ConcurrentHashMap[String, Report]()
+  private val reports = mutable.ArrayBuffer[Report]()
+
+  /**
+   * Adds a stage that is built again on every run, e.g. because it is cheap or has no output.
+   */
+  def stage(name: String, dependsOn: String*)(build: => Unit) {
+    add(Stage(name, dependsOn, checkpoint = false, () => build, () => build))
+  }
+
+  /**
+   * Adds a stage that is checkpointed. On a resumed build, restore is run instead of build if the stage
+   * was done before.
+   */
+  def checkpointedStage(name: String, dependsOn: String*)(build: => Unit)(restore: => Unit) {
+    add(Stage(name, dependsOn, checkpoint = true, () => build, () => restore))
+  }
+
+  if (threads < 1)
+    throw new IllegalArgumentException("Number of threads must be at least 1, got %d.".format(threads))
+
+  private def add(stage: Stage) {
+    stage.dependencies.foreach { d =>
+      if (!stages.contains(d))
+        throw new IllegalArgumentException("Stage %s depends on unknown stage %s.".format(stage.name, d))
+    }
+    stages.put(stage.name, stage)
+  }
+
+  private def marker(stage: Stage) = new File(checkpointFolder, stage.name.replaceAll("[^A-Za-z0-9]+", "_") + ".done")
+
+  /**
+   * Runs all stages and waits for them. If a stage fails, the stages that depend on it are not run
+   * and the exception of the first failed stage is thrown.
+   */
+  def run() {
+    checkpointFolder.mkdirs()
+
+    val executor = Executors.newFixedThreadPool(threads, new ThreadFactory {
+      def newThread(r: Runnable): Thread = {
+        val t = new Thread(r, "model-build")
+        t.setDaemon(true)
+        t
+      }
+    })
+    val sampler = startHeapSampler()
+
+    val start = System.nanoTime()
+    val futures = mutable.HashMap[String, CompletableFuture[Void]]()
+    try {
+      //Stages are added after their dependencies, so they can be chained in order:
+      stages.values.foreach { stage =>
+        val dependencies = CompletableFuture.allOf(stage.dependencies.map(futures(_)): _*)
+        futures.put(stage.name, dependencies.thenRunAsync(new Runnable {
+          def run() { runStage(stage) }
+        }, executor))
+      }
+
+      CompletableFuture.allOf(futures.values.toSeq: _*).get()
+    } catch {
+      case e: java.util.concurrent.ExecutionException => throw e.getCause match {
+        case c: java.util.concurrent.CompletionException if c.getCause != null => c.getCause
+        case c => c
+      }
+    } finally {
+      sampler.interrupt()
+      executor.shutdown()
+      logReport(System.nanoTime() - start)
+    }
+  }
+
+  private def runStage(stage: Stage) {
+    val restored = stage.checkpoint && marker(stage).exists()
+    val report = new Report(stage.name, restored)
+    reports.synchronized { reports += report }
+
+    SpotlightLog.info(this.getClass, "%s stage %s...", if (restored) "Restoring" else "Starting", stage.name)
+    running.put(stage.name, report)
+    val start = System.nanoTime()
+    try {
+      if (restored) stage.restore() else stage.build()
+    } finally {
+      report.nanos = System.nanoTime() - start
+      running.remove(stage.name)
+    }
+
+    if (stage.checkpoint && !restored)
+      marker(stage).createNewFile()
+    SpotlightLog.info(this.getClass, "Done with stage %s (%d s).", stage.name, report.nanos / 1000000000L)
+  }
+
+  private def startHeapSampler(): Thread = {
+    val memory = ManagementFactory.getMemoryMXBean
+    val sampler = new Thread(new Runnable {
+      def run() {
+        try {
+          while (!Thread.currentThread().isInterrupted) {
+            val used = memory.getHeapMemoryUsage.getUsed
+            running.values.foreach(r => if (used > r.peakHeap) r.peakHeap = used)
+            Thread.sleep(100)
+          }
+        } catch {
+          case e: InterruptedException =>
+        }
+      }
+    }, "model-build-heap-sampler")
+    sampler.setDaemon(true)
+    sampler.start()
+    sampler
+  }
+
+  private def logReport(totalNanos: Long) {
+    SpotlightLog.info(this.getClass, "Model build stages (time, peak heap while running):")
+    reports.synchronized {
+      reports.foreach { r =>
+        SpotlightLog.info(this.getClass, "  %-20s %8.1f s %8d MB%s", r.name, r.nanos / 1e9, r.peakHeap / (1024 * 1024), if (r.restored) " (restored)" else "")
+      }
+    }
+    SpotlightLog.info(this.getClass, "Total: %.1f s", totalNanos / 1e9)
+  }
+
+}
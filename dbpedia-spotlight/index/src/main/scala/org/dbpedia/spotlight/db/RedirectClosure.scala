@@ -0,0 +1,240 @@
+package org.dbpedia.spotlight.db
+
+import java.io._
+import java.nio.file.{Files, StandardCopyOption}
+import java.util.zip.{GZIPInputStream, GZIPOutputStream}
+
+import it.unimi.dsi.fastutil.ints.IntArrayList
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap
+import org.dbpedia.spotlight.log.SpotlightLog
+
+/**
+ * Transitive closure of the redirects between resource names, together with the set of
+ * disambiguation pages.
+ *
+ * Every name is mapped to an ID, and the end of the redirect chain of each ID is precomputed,
+ * so that resolving a name is a hash lookup and a single array access.
+ *
+ * @param names    name of each ID
+ * @param ends     ID of the end of the redirect chain of each ID
+ * @param disambiguations IDs of disambiguation pages
+ */
+class RedirectClosure(names: Array[String], ends: Array[Int], disambiguations: java.util.BitSet) {
+
+  private val ids = new Object2IntOpenHashMap[String](names.length)
+  ids.defaultReturnValue(-1)
+  names.zipWithIndex.foreach { case (name, id) => ids.put(name, id) }
+
+  def size: Int = names.length
+
+  /**
+   * Gets the end of the redirect chain of the name, the name itself if it is not redirected.
+   */
+  def resolve(name: String): String = {
+    val id = ids.getInt(name)
+    if (id < 0) name else names(ends(id))
+  }
+
+  def isDisambiguation(name: String): Boolean = {
+    val id = ids.getInt(name)
+    id >= 0 && disambiguations.get(id)
+  }
+
+  /**
+   * Writes the closure. The key identifies the data the closure was built from, see RedirectClosure.cached.
+   */
+  def write(out: OutputStream, key: String = "") {
+    val data = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(out)))
+    try {
+      data.writeInt(RedirectClosure.VERSION)
+      data.writeUTF(key)
+      data.writeInt(names.length)
+      names.foreach(data.writeUTF)
+      ends.foreach(data.writeInt)
+      data.writeInt(disambiguations.cardinality())
+      var id = disambiguations.nextSetBit(0)
+      while (id >= 0) {
+        data.writeInt(id)
+        id = disambiguations.nextSetBit(id + 1)
+      }
+    } finally {
+      data.close()
+    }
+  }
+
+}
+
+object RedirectClosure {
+
+  val VERSION = 2
+
+  /** Reads the version and the key of a closure. */
+  private def readHeader(data: DataInputStream): String = {
+    val version = data.readInt()
+    if (version != VERSION)
+      throw new IOException("Unsupported redirect closure version %d.".format(version))
+    data.readUTF()
+  }
+
+  def read(in: InputStream): RedirectClosure = {
+    val data = new DataInputStream(new BufferedInputStream(new GZIPInputStream(in)))
+    try {
+      readHeader(data)
+      val n = data.readInt()
+      val names = Array.fill(n)(data.readUTF())
+      val ends = Array.fill(n)(data.readInt())
+      val disambiguations = new java.util.BitSet(n)
+      (1 to data.readInt()).foreach(_ => disambiguations.set(data.readInt()))
+      new RedirectClosure(names, ends, disambiguations)
+    } finally {
+      data.close()
+    }
+  }
+
+  /**
+   * Reads the key of a closure file, None if the file is not a readable closure of the current version.
+   */
+  def readKey(file: File): Option[String] = {
+    try {
+      val data = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))
+      try {
+        Some(readHeader(data))
+      } finally {
+        data.close()
+      }
+    } catch {
+      case e: IOException => None
+    }
+  }
+
+  /**
+   * The key of a closure built for the namespace from the sources, it changes with the size of any source.
+   */
+  def key(namespace: String, sources: Seq[File]): String =
+    (namespace +: sources.map(f => f.getName + "\t" + f.length())).mkString("\n")
+
+  /**
+   * Loads a closure written by [[org.dbpedia.spotlight.db.RedirectClosure#write]] if the file is newer than all
+   * sources and was built for the same namespace and source sizes, otherwise builds it with build() and writes
+   * it to the file. The closure is written to a temporary file that is renamed when it is complete, so an
+   * interrupted build never leaves a truncated file behind.
+   */
+  def cached(file: File, namespace: String, sources: Seq[File])(build: => RedirectClosure): RedirectClosure = {
+    val expectedKey = key(namespace, sources)
+
+    if (file.exists() && sources.forall(_.lastModified() <= file.lastModified()) && readKey(file) == Some(expectedKey)) {
+      SpotlightLog.info(this.getClass, "Loading redirect closure from %s...", file)
+      read(new FileInputStream(file))
+    } else {
+      if (file.exists())
+        SpotlightLog.info(this.getClass, "Redirect closure in %s is out of date, rebuilding it...", file)
+
+      val closure = build
+      SpotlightLog.info(this.getClass, "Writing redirect closure to %s...", file)
+      val tmp = new File(file.getAbsoluteFile.getParentFile, file.getName + ".tmp")
+      try {
+        closure.write(new FileOutputStream(tmp), expectedKey)
+        Files.move(tmp.toPath, file.toPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+      } finally {
+        tmp.delete()
+      }
+      closure
+    }
+  }
+
+  class Builder {
+
+    private val ids = new Object2IntOpenHashMap[String]()
+    ids.defaultReturnValue(-1)
+    private val names = new java.util.ArrayList[String]()
+
+    private val redirectSources = new IntArrayList()
+    private val redirectTargets = new IntArrayList()
+    private val disambiguations = new java.util.BitSet()
+
+    private def idOf(name: String): Int = {
+      val id = ids.getInt(name)
+      if (id >= 0)
+        id
+      else {
+        ids.put(name, names.size)
+        names.add(name)
+        names.size - 1
+      }
+    }
+
+    /**
+     * Adds a redirect. If a name is redirected more than once, the last redirect is used.
+     */
+    def addRedirect(from: String, to: String): Builder = {
+      redirectSources.add(idOf(from))
+      redirectTargets.add(idOf(to))
+      this
+    }
+
+    def addDisambiguation(name: String): Builder = {
+      disambiguations.set(idOf(name))
+      this
+    }
+
+    /**
+     * Computes the end of the redirect chain of every name in one pass over the chains.
+     *
+     * Each chain is followed until a name whose end is known, a name without redirect or a cycle.
+     * For a name in a cycle, the end is the name in the cycle that redirects to it, i.e. the last
+     * name before the chain returns to a name that was already traversed.
+     */
+    def build(): RedirectClosure = {
+      val n = names.size
+      val next = Array.fill(n)(-1)
+      (0 until redirectSources.size).foreach { i => next(redirectSources.getInt(i)) = redirectTargets.getInt(i) }
+
+      val ends = Array.fill(n)(-1)
+      val onPath = new java.util.BitSet(n)
+      val path = new IntArrayList()
+
+      var start = 0
+      while (start < n) {
+        if (ends(start) < 0) {
+          path.clear()
+          var x = start
+          while (x >= 0 && ends(x) < 0 && !onPath.get(x)) {
+            onPath.set(x)
+            path.add(x)
+            x = next(x)
+          }
+
+          val tailEnd = if (x < 0) {
+            //The chain ends in a name without redirect:
+            path.getInt(path.size - 1)
+          } else if (ends(x) >= 0) {
+            //The chain joins a chain that was resolved before:
+            ends(x)
+          } else {
+            //The chain runs into a cycle starting at x:
+            val cycleStart = path.indexOf(x)
+            val cycleLength = path.size - cycleStart
+            (0 until cycleLength).foreach { j =>
+              ends(path.getInt(cycleStart + j)) = path.getInt(cycleStart + (j - 1 + cycleLength) % cycleLength)
+            }
+            ends(x)
+          }
+
+          (0 until path.size).foreach { i =>
+            val id = path.getInt(i)
+            if (ends(id) < 0)
+              ends(id) = tailEnd
+            onPath.clear(id)
+          }
+        }
+        start += 1
+      }
+
+      SpotlightLog.info(this.getClass, "Computed redirect closure for %d names (%d redirects, %d disambiguations).",
+        n, redirectSources.size, disambiguations.cardinality())
+      new RedirectClosure(names.toArray(new Array[String](n)), ends, disambiguations)
+    }
+
+  }
+
+}
@@ -5,9 +5,12 @@ import model.TextTokenizer
 import org.dbpedia.spotlight.io.AnnotatedTextSource
 import breeze.stats.regression.leastSquares
 import java.io.File
+import java.util.concurrent.{Callable, Executors, Future, ThreadFactory}
+import org.dbpedia.spotlight.log.SpotlightLog
 import org.dbpedia.spotlight.model.{SurfaceFormOccurrence, AnnotatedParagraph}
 import org.apache.commons.io.FileUtils
 import scala.collection.JavaConversions._
+import scala.util.Random
 
 
 object SpotterTuner {
@@ -56,4 +59,148 @@ object SpotterTuner {
 
   }
 
+  /**
+   * A spotter tuning task, e.g. for one language.
+   *
+   * @param name name of the task used in the log
+   * @param corpus annotated paragraphs, traversed once
+   * @param createTokenizer creates a tokenizer for a worker thread
+   * @param createSpotter creates a spotter for a worker thread
+   * @param outputFile file the spotter thresholds are written to
+   */
+  case class TuningTask(name: String, corpus: AnnotatedTextSource, createTokenizer: () => TextTokenizer, createSpotter: () => DBSpotter, outputFile: File)
+
+  /**
+   * Accumulated normal equations X'X w = X'y of a least squares problem, the rows of X and y are
+   * added one by one and are not kept.
+   */
+  class NormalEquations(n: Int) {
+    val xtx = DenseMatrix.zeros[Double](n, n)
+    val xty = DenseVector.zeros[Double](n)
+    var rows = 0L
+
+    def add(x: DenseVector[Double], y: Double) {
+      var i = 0
+      while (i < n) {
+        var j = 0
+        while (j < n) {
+          xtx(i, j) += x(i) * x(j)
+          j += 1
+        }
+        xty(i) += x(i) * y
+        i += 1
+      }
+      rows += 1
+    }
+
+    def add(other: NormalEquations) {
+      xtx += other.xtx
+      xty += other.xty
+      rows += other.rows
+    }
+
+    /**
+     * Solves the equations. A small ridge keeps them solvable if a feature never occurred in the sample.
+     */
+    def solve(ridge: Double = 1e-6): DenseVector[Double] = {
+      val a = xtx.copy
+      (0 until n).foreach(i => a(i, i) += ridge)
+      a \ xty
+    }
+  }
+
+  /**
+   * Tunes the spotter thresholds of all tasks in one run.
+   *
+   * Unlike tuneOpenNLP, paragraphs are spotted in parallel and the features of the spots are added to normal
+   * equations instead of a matrix of all spots, so the memory used does not grow with the size of the corpus.
+   * Instead of the first paragraphs of a corpus, paragraphs are sampled from the whole corpus: of each stratum of
+   * stratumSize consecutive paragraphs, a random sample of sampleRate * stratumSize paragraphs is used.
+   *
+   * @param tasks tuning tasks, e.g. one per language
+   * @param sampleRate fraction of the paragraphs used for tuning, at least one paragraph of each stratum
+   * @param threads number of spotter threads, each thread has its own tokenizer and spotter per task
+   * @param stratumSize number of consecutive paragraphs a sample is drawn from
+   * @param seed seed of the sample
+   */
+  def tune(tasks: Seq[TuningTask], sampleRate: Double = 1.0, threads: Int = Runtime.getRuntime.availableProcessors(), stratumSize: Int = 100, seed: Long = 0) {
+    //Each stratum contributes at least one paragraph, a lower rate would silently sample more than asked for:
+    if (stratumSize < 1)
+      throw new IllegalArgumentException("Stratum size must be at least 1, got %d.".format(stratumSize))
+    if (sampleRate > 1.0 || sampleRate < 1.0 / stratumSize)
+      throw new IllegalArgumentException("Sample rate must be between 1/%d and 1 for strata of %d paragraphs, got %s; use larger strata for lower rates.".format(stratumSize, stratumSize, sampleRate))
+
+    val executor = Executors.newFixedThreadPool(threads, new ThreadFactory {
+      def newThread(r: Runnable): Thread = {
+        val t = new Thread(r, "spotter-tuner")
+        t.setDaemon(true)
+        t
+      }
+    })
+
+    try {
+      tasks.foreach { task =>
+        val equations = tune(task, executor, threads, sampleRate, stratumSize, new Random(seed))
+        val weights = equations.solve()
+        SpotlightLog.info(this.getClass, "Tuned spotter for %s on %d spots: %s", task.name, equations.rows, weights.activeValuesIterator.mkString(" "))
+        FileUtils.write(task.outputFile, weights.activeValuesIterator.mkString(" "))
+      }
+    } finally {
+      executor.shutdown()
+    }
+  }
+
+  private def tune(task: TuningTask, executor: java.util.concurrent.ExecutorService, threads: Int, sampleRate: Double, stratumSize: Int, random: Random): NormalEquations = {
+    val n = DBSpotter.spotFeatures("test", 0.0).activeSize
+    val samplesPerStratum = math.max(1, math.round(sampleRate * stratumSize).toInt)
+
+    //Tokenizers and spotters are not thread-safe, each worker thread creates its own:
+    val tokenizers = new ThreadLocal[TextTokenizer] { override def initialValue() = task.createTokenizer() }
+    val spotters = new ThreadLocal[DBSpotter] { override def initialValue() = task.createSpotter() }
+
+    val equations = new NormalEquations(n)
+    val pending = new java.util.ArrayDeque[Future[NormalEquations]]()
+    var paragraphs = 0L
+    var sampledParagraphs = 0L
+    var sampled: Set[Int] = Set()
+
+    def collect(max: Int) {
+      while (pending.size > max) {
+        equations.add(pending.poll().get())
+      }
+    }
+
+    task.corpus.foreach { par: AnnotatedParagraph =>
+      val positionInStratum = (paragraphs % stratumSize).toInt
+      if (positionInStratum == 0)
+        sampled = random.shuffle((0 until stratumSize).toList).take(samplesPerStratum).toSet
+      paragraphs += 1
+
+      if (sampled.contains(positionInStratum)) {
+        sampledParagraphs += 1
+        pending.add(executor.submit(new Callable[NormalEquations] {
+          def call() = {
+            val paragraphEquations = new NormalEquations(n)
+            tokenizers.get().tokenizeMaybe(par.text)
+
+            //As in tuneOpenNLP, a spot is correct if its surface form is annotated anywhere in the paragraph:
+            val goldSpotSet = par.occurrences.map(_.surfaceForm.name).toSet
+            spotters.get().extract(par.text).foreach { spot: SurfaceFormOccurrence =>
+              paragraphEquations.add(
+                DBSpotter.spotFeatures(spot.surfaceForm.name, spot.surfaceForm.annotationProbability),
+                if (goldSpotSet.contains(spot.surfaceForm.name)) 1.0 else 0.0
+              )
+            }
+            paragraphEquations
+          }
+        }))
+        collect(4 * threads)
+      }
+    }
+    collect(0)
+
+    SpotlightLog.info(this.getClass, "Spotted %d spots in %d of %d paragraphs for %s.", equations.rows, sampledParagraphs, paragraphs, task.name)
+    equations
+  }
+
 }
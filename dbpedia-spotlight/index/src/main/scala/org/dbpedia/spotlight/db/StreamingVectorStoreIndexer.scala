@@ -0,0 +1,284 @@
+package org.dbpedia.spotlight.db
+
+import java.io.{BufferedReader, File, FileInputStream, IOException, InputStreamReader, RandomAccessFile}
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.{Callable, Executors, ThreadFactory}
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet
+import it.unimi.dsi.fastutil.longs.LongArrayList
+import org.dbpedia.spotlight.db.io.util.ChunkedFileReader
+import org.dbpedia.spotlight.db.memory.MemoryVectorStore
+import org.dbpedia.spotlight.db.model.{ResourceStore, TokenTypeStore}
+import org.dbpedia.spotlight.exceptions.DBpediaResourceNotFoundException
+import org.dbpedia.spotlight.log.SpotlightLog
+import org.dbpedia.spotlight.model.TokenType
+
+import scala.collection.JavaConversions._
+import scala.io.Source
+
+/**
+ * Builds the memory-mapped vector store (vectors.bin, see [[org.dbpedia.spotlight.db.memory.MemoryVectorStore]])
+ * from the wiki2vec CSV matrix and its ID file.
+ *
+ * Unlike [[org.dbpedia.spotlight.db.MemoryVectorStoreIndexer]], the matrix is never held on the heap: the
+ * output file is allocated up front, the CSV file is split into chunks and each chunk is parsed by a worker
+ * directly into the rows of the output file it covers. The ID maps are kept as sorted arrays of longs.
+ *
+ * @param matrixFile CSV file with the lines "# rows", "# columns" followed by one line of comma-separated values per row
+ * @param idFile tab-separated file of names and row indexes, resources are prefixed with DBPEDIA_ID/
+ * @param threads number of parser threads
+ * @param chunkSize approximate size of a chunk in bytes
+ */
+class StreamingVectorStoreIndexer(matrixFile: File, idFile: File, threads: Int = Runtime.getRuntime.availableProcessors(), chunkSize: Int = 16 * 1024 * 1024) {
+
+  /**
+   * Writes the vector store for the resources and tokens in the stores to outputFile.
+   */
+  def write(tokenTypeStore: TokenTypeStore, resourceStore: ResourceStore, outputFile: File) {
+    val (rows, columns) = readHeader()
+    val (resources, tokens) = readIDs(tokenTypeStore, resourceStore, rows)
+
+    val chunks = ChunkedFileReader.chunks(matrixFile, chunkSize)
+    SpotlightLog.info(this.getClass, "Reading %d x %d matrix from %s in %d chunks with %d threads...", rows, columns, matrixFile.getName, chunks.size, threads)
+
+    val raf = new RandomAccessFile(outputFile, "rw")
+    try {
+      raf.setLength(MemoryVectorStore.mapsOffset(rows, columns) + 8L * (resources.length + tokens.length))
+    } finally {
+      raf.close()
+    }
+
+    val executor = Executors.newFixedThreadPool(threads, new ThreadFactory {
+      def newThread(r: Runnable): Thread = {
+        val t = new Thread(r, "vector-store-indexer")
+        t.setDaemon(true)
+        t
+      }
+    })
+
+    try {
+      //First pass: count the rows in each chunk to find the first row of each chunk.
+      val counts: java.util.List[Callable[Int]] = chunks.map { case (start, end) =>
+        new Callable[Int] {
+          def call() = {
+            var n = 0
+            ChunkedFileReader.foreachMappedLine(matrixFile, start, end) { (buffer: ByteBuffer, from: Int, to: Int) =>
+              if (isRow(buffer, from, to)) n += 1
+            }
+            n
+          }
+        }
+      }
+      val rowsPerChunk = executor.invokeAll(counts).map(_.get()).toIndexedSeq
+
+      val firstRows = rowsPerChunk.scanLeft(0)(_ + _)
+      if (firstRows.last != rows)
+        throw new IOException("%s has %d rows, expected %d.".format(matrixFile, firstRows.last, rows))
+
+      //Second pass: parse each chunk into its rows of the output file.
+      val parsers: java.util.List[Callable[Unit]] = chunks.indices.map { i =>
+        new Callable[Unit] {
+          def call() { parseChunk(chunks(i)._1, chunks(i)._2, firstRows(i), rowsPerChunk(i), columns, outputFile) }
+        }
+      }
+      executor.invokeAll(parsers).foreach(_.get())
+    } finally {
+      executor.shutdown()
+    }
+
+    StreamingVectorStoreIndexer.writeMaps(outputFile, rows, columns, resources, tokens)
+    SpotlightLog.info(this.getClass, "Wrote vector store to %s (%d MB).", outputFile, outputFile.length() / (1024 * 1024))
+  }
+
+  private def readHeader(): (Int, Int) = {
+    val in = new BufferedReader(new InputStreamReader(new FileInputStream(matrixFile), StandardCharsets.UTF_8))
+    try {
+      (in.readLine().substring(2).trim.toInt, in.readLine().substring(2).trim.toInt)
+    } finally {
+      in.close()
+    }
+  }
+
+  /** Header lines start with #, blank lines are ignored. */
+  private def isRow(buffer: ByteBuffer, from: Int, to: Int): Boolean = {
+    var i = from
+    while (i < to && buffer.get(i) <= ' ') i += 1
+    i < to && buffer.get(i) != '#'
+  }
+
+  private def parseChunk(start: Long, end: Long, firstRow: Int, numberOfRows: Int, columns: Int, outputFile: File) {
+    if (numberOfRows == 0)
+      return
+
+    val raf = new RandomAccessFile(outputFile, "rw")
+    try {
+      val out = raf.getChannel.map(
+        FileChannel.MapMode.READ_WRITE,
+        MemoryVectorStore.HEADER_BYTES + 4L * firstRow * columns,
+        4L * numberOfRows * columns
+      ).order(MemoryVectorStore.ORDER).asFloatBuffer()
+
+      val field = new Array[Byte](64)
+      ChunkedFileReader.foreachMappedLine(matrixFile, start, end) { (buffer: ByteBuffer, from: Int, to: Int) =>
+        if (isRow(buffer, from, to)) {
+          val rowStart = out.position()
+          var i = from
+          while (i < to) {
+            var n = 0
+            while (i < to && buffer.get(i) != ',') {
+              val b = buffer.get(i)
+              if (b > ' ') {
+                if (n == field.length)
+                  throw new IOException("Value too long in row %d of %s.".format(firstRow + rowStart / columns, matrixFile))
+                field(n) = b
+                n += 1
+              }
+              i += 1
+            }
+            if (out.position() - rowStart == columns)
+              throw new IOException("Row %d of %s has more than %d values.".format(firstRow + rowStart / columns, matrixFile, columns))
+            out.put(java.lang.Double.parseDouble(new String(field, 0, n, StandardCharsets.US_ASCII)).toFloat)
+            i += 1
+          }
+          if (out.position() - rowStart != columns)
+            throw new IOException("Row %d of %s has %d values, expected %d.".format(firstRow + rowStart / columns, matrixFile, out.position() - rowStart, columns))
+        }
+      }
+    } finally {
+      raf.close()
+    }
+  }
+
+  /**
+   * Reads the ID file into sorted arrays of (store ID, row index) entries for resources and tokens.
+   */
+  private def readIDs(tokenTypeStore: TokenTypeStore, resourceStore: ResourceStore, rows: Int): (Array[Long], Array[Long]) = {
+    val resources = new LongArrayList()
+    val tokens = new LongArrayList()
+    var failedResources = 0
+    var failedTokens = 0
+
+    val source = Source.fromFile(idFile, "UTF-8")
+    try {
+      source.getLines().filter(!_.trim.isEmpty).foreach { line =>
+        val contents = line.split("\t")
+        val index = contents(1).trim.toInt
+        if (index < 0 || index >= rows)
+          throw new IOException("Row index %d of %s is out of range.".format(index, contents(0)))
+
+        if (contents(0).startsWith("DBPEDIA_ID/")) {
+          try {
+            resources.add(StreamingVectorStoreIndexer.entry(resourceStore.getResourceByName(contents(0).substring("DBPEDIA_ID/".length)).id, index))
+          } catch {
+            case e: DBpediaResourceNotFoundException => failedResources += 1
+          }
+        } else {
+          val token = tokenTypeStore.getTokenType(contents(0))
+          if (token == TokenType.UNKNOWN)
+            failedTokens += 1
+          else
+            tokens.add(StreamingVectorStoreIndexer.entry(token.id, index))
+        }
+      }
+    } finally {
+      source.close()
+    }
+
+    SpotlightLog.info(this.getClass, "Found vectors for %d resources (%d not found) and %d tokens (%d not found).",
+      resources.size, failedResources, tokens.size, failedTokens)
+    (StreamingVectorStoreIndexer.sorted(resources), StreamingVectorStoreIndexer.sorted(tokens))
+  }
+
+}
+
+object StreamingVectorStoreIndexer {
+
+  def entry(id: Int, index: Int): Long = (id.toLong << 32) | (index.toLong & 0xFFFFFFFFL)
+
+  def id(entry: Long): Int = (entry >>> 32).toInt
+
+  def index(entry: Long): Int = entry.toInt
+
+  /**
+   * Sorts the entries by ID. Of several entries with the same ID, the last one that was added is kept, as
+   * in the maps of [[org.dbpedia.spotlight.db.MemoryVectorStoreIndexer]].
+   */
+  def sorted(entries: LongArrayList): Array[Long] = {
+    val a = new Array[Long](entries.size)
+    val seen = new IntOpenHashSet()
+    var n = 0
+    var i = entries.size - 1
+    while (i >= 0) {
+      if (seen.add(id(entries.getLong(i)))) {
+        a(n) = entries.getLong(i)
+        n += 1
+      }
+      i -= 1
+    }
+    java.util.Arrays.sort(a, 0, n)
+    java.util.Arrays.copyOf(a, n)
+  }
+
+  /**
+   * Writes the header and the ID maps of a vector store whose vectors are already written to the file.
+   * The file is truncated after the maps.
+   */
+  def writeMaps(file: File, rows: Int, columns: Int, resources: Array[Long], tokens: Array[Long]) {
+    val raf = new RandomAccessFile(file, "rw")
+    try {
+      val channel = raf.getChannel
+      val mapsOffset = MemoryVectorStore.mapsOffset(rows, columns)
+      val mapsLength = 8L * (resources.length + tokens.length)
+      raf.setLength(mapsOffset + mapsLength)
+
+      val header = channel.map(FileChannel.MapMode.READ_WRITE, 0, MemoryVectorStore.HEADER_BYTES).order(MemoryVectorStore.ORDER)
+      header.putInt(MemoryVectorStore.MAGIC).putInt(MemoryVectorStore.VERSION).putInt(rows).putInt(columns)
+        .putInt(resources.length).putInt(tokens.length)
+
+      val maps = channel.map(FileChannel.MapMode.READ_WRITE, mapsOffset, mapsLength).order(MemoryVectorStore.ORDER).asIntBuffer()
+      List(resources, tokens).foreach { entries =>
+        entries.foreach(e => maps.put(id(e)))
+        entries.foreach(e => maps.put(index(e)))
+      }
+      channel.force(true)
+    } finally {
+      raf.close()
+    }
+  }
+
+  /**
+   * Reads the dimensions and the ID maps of a vector store written by writeMaps.
+   *
+   * @return rows, columns, resource entries and token entries
+   */
+  def readMaps(file: File): (Int, Int, Array[Long], Array[Long]) = {
+    val raf = new RandomAccessFile(file, "r")
+    try {
+      val channel = raf.getChannel
+      val header = channel.map(FileChannel.MapMode.READ_ONLY, 0, MemoryVectorStore.HEADER_BYTES).order(MemoryVectorStore.ORDER)
+      if (header.getInt(0) != MemoryVectorStore.MAGIC || header.getInt(4) != MemoryVectorStore.VERSION)
+        throw new IOException("%s is not a vector store of version %d.".format(file, MemoryVectorStore.VERSION))
+      val rows = header.getInt(8)
+      val columns = header.getInt(12)
+      val numberOfResources = header.getInt(16)
+      val numberOfTokens = header.getInt(20)
+
+      val maps = channel.map(FileChannel.MapMode.READ_ONLY, MemoryVectorStore.mapsOffset(rows, columns), 8L * (numberOfResources + numberOfTokens))
+        .order(MemoryVectorStore.ORDER).asIntBuffer()
+      def read(n: Int): Array[Long] = {
+        val ids = new Array[Int](n)
+        val indexes = new Array[Int](n)
+        maps.get(ids)
+        maps.get(indexes)
+        (0 until n).map(i => entry(ids(i), indexes(i))).toArray
+      }
+      val resources = read(numberOfResources)
+      (rows, columns, resources, read(numberOfTokens))
+    } finally {
+      raf.close()
+    }
+  }
+
+}
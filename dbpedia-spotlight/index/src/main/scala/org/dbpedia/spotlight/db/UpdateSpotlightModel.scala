@@ -0,0 +1,443 @@
+package org.dbpedia.spotlight.db
+
+import java.io.{File, FileInputStream}
+import java.util.{Locale, Properties}
+
+import it.unimi.dsi.fastutil.longs.LongArrayList
+import opennlp.tools.sentdetect.{SentenceDetectorME, SentenceModel}
+import opennlp.tools.tokenize.{TokenizerME, TokenizerModel}
+import org.apache.commons.io.FileUtils
+import org.dbpedia.spotlight.db.io.TokenOccurrenceSource
+import org.dbpedia.spotlight.db.memory._
+import org.dbpedia.spotlight.db.model.{Stemmer, TextTokenizer}
+import org.dbpedia.spotlight.db.stem.SnowballStemmer
+import org.dbpedia.spotlight.db.tokenize.{LanguageIndependentTokenizer, OpenNLPTokenizer}
+import org.dbpedia.spotlight.log.SpotlightLog
+import org.dbpedia.spotlight.model.DBpediaResource
+
+import scala.collection.JavaConversions._
+import scala.collection.mutable
+import scala.collection.mutable.ArrayBuffer
+import scala.io.Source
+
+/**
+ * This script creates a Spotlight model folder from an existing model folder and a folder of
+ * delta files, e.g. for a weekly refresh, instead of building all stores from the Pig output
+ * with [[org.dbpedia.spotlight.db.CreateSpotlightModel]].
+ *
+ * The delta files are tab-separated, resources are given by their DBpedia name or URI. All files are optional:
+ *
+ *  - removedResources: resource
+ *  - resourceCounts:   resource, support[, comma-separated ontology types], for new or changed resources
+ *  - sfCounts:         surface form, annotated count, total count, for new or changed surface forms
+ *  - pairCounts:       surface form, resource, count; replaces the count of the candidate, 0 removes it
+ *  - tokenCounts:      resource, token counts in the Pig bag format; replaces the context of the resource
+ *
+ * Counts are used as they are, i.e. they are not pruned or corrected for overlapping surface forms as in a
+ * full build. Surface form IDs are stable, removed resources are compacted away and the resource IDs in the
+ * candidate map, context and vector stores are remapped. If the candidate map is changed, the prior margins of
+ * all its rows are recomputed. The token store is not changed, tokens that are not in it are added to contexts
+ * as unknown tokens. Stores that are not affected by the delta and the FSA dictionary of the spotter, if the
+ * set of spottable surface forms did not change, are copied from the base model.
+ */
+object UpdateSpotlightModel {
+
+  def main(args: Array[String]) {
+
+    val (baseFolder: File, deltaFolder: File, outputFolder: File) = try {
+      (
+        new File(args(0)), // base model folder
+        new File(args(1)), // delta folder
+        new File(args(2))  // output folder
+      )
+    } catch {
+      case e: Exception => {
+        e.printStackTrace()
+        System.err.println("Usage:")
+        System.err.println(" mvn scala:run -DmainClass=org.dbpedia.spotlight.db.UpdateSpotlightModel -Dexec.args=\"/data/en /data/delta /data/en-updated\"")
+        System.exit(1)
+      }
+    }
+
+    if(!outputFolder.mkdir()) {
+      System.err.println("Folder %s already exists, I am too afraid to overwrite it!".format(outputFolder.toString))
+      System.exit(1)
+    }
+
+    update(baseFolder, deltaFolder, outputFolder)
+  }
+
+  def update(baseFolder: File, deltaFolder: File, outputFolder: File) {
+    val baseModelFolder = new File(baseFolder, "model")
+    val modelDataFolder = new File(outputFolder, "model")
+    modelDataFolder.mkdir()
+
+    def delta(name: String): Option[File] = Some(new File(deltaFolder, name)).filter(_.exists())
+
+    val properties = new Properties()
+    properties.load(new FileInputStream(new File(baseFolder, "model.properties")))
+    val namespace = properties.getProperty("namespace", "http://dbpedia.org/resource/")
+    def resourceName(uri: String) = new DBpediaResource(uri.stripPrefix(namespace)).uri
+
+    val quantizedCountStore = MemoryStore.loadQuantizedCountStore(new FileInputStream(new File(baseModelFolder, "quantized_counts.mem")))
+    val resStore = MemoryStore.loadResourceStore(new FileInputStream(new File(baseModelFolder, "res.mem")), quantizedCountStore)
+    val sfStore  = MemoryStore.loadSurfaceFormStore(new FileInputStream(new File(baseModelFolder, "sf.mem")), quantizedCountStore)
+    val baseSpottable = spottableSurfaceForms(sfStore)
+
+    //Resources:
+    val resourcesChanged = delta("removedResources").isDefined || delta("resourceCounts").isDefined
+    val oldToNew: Option[Array[Int]] = delta("removedResources").map { file =>
+      removeResources(resStore, lines(file).map(resourceName).toSet)
+    }
+    delta("resourceCounts").foreach(file => updateResources(resStore, file, resourceName))
+    if (resourcesChanged) {
+      resStore.createReverseLookup()
+      MemoryStore.dump(resStore, new File(modelDataFolder, "res.mem"))
+      resStore.quantizedCountStore = quantizedCountStore
+    }
+
+    //Surface forms:
+    val numberOfBaseSurfaceForms = sfStore.size
+    delta("sfCounts").foreach { file =>
+      updateSurfaceForms(sfStore, file)
+      sfStore.createReverseLookup()
+      MemoryStore.dump(sfStore, new File(modelDataFolder, "sf.mem"))
+      sfStore.quantizedCountStore = quantizedCountStore
+    }
+
+    //Candidate map:
+    if (oldToNew.isDefined || delta("pairCounts").isDefined || sfStore.size != numberOfBaseSurfaceForms) {
+      val candMapStore = MemoryStore.loadCandidateMapStore(new FileInputStream(new File(baseModelFolder, "candmap.mem")), resStore, quantizedCountStore)
+      updateCandidateMap(candMapStore, sfStore, resStore, oldToNew, delta("pairCounts"), resourceName)
+      MemoryStore.dump(candMapStore, new File(modelDataFolder, "candmap.mem"))
+    }
+
+    //Contexts:
+    val tokenStore = MemoryStore.loadTokenTypeStore(new FileInputStream(new File(baseModelFolder, "tokens.mem")))
+    val contextFile = new File(baseModelFolder, "context.mem")
+    if (contextFile.exists() && (resourcesChanged || delta("tokenCounts").isDefined)) {
+      val contextStore = MemoryStore.loadContextStore(new FileInputStream(contextFile), tokenStore, quantizedCountStore)
+      updateContexts(contextStore, resStore, tokenStore, oldToNew, delta("tokenCounts"), resourceName)
+      MemoryStore.dump(contextStore, new File(modelDataFolder, "context.mem"))
+    }
+
+    //Vectors:
+    oldToNew.foreach(mapping => remapVectors(baseModelFolder, modelDataFolder, mapping))
+
+    if (resourcesChanged || delta("sfCounts").isDefined || delta("pairCounts").isDefined || delta("tokenCounts").isDefined)
+      MemoryStore.dump(quantizedCountStore, new File(modelDataFolder, "quantized_counts.mem"))
+
+    //Spotter dictionary:
+    if (spottableSurfaceForms(sfStore) != baseSpottable) {
+      SpotlightLog.info(this.getClass, "The set of spottable surface forms changed, rebuilding the FSA dictionary.")
+      MemoryStore.dump(FSASpotter.buildDictionary(sfStore, createTokenizer(baseFolder, properties, tokenStore)), new File(outputFolder, "fsa_dict.mem"))
+    }
+
+    //Everything that was not written is taken from the base model:
+    copyMissing(baseFolder, outputFolder)
+  }
+
+  private def lines(file: File): List[String] = {
+    val source = Source.fromFile(file, "utf-8")
+    try {
+      source.getLines().map(_.trim).filter(!_.isEmpty).toList
+    } finally {
+      source.close()
+    }
+  }
+
+  /**
+   * Names of the surface forms the FSA dictionary of the spotter is built from, see
+   * [[org.dbpedia.spotlight.db.FSASpotter#buildDictionary]].
+   */
+  private[db] def spottableSurfaceForms(sfStore: MemorySurfaceFormStore): Set[String] =
+    sfStore.iterateSurfaceForms.filter(_.annotationProbability >= 0.05).map(_.name).toSet
+
+  /**
+   * Writes the vector stores of the base model with the resource IDs remapped, resources mapped
+   * to -1 are dropped. The vectors themselves are not changed.
+   */
+  private[db] def remapVectors(baseModelFolder: File, modelDataFolder: File, oldToNew: Array[Int]) {
+    val vectorFile = new File(baseModelFolder, "vectors.mem")
+    if (vectorFile.exists()) {
+      val vectorStore = MemoryStore.loadVectorStore(new FileInputStream(vectorFile))
+      vectorStore.resourceIdToVectorIndex = vectorStore.resourceIdToVectorIndex.flatMap {
+        case (id, index) if oldToNew(id) >= 0 => Some(oldToNew(id) -> index)
+        case _ => None
+      }
+      MemoryStore.dump(vectorStore, new File(modelDataFolder, "vectors.mem"))
+    }
+
+    val mappedVectorFile = new File(baseModelFolder, "vectors.bin")
+    if (mappedVectorFile.exists()) {
+      //The vectors are copied as they are, only the resource map is rewritten:
+      val outputVectorFile = new File(modelDataFolder, "vectors.bin")
+      FileUtils.copyFile(mappedVectorFile, outputVectorFile)
+      val (rows, columns, resources, tokens) = StreamingVectorStoreIndexer.readMaps(mappedVectorFile)
+      val remapped = new LongArrayList()
+      resources.foreach { e =>
+        val newID = oldToNew(StreamingVectorStoreIndexer.id(e))
+        if (newID >= 0)
+          remapped.add(StreamingVectorStoreIndexer.entry(newID, StreamingVectorStoreIndexer.index(e)))
+      }
+      StreamingVectorStoreIndexer.writeMaps(outputVectorFile, rows, columns, StreamingVectorStoreIndexer.sorted(remapped), tokens)
+    }
+  }
+
+  /**
+   * Removes the resources and compacts the resource IDs.
+   *
+   * @return the new ID of each old resource ID, -1 for removed resources
+   */
+  private def removeResources(resStore: MemoryResourceStore, removed: Set[String]): Array[Int] = {
+    val oldToNew = new Array[Int](resStore.size)
+    var next = 0
+    (0 until resStore.size).foreach { id =>
+      if (resStore.uriForID(id) != null && removed.contains(resStore.uriForID(id))) {
+        oldToNew(id) = -1
+      } else {
+        oldToNew(id) = next
+        next += 1
+      }
+    }
+    SpotlightLog.info(this.getClass, "Removing %d resources.", resStore.size - next)
+
+    val kept = (0 until resStore.size).filter(oldToNew(_) >= 0)
+    resStore.supportForID = kept.map(resStore.supportForID(_)).toArray
+    resStore.uriForID = kept.map(resStore.uriForID(_)).toArray
+    resStore.typesForID = kept.map(resStore.typesForID(_)).toArray
+    resStore.createReverseLookup()
+    oldToNew
+  }
+
+  private def updateResources(resStore: MemoryResourceStore, resourceCounts: File, resourceName: String => String) {
+    val support = ArrayBuffer(resStore.supportForID: _*)
+    val uris = ArrayBuffer(resStore.uriForID: _*)
+    val types = ArrayBuffer(resStore.typesForID: _*)
+    val newIDs = mutable.HashMap[String, Int]()
+
+    var added, updated, typesNotFound = 0
+    lines(resourceCounts).foreach { line =>
+      val fields = line.split('\t')
+      val uri = resourceName(fields(0))
+      val typeIDs = if (fields.length > 2) Some(fields(2).split(',').filter(!_.isEmpty).flatMap { name =>
+        val ontologyType = resStore.ontologyTypeStore.getOntologyTypeByName(name)
+        if (ontologyType == null) {
+          typesNotFound += 1
+          None
+        } else
+          Some(ontologyType.id: java.lang.Short)
+      }) else None
+
+      val id = Option(resStore.idFromURI.get(uri)).map(_.intValue).orElse(newIDs.get(uri))
+      id match {
+        case Some(i) => {
+          support(i) = resStore.quantizedCountStore.addCount(fields(1).toInt)
+          typeIDs.foreach(t => types(i) = t)
+          updated += 1
+        }
+        case None => {
+          newIDs.put(uri, uris.size)
+          uris += uri
+          support += resStore.quantizedCountStore.addCount(fields(1).toInt)
+          types += typeIDs.getOrElse(Array[java.lang.Short]())
+          added += 1
+        }
+      }
+    }
+    SpotlightLog.info(this.getClass, "Added %d and updated %d resources.", added, updated)
+    if (typesNotFound > 0)
+      SpotlightLog.warn(this.getClass, "Ontology types not in the model: %d", typesNotFound)
+
+    resStore.supportForID = support.toArray
+    resStore.uriForID = uris.toArray
+    resStore.typesForID = types.toArray
+  }
+
+  private def updateSurfaceForms(sfStore: MemorySurfaceFormStore, sfCounts: File) {
+    if (sfStore.lowercaseMap == null)
+      sfStore.lowercaseMap = new java.util.HashMap[String, Array[Int]]()
+    val strings = ArrayBuffer(sfStore.stringForID: _*)
+    val annotated = ArrayBuffer(sfStore.annotatedCountForID: _*)
+    val total = ArrayBuffer(sfStore.totalCountForID: _*)
+    val newIDs = mutable.HashMap[String, Int]()
+
+    var added, updated = 0
+    lines(sfCounts).foreach { line =>
+      val Array(sf, annotatedCount, totalCount) = line.split('\t')
+      val id = Option(sfStore.idForString.get(sf)).map(_.intValue).orElse(newIDs.get(sf))
+      id match {
+        case Some(i) => {
+          annotated(i) = sfStore.quantizedCountStore.addCount(annotatedCount.toInt)
+          total(i) = sfStore.quantizedCountStore.addCount(totalCount.toInt)
+          updated += 1
+        }
+        case None => {
+          newIDs.put(sf, strings.size)
+          strings += sf
+          annotated += sfStore.quantizedCountStore.addCount(annotatedCount.toInt)
+          total += sfStore.quantizedCountStore.addCount(totalCount.toInt)
+
+          //New surface forms are added to existing lowercase entries, whose count is not changed since the
+          //lowercase count is not known. A new lowercase entry starts with the total count of the surface form:
+          val lowercase = sfStore.lowercaseMap.get(sf.toLowerCase)
+          if (lowercase != null)
+            sfStore.lowercaseMap.put(sf.toLowerCase, lowercase :+ (strings.size - 1))
+          else
+            sfStore.lowercaseMap.put(sf.toLowerCase, Array(totalCount.toInt, strings.size - 1))
+          added += 1
+        }
+      }
+    }
+    SpotlightLog.info(this.getClass, "Added %d and updated %d surface forms.", added, updated)
+
+    sfStore.stringForID = strings.toArray
+    sfStore.annotatedCountForID = annotated.toArray
+    sfStore.totalCountForID = total.toArray
+  }
+
+  private def updateCandidateMap(candMapStore: MemoryCandidateMapStore, sfStore: MemorySurfaceFormStore, resStore: MemoryResourceStore,
+                                 oldToNew: Option[Array[Int]], pairCounts: Option[File], resourceName: String => String) {
+    val qcs = candMapStore.quantizedCountStore
+    val n = sfStore.size
+
+    val candidates = java.util.Arrays.copyOf(candMapStore.candidates, n)
+    val candidateCounts = java.util.Arrays.copyOf(candMapStore.candidateCounts, n)
+
+    //Changed candidates of a surface form as resource ID -> count:
+    val changed = mutable.HashMap[Int, mutable.LinkedHashMap[Int, Int]]()
+    def row(sfID: Int) = changed.getOrElseUpdate(sfID, {
+      val r = mutable.LinkedHashMap[Int, Int]()
+      if (candidates(sfID) != null)
+        candidates(sfID).zip(candidateCounts(sfID)).foreach {
+          case (resID, count) => r.put(resID, qcs.getCount(count))
+        }
+      r
+    })
+
+    //Remap the resource IDs and drop removed resources:
+    oldToNew.foreach { mapping =>
+      (0 until n).foreach { sfID =>
+        if (candidates(sfID) != null) {
+          val kept = candidates(sfID).indices.filter(i => mapping(candidates(sfID)(i)) >= 0)
+          if (kept.size < candidates(sfID).length)
+            changed.put(sfID, mutable.LinkedHashMap(kept.map(i => mapping(candidates(sfID)(i)) -> qcs.getCount(candidateCounts(sfID)(i))): _*))
+          else
+            candidates(sfID) = candidates(sfID).map(mapping(_))
+        }
+      }
+    }
+
+    var notFound = 0
+    pairCounts.foreach { file =>
+      lines(file).foreach { line =>
+        val Array(sf, uri, count) = line.split('\t')
+        val sfID = sfStore.idForString.get(sf)
+        val resID = resStore.idFromURI.get(resourceName(uri))
+        if (sfID == null || resID == null)
+          notFound += 1
+        else if (count.toInt > 0)
+          row(sfID).put(resID, count.toInt)
+        else
+          row(sfID).remove(resID)
+      }
+    }
+    if (notFound > 0)
+      SpotlightLog.warn(this.getClass, "Candidates with surface form or resource not in the model: %d", notFound)
+
+    changed.foreach { case (sfID, r) =>
+      if (r.isEmpty) {
+        candidates(sfID) = null
+        candidateCounts(sfID) = null
+      } else {
+        candidates(sfID) = r.keys.toArray
+        candidateCounts(sfID) = r.values.map(qcs.addCount).toArray
+      }
+    }
+    SpotlightLog.info(this.getClass, "Updated candidates of %d surface forms.", changed.size)
+
+    candMapStore.candidates = candidates
+    candMapStore.candidateCounts = candidateCounts
+    candMapStore.computePriorMargins()
+  }
+
+  private def updateContexts(contextStore: MemoryContextStore, resStore: MemoryResourceStore, tokenStore: MemoryTokenTypeStore,
+                             oldToNew: Option[Array[Int]], tokenCounts: Option[File], resourceName: String => String) {
+    val n = resStore.size
+    val tokens = new Array[Array[Int]](n)
+    val counts = new Array[Array[Short]](n)
+
+    (0 until contextStore.size).foreach { oldID =>
+      val id = oldToNew.map(_(oldID)).getOrElse(oldID)
+      if (id >= 0) {
+        tokens(id) = contextStore.tokens(oldID)
+        counts(id) = contextStore.counts(oldID)
+      }
+    }
+
+    var updated, notFound = 0
+    tokenCounts.foreach { file =>
+      lines(file).foreach { line =>
+        val Array(uri, bag) = line.split('\t')
+        val resID = resStore.idFromURI.get(resourceName(uri))
+        if (resID == null) {
+          notFound += 1
+        } else {
+          val Pair(tokensA, countsA) = TokenOccurrenceSource.tokensParser.parse(bag, 0)
+          val entries = Array.tabulate(tokensA.length)(i => ContextStoreBuilder.entry(tokenStore.getTokenType(tokensA(i)).id, countsA(i)))
+          val row = java.util.Arrays.copyOf(entries, ContextStoreBuilder.sortRow(entries, 0, entries.length))
+
+          tokens(resID) = if (row.isEmpty) null else row.map(ContextStoreBuilder.token)
+          counts(resID) = if (row.isEmpty) null else row.map(e => contextStore.quantizedCountStore.addCount(ContextStoreBuilder.count(e)))
+          updated += 1
+        }
+      }
+    }
+    SpotlightLog.info(this.getClass, "Updated contexts of %d resources.", updated)
+    if (notFound > 0)
+      SpotlightLog.warn(this.getClass, "Contexts of resources not in the model: %d", notFound)
+
+    contextStore.tokens = tokens
+    contextStore.counts = counts
+  }
+
+  private[db] def createTokenizer(baseFolder: File, properties: Properties, tokenStore: MemoryTokenTypeStore): TextTokenizer = {
+    val stemmer = properties.getProperty("stemmer") match {
+      case s: String if (s equals "None") || (s equals "NoneStemmer") => new Stemmer()
+      case s: String => new SnowballStemmer(s)
+    }
+
+    //The same tokenizer as in CreateSpotlightModel:
+    val opennlpFolder = new File(baseFolder, CreateSpotlightModel.OPENNLP_FOLDER)
+    if (opennlpFolder.exists()) {
+      new OpenNLPTokenizer(
+        new TokenizerME(new TokenizerModel(new FileInputStream(new File(opennlpFolder, "token.bin")))),
+        Set[String](),
+        stemmer,
+        new SentenceDetectorME(new SentenceModel(new FileInputStream(new File(opennlpFolder, "sent.bin")))),
+        null,
+        tokenStore
+      )
+    } else {
+      val locale = properties.getProperty("locale").split("_")
+      new LanguageIndependentTokenizer(Set[String](), stemmer, new Locale(locale(0), locale(1)), tokenStore)
+    }
+  }
+
+  /**
+   * Copies all files of the base folder that do not exist in the output folder.
+   */
+  private[db] def copyMissing(from: File, to: File) {
+    from.listFiles().foreach { file =>
+      val target = new File(to, file.getName)
+      if (file.isDirectory) {
+        target.mkdir()
+        copyMissing(file, target)
+      } else if (!target.exists()) {
+        SpotlightLog.info(this.getClass, "Reusing %s.", file.getName)
+        FileUtils.copyFile(file, target)
+      }
+    }
+  }
+
+}
@@ -1,12 +1,12 @@
 package org.dbpedia.spotlight.db
 
 import org.semanticweb.yars.nx.parser.NxParser
-import java.io.InputStream
+import java.io.{File, InputStream}
 import org.dbpedia.spotlight.log.SpotlightLog
 import collection.immutable.ListSet
 import scala.Predef._
 import org.dbpedia.spotlight.exceptions.NotADBpediaResourceException
-import java.net.URLDecoder
+import org.dbpedia.spotlight.db.io.util.NTriplesReader
 import org.dbpedia.spotlight.model.SpotlightConfiguration
 import org.dbpedia.extraction.util.WikiUtil
 import scala.collection.mutable.ListBuffer
@@ -22,66 +22,18 @@ import scala.collection.mutable.ListBuffer
 
 class WikipediaToDBpediaClosure (
 		val namespace: String,
-		val dbpedia_redirectsTriples: InputStream,
-		val dbpedia_disambiguationTriples: InputStream,
-		val wikidata_redirectsTriples: InputStream,
-		val wikidata_disambiguationTriples: InputStream
+		val redirectClosure: RedirectClosure
 		) {
 
-
+	def this(namespace: String, dbpedia_redirectsTriples: InputStream, dbpedia_disambiguationTriples: InputStream, wikidata_redirectsTriples: InputStream, wikidata_disambiguationTriples: InputStream) {
+		this(namespace, WikipediaToDBpediaClosure.buildClosure(namespace, dbpedia_redirectsTriples, dbpedia_disambiguationTriples, wikidata_redirectsTriples, wikidata_disambiguationTriples))
+	}
 
 	def this(dbpedia_redirectsTriples: InputStream, dbpedia_disambiguationTriples: InputStream, wikidata_redirectsTriples: InputStream, wikidata_disambiguationTriples: InputStream) {
 		this(SpotlightConfiguration.getDbpediaResource, dbpedia_redirectsTriples, dbpedia_disambiguationTriples, wikidata_redirectsTriples, wikidata_disambiguationTriples)
 	}
 
-	private def decodeURL(uri: String) = URLDecoder.decode(uri,"utf-8")
-
-			SpotlightLog.info(this.getClass, "Loading DBpedia redirects...")
-			var linkMap = Map[String, String]()
-			val dbpedia_redParser = new NxParser(dbpedia_redirectsTriples)
-			while (dbpedia_redParser.hasNext) {
-				val triple = dbpedia_redParser.next
-						val subj = decodeURL(triple(0).toString.replace(namespace, ""))
-						val obj  = decodeURL(triple(2).toString.replace(namespace, ""))
-						linkMap  = linkMap.updated(subj, obj)
-			}
-
-	SpotlightLog.info(this.getClass, "Done.")
-
-	SpotlightLog.info(this.getClass, "Loading DBpedia disambiguations...")
-	var dbpedia_disambiguationsSet = Set[String]()
-	val dbpedia_disParser = new NxParser(dbpedia_disambiguationTriples)
-	while (dbpedia_disParser.hasNext) {
-		val triple = dbpedia_disParser.next
-				val subj = decodeURL(triple(0).toString.replace(namespace, ""))
-				dbpedia_disambiguationsSet  = dbpedia_disambiguationsSet + subj
-	}
-
-	SpotlightLog.info(this.getClass, "Done.")
-
-
-	SpotlightLog.info(this.getClass, "Loading Wikidata redirects...")
-	val wikidata_redParser = new NxParser(wikidata_redirectsTriples)
-	while (wikidata_redParser.hasNext) {
-		val triple = wikidata_redParser.next
-		  val subj = decodeURL(triple(0).toString)
-		  val obj  = decodeURL(triple(2).toString)
-		  linkMap  = linkMap.updated(subj, obj)
-	}
-
-	SpotlightLog.info(this.getClass, "Done.")
-
-
-	SpotlightLog.info(this.getClass, "Loading Wikidata disambiguations...")
-	var wikidata_disambiguationsSet = Set[String]()
-	val wikidata_disParser = new NxParser(wikidata_disambiguationTriples)
-	while (wikidata_disParser.hasNext) {
-		val triple = wikidata_disParser.next
-		  val subj = decodeURL(triple(0).toString())
-			wikidata_disambiguationsSet  = wikidata_disambiguationsSet + subj
-	}
-
-	SpotlightLog.info(this.getClass, "Done.")
+	private def decodeURL(uri: String) = NTriplesReader.decodeURL(uri)
 
 
 	val WikiURL = """http://([a-z]+)[.]wikipedia[.]org/wiki/(.*)$""".r
@@ -138,18 +90,93 @@ class WikipediaToDBpediaClosure (
 				getEndOfChainURI(decodeURL(url))
 			}
 
-			if (dbpedia_disambiguationsSet.contains(uri) || wikidata_disambiguationsSet.contains(uri) || uri == null)
+			if (uri == null || redirectClosure.isDisambiguation(uri))
 				throw new NotADBpediaResourceException("Resource is a disambiguation page.")
 				else
 					uri
 	}
 
 
-	def getEndOfChainURI(uri: String): String = getEndOfChainURI(uri, Set(uri))
+	def getEndOfChainURI(uri: String): String = redirectClosure.resolve(uri)
+
+}
+
+
+object WikipediaToDBpediaClosure {
+
+	private def decodeURL(uri: String) = NTriplesReader.decodeURL(uri)
 
-			private def getEndOfChainURI(uri: String, alreadyTraversed:Set[String]): String = linkMap.get(uri) match {
-			case Some(s: String) => if (alreadyTraversed.contains(s)) uri else getEndOfChainURI(s, alreadyTraversed + s)
-			case None => uri
+	/**
+	 * Reads the redirects and disambiguations and computes their closure, see [[org.dbpedia.spotlight.db.RedirectClosure]].
+	 */
+	def buildClosure(namespace: String, dbpedia_redirectsTriples: InputStream, dbpedia_disambiguationTriples: InputStream, wikidata_redirectsTriples: InputStream, wikidata_disambiguationTriples: InputStream): RedirectClosure = {
+		val builder = new RedirectClosure.Builder()
+
+		SpotlightLog.info(this.getClass, "Loading DBpedia redirects...")
+		val dbpedia_redParser = new NxParser(dbpedia_redirectsTriples)
+		while (dbpedia_redParser.hasNext) {
+			val triple = dbpedia_redParser.next
+			builder.addRedirect(decodeURL(triple(0).toString.replace(namespace, "")), decodeURL(triple(2).toString.replace(namespace, "")))
+		}
+		SpotlightLog.info(this.getClass, "Done.")
+
+		SpotlightLog.info(this.getClass, "Loading DBpedia disambiguations...")
+		val dbpedia_disParser = new NxParser(dbpedia_disambiguationTriples)
+		while (dbpedia_disParser.hasNext) {
+			val triple = dbpedia_disParser.next
+			builder.addDisambiguation(decodeURL(triple(0).toString.replace(namespace, "")))
+		}
+		SpotlightLog.info(this.getClass, "Done.")
+
+		SpotlightLog.info(this.getClass, "Loading Wikidata redirects...")
+		val wikidata_redParser = new NxParser(wikidata_redirectsTriples)
+		while (wikidata_redParser.hasNext) {
+			val triple = wikidata_redParser.next
+			builder.addRedirect(decodeURL(triple(0).toString), decodeURL(triple(2).toString))
+		}
+		SpotlightLog.info(this.getClass, "Done.")
+
+		SpotlightLog.info(this.getClass, "Loading Wikidata disambiguations...")
+		val wikidata_disParser = new NxParser(wikidata_disambiguationTriples)
+		while (wikidata_disParser.hasNext) {
+			val triple = wikidata_disParser.next
+			builder.addDisambiguation(decodeURL(triple(0).toString))
+		}
+		SpotlightLog.info(this.getClass, "Done.")
+
+		builder.build()
+	}
+
+	/**
+	 * Reads the redirects and disambiguations from N-Triples files with a parallel [[org.dbpedia.spotlight.db.io.util.NTriplesReader]]
+	 * and computes their closure.
+	 */
+	def buildClosure(namespace: String, dbpedia_redirects: File, dbpedia_disambiguations: File, wikidata_redirects: File, wikidata_disambiguations: File): RedirectClosure = {
+		val builder = new RedirectClosure.Builder()
+		val reader = new NTriplesReader()
+
+		SpotlightLog.info(this.getClass, "Loading DBpedia redirects...")
+		reader.read(dbpedia_redirects).foreach { triple =>
+			builder.addRedirect(decodeURL(triple(0).replace(namespace, "")), decodeURL(triple(2).replace(namespace, "")))
+		}
+
+		SpotlightLog.info(this.getClass, "Loading DBpedia disambiguations...")
+		reader.read(dbpedia_disambiguations).foreach { triple =>
+			builder.addDisambiguation(decodeURL(triple(0).replace(namespace, "")))
+		}
+
+		SpotlightLog.info(this.getClass, "Loading Wikidata redirects...")
+		reader.read(wikidata_redirects).foreach { triple =>
+			builder.addRedirect(decodeURL(triple(0)), decodeURL(triple(2)))
+		}
+
+		SpotlightLog.info(this.getClass, "Loading Wikidata disambiguations...")
+		reader.read(wikidata_disambiguations).foreach { triple =>
+			builder.addDisambiguation(decodeURL(triple(0)))
+		}
+		SpotlightLog.info(this.getClass, "Done.")
+
+		builder.build()
 	}
 
 }
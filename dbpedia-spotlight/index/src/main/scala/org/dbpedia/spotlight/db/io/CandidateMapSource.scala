@@ -7,7 +7,7 @@ import java.io.{File, FileInputStream, InputStream}
 import org.dbpedia.spotlight.db.model.{SurfaceFormStore, ResourceStore}
 import java.lang.String
 import collection.mutable.HashSet
-import org.dbpedia.spotlight.db.WikipediaToDBpediaClosure
+import org.dbpedia.spotlight.db.{CandidateMapCSR, ExternalCandidateMapBuilder, WikipediaToDBpediaClosure}
 import scala.Int
 import org.dbpedia.spotlight.log.SpotlightLog
 import org.dbpedia.spotlight.exceptions._
@@ -24,14 +24,16 @@ import org.dbpedia.extraction.util.WikiUtil
 
 object CandidateMapSource {
 
-  def fromPigInputStreams(
+  /**
+   * Reads the pair counts and passes (surface form ID, resource ID, count) for each valid line to add.
+   * Counts of the same pair are not summed.
+   */
+  def foreachPigPairCount(
     pairCounts: InputStream,
     wikipediaToDBpediaClosure: WikipediaToDBpediaClosure,
     resStore: ResourceStore,
     sfStore: SurfaceFormStore
-  ): java.util.Map[Pair[Int, Int], Int] = {
-
-    val candidateMap = new java.util.HashMap[Pair[Int, Int], Int]()
+  )(add: (Int, Int, Int) => Unit) {
 
     var uriNotFound = 0
     var sfNotFound  = 0
@@ -44,13 +46,7 @@ object CandidateMapSource {
           val Array(sf, wikiurl, count) = line.trim().split('\t')
           val uri = wikipediaToDBpediaClosure.wikipediaToDBpediaURI(DBpediaResourceSource.normalizePigURI(wikiurl))
 
-          val c = Pair(sfStore.getSurfaceForm(sf).id, resStore.getResourceByName(uri).id)
-          val initialCount = candidateMap.get(c) match {
-            case c: Int => c
-            case _ => 0
-          }
-
-          candidateMap.put(c, initialCount + count.toInt)
+          add(sfStore.getSurfaceForm(sf).id, resStore.getResourceByName(uri).id, count.toInt)
         } catch {
           case e: NotADBpediaResourceException     => uriIgnored += 1
           case e: ArrayIndexOutOfBoundsException   => SpotlightLog.warn(this.getClass, "WARNING: Could not read line.")
@@ -65,6 +61,27 @@ object CandidateMapSource {
     SpotlightLog.warn(this.getClass, "DBpedia resource not found: %d", uriNotFound)
     SpotlightLog.warn(this.getClass, "Invalid DBpedia resources (e.g. disambiguation page): %d", uriIgnored)
     SpotlightLog.warn(this.getClass, "SF not found: %d", sfNotFound)
+  }
+
+  def fromPigInputStreams(
+    pairCounts: InputStream,
+    wikipediaToDBpediaClosure: WikipediaToDBpediaClosure,
+    resStore: ResourceStore,
+    sfStore: SurfaceFormStore
+  ): java.util.Map[Pair[Int, Int], Int] = {
+
+    val candidateMap = new java.util.HashMap[Pair[Int, Int], Int]()
+
+    foreachPigPairCount(pairCounts, wikipediaToDBpediaClosure, resStore, sfStore) {
+      (sfID: Int, resID: Int, count: Int) =>
+        val c = Pair(sfID, resID)
+        val initialCount = candidateMap.get(c) match {
+          case c: Int => c
+          case _ => 0
+        }
+
+        candidateMap.put(c, initialCount + count)
+    }
 
     candidateMap
   }
@@ -76,6 +93,30 @@ object CandidateMapSource {
     sfStore: SurfaceFormStore
   ): java.util.Map[Pair[Int, Int], Int] = fromPigInputStreams(new FileInputStream(pairCounts), wikipediaToDBPediaClosure, resStore, sfStore)
 
+  /**
+   * Reads the pair counts into a CSR candidate map without holding all pairs in memory,
+   * see [[org.dbpedia.spotlight.db.ExternalCandidateMapBuilder]].
+   *
+   * @param numberOfSurfaceForms number of surface forms in sfStore
+   * @param tmpDir folder for the spill files of the external sort
+   */
+  def fromPigFilesExternal(
+    pairCounts: File,
+    wikipediaToDBPediaClosure: WikipediaToDBpediaClosure,
+    resStore: ResourceStore,
+    sfStore: SurfaceFormStore,
+    numberOfSurfaceForms: Int,
+    tmpDir: File
+  ): CandidateMapCSR = {
+    val builder = new ExternalCandidateMapBuilder(tmpDir)
+    try {
+      foreachPigPairCount(new FileInputStream(pairCounts), wikipediaToDBPediaClosure, resStore, sfStore)(builder.add)
+      builder.build(numberOfSurfaceForms)
+    } finally {
+      builder.close()
+    }
+  }
+
 
   def fromTSVInputStream(
     candmap: InputStream,
@@ -13,6 +13,7 @@ import scala.Array
 import org.dbpedia.spotlight.model._
 import org.dbpedia.spotlight.exceptions.NotADBpediaResourceException
 import org.semanticweb.yars.nx.parser.NxParser
+import org.dbpedia.spotlight.db.io.util.NTriplesReader
 
 import org.dbpedia.extraction.util.WikiUtil
 
@@ -234,7 +235,15 @@ object DBpediaResourceSource {
 			dbpedia_instanceTypes: File,
 			wikidata_instanceTypes: File,
 			namespace: String
-			): java.util.Map[DBpediaResource, Int] = fromPigInputStreams(
+			): java.util.Map[DBpediaResource, Int] = {
+
+		if (dbpedia_instanceTypes != null && dbpedia_instanceTypes.getName.endsWith("nt") && wikidata_instanceTypes != null && wikidata_instanceTypes.getName.endsWith("nt")) {
+			//Read the N-Triples type files in parallel:
+			val resourceMap = fromPigInputStreams(wikipediaToDBpediaClosure, new FileInputStream(counts), null, null, namespace)
+			addTypesFromNTriples(resourceMap, dbpedia_instanceTypes, wikidata_instanceTypes, namespace)
+			resourceMap
+		} else {
+			fromPigInputStreams(
 					wikipediaToDBpediaClosure,
 					new FileInputStream(counts),
 					if(dbpedia_instanceTypes == null)
@@ -253,6 +262,45 @@ object DBpediaResourceSource {
 											),
 									namespace
 					)
+		}
+	}
+
+
+	/**
+	 * Adds the types from the DBpedia and Wikidata instance type N-Triples files to the resources,
+	 * reading each file with a parallel [[org.dbpedia.spotlight.db.io.util.NTriplesReader]].
+	 */
+	def addTypesFromNTriples(
+			resourceMap: java.util.Map[DBpediaResource, Int],
+			dbpedia_instanceTypes: File,
+			wikidata_instanceTypes: File,
+			namespace: String
+			) {
+		SpotlightLog.info(this.getClass, "Reading types (nt format)...")
+
+		val resourceByURI = new java.util.HashMap[String, DBpediaResource](resourceMap.size)
+		resourceMap.keySet.asScala.foreach(res => resourceByURI.put(res.uri, res))
+
+		val reader = new NTriplesReader()
+		val uriNotFound = HashSet[String]()
+
+		List((dbpedia_instanceTypes, namespace), (wikidata_instanceTypes, "")).foreach { case (file, prefix) =>
+			reader.read(file).foreach { triple =>
+				val subj = if (prefix.isEmpty) triple(0) else triple(0).replace(prefix, "")
+				val obj = triple(2)
+				if (!subj.contains("__") && !obj.endsWith("owl#Thing")) {
+					val res = resourceByURI.get(new DBpediaResource(subj).uri)
+					if (res != null)
+						res.types ::= OntologyType.fromURI(obj)
+					else
+						uriNotFound += subj
+				}
+			}
+		}
+
+		SpotlightLog.info(this.getClass, "URI for %d type definitions not found!".format(uriNotFound.size) )
+		SpotlightLog.info(this.getClass, "Done.")
+	}
 
 
 			def fromTSVFiles(
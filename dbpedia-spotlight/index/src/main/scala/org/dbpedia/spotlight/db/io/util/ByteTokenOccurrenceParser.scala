@@ -0,0 +1,150 @@
+package org.dbpedia.spotlight.db.io.util
+
+import java.nio.ByteBuffer
+
+import it.unimi.dsi.fastutil.ints.IntArrayList
+
+/**
+ * Parses the token counts of a resource directly from the bytes of the tokens file, without creating
+ * Strings for the tokens. Tokens are resolved to their IDs with a [[org.dbpedia.spotlight.db.io.util.TokenDictionary]].
+ *
+ * Two formats are supported:
+ *
+ *  - Pig bags: {(token,count),(token,count),...}
+ *  - JSON: [["token",count],["token",count],...]
+ *
+ * As in [[org.dbpedia.spotlight.db.io.util.PigTokenOccurrenceParser]], a Pig token ends at the last comma
+ * before the closing parenthesis. JSON tokens with escapes are decoded and looked up in the token store.
+ *
+ * @param json true for the JSON format, false for Pig bags
+ * @param dictionary dictionary of the token store
+ * @param lookup lookup of decoded tokens, used for JSON tokens with escapes
+ */
+class ByteTokenOccurrenceParser(json: Boolean, dictionary: TokenDictionary, lookup: String => Int) {
+
+  /**
+   * Parses the token counts in the bytes [from, to) of the buffer and appends the IDs and counts
+   * of all tokens with at least minimumCount occurrences to tokens and counts.
+   */
+  def parse(buffer: ByteBuffer, from: Int, to: Int, minimumCount: Int, tokens: IntArrayList, counts: IntArrayList) {
+    if (json) parseJSON(buffer, from, to, minimumCount, tokens, counts)
+    else parsePig(buffer, from, to, minimumCount, tokens, counts)
+  }
+
+  private def parsePig(buffer: ByteBuffer, from: Int, to: Int, minimumCount: Int, tokens: IntArrayList, counts: IntArrayList) {
+    var i = from
+    while (i < to) {
+      if (buffer.get(i) == '(') {
+        val start = i + 1
+        var comma = -1
+        i = start
+        while (i < to && buffer.get(i) != ')') {
+          if (buffer.get(i) == ',')
+            comma = i
+          i += 1
+        }
+        if (comma < 0 || i == to)
+          throw new IllegalArgumentException("Invalid token count at byte %d.".format(start))
+
+        val count = ByteTokenOccurrenceParser.parseInt(buffer, comma + 1, i)
+        if (count >= minimumCount) {
+          tokens.add(dictionary.getID(buffer, start, comma))
+          counts.add(count)
+        }
+      }
+      i += 1
+    }
+  }
+
+  private def parseJSON(buffer: ByteBuffer, from: Int, to: Int, minimumCount: Int, tokens: IntArrayList, counts: IntArrayList) {
+    var i = from
+    //Skip the opening bracket of the outer array:
+    while (i < to && buffer.get(i) != '[') i += 1
+    i += 1
+
+    while (i < to) {
+      while (i < to && buffer.get(i) != '[' && buffer.get(i) != ']') i += 1
+      if (i == to || buffer.get(i) == ']')
+        return
+
+      while (i < to && buffer.get(i) != '"') i += 1
+      val start = i + 1
+      var escaped = false
+      i = start
+      while (i < to && buffer.get(i) != '"') {
+        if (buffer.get(i) == '\\') {
+          escaped = true
+          i += 1
+        }
+        i += 1
+      }
+      val end = i
+
+      i += 1
+      while (i < to && (buffer.get(i) < '0' || buffer.get(i) > '9')) i += 1
+      val countStart = i
+      while (i < to && buffer.get(i) >= '0' && buffer.get(i) <= '9') i += 1
+      if (end >= to || countStart == i)
+        throw new IllegalArgumentException("Invalid token count at byte %d.".format(start))
+
+      val count = ByteTokenOccurrenceParser.parseInt(buffer, countStart, i)
+      if (count >= minimumCount) {
+        tokens.add(if (escaped) lookup(ByteTokenOccurrenceParser.unescapeJSON(buffer, start, end)) else dictionary.getID(buffer, start, end))
+        counts.add(count)
+      }
+
+      //Skip the closing bracket of the pair:
+      while (i < to && buffer.get(i) != ']') i += 1
+      i += 1
+    }
+  }
+
+}
+
+object ByteTokenOccurrenceParser {
+
+  def parseInt(buffer: ByteBuffer, from: Int, to: Int): Int = {
+    var i = from
+    while (i < to && buffer.get(i) == ' ') i += 1
+    if (i == to)
+      throw new NumberFormatException("Missing count at byte %d.".format(from))
+
+    var value = 0
+    while (i < to) {
+      val b = buffer.get(i)
+      if (b < '0' || b > '9')
+        throw new NumberFormatException("Invalid count at byte %d.".format(i))
+      value = 10 * value + (b - '0')
+      i += 1
+    }
+    value
+  }
+
+  def unescapeJSON(buffer: ByteBuffer, from: Int, to: Int): String = {
+    val raw = new Array[Byte](to - from)
+    (0 until raw.length).foreach(i => raw(i) = buffer.get(from + i))
+    val s = new String(raw, java.nio.charset.StandardCharsets.UTF_8)
+
+    val sb = new StringBuilder(s.length)
+    var i = 0
+    while (i < s.length) {
+      if (s.charAt(i) == '\\' && i + 1 < s.length) {
+        s.charAt(i + 1) match {
+          case 'n' => sb.append('\n')
+          case 't' => sb.append('\t')
+          case 'r' => sb.append('\r')
+          case 'b' => sb.append('\b')
+          case 'f' => sb.append('\f')
+          case 'u' => sb.append(Integer.parseInt(s.substring(i + 2, i + 6), 16).toChar); i += 4
+          case c => sb.append(c)
+        }
+        i += 2
+      } else {
+        sb.append(s.charAt(i))
+        i += 1
+      }
+    }
+    sb.toString()
+  }
+
+}
@@ -0,0 +1,129 @@
+package org.dbpedia.spotlight.db.io.util
+
+import java.io.{File, FileInputStream, IOException, RandomAccessFile}
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.charset.StandardCharsets
+
+/**
+ * Splits line-based files into chunks that can be read independently, e.g. by parallel parsers.
+ *
+ * A chunk is a byte range of the file. The lines of a chunk are all lines that start in its range,
+ * so that every line of the file belongs to exactly one chunk. Lines are read either as Strings or
+ * as byte ranges of a memory-mapped buffer.
+ */
+object ChunkedFileReader {
+
+  /**
+   * Splits the file into byte ranges [start, end) of about chunkSize bytes.
+   */
+  def chunks(file: File, chunkSize: Int): IndexedSeq[(Long, Long)] = {
+    val length = file.length()
+    (0L until length by chunkSize.toLong).map(start => (start, math.min(start + chunkSize, length)))
+  }
+
+  /**
+   * Passes each line that starts in the byte range [start, end) of the file to f, without the line break.
+   * The file is read in blocks, lines are decoded as UTF-8.
+   */
+  def foreachLine(file: File, start: Long, end: Long)(f: String => Unit) {
+    val channel = new FileInputStream(file).getChannel
+    try {
+      //The block holds the bytes from offset on, the current line starts at from:
+      var block = new Array[Byte](1 << 16)
+      var offset = math.max(start - 1, 0L)
+      var length = 0
+      var from = 0
+      var scanned = 0
+      var eof = false
+      //Skip the line that started in the previous chunk:
+      var skip = start > 0
+      channel.position(offset)
+
+      while (offset + from < end || skip) {
+        var i = scanned
+        while (i < length && block(i) != '\n')
+          i += 1
+
+        if (i < length) {
+          if (skip)
+            skip = false
+          else
+            f(new String(block, from, i - from, StandardCharsets.UTF_8))
+          from = i + 1
+          scanned = from
+        } else if (eof) {
+          if (from < length && !skip)
+            f(new String(block, from, length - from, StandardCharsets.UTF_8))
+          return
+        } else {
+          //Keep the incomplete line and read the next block:
+          System.arraycopy(block, from, block, 0, length - from)
+          offset += from
+          length -= from
+          scanned = length
+          from = 0
+          if (length == block.length)
+            block = java.util.Arrays.copyOf(block, 2 * block.length)
+          val n = channel.read(ByteBuffer.wrap(block, length, block.length - length))
+          if (n < 0)
+            eof = true
+          else
+            length += n
+        }
+      }
+    } finally {
+      channel.close()
+    }
+  }
+
+  /** Bytes mapped after the end of a chunk, enough for the end of its last line in most files. */
+  private val MAPPED_LINE_SLACK = 1 << 16
+
+  /**
+   * Passes each line that starts in the byte range [start, end) of the file to f as the range
+   * [from, to) of a memory-mapped buffer, without the line break. Lines must be shorter than 2 GB.
+   *
+   * Only the range of the chunk and the end of its last line are mapped. A line that continues after the
+   * mapped range is mapped again from its start, so the buffer passed to f may change from line to line.
+   */
+  def foreachMappedLine(file: File, start: Long, end: Long)(f: (ByteBuffer, Int, Int) => Unit) {
+    val raf = new RandomAccessFile(file, "r")
+    try {
+      val channel = raf.getChannel
+      val length = channel.size()
+
+      var mapStart = math.max(start - 1, 0L)
+      var mapLength = math.min(math.min(length, end + MAPPED_LINE_SLACK) - mapStart, Int.MaxValue.toLong)
+      var buffer = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapLength)
+
+      var position = 0
+      //Skip the line that started in the previous chunk:
+      var skip = start > 0
+      while (skip || mapStart + position < end) {
+        var lineEnd = position
+        while (lineEnd < buffer.limit() && buffer.get(lineEnd) != '\n')
+          lineEnd += 1
+
+        if (lineEnd == buffer.limit() && mapStart + lineEnd < length) {
+          //The line continues after the mapped range, map it again from its start:
+          if (position == 0 && mapLength == Int.MaxValue)
+            throw new IOException("Line at byte %d of %s is longer than 2 GB.".format(mapStart, file))
+          mapStart += position
+          mapLength = math.min(math.min(length - mapStart, 2 * mapLength), Int.MaxValue.toLong)
+          buffer = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapLength)
+          position = 0
+        } else {
+          if (skip)
+            skip = false
+          else
+            f(buffer, position, lineEnd)
+          position = lineEnd + 1
+        }
+      }
+    } finally {
+      raf.close()
+    }
+  }
+
+}
@@ -1,7 +1,10 @@
 package org.dbpedia.spotlight.db.io.util
 
+import it.unimi.dsi.fastutil.ints.IntArrayList
 import org.codehaus.jackson.{JsonToken, JsonFactory}
 
+import scala.collection.mutable.ArrayBuffer
+
 /**
  * TokenOccurrenceParser based on the Jackson Streaming API.
  *
@@ -12,8 +15,8 @@ class JacksonTokenOccurrenceParser extends TokenOccurrenceParser {
   val jFactory = new JsonFactory()
 
   def parse(tokens: String, minimumCount: Int): Pair[Array[String], Array[Int]] = {
-    var tokensA = Array[String]()
-    var countsA = Array[Int]()
+    val tokensA = ArrayBuffer[String]()
+    val countsA = new IntArrayList()
 
     val jParser = jFactory.createJsonParser(tokens)
 
@@ -28,14 +31,14 @@ class JacksonTokenOccurrenceParser extends TokenOccurrenceParser {
       val count = jParser.getIntValue
 
       if (count >= minimumCount) {
-        countsA :+= count
-        tokensA :+= token
+        countsA.add(count)
+        tokensA += token
       }
 
       jParser.nextToken()
     }
 
-    Pair(tokensA, countsA)
+    Pair(tokensA.toArray, countsA.toIntArray)
   }
 
 }
\ No newline at end of file
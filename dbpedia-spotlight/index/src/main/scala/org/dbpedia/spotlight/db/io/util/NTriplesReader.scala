@@ -0,0 +1,194 @@
+package org.dbpedia.spotlight.db.io.util
+
+import java.io.File
+import java.net.URLDecoder
+import java.util.concurrent._
+import java.util.concurrent.atomic.AtomicLong
+
+import org.dbpedia.spotlight.log.SpotlightLog
+
+import scala.collection.mutable.ArrayBuffer
+
+/**
+ * Reads N-Triples files in parallel.
+ *
+ * The file is split into chunks of about chunkSize bytes that are aligned to line breaks. Worker
+ * threads parse the chunks, and the triples are returned chunk by chunk in file order, so the result
+ * is the same as reading the file serially. Only a limited number of chunks is parsed ahead of the
+ * consumer.
+ *
+ * Each triple is an array of subject, predicate and object. IRIs and blank nodes are returned without
+ * brackets, literals as their lexical form, without language tag or datatype. Invalid lines are logged
+ * and skipped.
+ *
+ * The parser threads are shared by all files read with the reader and stop when they are idle.
+ *
+ * @param threads number of parser threads
+ * @param chunkSize approximate size of a chunk in bytes
+ */
+class NTriplesReader(threads: Int = Runtime.getRuntime.availableProcessors(), chunkSize: Int = 8 * 1024 * 1024) {
+
+  private lazy val executor = {
+    val executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue[Runnable](), new ThreadFactory {
+      def newThread(r: Runnable): Thread = {
+        val t = new Thread(r, "ntriples-reader")
+        t.setDaemon(true)
+        t
+      }
+    })
+    executor.allowCoreThreadTimeOut(true)
+    executor
+  }
+
+  /**
+   * Iterates over all triples of the file, in file order.
+   */
+  def read(file: File): Iterator[Array[String]] = {
+    val chunks = ChunkedFileReader.chunks(file, chunkSize)
+    SpotlightLog.info(this.getClass, "Reading %s in %d chunks with %d threads...", file.getName, chunks.size, threads)
+
+    new ChunkIterator(file, chunks).flatMap(_.iterator)
+  }
+
+  private class ChunkIterator(file: File, chunks: Seq[(Long, Long)]) extends Iterator[ArrayBuffer[Array[String]]] {
+
+    private val invalidLines = new AtomicLong()
+
+    private val pending = new java.util.ArrayDeque[Future[ArrayBuffer[Array[String]]]]()
+    private var submitted = 0
+
+    private def fill() {
+      while (submitted < chunks.size && pending.size < 2 * threads) {
+        val (start, end) = chunks(submitted)
+        pending.add(executor.submit(new Callable[ArrayBuffer[Array[String]]] {
+          def call() = NTriplesReader.parseChunk(file, start, end, invalidLines)
+        }))
+        submitted += 1
+      }
+      if (pending.isEmpty && invalidLines.get > 0)
+        SpotlightLog.warn(this.getClass, "Skipped %d invalid lines in %s.", invalidLines.get, file.getName)
+    }
+
+    fill()
+
+    def hasNext: Boolean = !pending.isEmpty
+
+    def next(): ArrayBuffer[Array[String]] = {
+      val triples = pending.poll().get()
+      fill()
+      triples
+    }
+  }
+
+}
+
+object NTriplesReader {
+
+  /**
+   * Decodes a URL-encoded name like URLDecoder, but returns names without escapes unchanged without copying.
+   */
+  def decodeURL(uri: String): String =
+    if (uri.indexOf('%') < 0 && uri.indexOf('+') < 0) uri else URLDecoder.decode(uri, "utf-8")
+
+  /**
+   * Parses the lines that start in the byte range [start, end) of the file. Invalid lines are logged,
+   * skipped and counted in invalidLines.
+   */
+  def parseChunk(file: File, start: Long, end: Long, invalidLines: AtomicLong = new AtomicLong()): ArrayBuffer[Array[String]] = {
+    val triples = ArrayBuffer[Array[String]]()
+    ChunkedFileReader.foreachLine(file, start, end) { line =>
+      try {
+        val triple = parseLine(line)
+        if (triple != null)
+          triples += triple
+      } catch {
+        case e: IllegalArgumentException =>
+          SpotlightLog.warn(this.getClass, "Skipping invalid line in %s: %s", file.getName, line)
+          invalidLines.incrementAndGet()
+      }
+    }
+    triples
+  }
+
+  /**
+   * Parses a line of N-Triples, null for empty lines and comments.
+   *
+   * @throws IllegalArgumentException if the line is not a valid triple
+   */
+  def parseLine(line: String): Array[String] = {
+    val triple = new Array[String](3)
+    var i = skipWhitespace(line, 0)
+    if (i >= line.length || line.charAt(i) == '#')
+      return null
+
+    var term = 0
+    while (term < 3) {
+      i = skipWhitespace(line, i)
+      if (i >= line.length)
+        throw new IllegalArgumentException("Invalid N-Triples line: " + line)
+
+      line.charAt(i) match {
+        case '<' =>
+          val close = line.indexOf('>', i + 1)
+          if (close < 0)
+            throw new IllegalArgumentException("Invalid N-Triples line: " + line)
+          triple(term) = line.substring(i + 1, close)
+          i = close + 1
+        case '"' =>
+          val sb = new StringBuilder()
+          i += 1
+          while (i < line.length && line.charAt(i) != '"') {
+            if (line.charAt(i) == '\\' && i + 1 < line.length) {
+              line.charAt(i + 1) match {
+                case 't' => sb.append('\t')
+                case 'n' => sb.append('\n')
+                case 'r' => sb.append('\r')
+                case 'u' => sb.append(parseHex(line, i + 2, 4).toChar); i += 4
+                case 'U' => sb.appendAll(Character.toChars(parseHex(line, i + 2, 8))); i += 8
+                case c => sb.append(c)
+              }
+              i += 2
+            } else {
+              sb.append(line.charAt(i))
+              i += 1
+            }
+          }
+          if (i >= line.length)
+            throw new IllegalArgumentException("Invalid N-Triples line: " + line)
+          i += 1
+          //Skip the language tag or datatype:
+          while (i < line.length && !Character.isWhitespace(line.charAt(i)) && line.charAt(i) != '.')
+            i = if (line.charAt(i) == '<' && line.indexOf('>', i) > 0) line.indexOf('>', i) + 1 else i + 1
+          triple(term) = sb.toString()
+        case _ =>
+          val stop = nextWhitespace(line, i)
+          triple(term) = line.substring(i, stop)
+          i = stop
+      }
+      term += 1
+    }
+    triple
+  }
+
+  /** Parses the hex digits of a unicode escape. */
+  private def parseHex(line: String, from: Int, digits: Int): Int = {
+    if (from + digits > line.length)
+      throw new IllegalArgumentException("Invalid N-Triples line: " + line)
+    Integer.parseInt(line.substring(from, from + digits), 16)
+  }
+
+  private def skipWhitespace(line: String, from: Int): Int = {
+    var i = from
+    while (i < line.length && Character.isWhitespace(line.charAt(i)))
+      i += 1
+    i
+  }
+
+  private def nextWhitespace(line: String, from: Int): Int = {
+    var i = from
+    while (i < line.length && !Character.isWhitespace(line.charAt(i)))
+      i += 1
+    i
+  }
+
+}
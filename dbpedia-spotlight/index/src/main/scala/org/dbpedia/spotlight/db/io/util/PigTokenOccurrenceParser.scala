@@ -1,22 +1,26 @@
 package org.dbpedia.spotlight.db.io.util
 
+import it.unimi.dsi.fastutil.ints.IntArrayList
+
+import scala.collection.mutable.ArrayBuffer
+
 class PigTokenOccurrenceParser extends TokenOccurrenceParser {
 
   def parse(tokens: String, minimumCount: Int): Pair[Array[String], Array[Int]] = {
-    var tokensA = Array[String]()
-    var countsA = Array[Int]()
+    val tokensA = ArrayBuffer[String]()
+    val countsA = new IntArrayList()
 
-    tokens.tail.init.split("[()]").filter(pair => !pair.equals(",") && !pair.equals("")).map {
+    tokens.tail.init.split("[()]").filter(pair => !pair.equals(",") && !pair.equals("")).foreach {
       pair: String => {
         val i = pair.lastIndexOf(',')
         val count = pair.drop(i+1).toInt
 
         if (count >= minimumCount) {
-          tokensA :+= pair.take(i)
-          countsA :+= count
+          tokensA += pair.take(i)
+          countsA.add(count)
         }
       }
     }
-    Pair(tokensA, countsA)
+    Pair(tokensA.toArray, countsA.toIntArray)
   }
 }
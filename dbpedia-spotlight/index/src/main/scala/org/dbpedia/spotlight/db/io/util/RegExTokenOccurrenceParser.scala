@@ -1,21 +1,25 @@
 package org.dbpedia.spotlight.db.io.util
 
+import it.unimi.dsi.fastutil.ints.IntArrayList
+
+import scala.collection.mutable.ArrayBuffer
+
 class RegexTokenOccurrenceParser extends TokenOccurrenceParser {
 
   def parse(tokens: String, minimumCount: Int): Pair[Array[String], Array[Int]] = {
-    var tokensA = Array[String]()
-    var countsA = Array[Int]()
+    val tokensA = ArrayBuffer[String]()
+    val countsA = new IntArrayList()
 
     tokens.tail.init.split("(\\[\"|\",|\\])").filter(pair => !pair.equals(",") && !pair.equals("")).grouped(2).foreach {
       case Array(a, b) => {
         val count = b.toInt
         if (count > minimumCount) {
-          tokensA :+= a
-          countsA :+= count
+          tokensA += a
+          countsA.add(count)
         }
       }
     }
-    Pair(tokensA, countsA)
+    Pair(tokensA.toArray, countsA.toIntArray)
   }
 
 }
\ No newline at end of file
@@ -0,0 +1,92 @@
+package org.dbpedia.spotlight.db.io.util
+
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+
+import org.dbpedia.spotlight.db.model.TokenTypeStore
+import org.dbpedia.spotlight.model.TokenType
+
+/**
+ * Maps the UTF-8 bytes of a token to its ID in a token store, so that tokens read from a file can be
+ * looked up without decoding them into Strings.
+ *
+ * The bytes of all tokens are stored in one array, and the IDs in an open addressing hash table.
+ */
+class TokenDictionary(tokenTypeStore: TokenTypeStore) {
+
+  private val n = tokenTypeStore.getVocabularySize
+
+  private val offsets = new Array[Int](n + 1)
+  private val bytes = {
+    val encoded = (0 until n).map(id => tokenTypeStore.getTokenTypeByID(id).tokenType.getBytes(StandardCharsets.UTF_8))
+    (0 until n).foreach(id => offsets(id + 1) = offsets(id) + encoded(id).length)
+    val all = new Array[Byte](offsets(n))
+    (0 until n).foreach(id => System.arraycopy(encoded(id), 0, all, offsets(id), encoded(id).length))
+    all
+  }
+
+  private val mask = Integer.highestOneBit(math.max(2 * n, 2) * 2 - 1) - 1
+  private val table = Array.fill(mask + 1)(-1)
+
+  (0 until n).foreach { id =>
+    var slot = TokenDictionary.hash(bytes, offsets(id), offsets(id + 1)) & mask
+    while (table(slot) >= 0)
+      slot = (slot + 1) & mask
+    table(slot) = id
+  }
+
+  /**
+   * Gets the ID of the token in the bytes [from, to) of the buffer, the ID of
+   * [[org.dbpedia.spotlight.model.TokenType.UNKNOWN]] if it is not in the store.
+   */
+  def getID(buffer: ByteBuffer, from: Int, to: Int): Int = {
+    var h = 0
+    var i = from
+    while (i < to) {
+      h = 31 * h + buffer.get(i)
+      i += 1
+    }
+
+    var slot = TokenDictionary.mix(h) & mask
+    while (table(slot) >= 0) {
+      val id = table(slot)
+      if (equalBytes(id, buffer, from, to))
+        return id
+      slot = (slot + 1) & mask
+    }
+    TokenType.UNKNOWN.id
+  }
+
+  private def equalBytes(id: Int, buffer: ByteBuffer, from: Int, to: Int): Boolean = {
+    val start = offsets(id)
+    if (offsets(id + 1) - start != to - from)
+      return false
+    var i = 0
+    while (i < to - from) {
+      if (bytes(start + i) != buffer.get(from + i))
+        return false
+      i += 1
+    }
+    true
+  }
+
+}
+
+object TokenDictionary {
+
+  private def hash(bytes: Array[Byte], from: Int, to: Int): Int = {
+    var h = 0
+    var i = from
+    while (i < to) {
+      h = 31 * h + bytes(i)
+      i += 1
+    }
+    mix(h)
+  }
+
+  private def mix(h: Int): Int = {
+    val x = h * 0x9E3779B9
+    x ^ (x >>> 16)
+  }
+
+}
@@ -0,0 +1,85 @@
+package org.dbpedia.spotlight.db.io.util
+
+import java.io.{File, FileInputStream}
+import java.nio.ByteBuffer
+
+import it.unimi.dsi.fastutil.ints.IntArrayList
+import org.dbpedia.spotlight.db.memory.MemoryStore
+import org.dbpedia.spotlight.db.model.TokenTypeStore
+
+/**
+ * Compares the token occurrence parsers on a tokenCounts file. Each parser reads the whole file chunk by chunk
+ * on a single thread, as a worker of the [[org.dbpedia.spotlight.db.ContextStoreBuilder]] does, and resolves the
+ * tokens to their IDs in the token store. The number of tokens found in the store is printed for each parser and
+ * should be the same for all of them.
+ *
+ * Usage: TokenOccurrenceParserBenchmark tokenCounts tokens.mem [pig|json] [rounds]
+ */
+object TokenOccurrenceParserBenchmark {
+
+  val chunkSize = 64 * 1024 * 1024
+
+  def main(args: Array[String]) {
+    val tokenFile = new File(args(0))
+    val tokenStore = MemoryStore.loadTokenTypeStore(new FileInputStream(new File(args(1))))
+    val json = args.length > 2 && args(2).equals("json")
+    val rounds = if (args.length > 3) args(3).toInt else 3
+
+    val stringParsers =
+      if (json) List("jackson" -> new JacksonTokenOccurrenceParser(), "regex" -> new RegexTokenOccurrenceParser())
+      else List("pig" -> new PigTokenOccurrenceParser())
+    val byteParser = new ByteTokenOccurrenceParser(json, new TokenDictionary(tokenStore), tokenStore.getTokenType(_).id)
+
+    (1 to rounds).foreach { round =>
+      stringParsers.foreach { case (name, parser) =>
+        report(round, name, tokenFile, () => runStringParser(tokenFile, parser, tokenStore))
+      }
+      report(round, "bytes", tokenFile, () => runByteParser(tokenFile, byteParser))
+    }
+  }
+
+  private def report(round: Int, name: String, tokenFile: File, run: () => Long) {
+    val start = System.nanoTime()
+    val tokens = run()
+    val seconds = (System.nanoTime() - start) / 1e9
+    println("round %d %-8s %12d known tokens %8.2f s %8.1f MB/s".format(round, name, tokens, seconds, tokenFile.length() / 1e6 / seconds))
+  }
+
+  private def runStringParser(tokenFile: File, parser: TokenOccurrenceParser, tokenStore: TokenTypeStore): Long = {
+    var tokens = 0L
+    ChunkedFileReader.chunks(tokenFile, chunkSize).foreach { case (start, end) =>
+      ChunkedFileReader.foreachLine(tokenFile, start, end) { line: String =>
+        if (!line.equals("")) {
+          val Array(_, bag) = line.trim().split('\t')
+          val Pair(tokensA, _) = parser.parse(bag, 0)
+          tokensA.foreach(token => if (tokenStore.getTokenType(token).id >= 0) tokens += 1)
+        }
+      }
+    }
+    tokens
+  }
+
+  private def runByteParser(tokenFile: File, parser: ByteTokenOccurrenceParser): Long = {
+    var tokens = 0L
+    val ids = new IntArrayList()
+    val counts = new IntArrayList()
+    ChunkedFileReader.chunks(tokenFile, chunkSize).foreach { case (start, end) =>
+      ChunkedFileReader.foreachMappedLine(tokenFile, start, end) { (buffer: ByteBuffer, from: Int, to: Int) =>
+        var tab = from
+        while (tab < to && buffer.get(tab) != '\t') tab += 1
+        if (tab < to) {
+          ids.clear()
+          counts.clear()
+          parser.parse(buffer, tab + 1, to, 0, ids, counts)
+          var i = 0
+          while (i < ids.size) {
+            if (ids.getInt(i) >= 0) tokens += 1
+            i += 1
+          }
+        }
+      }
+    }
+    tokens
+  }
+
+}
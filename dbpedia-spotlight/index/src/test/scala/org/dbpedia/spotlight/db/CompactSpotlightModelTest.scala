@@ -0,0 +1,102 @@
+package org.dbpedia.spotlight.db
+
+import java.io.{File, FileInputStream}
+
+import org.dbpedia.spotlight.db.memory.{MemoryStore, MemoryVectorStore}
+import org.dbpedia.spotlight.model.DBpediaResource
+import org.junit.Assert._
+import org.junit.Test
+
+import scala.collection.JavaConversions._
+
+class CompactSpotlightModelTest {
+
+  val surfaceForms = List(("Berlin", 90, 100), ("Band", 3, 30), ("Paris", 10, 20), ("BERLIN", 6, 8), ("Tegel", 5, 10))
+
+  val resources = List(("Berlin", 60), ("Berlin_(band)", 33), ("Paris_Hilton", 1), ("Paris", 9), ("Tegel", 5))
+
+  //With candidate_min_count=5, Band loses its only candidate and Paris_Hilton is no candidate anymore:
+  val candidates = Map(
+    1 -> List((1, 60), (2, 30)),
+    2 -> List((2, 3)),
+    3 -> List((4, 9), (3, 1)),
+    4 -> List((1, 6)),
+    5 -> List((5, 5))
+  )
+
+  val tokens = List("berlin", "city", "paris", "band")
+
+  val contexts = Map(
+    1 -> List((0, 3), (1, 2)),
+    2 -> List((3, 4)),
+    3 -> List((2, 1)),
+    4 -> List((1, 1), (2, 5)),
+    5 -> List((1, 2))
+  )
+
+  val vectors = (1 to 5).map(id => id -> Array(id.toFloat, 10.0f * id)).toMap
+
+  def uri(resID: Int): String = resources(resID - 1)._1
+
+  @Test
+  def renumberedStoresStayAligned() {
+    val baseFolder = StoreFixtures.createTempDir("base-model")
+    StoreFixtures.writeModel(baseFolder, surfaceForms, resources, candidates, tokens, contexts, vectors)
+    val outputFolder = StoreFixtures.createTempDir("compact-model")
+
+    CompactSpotlightModel.compact(baseFolder, outputFolder, CompactSpotlightModel.Thresholds(candidateMinCount = 5), None)
+
+    val modelFolder = new File(outputFolder, "model")
+    val quantizedCountStore = MemoryStore.loadQuantizedCountStore(new FileInputStream(new File(modelFolder, "quantized_counts.mem")))
+    val sfStore = MemoryStore.loadSurfaceFormStore(new FileInputStream(new File(modelFolder, "sf.mem")), quantizedCountStore)
+    val resStore = MemoryStore.loadResourceStore(new FileInputStream(new File(modelFolder, "res.mem")), quantizedCountStore)
+    val candMapStore = MemoryStore.loadCandidateMapStore(new FileInputStream(new File(modelFolder, "candmap.mem")), resStore, quantizedCountStore)
+    val tokenStore = MemoryStore.loadTokenTypeStore(new FileInputStream(new File(modelFolder, "tokens.mem")))
+    val contextStore = MemoryStore.loadContextStore(new FileInputStream(new File(modelFolder, "context.mem")), tokenStore, quantizedCountStore)
+
+    //The remaining surface forms and resources are compacted in their old order:
+    assertEquals(List(null, "Berlin", "Paris", "BERLIN", "Tegel"), sfStore.stringForID.toList)
+    assertEquals(List(null, "Berlin", "Berlin_(band)", "Paris", "Tegel"), resStore.uriForID.toList)
+    assertEquals(List(90, 10, 6, 5), sfStore.annotatedCountForID.tail.map(quantizedCountStore.getCount).toList)
+    assertEquals(List(60, 33, 9, 5), resStore.supportForID.tail.map(quantizedCountStore.getCount).toList)
+
+    //The lowercase map keeps its counts and refers to the new IDs of surface forms with the same lowercase form:
+    assertEquals(Set("berlin", "paris", "tegel"), sfStore.lowercaseMap.keySet.toSet)
+    assertEquals(108, sfStore.lowercaseMap.get("berlin").head)
+    sfStore.lowercaseMap.foreach { case (lowercase, countAndIDs) =>
+      countAndIDs.tail.foreach(id => assertEquals(lowercase, sfStore.stringForID(id).toLowerCase))
+    }
+    assertEquals(List(1, 3), sfStore.lowercaseMap.get("berlin").tail.toList.sorted)
+
+    //The candidates of each surface form refer to the same resources as before:
+    val expectedCandidates = Map(
+      "Berlin" -> List(("Berlin", 60), ("Berlin_(band)", 30)),
+      "Paris" -> List(("Paris", 9)),
+      "BERLIN" -> List(("Berlin", 6)),
+      "Tegel" -> List(("Tegel", 5))
+    )
+    assertEquals(sfStore.size, candMapStore.candidates.length)
+    (1 until sfStore.size).foreach { sfID =>
+      val sfCandidates = candMapStore.candidates(sfID).zip(candMapStore.candidateCounts(sfID)).map {
+        case (resID, count) => (resStore.uriForID(resID), quantizedCountStore.getCount(count))
+      }.toList
+      assertEquals(sfStore.stringForID(sfID), expectedCandidates(sfStore.stringForID(sfID)), sfCandidates)
+    }
+
+    //Each resource keeps its context and its vector:
+    val vectorStore = MemoryVectorStore.loadMapped(new File(modelFolder, "vectors.bin"))
+    assertEquals(resStore.size, contextStore.size)
+    (1 until resStore.size).foreach { resID =>
+      val oldID = resources.indexWhere(_._1 == resStore.uriForID(resID)) + 1
+      val context = contextStore.tokens(resID).zip(contextStore.counts(resID).map(quantizedCountStore.getCount)).toList
+      assertEquals(resStore.uriForID(resID), contexts(oldID), context)
+
+      val resource = new DBpediaResource(resStore.uriForID(resID))
+      resource.id = resID
+      assertArrayEquals(vectors(oldID), vectorStore.lookup(resource).inner.toArray, 0.0f)
+    }
+
+    assertTrue(new File(outputFolder, "compaction_report.txt").exists())
+  }
+
+}
@@ -0,0 +1,112 @@
+package org.dbpedia.spotlight.db
+
+import java.io.File
+
+import org.dbpedia.spotlight.db.io.TokenOccurrenceSource
+import org.dbpedia.spotlight.db.memory.MemoryQuantizedCountStore
+import org.junit.Assert._
+import org.junit.Test
+
+import scala.collection.mutable
+
+class ContextStoreBuilderTest {
+
+  val quantizedCountStore = new MemoryQuantizedCountStore()
+
+  val tokenStore = StoreFixtures.createTokenTypeStore(List("berlin", "city", "capital", "paris", "münchen", "a,b"))
+
+  val resStore = StoreFixtures.createResourceStore(List(("Berlin", 10), ("Paris", 5), ("München", 2)), quantizedCountStore)
+
+  val closure = new WikipediaToDBpediaClosure(
+    "http://dbpedia.org/resource/",
+    new RedirectClosure.Builder()
+      .addRedirect("Berlin_(city)", "Berlin")
+      .addDisambiguation("Berlin_(disambiguation)")
+      .build()
+  )
+
+  //Berlin has a second row through a redirect, Paris has a second, empty row and an unknown token:
+  val lines = List(
+    "Berlin\t{(berlin,3),(city,2),(capital,1)}",
+    "Paris\t{(paris,5),(capital,2),(unknown,1)}",
+    "Berlin_(disambiguation)\t{(berlin,7)}",
+    "Berlin_(city)\t{(city,4),(capital,1),(münchen,1)}",
+    "Hamburg\t{(city,1)}",
+    "",
+    "München\t{(münchen,2),(a,b,3)}",
+    "Paris\t{}"
+  )
+
+  /**
+   * The contexts as they were merged by MemoryStoreIndexer.addTokenOccurrences before the ContextStoreBuilder,
+   * as maps from token ID to count for each resource ID.
+   */
+  def legacyContexts(tokenFile: File): Map[Int, Map[Int, Int]] = {
+    val contexts = mutable.Map[Int, Map[Int, Int]]()
+    TokenOccurrenceSource.fromPigFile(tokenFile, tokenStore, closure, resStore, 0).filter(t => t != null && t._1 != null).foreach {
+      case (res, tokens, counts) =>
+        val row = tokens.map(_.id).zip(counts)
+        contexts(res.id) = contexts.get(res.id) match {
+          case Some(previous) => (row ++ previous).groupBy(_._1).map { case (k, v) => (k, v.map(_._2).sum) }
+          case None => row.toMap
+        }
+    }
+    contexts.toMap
+  }
+
+  def contexts(csr: ContextCSR): Map[Int, Map[Int, Int]] =
+    (0 until csr.numberOfResources).filter(i => csr.offsets(i + 1) > csr.offsets(i)).map { i =>
+      i -> (csr.offsets(i) until csr.offsets(i + 1)).map(j => csr.tokens(j) -> csr.counts(j)).toMap
+    }.toMap
+
+  @Test
+  def mergedContextsEqualLegacyContexts() {
+    List(lines.mkString("\n") + "\n", lines.mkString("\n")).foreach { content =>
+      val tokenFile = StoreFixtures.createTempFile(content, ".tsv")
+      val expected = legacyContexts(tokenFile)
+      assertEquals(Set(1, 2, 3), expected.keySet)
+
+      //Small chunks split rows of the same resource across chunks:
+      List(8, 64, 1 << 20).foreach { chunkSize =>
+        val builder = new ContextStoreBuilder(resStore.size, 2, chunkSize)
+        builder.addPigFile(tokenFile, tokenStore, closure, resStore)
+        val csr = builder.build()
+
+        assertEquals("Chunk size " + chunkSize, expected, contexts(csr))
+
+        //The tokens of each resource are sorted:
+        (0 until csr.numberOfResources).foreach { i =>
+          (csr.offsets(i) + 1 until csr.offsets(i + 1)).foreach(j => assertTrue(csr.tokens(j - 1) < csr.tokens(j)))
+        }
+      }
+    }
+  }
+
+  @Test
+  def berlinIsMergedWithItsRedirect() {
+    val builder = new ContextStoreBuilder(resStore.size, 1)
+    builder.addPigFile(StoreFixtures.createTempFile(lines.mkString("\n"), ".tsv"), tokenStore, closure, resStore)
+
+    assertEquals(Map(0 -> 3, 1 -> 6, 2 -> 2, 4 -> 1), contexts(builder.build())(1))
+  }
+
+  @Test
+  def mergeRowsSumsSharedTokens() {
+    val a = Array(ContextStoreBuilder.entry(1, 2), ContextStoreBuilder.entry(4, 1))
+    val b = Array(ContextStoreBuilder.entry(0, 5), ContextStoreBuilder.entry(4, 3), ContextStoreBuilder.entry(9, 1))
+
+    val merged = ContextStoreBuilder.mergeRows(a, b)
+
+    assertEquals(List((0, 5), (1, 2), (4, 4), (9, 1)), merged.toList.map(e => (ContextStoreBuilder.token(e), ContextStoreBuilder.count(e))))
+  }
+
+  @Test
+  def sortRowSumsDuplicateTokens() {
+    val entries = Array(ContextStoreBuilder.entry(3, 1), ContextStoreBuilder.entry(1, 2), ContextStoreBuilder.entry(3, 4), ContextStoreBuilder.entry(-1, 1))
+
+    val end = ContextStoreBuilder.sortRow(entries, 0, entries.length)
+
+    assertEquals(List((-1, 1), (1, 2), (3, 5)), entries.take(end).toList.map(e => (ContextStoreBuilder.token(e), ContextStoreBuilder.count(e))))
+  }
+
+}
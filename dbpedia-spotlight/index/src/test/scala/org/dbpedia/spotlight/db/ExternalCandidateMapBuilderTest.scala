@@ -0,0 +1,70 @@
+package org.dbpedia.spotlight.db
+
+import java.io.File
+import java.nio.file.Files
+
+import org.junit.Assert._
+import org.junit.Test
+
+class ExternalCandidateMapBuilderTest {
+
+  def candidates(csr: CandidateMapCSR, sfID: Int): List[(Int, Int)] =
+    (csr.offsets(sfID) until csr.offsets(sfID + 1)).map(i => (csr.resourceIDs(i), csr.counts(i))).toList
+
+  @Test
+  def duplicatePairsAreSummedAcrossSpills() {
+    val tmpDir = Files.createTempDirectory("candmap-test").toFile
+    tmpDir.deleteOnExit()
+
+    //With two buffered pairs, the builder spills after every second distinct pair:
+    val builder = new ExternalCandidateMapBuilder(tmpDir, 2)
+    builder.add(1, 7, 1)
+    builder.add(2, 3, 5)
+    builder.add(1, 7, 2)
+    builder.add(1, 4, 1)
+    builder.add(3, 9, 4)
+    builder.add(2, 3, 1)
+    builder.add(1, 7, 3)
+    builder.add(1, 4, 2)
+
+    val csr = builder.build(5)
+
+    assertEquals(5, csr.numberOfSurfaceForms)
+    assertEquals(List(), candidates(csr, 0))
+    assertEquals(List((4, 3), (7, 6)), candidates(csr, 1))
+    assertEquals(List((3, 6)), candidates(csr, 2))
+    assertEquals(List((9, 4)), candidates(csr, 3))
+    assertEquals(List(), candidates(csr, 4))
+
+    //The spill files and their folder are deleted:
+    assertEquals(0, tmpDir.listFiles().length)
+    tmpDir.delete()
+  }
+
+  @Test
+  def closeDeletesTheSpills() {
+    val tmpDir = Files.createTempDirectory("candmap-test").toFile
+    tmpDir.deleteOnExit()
+
+    val builder = new ExternalCandidateMapBuilder(tmpDir, 1)
+    builder.add(1, 2, 3)
+    builder.add(1, 3, 3)
+    assertEquals(1, tmpDir.listFiles().length)
+
+    builder.close()
+    assertEquals(0, tmpDir.listFiles().length)
+    tmpDir.delete()
+  }
+
+  @Test
+  def candidatesAreSortedByResource() {
+    val builder = new ExternalCandidateMapBuilder(new File(System.getProperty("java.io.tmpdir")))
+    builder.add(0, 5, 1)
+    builder.add(0, 2, 1)
+
+    val csr = builder.build(1)
+
+    assertEquals(List((2, 1), (5, 1)), candidates(csr, 0))
+  }
+
+}
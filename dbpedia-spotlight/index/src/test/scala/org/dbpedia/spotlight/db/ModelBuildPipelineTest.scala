@@ -0,0 +1,99 @@
+package org.dbpedia.spotlight.db
+
+import java.io.File
+
+import org.junit.Assert._
+import org.junit.Test
+
+import scala.collection.mutable.ListBuffer
+
+class ModelBuildPipelineTest {
+
+  /**
+   * Adds the stages of a small build to the pipeline: "a" and "b" are checkpointed, "c" depends on both and
+   * is built on every run. The stages log what they do, "b" fails if failB is set.
+   */
+  def addStages(pipeline: ModelBuildPipeline, log: ListBuffer[String], failB: Boolean = false) {
+    pipeline.checkpointedStage("a") { log.synchronized { log += "build a" } } { log.synchronized { log += "restore a" } }
+    pipeline.checkpointedStage("b", "a") {
+      if (failB) throw new IllegalStateException("b failed")
+      log.synchronized { log += "build b" }
+    } { log.synchronized { log += "restore b" } }
+    pipeline.stage("c", "a", "b") { log.synchronized { log += "build c" } }
+  }
+
+  @Test
+  def stagesRunInDependencyOrder() {
+    val log = ListBuffer[String]()
+    val pipeline = new ModelBuildPipeline(StoreFixtures.createTempDir("checkpoints"))
+    addStages(pipeline, log)
+
+    pipeline.run()
+
+    assertEquals(List("build a", "build b", "build c"), log.toList)
+  }
+
+  @Test
+  def completedStagesAreRestored() {
+    val checkpointFolder = StoreFixtures.createTempDir("checkpoints")
+    val first = new ModelBuildPipeline(checkpointFolder)
+    addStages(first, ListBuffer[String]())
+    first.run()
+    assertEquals(Set("a.done", "b.done"), checkpointFolder.listFiles().map(_.getName).toSet)
+
+    //Checkpointed stages are restored instead of built, stages without checkpoint are built again:
+    val log = ListBuffer[String]()
+    val second = new ModelBuildPipeline(checkpointFolder)
+    addStages(second, log)
+    second.run()
+
+    assertEquals(List("restore a", "restore b", "build c"), log.toList)
+  }
+
+  @Test
+  def failedBuildIsResumed() {
+    val checkpointFolder = StoreFixtures.createTempDir("checkpoints")
+
+    //The failed stage throws its own exception and the stages that depend on it are not run:
+    val log = ListBuffer[String]()
+    val failed = new ModelBuildPipeline(checkpointFolder)
+    addStages(failed, log, failB = true)
+    try {
+      failed.run()
+      fail("The build should have failed.")
+    } catch {
+      case e: IllegalStateException => assertEquals("b failed", e.getMessage)
+    }
+    assertEquals(List("build a"), log.toList)
+    assertEquals(Set("a.done"), checkpointFolder.listFiles().map(_.getName).toSet)
+
+    //The stage that was done is restored, the failed stage and the stages after it are built:
+    log.clear()
+    val resumed = new ModelBuildPipeline(checkpointFolder)
+    addStages(resumed, log)
+    resumed.run()
+
+    assertEquals(List("restore a", "build b", "build c"), log.toList)
+    assertEquals(Set("a.done", "b.done"), checkpointFolder.listFiles().map(_.getName).toSet)
+  }
+
+  @Test
+  def independentStagesCanRunConcurrently() {
+    val log = ListBuffer[String]()
+    val pipeline = new ModelBuildPipeline(StoreFixtures.createTempDir("checkpoints"), 2)
+    addStages(pipeline, log)
+    pipeline.stage("d", "a") { log.synchronized { log += "build d" } }
+
+    pipeline.run()
+
+    assertEquals("build a", log.head)
+    assertEquals(Set("build a", "build b", "build c", "build d"), log.toSet)
+    assertTrue(log.indexOf("build c") > log.indexOf("build b"))
+  }
+
+  @Test(expected = classOf[IllegalArgumentException])
+  def unknownDependencyIsRejected() {
+    new ModelBuildPipeline(new File(System.getProperty("java.io.tmpdir"))).stage("a", "missing") {}
+  }
+
+}
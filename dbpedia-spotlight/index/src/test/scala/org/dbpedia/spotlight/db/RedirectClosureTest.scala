@@ -0,0 +1,132 @@
+package org.dbpedia.spotlight.db
+
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream, File, FileOutputStream}
+
+import org.junit.Assert._
+import org.junit.Test
+
+class RedirectClosureTest {
+
+  def createClosure(): RedirectClosure = new RedirectClosure.Builder()
+    .addRedirect("D", "E")
+    .addRedirect("E", "F")
+    .addDisambiguation("Berlin_(disambiguation)")
+    .build()
+
+  def createTempDir(): File = {
+    val dir = File.createTempFile("redirect-closure", "")
+    dir.delete()
+    dir.mkdir()
+    dir.deleteOnExit()
+    dir
+  }
+
+  def createSource(dir: File, name: String, content: String): File = {
+    val file = new File(dir, name)
+    val out = new FileOutputStream(file)
+    try {
+      out.write(content.getBytes("UTF-8"))
+    } finally {
+      out.close()
+    }
+    file.setLastModified(System.currentTimeMillis() - 60000)
+    file.deleteOnExit()
+    file
+  }
+
+  @Test
+  def chainsAreResolvedToTheirEnd() {
+    val closure = createClosure()
+
+    assertEquals("F", closure.resolve("D"))
+    assertEquals("F", closure.resolve("E"))
+    assertEquals("F", closure.resolve("F"))
+    assertEquals("Unknown", closure.resolve("Unknown"))
+    assertTrue(closure.isDisambiguation("Berlin_(disambiguation)"))
+    assertFalse(closure.isDisambiguation("D"))
+  }
+
+  @Test
+  def cyclesResolveToThePredecessorInTheCycle() {
+    val closure = new RedirectClosure.Builder()
+      .addRedirect("A", "B")
+      .addRedirect("B", "C")
+      .addRedirect("C", "A")
+      .addRedirect("X", "A")
+      .build()
+
+    //Each name in the cycle ends at the name that redirects to it:
+    assertEquals("C", closure.resolve("A"))
+    assertEquals("A", closure.resolve("B"))
+    assertEquals("B", closure.resolve("C"))
+
+    //A chain running into the cycle ends where the cycle is entered:
+    assertEquals("C", closure.resolve("X"))
+  }
+
+  @Test
+  def writeAndReadRoundTrip() {
+    val closure = createClosure()
+    val out = new ByteArrayOutputStream()
+    closure.write(out, "key")
+
+    val read = RedirectClosure.read(new ByteArrayInputStream(out.toByteArray))
+
+    assertEquals(closure.size, read.size)
+    List("D", "E", "F", "Berlin_(disambiguation)", "Unknown").foreach { name =>
+      assertEquals(closure.resolve(name), read.resolve(name))
+      assertEquals(closure.isDisambiguation(name), read.isDisambiguation(name))
+    }
+  }
+
+  @Test
+  def cachedClosureIsReusedForTheSameSources() {
+    val dir = createTempDir()
+    val sources = List(createSource(dir, "redirects.nt", "D E\nE F\n"))
+    val file = new File(dir, "redirect_closure.bin")
+    file.deleteOnExit()
+
+    var builds = 0
+    def build = { builds += 1; createClosure() }
+
+    RedirectClosure.cached(file, "http://dbpedia.org/resource/", sources)(build)
+    assertEquals(1, builds)
+    assertFalse(new File(dir, "redirect_closure.bin.tmp").exists())
+    assertEquals(Some(RedirectClosure.key("http://dbpedia.org/resource/", sources)), RedirectClosure.readKey(file))
+
+    val cached = RedirectClosure.cached(file, "http://dbpedia.org/resource/", sources)(build)
+    assertEquals(1, builds)
+    assertEquals("F", cached.resolve("D"))
+  }
+
+  @Test
+  def cachedClosureIsRebuiltForOtherSources() {
+    val dir = createTempDir()
+    val sources = List(createSource(dir, "redirects.nt", "D E\nE F\n"))
+    val file = new File(dir, "redirect_closure.bin")
+    file.deleteOnExit()
+
+    var builds = 0
+    def build = { builds += 1; createClosure() }
+
+    RedirectClosure.cached(file, "http://dbpedia.org/resource/", sources)(build)
+
+    //Another namespace:
+    RedirectClosure.cached(file, "http://de.dbpedia.org/resource/", sources)(build)
+    assertEquals(2, builds)
+
+    //A source of another size that is not newer than the closure:
+    val changed = List(createSource(dir, "redirects.nt", "D E\n"))
+    RedirectClosure.cached(file, "http://de.dbpedia.org/resource/", changed)(build)
+    assertEquals(3, builds)
+
+    //A truncated closure:
+    val out = new FileOutputStream(file)
+    out.write(Array[Byte](31, -117))
+    out.close()
+    assertEquals(None, RedirectClosure.readKey(file))
+    RedirectClosure.cached(file, "http://de.dbpedia.org/resource/", changed)(build)
+    assertEquals(4, builds)
+  }
+
+}
@@ -0,0 +1,169 @@
+package org.dbpedia.spotlight.db
+
+import java.io.File
+
+import breeze.linalg.{DenseMatrix, DenseVector}
+import breeze.stats.regression.leastSquares
+import opennlp.tools.util.Span
+import org.apache.commons.io.FileUtils
+import org.dbpedia.spotlight.db.model.{StringTokenizer, TextTokenizer}
+import org.dbpedia.spotlight.io.AnnotatedTextSource
+import org.dbpedia.spotlight.model._
+import org.junit.Assert._
+import org.junit.Test
+
+import scala.collection.JavaConversions._
+import scala.collection.mutable
+import scala.util.Random
+
+class SpotterTunerTest {
+
+  /**
+   * Random rows of n features with a constant feature and labels that are 0 or 1, like the spots of the tuner.
+   */
+  def rows(count: Int, n: Int, random: Random): Seq[(DenseVector[Double], Double)] =
+    (0 until count).map { _ =>
+      val x = DenseVector.tabulate(n)(i => if (i == 0) 1.0 else random.nextDouble())
+      (x, if (random.nextDouble() < 0.3 + 0.4 * x(1)) 1.0 else 0.0)
+    }
+
+  def assertSameWeights(expected: DenseVector[Double], actual: DenseVector[Double]) {
+    assertEquals(expected.length, actual.length)
+    (0 until expected.length).foreach(i => assertEquals("Weight " + i, expected(i), actual(i), 1e-4))
+  }
+
+  /**
+   * Paragraph i has the text "Paragraph_i Berlin Paris", only Berlin is annotated and only in every other paragraph.
+   */
+  val paragraphs = (0 until 40).map { i =>
+    val text = new Text("Paragraph_%d Berlin Paris".format(i))
+    val occurrences = if (i % 2 == 0) List(new DBpediaResourceOccurrence(new DBpediaResource("Berlin"), new SurfaceForm("Berlin"), text, 12)) else List()
+    new AnnotatedParagraph(text, occurrences)
+  }
+
+  val corpus = new AnnotatedTextSource {
+    def foreach[U](f: AnnotatedParagraph => U) { paragraphs.foreach(f) }
+  }
+
+  /**
+   * The spots of a paragraph: Berlin and Paris with annotation probabilities that depend on the paragraph.
+   */
+  def spots(text: Text): List[SurfaceFormOccurrence] = {
+    val i = text.text.split(" ")(0).stripPrefix("Paragraph_").toInt
+    List(
+      new SurfaceFormOccurrence(new SurfaceForm("Berlin", 1, i % 7 + 1, 10), text, 12),
+      new SurfaceFormOccurrence(new SurfaceForm("Paris", 2, (3 * i) % 5 + 1, 10), text, 19)
+    )
+  }
+
+  /**
+   * A spotter that returns the spots above and remembers the paragraphs it spotted.
+   */
+  class StubSpotter(spotted: mutable.Set[Int]) extends DBSpotter(null, None, Set[String]()) {
+    override def extract(text: Text): java.util.List[SurfaceFormOccurrence] = {
+      spotted.synchronized { spotted += text.text.split(" ")(0).stripPrefix("Paragraph_").toInt }
+      spots(text)
+    }
+
+    def generateCandidates(sentence: List[Token]): Seq[Span] = Seq()
+    def typeOrder = Array[String]()
+    def getName = "stub"
+    def setName(name: String) {}
+  }
+
+  object StubTokenizer extends TextTokenizer {
+    def tokenize(text: Text): List[Token] = List()
+    def tokenizeMaybe(text: Text) {}
+    def getStringTokenizer: StringTokenizer = null
+  }
+
+  /**
+   * Tunes the stub spotter on the corpus and returns the sampled paragraphs and the written thresholds.
+   */
+  def tune(seed: Long): (Set[Int], List[Double]) = {
+    val spotted = mutable.Set[Int]()
+    val outputFile = File.createTempFile("spotter_thresholds", ".txt")
+    outputFile.deleteOnExit()
+
+    val task = SpotterTuner.TuningTask("test", corpus, () => StubTokenizer, () => new StubSpotter(spotted), outputFile)
+    SpotterTuner.tune(Seq(task), sampleRate = 0.25, threads = 2, stratumSize = 8, seed = seed)
+
+    (spotted.toSet, FileUtils.readFileToString(outputFile).split(" ").map(_.toDouble).toList)
+  }
+
+  @Test
+  def tuneSamplesEachStratumAndWritesTheSolvedThresholds() {
+    val (sample, thresholds) = tune(42)
+
+    //Two of the eight paragraphs of each of the five strata are sampled:
+    assertEquals(10, sample.size)
+    assertEquals(Map(0 -> 2, 1 -> 2, 2 -> 2, 3 -> 2, 4 -> 2), sample.groupBy(_ / 8).map { case (stratum, ids) => (stratum, ids.size) })
+
+    //The same seed gives the same sample and thresholds:
+    assertEquals((sample, thresholds), tune(42))
+
+    //The thresholds are the solution of the normal equations of the spots in the sample:
+    val equations = new SpotterTuner.NormalEquations(DBSpotter.spotFeatures("test", 0.0).activeSize)
+    sample.toList.sorted.foreach { i =>
+      val par = paragraphs(i)
+      val goldSpotSet = par.occurrences.map(_.surfaceForm.name).toSet
+      spots(par.text).foreach { spot =>
+        equations.add(DBSpotter.spotFeatures(spot.surfaceForm.name, spot.surfaceForm.annotationProbability), if (goldSpotSet.contains(spot.surfaceForm.name)) 1.0 else 0.0)
+      }
+    }
+    assertEquals(20L, equations.rows)
+    val expected = equations.solve()
+    assertEquals(expected.length, thresholds.size)
+    thresholds.zipWithIndex.foreach { case (w, i) => assertEquals("Weight " + i, expected(i), w, 1e-6) }
+  }
+
+  @Test
+  def normalEquationsMatchLeastSquares() {
+    val n = 4
+    val data = rows(500, n, new Random(42))
+
+    val x = DenseMatrix.zeros[Double](data.size, n)
+    val y = DenseVector.zeros[Double](data.size)
+    data.zipWithIndex.foreach { case ((row, label), i) =>
+      x(i, ::) := row.t
+      y(i) = label
+    }
+
+    val equations = new SpotterTuner.NormalEquations(n)
+    data.foreach { case (row, label) => equations.add(row, label) }
+
+    assertEquals(500L, equations.rows)
+    assertSameWeights(leastSquares(x, y).coefficients, equations.solve())
+  }
+
+  @Test
+  def mergedEquationsMatchSingleEquations() {
+    val n = 3
+    val data = rows(200, n, new Random(7))
+
+    val single = new SpotterTuner.NormalEquations(n)
+    data.foreach { case (row, label) => single.add(row, label) }
+
+    //As in the tuner, each part of the rows is added to its own equations that are merged afterwards:
+    val merged = new SpotterTuner.NormalEquations(n)
+    data.grouped(30).foreach { part =>
+      val partEquations = new SpotterTuner.NormalEquations(n)
+      part.foreach { case (row, label) => partEquations.add(row, label) }
+      merged.add(partEquations)
+    }
+
+    assertEquals(single.rows, merged.rows)
+    assertSameWeights(single.solve(), merged.solve())
+  }
+
+  @Test(expected = classOf[IllegalArgumentException])
+  def sampleRateBelowOneParagraphPerStratumIsRejected() {
+    SpotterTuner.tune(Seq(), sampleRate = 0.005, stratumSize = 100)
+  }
+
+  @Test(expected = classOf[IllegalArgumentException])
+  def sampleRateAboveOneIsRejected() {
+    SpotterTuner.tune(Seq(), sampleRate = 1.5)
+  }
+
+}
@@ -0,0 +1,145 @@
+package org.dbpedia.spotlight.db
+
+import java.io.{File, FileOutputStream, RandomAccessFile}
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+
+import org.dbpedia.spotlight.db.memory._
+
+/**
+ * Small in-memory stores and files for the tests of the index module.
+ */
+object StoreFixtures {
+
+  /**
+   * Creates a token store, the tokens get the IDs 0..n-1 in the order of the list.
+   */
+  def createTokenTypeStore(tokens: List[String]): MemoryTokenTypeStore = {
+    val tokenTypeStore = new MemoryTokenTypeStore()
+    tokenTypeStore.tokenForId = tokens.toArray
+    tokenTypeStore.counts = Array.fill(tokens.size)(1)
+    tokenTypeStore.loaded()
+    tokenTypeStore
+  }
+
+  /**
+   * Creates a resource store from (URI, support) pairs, the resources get the IDs 1..n in the order of the list.
+   */
+  def createResourceStore(resources: List[(String, Int)], quantizedCountStore: MemoryQuantizedCountStore): MemoryResourceStore = {
+    val resStore = new MemoryResourceStore()
+    val zero = quantizedCountStore.addCount(0)
+
+    resStore.uriForID = (null :: resources.map(_._1)).toArray
+    resStore.supportForID = (zero :: resources.map(res => quantizedCountStore.addCount(res._2))).toArray
+    resStore.typesForID = Array.fill(resources.size + 1)(Array[java.lang.Short]())
+    resStore.quantizedCountStore = quantizedCountStore
+    resStore.loaded()
+    resStore
+  }
+
+  /**
+   * Creates a surface form store from (surface form, annotated count, total count) triples, the surface forms
+   * get the IDs 1..n in the order of the list. The lowercase map has the total count and the IDs of each
+   * lowercase surface form.
+   */
+  def createSurfaceFormStore(surfaceForms: List[(String, Int, Int)], quantizedCountStore: MemoryQuantizedCountStore): MemorySurfaceFormStore = {
+    val sfStore = new MemorySurfaceFormStore()
+    val zero = quantizedCountStore.addCount(0)
+
+    sfStore.stringForID = (null :: surfaceForms.map(_._1)).toArray
+    sfStore.annotatedCountForID = (zero :: surfaceForms.map(sf => quantizedCountStore.addCount(sf._2))).toArray
+    sfStore.totalCountForID = (zero :: surfaceForms.map(sf => quantizedCountStore.addCount(sf._3))).toArray
+    sfStore.lowercaseMap = new java.util.HashMap[String, Array[Int]]()
+    surfaceForms.zipWithIndex.groupBy(_._1._1.toLowerCase).foreach { case (lowercase, sfs) =>
+      sfStore.lowercaseMap.put(lowercase, (sfs.map(_._1._3).sum :: sfs.map(_._2 + 1)).toArray)
+    }
+    sfStore.quantizedCountStore = quantizedCountStore
+    sfStore.loaded()
+    sfStore
+  }
+
+  /**
+   * Writes the vectors and the (ID, row index) entries of resources and tokens to a vectors.bin file.
+   */
+  def writeVectors(file: File, vectors: Array[Array[Float]], resources: Array[Long], tokens: Array[Long]): File = {
+    val columns = vectors.head.length
+    val raf = new RandomAccessFile(file, "rw")
+    try {
+      raf.setLength(MemoryVectorStore.mapsOffset(vectors.length, columns))
+      val out = raf.getChannel.map(FileChannel.MapMode.READ_WRITE, MemoryVectorStore.HEADER_BYTES, 4L * vectors.length * columns)
+        .order(MemoryVectorStore.ORDER).asFloatBuffer()
+      vectors.foreach(v => out.put(v))
+    } finally {
+      raf.close()
+    }
+    StreamingVectorStoreIndexer.writeMaps(file, vectors.length, columns, resources, tokens)
+    file.deleteOnExit()
+    file
+  }
+
+  /**
+   * Writes a model folder with model.properties and the stores in model/. Candidates are given as (resource ID, count)
+   * pairs of each surface form ID, contexts as (token ID, count) pairs of each resource ID. The vector of the
+   * resource with ID i is written to row i - 1 of vectors.bin, tokens have no vectors.
+   */
+  def writeModel(folder: File, surfaceForms: List[(String, Int, Int)], resources: List[(String, Int)],
+                 candidates: Map[Int, List[(Int, Int)]], tokens: List[String], contexts: Map[Int, List[(Int, Int)]],
+                 vectors: Map[Int, Array[Float]]) {
+    val modelFolder = new File(folder, "model")
+    modelFolder.mkdirs()
+    writeFile(new File(folder, "model.properties"), "namespace=http://dbpedia.org/resource/\nlocale=en_US\nstemmer=None\n")
+
+    val quantizedCountStore = new MemoryQuantizedCountStore()
+    val sfStore = createSurfaceFormStore(surfaceForms, quantizedCountStore)
+    val resStore = createResourceStore(resources, quantizedCountStore)
+
+    val candMapStore = new MemoryCandidateMapStore()
+    candMapStore.candidates = Array.tabulate(sfStore.size)(id => candidates.get(id).map(_.map(_._1).toArray).orNull)
+    candMapStore.candidateCounts = Array.tabulate(sfStore.size)(id => candidates.get(id).map(_.map(c => quantizedCountStore.addCount(c._2)).toArray).orNull)
+    candMapStore.quantizedCountStore = quantizedCountStore
+    candMapStore.computePriorMargins()
+
+    val tokenStore = createTokenTypeStore(tokens)
+    val contextStore = new MemoryContextStore()
+    contextStore.tokens = Array.tabulate(resStore.size)(id => contexts.get(id).map(_.map(_._1).toArray).orNull)
+    contextStore.counts = Array.tabulate(resStore.size)(id => contexts.get(id).map(_.map(c => quantizedCountStore.addCount(c._2)).toArray).orNull)
+
+    if (!vectors.isEmpty) {
+      val ids = vectors.keys.toList.sorted
+      writeVectors(
+        new File(modelFolder, "vectors.bin"),
+        (1 to ids.max).map(id => vectors.getOrElse(id, Array.fill(vectors.head._2.length)(0.0f))).toArray,
+        ids.map(id => StreamingVectorStoreIndexer.entry(id, id - 1)).toArray,
+        Array[Long]()
+      )
+    }
+
+    MemoryStore.dump(sfStore, new File(modelFolder, "sf.mem"))
+    MemoryStore.dump(resStore, new File(modelFolder, "res.mem"))
+    MemoryStore.dump(candMapStore, new File(modelFolder, "candmap.mem"))
+    MemoryStore.dump(tokenStore, new File(modelFolder, "tokens.mem"))
+    MemoryStore.dump(contextStore, new File(modelFolder, "context.mem"))
+    MemoryStore.dump(quantizedCountStore, new File(modelFolder, "quantized_counts.mem"))
+  }
+
+  def createTempDir(prefix: String): File = {
+    val dir = Files.createTempDirectory(prefix).toFile
+    dir.deleteOnExit()
+    dir
+  }
+
+  def writeFile(file: File, content: String): File = {
+    val out = new FileOutputStream(file)
+    try {
+      out.write(content.getBytes("UTF-8"))
+    } finally {
+      out.close()
+    }
+    file.deleteOnExit()
+    file
+  }
+
+  def createTempFile(content: String, suffix: String = ""): File =
+    writeFile(File.createTempFile("fixture", suffix), content)
+
+}
@@ -0,0 +1,127 @@
+package org.dbpedia.spotlight.db
+
+import java.io.{File, FileInputStream, IOException}
+
+import it.unimi.dsi.fastutil.longs.LongArrayList
+import org.dbpedia.spotlight.db.memory.{MemoryQuantizedCountStore, MemoryStore, MemoryVectorStore}
+import org.dbpedia.spotlight.model.{DBpediaResource, TokenType}
+import org.junit.Assert._
+import org.junit.Test
+
+class StreamingVectorStoreIndexerTest {
+
+  //Seven rows of three columns, row i is (i, i + 0.5, -i):
+  val vectors = Array.tabulate(7)(i => Array(i.toFloat, i + 0.5f, -i.toFloat))
+
+  val resources = Array(StreamingVectorStoreIndexer.entry(2, 0), StreamingVectorStoreIndexer.entry(5, 3), StreamingVectorStoreIndexer.entry(9, 6))
+
+  val tokens = Array(StreamingVectorStoreIndexer.entry(0, 1), StreamingVectorStoreIndexer.entry(4, 5))
+
+  def vectorFile(): File = StoreFixtures.writeVectors(File.createTempFile("vectors", ".bin"), vectors, resources, tokens)
+
+  def resource(id: Int): DBpediaResource = {
+    val resource = new DBpediaResource("Resource_" + id)
+    resource.id = id
+    resource
+  }
+
+  def token(id: Int): TokenType = new TokenType(id, "token_" + id, 1)
+
+  //A wiki2vec matrix with CRLF line endings and the ID file, Paris has two rows of which the last one is used:
+  val matrix = List("# 5", "# 3", "0.5,1,2", "-1.5, 2.25 ,3", "4,5,6e-1", "7,8,9", "10,11,12").mkString("", "\r\n", "\r\n")
+
+  val ids = List(
+    "DBPEDIA_ID/Berlin\t0", "berlin\t1", "DBPEDIA_ID/Paris\t2", "city\t3", "DBPEDIA_ID/Unknown\t1", "unknown\t0",
+    "DBPEDIA_ID/Paris\t4"
+  ).mkString("", "\r\n", "\r\n")
+
+  val tokenStore = StoreFixtures.createTokenTypeStore(List("berlin", "city", "paris"))
+
+  val resStore = StoreFixtures.createResourceStore(List(("Berlin", 10), ("Paris", 5), ("Tegel", 1)), new MemoryQuantizedCountStore())
+
+  @Test
+  def convertedStoreMatchesMemoryVectorStoreIndexer() {
+    val matrixFile = StoreFixtures.createTempFile(matrix, ".csv")
+    val idFile = StoreFixtures.createTempFile(ids, ".txt")
+
+    //Small chunks split the matrix into several chunks, some of them without a complete row:
+    val outputFile = File.createTempFile("vectors", ".bin")
+    outputFile.deleteOnExit()
+    new StreamingVectorStoreIndexer(matrixFile, idFile, 2, 8).write(tokenStore, resStore, outputFile)
+    val converted = MemoryVectorStore.loadMapped(outputFile)
+
+    val indexer = new MemoryVectorStoreIndexer(matrixFile, idFile)
+    indexer.loadVectorDict(tokenStore, resStore)
+    val legacyFile = File.createTempFile("vectors", ".mem")
+    legacyFile.deleteOnExit()
+    indexer.loadVectorsAndWriteToStore(legacyFile)
+    val legacy = MemoryStore.loadVectorStore(new FileInputStream(legacyFile))
+
+    assertEquals(legacy.size, converted.size)
+    (1 until resStore.size).foreach { id =>
+      val res = resource(id)
+      assertArrayEquals(resStore.uriForID(id), legacy.lookup(res).inner.toArray, converted.lookup(res).inner.toArray, 0.0f)
+    }
+    (0 until tokenStore.tokenForId.length).foreach { id =>
+      val t = token(id)
+      assertArrayEquals(tokenStore.tokenForId(id), legacy.lookup(t).inner.toArray, converted.lookup(t).inner.toArray, 0.0f)
+    }
+
+    assertArrayEquals(Array(10.0f, 11.0f, 12.0f), converted.lookup(resource(2)).inner.toArray, 0.0f)
+    assertArrayEquals(Array(-1.5f, 2.25f, 3.0f), converted.lookup(token(0)).inner.toArray, 0.0f)
+  }
+
+  @Test(expected = classOf[IOException])
+  def rowCountMismatchIsAnError() {
+    val matrixFile = StoreFixtures.createTempFile(matrix.replace("# 5", "# 6"), ".csv")
+    val idFile = StoreFixtures.createTempFile(ids, ".txt")
+    val outputFile = File.createTempFile("vectors", ".bin")
+    outputFile.deleteOnExit()
+
+    new StreamingVectorStoreIndexer(matrixFile, idFile, 2, 8).write(tokenStore, resStore, outputFile)
+  }
+
+  @Test
+  def sortedKeepsTheLastEntryOfAnID() {
+    val entries = new LongArrayList()
+    List((3, 0), (1, 5), (3, 2), (2, 1), (1, 4)).foreach { case (id, index) => entries.add(StreamingVectorStoreIndexer.entry(id, index)) }
+
+    val sorted = StreamingVectorStoreIndexer.sorted(entries)
+
+    assertEquals(List((1, 4), (2, 1), (3, 2)), sorted.toList.map(e => (StreamingVectorStoreIndexer.id(e), StreamingVectorStoreIndexer.index(e))))
+  }
+
+  @Test
+  def mapsAreReadAsWritten() {
+    val (rows, columns, readResources, readTokens) = StreamingVectorStoreIndexer.readMaps(vectorFile())
+
+    assertEquals(7, rows)
+    assertEquals(3, columns)
+    assertEquals(resources.toList, readResources.toList)
+    assertEquals(tokens.toList, readTokens.toList)
+  }
+
+  @Test
+  def vectorsAreFoundInAllSegments() {
+    val file = vectorFile()
+
+    //One row (12 bytes) per segment, two rows per segment with an incomplete last segment and a single segment:
+    List(12L, 24L, 25L, Int.MaxValue.toLong).foreach { maxSegmentBytes =>
+      val store = MemoryVectorStore.loadMapped(file, maxSegmentBytes)
+      assertEquals(7, store.size)
+
+      resources.foreach { e =>
+        val expected = vectors(StreamingVectorStoreIndexer.index(e))
+        assertArrayEquals("Segment size " + maxSegmentBytes, expected, store.lookup(resource(StreamingVectorStoreIndexer.id(e))).inner.toArray, 0.0f)
+      }
+      tokens.foreach { e =>
+        val expected = vectors(StreamingVectorStoreIndexer.index(e))
+        assertArrayEquals("Segment size " + maxSegmentBytes, expected, store.lookup(token(StreamingVectorStoreIndexer.id(e))).inner.toArray, 0.0f)
+      }
+
+      //Unknown IDs get a zero vector:
+      assertArrayEquals(Array(0.0f, 0.0f, 0.0f), store.lookup(resource(3)).inner.toArray, 0.0f)
+    }
+  }
+
+}
@@ -0,0 +1,135 @@
+package org.dbpedia.spotlight.db
+
+import java.io.{File, FileInputStream}
+
+import org.dbpedia.spotlight.db.memory.{MemoryStore, MemoryVectorStore}
+import org.dbpedia.spotlight.model.DBpediaResource
+import org.junit.Assert._
+import org.junit.Test
+
+class UpdateSpotlightModelTest {
+
+  val surfaceForms = List(("Berlin", 90, 100), ("Paris", 10, 20), ("Tegel", 5, 10), ("Band", 3, 30))
+
+  val resources = List(("Berlin", 60), ("Berlin_(band)", 33), ("Paris", 9), ("Paris_Hilton", 1), ("Tegel", 5))
+
+  val candidates = Map(
+    1 -> List((1, 60), (2, 30)),
+    2 -> List((3, 9), (4, 1)),
+    3 -> List((5, 5)),
+    4 -> List((2, 3))
+  )
+
+  val tokens = List("berlin", "city", "paris", "band")
+
+  val contexts = Map(
+    1 -> List((0, 3), (1, 2)),
+    2 -> List((3, 4)),
+    3 -> List((1, 1), (2, 5)),
+    4 -> List((2, 1)),
+    5 -> List((1, 2))
+  )
+
+  val vectors = (1 to 5).map(id => id -> Array(id.toFloat, 10.0f * id)).toMap
+
+  def createBaseModel(): File = {
+    val baseFolder = StoreFixtures.createTempDir("base-model")
+    StoreFixtures.writeModel(baseFolder, surfaceForms, resources, candidates, tokens, contexts, vectors)
+    baseFolder
+  }
+
+  @Test
+  def removedResourcesAreRemappedConsistently() {
+    val baseFolder = createBaseModel()
+    val deltaFolder = StoreFixtures.createTempDir("delta")
+    StoreFixtures.writeFile(new File(deltaFolder, "removedResources"), "Berlin_(band)\nhttp://dbpedia.org/resource/Paris_Hilton\n")
+    val outputFolder = StoreFixtures.createTempDir("updated-model")
+
+    UpdateSpotlightModel.update(baseFolder, deltaFolder, outputFolder)
+
+    val modelFolder = new File(outputFolder, "model")
+    val quantizedCountStore = MemoryStore.loadQuantizedCountStore(new FileInputStream(new File(modelFolder, "quantized_counts.mem")))
+    val resStore = MemoryStore.loadResourceStore(new FileInputStream(new File(modelFolder, "res.mem")), quantizedCountStore)
+    val candMapStore = MemoryStore.loadCandidateMapStore(new FileInputStream(new File(modelFolder, "candmap.mem")), resStore, quantizedCountStore)
+    val tokenStore = MemoryStore.loadTokenTypeStore(new FileInputStream(new File(modelFolder, "tokens.mem")))
+    val contextStore = MemoryStore.loadContextStore(new FileInputStream(new File(modelFolder, "context.mem")), tokenStore, quantizedCountStore)
+
+    //The remaining resources are compacted in their old order:
+    assertEquals(List(null, "Berlin", "Paris", "Tegel"), resStore.uriForID.toList)
+    assertEquals(List(0, 60, 9, 5), resStore.supportForID.map(quantizedCountStore.getCount).toList)
+
+    //Candidates refer to the same resources as before, the surface form that only had a removed candidate has none:
+    def candidatesOf(sfID: Int): List[(String, Int)] =
+      Option(candMapStore.candidates(sfID)).map(_.zip(candMapStore.candidateCounts(sfID)).map {
+        case (resID, count) => (resStore.uriForID(resID), quantizedCountStore.getCount(count))
+      }.toList).orNull
+    assertEquals(List(("Berlin", 60)), candidatesOf(1))
+    assertEquals(List(("Paris", 9)), candidatesOf(2))
+    assertEquals(List(("Tegel", 5)), candidatesOf(3))
+    assertNull(candidatesOf(4))
+    assertEquals(candMapStore.candidates.length, candMapStore.priorMargins.length)
+
+    //Each resource keeps its context:
+    assertEquals(resStore.size, contextStore.size)
+    List(1 -> 1, 2 -> 3, 3 -> 5).foreach { case (newID, oldID) =>
+      val context = contextStore.tokens(newID).zip(contextStore.counts(newID).map(quantizedCountStore.getCount)).toList
+      assertEquals(resStore.uriForID(newID), contexts(oldID), context)
+    }
+
+    //Each resource keeps its vector:
+    val vectorFile = new File(modelFolder, "vectors.bin")
+    val (_, _, mappedResources, _) = StreamingVectorStoreIndexer.readMaps(vectorFile)
+    assertEquals(List((1, 0), (2, 2), (3, 4)), mappedResources.toList.map(e => (StreamingVectorStoreIndexer.id(e), StreamingVectorStoreIndexer.index(e))))
+
+    val vectorStore = MemoryVectorStore.loadMapped(vectorFile)
+    List(1 -> 1, 2 -> 3, 3 -> 5).foreach { case (newID, oldID) =>
+      val resource = new DBpediaResource(resStore.uriForID(newID))
+      resource.id = newID
+      assertArrayEquals(vectors(oldID), vectorStore.lookup(resource).inner.toArray, 0.0f)
+    }
+  }
+
+  @Test
+  def newSurfaceFormsAreInTheLowercaseMap() {
+    val baseFolder = createBaseModel()
+    val deltaFolder = StoreFixtures.createTempDir("delta")
+    StoreFixtures.writeFile(new File(deltaFolder, "sfCounts"), "Hamburg\t4\t8\nPARIS\t1\t2\n")
+    val outputFolder = StoreFixtures.createTempDir("updated-model")
+
+    UpdateSpotlightModel.update(baseFolder, deltaFolder, outputFolder)
+
+    val modelFolder = new File(outputFolder, "model")
+    val quantizedCountStore = MemoryStore.loadQuantizedCountStore(new FileInputStream(new File(modelFolder, "quantized_counts.mem")))
+    val sfStore = MemoryStore.loadSurfaceFormStore(new FileInputStream(new File(modelFolder, "sf.mem")), quantizedCountStore)
+
+    assertEquals(List(null, "Berlin", "Paris", "Tegel", "Band", "Hamburg", "PARIS"), sfStore.stringForID.toList)
+
+    //A new lowercase form gets its own entry, other new surface forms are added to the existing entry:
+    assertEquals(List(8, 5), sfStore.lowercaseMap.get("hamburg").toList)
+    assertEquals(20, sfStore.lowercaseMap.get("paris").head)
+    assertEquals(List(2, 6), sfStore.lowercaseMap.get("paris").tail.toList.sorted)
+    assertEquals(Set("Hamburg"), sfStore.getSurfaceFormsNormalized("HAMBURG").map(_.name))
+  }
+
+  @Test
+  def unchangedStoresAreCopied() {
+    val baseFolder = createBaseModel()
+    val deltaFolder = StoreFixtures.createTempDir("delta")
+    StoreFixtures.writeFile(new File(deltaFolder, "tokenCounts"), "Paris\t{(paris,7)}\n")
+    val outputFolder = StoreFixtures.createTempDir("updated-model")
+
+    UpdateSpotlightModel.update(baseFolder, deltaFolder, outputFolder)
+
+    val modelFolder = new File(outputFolder, "model")
+    List("res.mem", "sf.mem", "candmap.mem", "tokens.mem", "vectors.bin").foreach { name =>
+      assertEquals(name, new File(baseFolder, "model/" + name).length(), new File(modelFolder, name).length())
+    }
+
+    val quantizedCountStore = MemoryStore.loadQuantizedCountStore(new FileInputStream(new File(modelFolder, "quantized_counts.mem")))
+    val tokenStore = MemoryStore.loadTokenTypeStore(new FileInputStream(new File(modelFolder, "tokens.mem")))
+    val contextStore = MemoryStore.loadContextStore(new FileInputStream(new File(modelFolder, "context.mem")), tokenStore, quantizedCountStore)
+    assertEquals(List((2, 7)), contextStore.tokens(3).zip(contextStore.counts(3).map(quantizedCountStore.getCount)).toList)
+    assertEquals(contexts(1), contextStore.tokens(1).zip(contextStore.counts(1).map(quantizedCountStore.getCount)).toList)
+  }
+
+}
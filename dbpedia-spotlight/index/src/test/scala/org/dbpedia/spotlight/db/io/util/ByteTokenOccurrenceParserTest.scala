@@ -0,0 +1,106 @@
+package org.dbpedia.spotlight.db.io.util
+
+import java.nio.ByteBuffer
+
+import it.unimi.dsi.fastutil.ints.IntArrayList
+import org.dbpedia.spotlight.db.StoreFixtures
+import org.junit.Assert._
+import org.junit.Test
+
+import scala.collection.mutable.ListBuffer
+import scala.io.Source
+
+class ByteTokenOccurrenceParserTest {
+
+  val tokenStore = StoreFixtures.createTokenTypeStore(List("berlin", "münchen", "東京", "a,b", "say \"hi\"", "back\\slash", "é", "city"))
+
+  val pigParser = new ByteTokenOccurrenceParser(false, new TokenDictionary(tokenStore), tokenStore.getTokenType(_).id)
+  val jsonParser = new ByteTokenOccurrenceParser(true, new TokenDictionary(tokenStore), tokenStore.getTokenType(_).id)
+
+  val pigBags = List(
+    "{(berlin,3),(münchen,2),(東京,1)}",
+    "{}",
+    "{(a,b,3),(unknown,5),(city,12)}",
+    "{(é,1)}"
+  )
+
+  val jsonBags = List(
+    "[[\"berlin\",3],[\"münchen\",2],[\"東京\",1]]",
+    "[]",
+    "[[\"say \\\"hi\\\"\",2],[\"back\\\\slash\",1],[\"\\" + "u00e9\",4],[\"unknown\",7]]",
+    "[ [\"city\", 12] , [\"a,b\", 3] ]"
+  )
+
+  def parseBytes(parser: ByteTokenOccurrenceParser, bag: String, minimumCount: Int = 0): (List[Int], List[Int]) = {
+    val bytes = bag.getBytes("UTF-8")
+    val tokens = new IntArrayList()
+    val counts = new IntArrayList()
+    parser.parse(ByteBuffer.wrap(bytes), 0, bytes.length, minimumCount, tokens, counts)
+    (tokens.toIntArray.toList, counts.toIntArray.toList)
+  }
+
+  def parseString(parser: TokenOccurrenceParser, bag: String, minimumCount: Int = 0): (List[Int], List[Int]) = {
+    val Pair(tokens, counts) = parser.parse(bag, minimumCount)
+    (tokens.map(tokenStore.getTokenType(_).id).toList, counts.toList)
+  }
+
+  @Test
+  def pigBagsMatchPigTokenOccurrenceParser() {
+    pigBags.foreach { bag =>
+      assertEquals(bag, parseString(new PigTokenOccurrenceParser(), bag), parseBytes(pigParser, bag))
+      assertEquals(bag, parseString(new PigTokenOccurrenceParser(), bag, 3), parseBytes(pigParser, bag, 3))
+    }
+
+    assertEquals((List(0, 1, 2), List(3, 2, 1)), parseBytes(pigParser, pigBags(0)))
+    assertEquals((List(3, -1, 7), List(3, 5, 12)), parseBytes(pigParser, pigBags(2)))
+  }
+
+  @Test
+  def jsonBagsMatchJacksonTokenOccurrenceParser() {
+    jsonBags.foreach { bag =>
+      assertEquals(bag, parseString(new JacksonTokenOccurrenceParser(), bag), parseBytes(jsonParser, bag))
+      assertEquals(bag, parseString(new JacksonTokenOccurrenceParser(), bag, 3), parseBytes(jsonParser, bag, 3))
+    }
+
+    assertEquals((List(4, 5, 6, -1), List(2, 1, 4, 7)), parseBytes(jsonParser, jsonBags(2)))
+  }
+
+  @Test
+  def mappedChunksMatchPigTokenOccurrenceParser() {
+    val lines = pigBags.zipWithIndex.map { case (bag, i) => "Resource_%d\t%s".format(i, bag) }
+
+    List(lines.mkString("\n") + "\n", lines.mkString("\n")).foreach { content =>
+      val tokenFile = StoreFixtures.createTempFile(content, ".tsv")
+
+      val source = Source.fromFile(tokenFile, "UTF-8")
+      val expected = try {
+        source.getLines().map { line =>
+          val Array(wikiurl, bag) = line.split('\t')
+          (wikiurl, parseString(new PigTokenOccurrenceParser(), bag))
+        }.toList
+      } finally {
+        source.close()
+      }
+
+      List(1, 5, 64, 1 << 20).foreach { chunkSize =>
+        val parsed = ListBuffer[(String, (List[Int], List[Int]))]()
+        ChunkedFileReader.chunks(tokenFile, chunkSize).foreach { case (start, end) =>
+          ChunkedFileReader.foreachMappedLine(tokenFile, start, end) { (buffer: ByteBuffer, from: Int, to: Int) =>
+            var tab = from
+            while (buffer.get(tab) != '\t') tab += 1
+            val name = new Array[Byte](tab - from)
+            (0 until name.length).foreach(i => name(i) = buffer.get(from + i))
+
+            val tokens = new IntArrayList()
+            val counts = new IntArrayList()
+            pigParser.parse(buffer, tab + 1, to, 0, tokens, counts)
+            parsed += ((new String(name, "UTF-8"), (tokens.toIntArray.toList, counts.toIntArray.toList)))
+          }
+        }
+
+        assertEquals("Chunk size " + chunkSize, expected, parsed.toList)
+      }
+    }
+  }
+
+}
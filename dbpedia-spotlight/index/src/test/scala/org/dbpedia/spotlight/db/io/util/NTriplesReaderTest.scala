@@ -0,0 +1,131 @@
+package org.dbpedia.spotlight.db.io.util
+
+import java.io.{File, FileOutputStream}
+import java.net.URLDecoder
+import java.util.concurrent.atomic.AtomicLong
+
+import org.junit.Assert._
+import org.junit.Test
+
+class NTriplesReaderTest {
+
+  val lines = List(
+    "# comment",
+    "<http://dbpedia.org/resource/Berlin> <http://dbpedia.org/ontology/wikiPageRedirects> <http://dbpedia.org/resource/Berlin_(city)> .",
+    "",
+    "<http://dbpedia.org/resource/K%C3%B6ln> <http://www.w3.org/1999/02/22-rdf-syntax-ns#type> <http://dbpedia.org/ontology/City> .",
+    "<http://dbpedia.org/resource/München> <http://www.w3.org/2000/01/rdf-schema#label> \"München\"@de .",
+    "<http://dbpedia.org/resource/Broken> <http://www.w3.org/2000/01/rdf-schema#label> \"unterminated .",
+    "_:b1 <http://www.w3.org/2000/01/rdf-schema#label> \"a \\\"quoted\\\" \\\\ label\" .",
+    "<http://dbpedia.org/resource/Paris> <http://dbpedia.org/ontology/populationTotal> \"2240621\"^^<http://www.w3.org/2001/XMLSchema#nonNegativeInteger> .",
+    "<http://dbpedia.org/resource/Tokyo> <http://www.w3.org/2000/01/rdf-schema#label> \"東京\"@ja ."
+  )
+
+  def createFile(content: String): File = {
+    val file = File.createTempFile("ntriples", ".nt")
+    file.deleteOnExit()
+    val out = new FileOutputStream(file)
+    try {
+      out.write(content.getBytes("UTF-8"))
+    } finally {
+      out.close()
+    }
+    file
+  }
+
+  /** Parses the lines one by one, skipping invalid lines. */
+  def parseSerially(lines: List[String]): List[List[String]] = lines.flatMap { line =>
+    try {
+      Option(NTriplesReader.parseLine(line)).map(_.toList)
+    } catch {
+      case e: IllegalArgumentException => None
+    }
+  }
+
+  @Test
+  def chunksMatchSerialParsing() {
+    val expected = parseSerially(lines)
+    assertEquals(6, expected.size)
+
+    //Every chunk size splits the lines at other positions, including inside multi-byte characters:
+    List(1, 2, 3, 7, 64, 1 << 20).foreach { chunkSize =>
+      List(lines.mkString("\n") + "\n", lines.mkString("\n")).foreach { content =>
+        val triples = new NTriplesReader(3, chunkSize).read(createFile(content)).map(_.toList).toList
+        assertEquals("Chunk size " + chunkSize, expected, triples)
+      }
+    }
+  }
+
+  @Test
+  def chunksAreSplitAtLineStarts() {
+    val content = "<a> <b> <c> .\n<d> <e> <f> .\n"
+    val file = createFile(content)
+
+    //A chunk starting exactly at a line start contains that line:
+    assertEquals(List("a"), NTriplesReader.parseChunk(file, 0, 14).map(_(0)).toList)
+    assertEquals(List("d"), NTriplesReader.parseChunk(file, 14, content.length).map(_(0)).toList)
+
+    //A chunk starting inside a line skips it:
+    assertEquals(List("d"), NTriplesReader.parseChunk(file, 1, 15).map(_(0)).toList)
+    assertEquals(List(), NTriplesReader.parseChunk(file, 15, content.length).map(_(0)).toList)
+  }
+
+  @Test
+  def invalidLinesAreSkippedAndCounted() {
+    val file = createFile(lines.mkString("\n"))
+    val invalidLines = new AtomicLong()
+
+    val triples = NTriplesReader.parseChunk(file, 0, file.length(), invalidLines)
+
+    assertEquals(6, triples.size)
+    assertEquals(1L, invalidLines.get)
+  }
+
+  @Test
+  def invalidLinesThrow() {
+    List(
+      "<s> <p>",
+      "<s> <p> <o",
+      "<s> <p> \"unterminated",
+      "<s> <p> \"\\" + "u00\" .",
+      "<s> <p> \"\\" + "uZZZZ\" ."
+    ).foreach { line =>
+      try {
+        NTriplesReader.parseLine(line)
+        fail("Expected an exception for " + line)
+      } catch {
+        case e: IllegalArgumentException =>
+      }
+    }
+  }
+
+  @Test
+  def literalsAreUnescaped() {
+    val line = "<s> <p> \"tab\\tnewline\\nquote\\\"backslash\\\\e\\" + "u0301 smile\\" + "U0001F600\"@en ."
+
+    val triple = NTriplesReader.parseLine(line)
+
+    assertEquals("s", triple(0))
+    assertEquals("p", triple(1))
+    assertEquals("tab\tnewline\nquote\"backslash\\e" + 0x301.toChar + " smile" + new String(Character.toChars(0x1F600)), triple(2))
+  }
+
+  @Test
+  def languageTagsAndDatatypesAreDropped() {
+    assertEquals("München", NTriplesReader.parseLine("<s> <p> \"München\"@de .")(2))
+    assertEquals("1", NTriplesReader.parseLine("<s> <p> \"1\"^^<http://www.w3.org/2001/XMLSchema#int> .")(2))
+    assertNull(NTriplesReader.parseLine("   "))
+    assertNull(NTriplesReader.parseLine("# <s> <p> <o> ."))
+  }
+
+  @Test
+  def decodeURLMatchesURLDecoder() {
+    List("Berlin", "K%C3%B6ln", "S%C3%A3o_Paulo", "AC%2FDC", "C%2B%2B", "1+1", "100%25_Pure", "Caf%C3%A9+%28band%29").foreach { name =>
+      assertEquals(URLDecoder.decode(name, "utf-8"), NTriplesReader.decodeURL(name))
+    }
+
+    val name = "Berlin_(city)"
+    assertSame(name, NTriplesReader.decodeURL(name))
+  }
+
+}
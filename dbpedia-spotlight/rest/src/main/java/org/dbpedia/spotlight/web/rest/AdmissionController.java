@@ -0,0 +1,131 @@
+/*
+ * Copyright 2011 DBpedia Spotlight Development Team
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  Check our project website for information on how to acknowledge the authors and how to contribute to the project: http://spotlight.dbpedia.org
+ */
+
+package org.dbpedia.spotlight.web.rest;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbpedia.spotlight.exceptions.OverloadException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides whether a request may start processing, and keeps counters of rejected and timed-out requests.
+ *
+ * A request is admitted if both the number of requests in flight and the number of characters
+ * of text in flight stay within their limits. Otherwise it is rejected immediately with an
+ * {@link OverloadException}, so that clients can back off instead of waiting in a queue that
+ * makes latency worse for everyone. Limits below or equal to 0 disable the respective check.
+ */
+public class AdmissionController {
+
+    static Log LOG = LogFactory.getLog(AdmissionController.class);
+
+    private final int maxInFlight;
+    private final long maxQueuedCharacters;
+    private final long requestTimeoutMillis;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong queuedCharacters = new AtomicLong();
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong shed = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+
+    public AdmissionController(int maxInFlight, long maxQueuedCharacters, long requestTimeoutMillis) {
+        this.maxInFlight = maxInFlight;
+        this.maxQueuedCharacters = maxQueuedCharacters;
+        this.requestTimeoutMillis = requestTimeoutMillis;
+    }
+
+    /**
+     * Admission controller that accepts every request and sets no deadline.
+     */
+    public static AdmissionController unbounded() {
+        return new AdmissionController(0, 0, 0);
+    }
+
+    /**
+     * Admits a request with a text of the given length. Every successful call must be paired with
+     * a call to {@link #release(int)} with the same length in a finally block.
+     */
+    public void admit(int characters) throws OverloadException {
+        int requests = inFlight.incrementAndGet();
+        if (maxInFlight > 0 && requests > maxInFlight) {
+            inFlight.decrementAndGet();
+            shed.incrementAndGet();
+            LOG.warn(String.format("Rejecting request: %d requests in flight (max %d).", requests - 1, maxInFlight));
+            throw new OverloadException(String.format("Server is busy (%d requests in flight). Please retry later.", requests - 1), false);
+        }
+
+        long chars = queuedCharacters.addAndGet(characters);
+        // A single text larger than the budget is still admitted when nothing else is running.
+        if (maxQueuedCharacters > 0 && chars > maxQueuedCharacters && chars != characters) {
+            queuedCharacters.addAndGet(-characters);
+            inFlight.decrementAndGet();
+            shed.incrementAndGet();
+            LOG.warn(String.format("Rejecting request: %d characters in flight (max %d).", chars - characters, maxQueuedCharacters));
+            throw new OverloadException(String.format("Server is busy (%d characters in flight). Please retry later.", chars - characters), true);
+        }
+
+        admitted.incrementAndGet();
+    }
+
+    public void release(int characters) {
+        queuedCharacters.addAndGet(-characters);
+        inFlight.decrementAndGet();
+    }
+
+    public void recordTimeout() {
+        timedOut.incrementAndGet();
+    }
+
+    /**
+     * @return the time in milliseconds a request may take before processing is abandoned, 0 if unlimited.
+     */
+    public long getRequestTimeoutMillis() {
+        return requestTimeoutMillis;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getQueuedCharacters() {
+        return queuedCharacters.get();
+    }
+
+    public long getAdmitted() {
+        return admitted.get();
+    }
+
+    public long getShed() {
+        return shed.get();
+    }
+
+    public long getTimedOut() {
+        return timedOut.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AdmissionController[maxInFlight=%d, maxQueuedCharacters=%d, timeout=%dms]", maxInFlight, maxQueuedCharacters, requestTimeoutMillis);
+    }
+
+}
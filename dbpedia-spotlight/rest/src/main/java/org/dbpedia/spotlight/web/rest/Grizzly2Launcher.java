@@ -0,0 +1,132 @@
+/*
+ * Copyright 2011 DBpedia Spotlight Development Team
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  Check our project website for information on how to acknowledge the authors and how to contribute to the project: http://spotlight.dbpedia.org
+ */
+
+package org.dbpedia.spotlight.web.rest;
+
+import com.sun.jersey.spi.container.servlet.ServletContainer;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.glassfish.grizzly.http.CompressionConfig;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.KeepAlive;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.http2.Http2AddOn;
+import org.glassfish.grizzly.memory.ByteBufferManager;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.servlet.ServletRegistration;
+import org.glassfish.grizzly.servlet.WebappContext;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Starts the REST resources on a Grizzly 2 server instead of the Grizzly 1.9 {@link com.sun.grizzly.http.SelectorThread}.
+ * The Jersey servlet and its init parameters are the same, so both servers serve identical resources and can
+ * be compared by switching server.container.
+ *
+ * Besides the thread and POST size settings shared with the old server, this server is configured by:
+ * <ul>
+ *     <li>http.gzip (true): gzip responses if the client accepts it; gzipped request bodies are always decoded</li>
+ *     <li>http.gzip.min (1024): minimum response size in bytes to compress</li>
+ *     <li>http.keepalive.timeout.s (30): seconds an idle keep-alive connection is kept open, -1 for no limit</li>
+ *     <li>http.keepalive.requests.max (-1): requests served on one connection before it is closed, -1 for no limit</li>
+ *     <li>http.h2c (false): accept HTTP/2 over cleartext connections (prior knowledge or HTTP/1.1 upgrade)</li>
+ *     <li>http.buffers.direct (true): read and write through direct buffers instead of heap buffers</li>
+ * </ul>
+ */
+public class Grizzly2Launcher {
+
+    static Log LOG = LogFactory.getLog(Grizzly2Launcher.class);
+
+    private static final String[] COMPRESSABLE_TYPES = {
+            "text/xml", "application/xml", "application/json", "text/html", "application/xhtml+xml",
+            "text/turtle", "application/n-triples", "application/ld+json", "application/cbor"
+    };
+
+    /**
+     * Creates, but does not start, a server for the Jersey application described by initParams.
+     *
+     * @param serverURI address to listen on; its path is the context path of the application
+     * @param initParams init parameters of the Jersey servlet
+     */
+    public static HttpServer create(URI serverURI, Map<String, String> initParams, int coreThreads, int maxThreads,
+                                    int maxPostSize, Properties properties) {
+        boolean gzip = Boolean.parseBoolean(properties.getProperty("http.gzip", "true"));
+        int gzipMinSize = Integer.parseInt(properties.getProperty("http.gzip.min", "1024"));
+        int keepAliveTimeout = Integer.parseInt(properties.getProperty("http.keepalive.timeout.s", "30"));
+        int keepAliveRequests = Integer.parseInt(properties.getProperty("http.keepalive.requests.max", "-1"));
+        boolean h2c = Boolean.parseBoolean(properties.getProperty("http.h2c", "false"));
+        boolean directBuffers = Boolean.parseBoolean(properties.getProperty("http.buffers.direct", "true"));
+
+        String host = serverURI.getHost() == null ? NetworkListener.DEFAULT_NETWORK_HOST : serverURI.getHost();
+        int port = serverURI.getPort() == -1 ? 80 : serverURI.getPort();
+        NetworkListener listener = new NetworkListener("spotlight", host, port);
+        listener.setMaxPostSize(maxPostSize);
+
+        TCPNIOTransport transport = listener.getTransport();
+        transport.setTcpNoDelay(true);
+        transport.setWorkerThreadPoolConfig(ThreadPoolConfig.defaultConfig()
+                .setPoolName("spotlight-worker")
+                .setCorePoolSize(coreThreads)
+                .setMaxPoolSize(maxThreads));
+        if (directBuffers)
+            transport.setMemoryManager(new ByteBufferManager(true));
+
+        KeepAlive keepAlive = listener.getKeepAlive();
+        keepAlive.setIdleTimeoutInSeconds(keepAliveTimeout);
+        keepAlive.setMaxRequestsCount(keepAliveRequests);
+
+        if (gzip) {
+            CompressionConfig compression = listener.getCompressionConfig();
+            compression.setCompressionMode(CompressionConfig.CompressionMode.ON);
+            compression.setCompressionMinSize(gzipMinSize);
+            compression.setCompressableMimeTypes(COMPRESSABLE_TYPES);
+        }
+
+        if (h2c)
+            listener.registerAddOn(new Http2AddOn());
+
+        HttpServer server = new HttpServer();
+        server.addListener(listener);
+
+        String contextPath = serverURI.getPath() == null || serverURI.getPath().equals("/") ? "" : serverURI.getPath();
+        WebappContext context = new WebappContext("DBpedia Spotlight", contextPath);
+        ServletRegistration registration = context.addServlet("jersey", ServletContainer.class);
+        registration.setInitParameters(initParams);
+        registration.addMapping("/*");
+        context.deploy(server);
+
+        LOG.info(String.format("Grizzly 2 server: gzip=%s (min %d bytes), keep-alive timeout=%ds, keep-alive requests=%d, h2c=%s, direct buffers=%s",
+                gzip, gzipMinSize, keepAliveTimeout, keepAliveRequests, h2c, directBuffers));
+        return server;
+    }
+
+    /**
+     * Creates and starts a server, see {@link #create(URI, Map, int, int, int, Properties)}.
+     */
+    public static HttpServer start(URI serverURI, Map<String, String> initParams, int coreThreads, int maxThreads,
+                                   int maxPostSize, Properties properties) throws IOException {
+        HttpServer server = create(serverURI, initParams, coreThreads, maxThreads, maxPostSize, properties);
+        server.start();
+        return server;
+    }
+
+}
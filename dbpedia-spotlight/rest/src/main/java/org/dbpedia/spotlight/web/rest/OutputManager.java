@@ -26,11 +26,12 @@ import org.dbpedia.spotlight.exceptions.OutputException;
 import org.dbpedia.spotlight.model.DBpediaResourceOccurrence;
 import org.dbpedia.spotlight.model.OntologyType;
 import org.dbpedia.spotlight.model.SurfaceForm;
-import org.dbpedia.spotlight.web.rest.formats.NIFWrapper;
+import org.dbpedia.spotlight.web.rest.formats.NIFStreamWriter;
 import org.dbpedia.spotlight.web.rest.formats.SpotlightConfiguration;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.AttributesImpl;
 
+import javax.ws.rs.core.StreamingOutput;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
@@ -96,6 +97,9 @@ public class OutputManager {
         atts.addAttribute("","","types","CDATA",targetTypesString);
         atts.addAttribute("","","sparql","CDATA",sparqlQuery);
         atts.addAttribute("","","policy","CDATA",policy);
+        String disambiguationMode = SpotlightInterface.disambiguationMode(occList);
+        if (disambiguationMode != null)
+            atts.addAttribute("","","disambiguationMode","CDATA",disambiguationMode);
         //atts.addAttribute("","","coreferenceResolution","CDATA",String.valueOf(coreferenceResolution));
         hd.startElement("","","Annotation",atts);
 
@@ -111,11 +115,12 @@ public class OutputManager {
         return xml;
     }
 
-    protected String makeNIF(String text, List<DBpediaResourceOccurrence> occList, String format, String prefix) throws OutputException {
+    protected StreamingOutput makeNIF(final String text, final List<DBpediaResourceOccurrence> occList, final String format, String prefix) {
 
-        NIFWrapper nif = new NIFWrapper(SpotlightConfiguration.configuration());
-        nif.entityFromResource(occList);
-        return nif.getNIF(format);
+        // The NIF is written when the response is sent, without building it in memory first.
+        // Strings are relative to the prefix if there is one, otherwise to the Spotlight URL.
+        SpotlightConfiguration configuration = SpotlightConfiguration.configuration();
+        return NIFStreamWriter.streaming(configuration, format, prefix != null ? prefix : configuration.getSpotlightURL(), text, occList);
 
     }
 
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2011 DBpedia Spotlight Development Team
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  Check our project website for information on how to acknowledge the authors and how to contribute to the project: http://spotlight.dbpedia.org
+ */
+
+package org.dbpedia.spotlight.web.rest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Response;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the responses of recent requests, so that identical requests (e.g. re-submitted pages or
+ * boilerplate snippets) are answered without spotting and disambiguation.
+ *
+ * Responses are keyed by a hash of the text and all request parameters that influence the response,
+ * including the output format. The cache is bounded by the approximate size of the stored responses
+ * and evicts the least recently used ones. Only requests with a text of at most maxTextLength characters
+ * are cached; requests with a URL are never cached, since the page may change. The key is also
+ * sent as ETag, so that clients can revalidate with If-None-Match and get a 304 response.
+ */
+public class ResponseCache {
+
+    private final long maxBytes;
+    private final int maxTextLength;
+
+    private final LinkedHashMap<String, Object> entries = new LinkedHashMap<String, Object>(16, 0.75f, true);
+    private long bytes = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ResponseCache(long maxBytes, int maxTextLength) {
+        this.maxBytes = maxBytes;
+        this.maxTextLength = maxTextLength;
+    }
+
+    /**
+     * Response cache that does not store anything.
+     */
+    public static ResponseCache disabled() {
+        return new ResponseCache(0, 0);
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * Checks whether the response for a request with the given text and URL may be cached.
+     */
+    public boolean admits(String text, String inUrl) {
+        return isEnabled() && (inUrl == null || inUrl.isEmpty()) && text != null && !text.isEmpty() && text.length() <= maxTextLength;
+    }
+
+    /**
+     * Computes the cache key from the request parameters.
+     */
+    public static String key(Object... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Object part : parts) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest())
+                sb.append(String.format("%02x", b));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long sizeOf(Object entity) {
+        if (entity instanceof byte[])
+            return ((byte[]) entity).length;
+        if (entity instanceof String)
+            return 2L * ((String) entity).length();
+        return -1;
+    }
+
+    public Object get(String key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    public void put(String key, Object entity) {
+        long size = sizeOf(entity);
+        if (size < 0 || size > maxBytes)
+            return;
+
+        synchronized (entries) {
+            Object previous = entries.put(key, entity);
+            if (previous != null)
+                bytes -= sizeOf(previous);
+            bytes += size;
+
+            Iterator<Map.Entry<String, Object>> it = entries.entrySet().iterator();
+            while (bytes > maxBytes && it.hasNext()) {
+                Map.Entry<String, Object> eldest = it.next();
+                bytes -= sizeOf(eldest.getValue());
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Answers the request from the cache or from the producer, adding an ETag. Returns 304 Not Modified
+     * if the client already has the cached response.
+     *
+     * @param request HTTP request, for the If-None-Match header
+     * @param key cache key of the request, see {@link #key(Object...)}
+     * @param producer computes the response entity (String or byte[]) on a cache miss
+     */
+    public Response respond(HttpServletRequest request, String key, Callable<Object> producer) throws Exception {
+        EntityTag tag = new EntityTag(key);
+
+        Object entity = get(key);
+        if (entity != null) {
+            String ifNoneMatch = request == null ? null : request.getHeader("If-None-Match");
+            if (ifNoneMatch != null && (ifNoneMatch.contains(tag.toString()) || ifNoneMatch.trim().equals("*"))) {
+                notModified.incrementAndGet();
+                return Response.notModified(tag).header("Access-Control-Allow-Origin", "*").build();
+            }
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            entity = producer.call();
+            put(key, entity);
+        }
+
+        return Response.ok().entity(entity).tag(tag).header("Access-Control-Allow-Origin", "*").build();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getNotModified() {
+        return notModified.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public double getHitRate() {
+        long requests = hits.get() + notModified.get() + misses.get();
+        return requests == 0 ? 0.0 : (hits.get() + notModified.get()) / (double) requests;
+    }
+
+    public long getBytes() {
+        synchronized (entries) {
+            return bytes;
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (!isEnabled())
+            return "ResponseCache[disabled]";
+        return String.format("ResponseCache[maxBytes=%d, maxTextLength=%d]", maxBytes, maxTextLength);
+    }
+}
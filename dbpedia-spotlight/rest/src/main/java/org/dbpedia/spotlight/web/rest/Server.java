@@ -22,17 +22,24 @@ import com.sun.grizzly.http.SelectorThread;
 import com.sun.jersey.api.container.grizzly.GrizzlyWebContainerFactory;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.glassfish.grizzly.http.server.HttpServer;
 import org.dbpedia.spotlight.db.SpotlightModel;
+import org.dbpedia.spotlight.db.memory.MemoryResourceStore;
+import org.dbpedia.spotlight.db.model.ResourceStore;
 import org.dbpedia.spotlight.db.model.TextTokenizer;
+import org.dbpedia.spotlight.disambiguate.CostModel;
 import org.dbpedia.spotlight.disambiguate.ParagraphDisambiguatorJ;
 import org.dbpedia.spotlight.exceptions.InitializationException;
 import org.dbpedia.spotlight.exceptions.InputException;
+import org.dbpedia.spotlight.filter.annotations.TypeMaskCompiler;
 import org.dbpedia.spotlight.model.DBpediaResource;
 import org.dbpedia.spotlight.model.SpotlightConfiguration;
 import org.dbpedia.spotlight.model.SpotlightFactory;
 import org.dbpedia.spotlight.model.SpotterConfiguration;
+import org.dbpedia.spotlight.sparql.CachedSparqlQueryExecuter;
 import org.dbpedia.spotlight.sparql.SparqlQueryExecuter;
 import org.dbpedia.spotlight.spot.Spotter;
+import org.dbpedia.spotlight.util.Metrics;
 import org.dbpedia.spotlight.model.SpotterConfiguration.SpotterPolicy;
 import org.dbpedia.spotlight.model.SpotlightConfiguration.DisambiguationPolicy;
 import scala.collection.JavaConverters;
@@ -42,6 +49,7 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -79,8 +87,27 @@ public class Server {
 
     private static SparqlQueryExecuter sparqlExecuter = null;
 
+    // Compiled type filters over the type IDs of the model, null if the model has no memory resource store
+    private static TypeMaskCompiler typeMaskCompiler = null;
+
+    // Apply the whitelist filters of a request to the candidates before disambiguation
+    private static boolean filterPushdown = false;
+
+    // Responses of recent identical requests
+    private static ResponseCache responseCache = ResponseCache.disabled();
+
     private static List<Double> similarityThresholds = new ArrayList<Double>();
 
+    // Bounds the concurrency of CPU-bound (spotting, disambiguation) and I/O-bound (&url, SPARQL) stages
+    private static StageLimiter annotateStage = new StageLimiter("annotate", Integer.MAX_VALUE);
+    private static StageLimiter ioStage = new StageLimiter("io", Integer.MAX_VALUE);
+
+    // Rejects requests when too many requests or characters are in flight and sets per-request deadlines
+    private static AdmissionController admissionController = AdmissionController.unbounded();
+
+    // Chooses between the full and the reduced disambiguation mode based on the estimated cost of a text
+    private static CostModel costModel = CostModel.Disabled();
+
     public static void main(String[] args) throws IOException, InterruptedException, URISyntaxException, ClassNotFoundException, InitializationException {
 
         URI serverURI = new URI(args[1]);
@@ -94,22 +121,72 @@ public class Server {
         initParams.put("com.sun.jersey.config.property.packages", "org.dbpedia.spotlight.web.rest.resources");
         initParams.put("com.sun.jersey.config.property.WadlGeneratorConfig", "org.dbpedia.spotlight.web.rest.wadl.ExternalUriWadlGeneratorConfig");
 
-        // Configurable thread sizing
-        int maxThreads = Integer.parseInt(System.getProperty("threads.max", "5"));
-        int coreThreads = Integer.parseInt(System.getProperty("threads.core", "5"));
+        // Configurable thread sizing. In the "fixed" mode (default) every worker thread runs a whole request,
+        // in the "elastic" mode the worker pool is sized for many concurrent connections and the CPU-bound
+        // annotation stage is bounded separately by the number of cores.
+        String serverMode = System.getProperty("server.mode", "fixed");
+        int cores = Runtime.getRuntime().availableProcessors();
+        boolean elastic = serverMode.equalsIgnoreCase("elastic");
+        if (!elastic && !serverMode.equalsIgnoreCase("fixed"))
+            throw new InitializationException(String.format("Unknown server.mode=%s. Use one of [fixed, elastic].", serverMode));
+
+        int maxThreads = Integer.parseInt(System.getProperty("threads.max", elastic ? String.valueOf(Math.max(64, 16 * cores)) : "5"));
+        int coreThreads = Integer.parseInt(System.getProperty("threads.core", elastic ? String.valueOf(cores) : "5"));
         int maxPostSize = Integer.parseInt(System.getProperty("post.size.max", "2097152")); // 2MB
 
-        SelectorThread threadSelector = GrizzlyWebContainerFactory.create(serverURI, initParams);
-        threadSelector.setMaxThreads(maxThreads);
-        threadSelector.setCoreThreads(coreThreads);
-        threadSelector.setMaxPostSize(maxPostSize);
-        threadSelector.start();
+        int maxAnnotate = Integer.parseInt(System.getProperty("stage.annotate.max", String.valueOf(elastic ? cores : maxThreads)));
+        int maxIO = Integer.parseInt(System.getProperty("stage.io.max", String.valueOf(maxThreads)));
+        setStageLimiters(new StageLimiter("annotate", maxAnnotate), new StageLimiter("io", maxIO));
+
+        // Admission control: reject requests early instead of queueing them when the server is saturated
+        int maxInFlight = Integer.parseInt(System.getProperty("admission.requests.max", "0"));
+        long maxQueuedChars = Long.parseLong(System.getProperty("admission.chars.max", "0"));
+        long requestTimeout = Long.parseLong(System.getProperty("request.timeout.ms", "0"));
+        setAdmissionController(new AdmissionController(maxInFlight, maxQueuedChars, requestTimeout));
+
+        // Cost model that switches expensive texts to a cheaper disambiguation mode (cost.* properties)
+        setCostModel(CostModel.fromProperties(System.getProperties()));
+
+        // Pushdown of support and type filters into the candidate search (changes which candidate is returned, see CandidateFilter)
+        setFilterPushdown(Boolean.parseBoolean(System.getProperty("filter.pushdown", "false")));
+
+        // Response cache for identical requests with short texts, disabled unless a byte budget is given
+        long cacheBytes = Long.parseLong(System.getProperty("cache.bytes.max", "0"));
+        int cacheTextLength = Integer.parseInt(System.getProperty("cache.text.max", "10000"));
+        setResponseCache(new ResponseCache(cacheBytes, cacheTextLength));
+
+        // Stage timers and histograms exported at /metrics
+        Metrics.enabled_$eq(Boolean.parseBoolean(System.getProperty("metrics.enabled", "true")));
+
+        // HTTP container: Grizzly 1.9 (default) or the non-blocking Grizzly 2 server with gzip, keep-alive and h2c (http.* properties)
+        String container = System.getProperty("server.container", "grizzly");
+        if (!container.equalsIgnoreCase("grizzly") && !container.equalsIgnoreCase("grizzly2"))
+            throw new InitializationException(String.format("Unknown server.container=%s. Use one of [grizzly, grizzly2].", container));
+
+        SelectorThread threadSelector = null;
+        HttpServer httpServer = null;
+        if (container.equalsIgnoreCase("grizzly2")) {
+            httpServer = Grizzly2Launcher.start(serverURI, initParams, coreThreads, maxThreads, maxPostSize, System.getProperties());
+        } else {
+            threadSelector = GrizzlyWebContainerFactory.create(serverURI, initParams);
+            threadSelector.setMaxThreads(maxThreads);
+            threadSelector.setCoreThreads(coreThreads);
+            threadSelector.setMaxPostSize(maxPostSize);
+            threadSelector.start();
+        }
 
         System.err.println("Server started in " + System.getProperty("user.dir") + " listening on " + serverURI);
 
-        LOG.info(String.format(" Core threads: %d", threadSelector.getCoreThreads()));
-        LOG.info(String.format("  Max threads: %d", threadSelector.getMaxThreads()));
-        LOG.info(String.format("Max POST size: %d", threadSelector.getMaxPostSize()));
+        LOG.info(String.format("    Container: %s", container));
+        LOG.info(String.format(" Core threads: %d", coreThreads));
+        LOG.info(String.format("  Max threads: %d", maxThreads));
+        LOG.info(String.format("Max POST size: %d", maxPostSize));
+        LOG.info(String.format("  Server mode: %s (annotate stage: %d, io stage: %d)", serverMode, maxAnnotate, maxIO));
+        LOG.info(String.format("    Admission: %s", admissionController));
+        LOG.info(String.format("   Cost model: %s", costModel));
+        LOG.info(String.format("Filter pushdown: %s", filterPushdown));
+        LOG.info(String.format("Response cache: %s", responseCache));
+        LOG.info(String.format("      Metrics: %s", Metrics.enabled() ? "enabled" : "disabled"));
 
         while(running) {
             Thread.sleep(100);
@@ -117,7 +194,10 @@ public class Server {
 
         //Stop the HTTP server
         //server.stop(0);
-        threadSelector.stopEndpoint();
+        if (httpServer != null)
+            httpServer.shutdownNow();
+        else
+            threadSelector.stopEndpoint();
         System.exit(0);
 
     }
@@ -173,6 +253,39 @@ public class Server {
 
     }
 
+    public static Collection<ParagraphDisambiguatorJ> getDisambiguators() {
+        return disambiguators.values();
+    }
+
+
+    public static void setStageLimiters(StageLimiter annotate, StageLimiter io) {
+        Server.annotateStage = annotate;
+        Server.ioStage = io;
+    }
+
+    public static StageLimiter getAnnotateStage() {
+        return annotateStage;
+    }
+
+    public static StageLimiter getIOStage() {
+        return ioStage;
+    }
+
+    public static void setAdmissionController(AdmissionController admissionController) {
+        Server.admissionController = admissionController;
+    }
+
+    public static AdmissionController getAdmissionController() {
+        return admissionController;
+    }
+
+    public static void setCostModel(CostModel costModel) {
+        Server.costModel = costModel;
+    }
+
+    public static CostModel getCostModel() {
+        return costModel;
+    }
 
     public static SpotlightConfiguration getConfiguration() {
         return configuration;
@@ -202,18 +315,51 @@ public class Server {
         Server.namespacePrefix = namespacePrefix;
     }
 
-    private static void setSparqlExecuter(String endpoint, String graph)
+    private static void setSparqlExecuter(String endpoint, String graph, ResourceStore resourceStore)
     {
         if (endpoint == null || endpoint.equals(""))  endpoint= "http://dbpedia.org/sparql";
         if (graph == null || graph.equals(""))  graph= "http://dbpedia.org";
 
-        Server.sparqlExecuter = new SparqlQueryExecuter(graph, endpoint);
+        // Results of recent queries are kept as resource IDs of the model (sparql.cache.* properties)
+        int cacheSize = Integer.parseInt(System.getProperty("sparql.cache.size", "256"));
+        if (resourceStore != null && cacheSize > 0) {
+            long ttl = Long.parseLong(System.getProperty("sparql.cache.ttl.ms", "3600000"));
+            int prefetchThreads = Integer.parseInt(System.getProperty("sparql.prefetch.threads", "4"));
+            Server.sparqlExecuter = new CachedSparqlQueryExecuter(graph, endpoint, resourceStore, cacheSize, ttl, prefetchThreads);
+        } else {
+            Server.sparqlExecuter = new SparqlQueryExecuter(graph, endpoint);
+        }
     }
 
     public static SparqlQueryExecuter getSparqlExecute(){
         return sparqlExecuter;
     }
 
+    private static void setTypeMaskCompiler(ResourceStore resourceStore) {
+        if (resourceStore instanceof MemoryResourceStore)
+            Server.typeMaskCompiler = new TypeMaskCompiler((MemoryResourceStore) resourceStore, Integer.parseInt(System.getProperty("types.cache.size", "256")));
+    }
+
+    public static TypeMaskCompiler getTypeMaskCompiler() {
+        return typeMaskCompiler;
+    }
+
+    public static void setResponseCache(ResponseCache responseCache) {
+        Server.responseCache = responseCache;
+    }
+
+    public static ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    public static void setFilterPushdown(boolean filterPushdown) {
+        Server.filterPushdown = filterPushdown;
+    }
+
+    public static boolean isFilterPushdown() {
+        return filterPushdown;
+    }
+
     private static void setSimilarityThresholds( List<Double> similarityThresholds){
        Server.similarityThresholds =  similarityThresholds;
     }
@@ -250,7 +396,8 @@ public class Server {
         setTokenizer(db.tokenizer());
         setSpotters(db.spotters());
         setDisambiguators(db.disambiguators());
-        setSparqlExecuter(db.properties().getProperty("endpoint", ""),db.properties().getProperty("graph", ""));
+        setSparqlExecuter(db.properties().getProperty("endpoint", ""),db.properties().getProperty("graph", ""), db.resourceStore());
+        setTypeMaskCompiler(db.resourceStore());
 
     }
 }
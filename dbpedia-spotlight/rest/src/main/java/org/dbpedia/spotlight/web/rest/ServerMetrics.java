@@ -0,0 +1,153 @@
+/*
+ * Copyright 2011 DBpedia Spotlight Development Team
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  Check our project website for information on how to acknowledge the authors and how to contribute to the project: http://spotlight.dbpedia.org
+ */
+
+package org.dbpedia.spotlight.web.rest;
+
+import org.dbpedia.spotlight.db.DBTwoStepDisambiguator;
+import org.dbpedia.spotlight.disambiguate.ParagraphDisambiguatorJ;
+import org.dbpedia.spotlight.sparql.CachedSparqlQueryExecuter;
+import org.dbpedia.spotlight.util.Distribution;
+import org.dbpedia.spotlight.util.Metrics;
+import org.dbpedia.spotlight.web.rest.formats.PrometheusWriter;
+import scala.collection.JavaConversions;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.util.Map;
+
+/**
+ * Collects the pipeline {@link Metrics} and the state of the server (admission control, stage limiters,
+ * caches, JVM) in the Prometheus text format, see the /metrics resource.
+ */
+public class ServerMetrics {
+
+    private static final double NANOS = 1e-9;
+
+    public static String prometheus() {
+        PrometheusWriter out = new PrometheusWriter();
+
+        out.family("spotlight_stage_latency_seconds", "summary", "Latency of the stages of the annotation pipeline.");
+        for (Distribution stage : JavaConversions.seqAsJavaList(Metrics.stages()))
+            out.summary("spotlight_stage_latency_seconds", stage, NANOS, "stage", stage.name());
+
+        out.family("spotlight_requests_total", "counter", "Annotation requests that were admitted.");
+        out.sample("spotlight_requests_total", Metrics.requests().sum());
+        out.family("spotlight_characters_total", "counter", "Characters of the admitted annotation requests.");
+        out.sample("spotlight_characters_total", Metrics.characters().sum());
+
+        writeDistribution(out, Metrics.SpotsPerRequest());
+        writeDistribution(out, Metrics.CandidatesPerSpot());
+
+        AdmissionController admission = Server.getAdmissionController();
+        out.family("spotlight_admission_in_flight", "gauge", "Requests in flight.");
+        out.sample("spotlight_admission_in_flight", admission.getInFlight());
+        out.family("spotlight_admission_queued_characters", "gauge", "Characters of the requests in flight.");
+        out.sample("spotlight_admission_queued_characters", admission.getQueuedCharacters());
+        out.family("spotlight_admission_requests_total", "counter", "Requests by admission outcome.");
+        out.sample("spotlight_admission_requests_total", admission.getAdmitted(), "outcome", "admitted");
+        out.sample("spotlight_admission_requests_total", admission.getShed(), "outcome", "shed");
+        out.sample("spotlight_admission_requests_total", admission.getTimedOut(), "outcome", "timed_out");
+
+        out.family("spotlight_stage_active", "gauge", "Threads working in a limited stage.");
+        out.sample("spotlight_stage_active", Server.getAnnotateStage().getActive(), "stage", Server.getAnnotateStage().getName());
+        out.sample("spotlight_stage_active", Server.getIOStage().getActive(), "stage", Server.getIOStage().getName());
+        out.family("spotlight_stage_waiting", "gauge", "Threads waiting to enter a limited stage.");
+        out.sample("spotlight_stage_waiting", Server.getAnnotateStage().getWaiting(), "stage", Server.getAnnotateStage().getName());
+        out.sample("spotlight_stage_waiting", Server.getIOStage().getWaiting(), "stage", Server.getIOStage().getName());
+
+        writeCaches(out);
+
+        long fastPath = 0, total = 0;
+        for (ParagraphDisambiguatorJ disambiguator : Server.getDisambiguators()) {
+            if (disambiguator.disambiguator() instanceof DBTwoStepDisambiguator) {
+                DBTwoStepDisambiguator twoStep = (DBTwoStepDisambiguator) disambiguator.disambiguator();
+                fastPath += twoStep.fastPathOccurrences().get();
+                total += twoStep.totalOccurrences().get();
+            }
+        }
+        out.family("spotlight_disambiguated_occurrences_total", "counter", "Disambiguated occurrences by path.");
+        out.sample("spotlight_disambiguated_occurrences_total", fastPath, "path", "fast");
+        out.sample("spotlight_disambiguated_occurrences_total", total - fastPath, "path", "full");
+
+        out.family("spotlight_model_store_bytes", "gauge", "Size of the serialized model stores.");
+        for (Map.Entry<String, Long> store : Metrics.getStoreBytes().entrySet())
+            out.sample("spotlight_model_store_bytes", store.getValue(), "store", store.getKey());
+
+        writeJVM(out);
+        return out.toString();
+    }
+
+    private static void writeDistribution(PrometheusWriter out, Distribution distribution) {
+        String name = "spotlight_" + distribution.name();
+        out.family(name, "summary", distribution.help() + ".");
+        out.summary(name, distribution, 1.0);
+    }
+
+    private static void writeCaches(PrometheusWriter out) {
+        out.family("spotlight_cache_requests_total", "counter", "Cache lookups by cache and result.");
+        ResponseCache responseCache = Server.getResponseCache();
+        out.sample("spotlight_cache_requests_total", responseCache.getHits(), "cache", "response", "result", "hit");
+        out.sample("spotlight_cache_requests_total", responseCache.getNotModified(), "cache", "response", "result", "not_modified");
+        out.sample("spotlight_cache_requests_total", responseCache.getMisses(), "cache", "response", "result", "miss");
+
+        CachedSparqlQueryExecuter sparql = Server.getSparqlExecute() instanceof CachedSparqlQueryExecuter
+                ? (CachedSparqlQueryExecuter) Server.getSparqlExecute() : null;
+        if (sparql != null) {
+            out.sample("spotlight_cache_requests_total", sparql.getHits(), "cache", "sparql", "result", "hit");
+            out.sample("spotlight_cache_requests_total", sparql.getMisses(), "cache", "sparql", "result", "miss");
+        }
+
+        out.family("spotlight_cache_entries", "gauge", "Entries in a cache.");
+        out.sample("spotlight_cache_entries", responseCache.size(), "cache", "response");
+        if (sparql != null)
+            out.sample("spotlight_cache_entries", sparql.size(), "cache", "sparql");
+        out.family("spotlight_cache_bytes", "gauge", "Bytes held by the response cache.");
+        out.sample("spotlight_cache_bytes", responseCache.getBytes(), "cache", "response");
+        out.family("spotlight_cache_evictions_total", "counter", "Entries evicted from the response cache.");
+        out.sample("spotlight_cache_evictions_total", responseCache.getEvictions(), "cache", "response");
+    }
+
+    private static void writeJVM(PrometheusWriter out) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        MemoryUsage heap = memory.getHeapMemoryUsage();
+        MemoryUsage nonHeap = memory.getNonHeapMemoryUsage();
+        out.family("jvm_memory_bytes_used", "gauge", "Used bytes of a JVM memory area.");
+        out.sample("jvm_memory_bytes_used", heap.getUsed(), "area", "heap");
+        out.sample("jvm_memory_bytes_used", nonHeap.getUsed(), "area", "nonheap");
+        out.family("jvm_memory_bytes_committed", "gauge", "Committed bytes of a JVM memory area.");
+        out.sample("jvm_memory_bytes_committed", heap.getCommitted(), "area", "heap");
+        out.sample("jvm_memory_bytes_committed", nonHeap.getCommitted(), "area", "nonheap");
+        out.family("jvm_memory_bytes_max", "gauge", "Maximum bytes of a JVM memory area.");
+        out.sample("jvm_memory_bytes_max", heap.getMax(), "area", "heap");
+
+        out.family("jvm_gc_collection_seconds_count", "counter", "Collections of a garbage collector.");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            out.sample("jvm_gc_collection_seconds_count", gc.getCollectionCount(), "gc", gc.getName());
+        out.family("jvm_gc_collection_seconds_sum", "counter", "Time spent in a garbage collector.");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            out.sample("jvm_gc_collection_seconds_sum", gc.getCollectionTime() / 1000.0, "gc", gc.getName());
+
+        out.family("jvm_threads_current", "gauge", "Live JVM threads.");
+        out.sample("jvm_threads_current", ManagementFactory.getThreadMXBean().getThreadCount());
+        out.family("process_uptime_seconds", "gauge", "Uptime of the JVM.");
+        out.sample("process_uptime_seconds", ManagementFactory.getRuntimeMXBean().getUptime() / 1000.0);
+    }
+
+}
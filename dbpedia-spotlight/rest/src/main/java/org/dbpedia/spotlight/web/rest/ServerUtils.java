@@ -5,13 +5,21 @@ import de.l3s.boilerpipe.extractors.ArticleExtractor;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dbpedia.spotlight.exceptions.InputException;
+import org.dbpedia.spotlight.exceptions.OverloadException;
+import org.dbpedia.spotlight.exceptions.TimeoutException;
+import org.dbpedia.spotlight.util.Trace;
 import org.xml.sax.InputSource;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Callable;
 
 /**
  * @author pablomendes
@@ -19,6 +27,9 @@ import java.util.Objects;
 public class ServerUtils {
     static Log LOG = LogFactory.getLog("ServerUtils");
 
+    // Value of the debug parameter that returns the stage timings of a request
+    public static final String TIMINGS = "timings";
+
     // Sets the necessary headers in order to enable CORS
     public static Response ok(String response) {
         Objects.requireNonNull(response);
@@ -26,6 +37,92 @@ public class ServerUtils {
         return Response.ok().entity(response).header("Access-Control-Allow-Origin", "*").build();
     }
 
+    public static Response ok(StreamingOutput response) {
+        Objects.requireNonNull(response);
+
+        return Response.ok().entity(response).header("Access-Control-Allow-Origin", "*").build();
+    }
+
+    public static Response ok(byte[] response) {
+        Objects.requireNonNull(response);
+
+        return Response.ok().entity(response).header("Access-Control-Allow-Origin", "*").build();
+    }
+
+    /**
+     * Answers a request from the {@link ResponseCache} if possible, otherwise from the producer.
+     *
+     * @param keyParts all request parameters that influence the response, including the output format
+     * @param producer computes the response entity (String or byte[])
+     */
+    public static Response cached(HttpServletRequest request, String text, String inUrl, Object[] keyParts, Callable<Object> producer) throws Exception {
+        if (TIMINGS.equals(request.getParameter("debug")))
+            return traced(producer);
+
+        ResponseCache cache = Server.getResponseCache();
+        if (cache.admits(text, inUrl))
+            return cache.respond(request, ResponseCache.key(keyParts), producer);
+
+        Object entity = producer.call();
+        if (entity instanceof byte[])
+            return ok((byte[]) entity);
+        return ok((String) entity);
+    }
+
+    /**
+     * Answers a request with debug=timings: runs the producer with a {@link Trace} and returns the stage
+     * timings in the Server-Timing header and the work counters in the X-Spotlight-Counters header.
+     * Traced requests bypass the response cache.
+     */
+    public static Response traced(Callable<Object> producer) throws Exception {
+        Trace trace = new Trace();
+        long start = System.nanoTime();
+        Object entity = SpotlightInterface.traced(trace, producer);
+        long total = System.nanoTime() - start;
+
+        return Response.ok().entity(entity)
+                .header("Access-Control-Allow-Origin", "*")
+                .header("Access-Control-Expose-Headers", "Server-Timing, X-Spotlight-Counters")
+                .header("Server-Timing", serverTiming(trace, total))
+                .header("X-Spotlight-Counters", counters(trace))
+                .build();
+    }
+
+    /**
+     * Formats the timings of a trace as Server-Timing header, in milliseconds.
+     */
+    static String serverTiming(Trace trace, long totalNanos) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> timing : trace.getTimings().entrySet())
+            sb.append(String.format(Locale.ROOT, "%s;dur=%.3f, ", timing.getKey(), timing.getValue() / 1e6));
+        sb.append(String.format(Locale.ROOT, "total;dur=%.3f", totalNanos / 1e6));
+        return sb.toString();
+    }
+
+    static String counters(Trace trace) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> counter : trace.getCounters().entrySet()) {
+            if (sb.length() > 0)
+                sb.append(", ");
+            sb.append(counter.getKey()).append('=').append(counter.getValue());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Chooses the HTTP status for a failed request: 429/503 with Retry-After when the request was shed by
+     * the {@link AdmissionController}, 503 when it exceeded its deadline and 400 otherwise.
+     */
+    public static Response.ResponseBuilder errorStatus(Exception exception) {
+        if (exception instanceof OverloadException) {
+            int status = ((OverloadException) exception).isCharacterBudgetExceeded() ? 429 : Response.Status.SERVICE_UNAVAILABLE.getStatusCode();
+            return Response.status(status).header("Retry-After", "1");
+        }
+        if (exception instanceof TimeoutException)
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE);
+        return Response.status(Response.Status.BAD_REQUEST);
+    }
+
     public static String print(Exception exception) {
         Objects.requireNonNull(exception);
         String eMessage = exception.getMessage();
@@ -56,6 +153,7 @@ public class ServerUtils {
             textToProcess = text;
         } else if (inUrl != null && !inUrl.equals("")) {
             LOG.debug("Parsing URL to get main content");
+            Server.getIOStage().enter();
             try {
                 URL url = new URL(inUrl);
                 InputSource is = new InputSource();
@@ -71,6 +169,8 @@ public class ServerUtils {
             } catch (IOException e) {
                 LOG.error("Input URL is not available");
                 textToProcess = "";
+            } finally {
+                Server.getIOStage().exit();
             }
 
         } else {
@@ -21,21 +21,33 @@ package org.dbpedia.spotlight.web.rest;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.dbpedia.spotlight.disambiguate.CandidateFilter;
+import org.dbpedia.spotlight.disambiguate.DisambiguationMode;
 import org.dbpedia.spotlight.disambiguate.ParagraphDisambiguatorJ;
 import org.dbpedia.spotlight.exceptions.InputException;
+import org.dbpedia.spotlight.exceptions.OverloadException;
 import org.dbpedia.spotlight.exceptions.SearchException;
 import org.dbpedia.spotlight.exceptions.SpottingException;
+import org.dbpedia.spotlight.exceptions.TimeoutException;
+import org.dbpedia.spotlight.filter.annotations.TypeMaskCompiler;
 import org.dbpedia.spotlight.filter.visitor.FilterElement;
 import org.dbpedia.spotlight.filter.visitor.FilterOccsImpl;
 import org.dbpedia.spotlight.filter.visitor.OccsFilter;
 import org.dbpedia.spotlight.model.*;
+import org.dbpedia.spotlight.sparql.CachedSparqlQueryExecuter;
 import org.dbpedia.spotlight.spot.Spotter;
+import org.dbpedia.spotlight.util.Deadline;
+import org.dbpedia.spotlight.util.Metrics;
+import org.dbpedia.spotlight.util.Trace;
 import org.dbpedia.spotlight.web.rest.common.AnnotationUnit;
+import org.dbpedia.spotlight.web.rest.formats.CBOROutputManager;
 import org.dbpedia.spotlight.web.rest.formats.JSONOutputManager;
 
+import javax.ws.rs.core.StreamingOutput;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * Controller that interfaces between the REST API and the DBpedia Spotlight core.
@@ -54,21 +66,39 @@ public class SpotlightInterface {
 
     private OutputManager outputManager = new OutputManager();
 
+    // Trace of the request that is processed by the current thread, see traced()
+    private static final ThreadLocal<Trace> requestTrace = new ThreadLocal<Trace>();
+
     public SpotlightInterface(String apiName) {
         this.apiName = apiName;
     }
 
+    /**
+     * Runs the producer with the trace attached to every text it annotates in this thread.
+     */
+    public static Object traced(Trace trace, Callable<Object> producer) throws Exception {
+        requestTrace.set(trace);
+        try {
+            return producer.call();
+        } finally {
+            requestTrace.remove();
+        }
+    }
+
     public List<DBpediaResourceOccurrence> disambiguate(List<SurfaceFormOccurrence> spots, ParagraphDisambiguatorJ disambiguator) throws SearchException, InputException, SpottingException {
         List<DBpediaResourceOccurrence> resources = new ArrayList<DBpediaResourceOccurrence>();
         if (spots.size() == 0) return resources; // nothing to disambiguate
 
-        if (Server.getTokenizer() != null)
-            Server.getTokenizer().tokenizeMaybe(spots.get(0).context());
-
+        Server.getAnnotateStage().enter();
         try {
+            if (Server.getTokenizer() != null)
+                Server.getTokenizer().tokenizeMaybe(spots.get(0).context());
+
             resources = disambiguator.disambiguate(Factory.paragraph().fromJ(spots));
         } catch (UnsupportedOperationException e) {
             throw new SearchException(e);
+        } finally {
+            Server.getAnnotateStage().exit();
         }
         return resources;
     }
@@ -115,11 +145,15 @@ public class SpotlightInterface {
     public List<SurfaceFormOccurrence> spot(String spotterName, Text context) throws InputException, SpottingException {
         Spotter spotter = Server.getSpotter(spotterName);
 
-        if (Server.getTokenizer() != null)
-            Server.getTokenizer().tokenizeMaybe(context);
+        Server.getAnnotateStage().enter();
+        try {
+            if (Server.getTokenizer() != null)
+                Server.getTokenizer().tokenizeMaybe(context);
 
-        List<SurfaceFormOccurrence> spots = spotter.extract(context);
-        return spots;
+            return spotter.extract(context);
+        } finally {
+            Server.getAnnotateStage().exit();
+        }
     }
 
     /**
@@ -137,7 +171,7 @@ public class SpotlightInterface {
                                                           String clientIp,
                                                           String spotterName,
                                                           String disambiguatorName
-    ) throws SearchException, InputException, SpottingException {
+    ) throws SearchException, InputException, SpottingException, OverloadException {
 
         boolean blacklist = policyIsBlacklist(policy);
 
@@ -147,11 +181,59 @@ public class SpotlightInterface {
         if (textString.trim().equals("")) {
             throw new InputException("No text was specified in the &text parameter.");
         }
-        Text context = new Text(textString);
-        context.setFeature(new Score("confidence", confidence));
+
+        AdmissionController admission = Server.getAdmissionController();
+        admission.admit(textString.length());
+        Metrics.recordRequest(textString.length());
+        try {
+            Text context = new Text(textString);
+            context.setFeature(new Score("confidence", confidence));
+            Deadline.set(context, admission.getRequestTimeoutMillis());
+            Trace.set(context, requestTrace.get());
+
+            return getOccurrences(context, confidence, support, ontologyTypesString, sparqlQuery, blacklist, coreferenceResolution, spotterName, disambiguatorName);
+        } catch (TimeoutException e) {
+            admission.recordTimeout();
+            LOG.warn(String.format("Request from %s timed out: %s", clientIp, e.getMessage()));
+            throw e;
+        } finally {
+            admission.release(textString.length());
+        }
+    }
+
+    private List<DBpediaResourceOccurrence> getOccurrences(Text context,
+                                                           double confidence,
+                                                           int support,
+                                                           String ontologyTypesString,
+                                                           String sparqlQuery,
+                                                           boolean blacklist,
+                                                           boolean coreferenceResolution,
+                                                           String spotterName,
+                                                           String disambiguatorName
+    ) throws SearchException, InputException, SpottingException {
+        String textString = context.text();
+
+        // Start the SPARQL query early, so that it runs while the text is spotted and disambiguated
+        boolean remoteFilter = sparqlQuery != null && !sparqlQuery.trim().isEmpty();
+        if (remoteFilter && Server.getSparqlExecute() instanceof CachedSparqlQueryExecuter)
+            ((CachedSparqlQueryExecuter) Server.getSparqlExecute()).prefetch(sparqlQuery);
 
         // Find spots to annotate/disambiguate
         List<SurfaceFormOccurrence> spots = spot(spotterName, context);
+        Metrics.record(Metrics.SpotsPerRequest(), spots.size());
+
+        // Choose how much work to spend on disambiguation
+        DisambiguationMode mode = Server.getCostModel().choose(textString.length(), spots.size());
+        DisambiguationMode.set(context, mode);
+        if (!DisambiguationMode.Full().equals(mode))
+            LOG.info(String.format("Estimated cost %.0f (%d chars, %d spots). Using %s disambiguation mode.",
+                    Server.getCostModel().estimate(textString.length(), spots.size()), textString.length(), spots.size(), mode.name()));
+
+        // Push whitelist filters down to the candidates, so that filtered candidates are not scored
+        if (Server.isFilterPushdown() && !blacklist) {
+            TypeMaskCompiler typeMasks = Server.getTypeMaskCompiler();
+            CandidateFilter.set(context, new CandidateFilter(support, typeMasks == null ? null : typeMasks.compile(ontologyTypesString)));
+        }
 
         // Call annotation or disambiguation
         int maxLengthForOccurrenceCentric = 1200; //TODO configuration
@@ -162,9 +244,18 @@ public class SpotlightInterface {
         }
         ParagraphDisambiguatorJ disambiguator = Server.getDisambiguator(disambiguatorName);
         List<DBpediaResourceOccurrence> occList = disambiguate(spots, disambiguator);
+        Deadline.check(context, "filtering");
 
-        FilterElement filter = new OccsFilter(confidence, support, ontologyTypesString, sparqlQuery, blacklist, coreferenceResolution, Server.getSimilarityThresholds(), Server.getSparqlExecute());
-        occList = filter.accept(new FilterOccsImpl(), occList);
+        FilterElement filter = new OccsFilter(confidence, support, ontologyTypesString, sparqlQuery, blacklist, coreferenceResolution, Server.getSimilarityThresholds(), Server.getSparqlExecute(), Server.getTypeMaskCompiler());
+        StageLimiter filterStage = remoteFilter ? Server.getIOStage() : Server.getAnnotateStage();
+        filterStage.enter();
+        long filterStart = Metrics.start();
+        try {
+            occList = filter.accept(new FilterOccsImpl(), occList);
+        } finally {
+            Metrics.stop(Metrics.Filter(), filterStart, context);
+            filterStage.exit();
+        }
 
 
         if (LOG.isDebugEnabled()) {
@@ -194,7 +285,9 @@ public class SpotlightInterface {
 
         try {
             List<DBpediaResourceOccurrence> occs = getOccurrences(textToProcess, confidence, support, dbpediaTypesString, sparqlQuery, policy, coreferenceResolution, clientIp, spotter, disambiguator);
+            long serializeStart = Metrics.start();
             result = outputManager.makeHTML(textToProcess, occs);
+            Metrics.stop(Metrics.Serialize(), serializeStart, requestTrace.get());
         } catch (InputException e) { //TODO throw exception up to Annotate for WebApplicationException to handle.
             LOG.error("ERROR: " + e.getMessage());
             result = "<html><body><b>ERROR:</b> <i>" + e.getMessage() + "</i></body></html>";
@@ -221,7 +314,9 @@ public class SpotlightInterface {
 
         try {
             List<DBpediaResourceOccurrence> occs = getOccurrences(textToProcess, confidence, support, dbpediaTypesString, sparqlQuery, policy, coreferenceResolution, clientIp, spotter, disambiguator);
+            long serializeStart = Metrics.start();
             result = outputManager.makeRDFa(textToProcess, occs);
+            Metrics.stop(Metrics.Serialize(), serializeStart, requestTrace.get());
         } catch (InputException e) { //TODO throw exception up to Annotate for WebApplicationException to handle.
             LOG.error("ERROR: " + e.getMessage());
             result = "<html><body><b>ERROR:</b> <i>" + e.getMessage() + "</i></body></html>";
@@ -246,7 +341,9 @@ public class SpotlightInterface {
         String textToProcess = ServerUtils.getTextToProcess(text, inUrl);
 
         List<DBpediaResourceOccurrence> occs = getOccurrences(textToProcess, confidence, support, dbpediaTypesString, sparqlQuery, policy, coreferenceResolution, clientIp, spotter, disambiguator);
+        long serializeStart = Metrics.start();
         result = outputManager.makeXML(textToProcess, occs, confidence, support, dbpediaTypesString, sparqlQuery, policy, coreferenceResolution);
+        Metrics.stop(Metrics.Serialize(), serializeStart, requestTrace.get());
 
         LOG.debug("XML format");
         LOG.debug("****************************************************************");
@@ -254,21 +351,21 @@ public class SpotlightInterface {
         return result;
     }
 
-    public String getNIF(String text,
-                         String inUrl,
-                         double confidence,
-                         int support,
-                         String dbpediaTypesString,
-                         String sparqlQuery,
-                         String policy,
-                         boolean coreferenceResolution,
-                         String clientIp,
-                         String spotter,
-                         String disambiguator,
-                         String format,
-                         String prefix,
-                         String requestedURL) throws Exception {
-        String result;
+    public StreamingOutput getNIF(String text,
+                                  String inUrl,
+                                  double confidence,
+                                  int support,
+                                  String dbpediaTypesString,
+                                  String sparqlQuery,
+                                  String policy,
+                                  boolean coreferenceResolution,
+                                  String clientIp,
+                                  String spotter,
+                                  String disambiguator,
+                                  String format,
+                                  String prefix,
+                                  String requestedURL) throws Exception {
+        StreamingOutput result;
         String textToProcess = ServerUtils.getTextToProcess(text, inUrl);
 
         // when no prefix argument specified and url param is used the prefix
@@ -328,6 +425,7 @@ public class SpotlightInterface {
         List<DBpediaResourceOccurrence> occs = getOccurrences(textToProcess, confidence, support, dbpediaTypesString,
                 sparqlQuery, policy, coreferenceResolution, clientIp, spotterName, disambiguator);
 
+        long serializeStart = Metrics.start();
         AnnotationUnit annotationUnit = new AnnotationUnit();
 
         annotationUnit.setText(textToProcess);
@@ -336,9 +434,44 @@ public class SpotlightInterface {
         annotationUnit.setPolicy(policy);
         annotationUnit.setSparql(sparqlQuery);
         annotationUnit.setTypes(dbpediaTypesString);
+        annotationUnit.setDisambiguationMode(disambiguationMode(occs));
         annotationUnit.buildResources(occs);
 
-        return JSONOutputManager.parse(annotationUnit);
+        String result = JSONOutputManager.parse(annotationUnit);
+        Metrics.stop(Metrics.Serialize(), serializeStart, requestTrace.get());
+        return result;
+    }
+
+    public byte[] getCBOR(String text,
+                          String inUrl,
+                          double confidence,
+                          int support,
+                          String dbpediaTypesString,
+                          String sparqlQuery,
+                          String policy,
+                          boolean coreferenceResolution,
+                          String clientIp,
+                          String spotterName,
+                          String disambiguator) throws Exception {
+
+        String textToProcess = ServerUtils.getTextToProcess(text, inUrl);
+        List<DBpediaResourceOccurrence> occs = getOccurrences(textToProcess, confidence, support, dbpediaTypesString,
+                sparqlQuery, policy, coreferenceResolution, clientIp, spotterName, disambiguator);
+
+        LOG.debug("CBOR format");
+        long serializeStart = Metrics.start();
+        byte[] result = CBOROutputManager.annotations(occs, confidence, support, dbpediaTypesString, sparqlQuery, policy, disambiguationMode(occs));
+        Metrics.stop(Metrics.Serialize(), serializeStart, requestTrace.get());
+        return result;
+    }
+
+    /**
+     * The disambiguation mode that was chosen for the text of the occurrences, null if unknown.
+     */
+    public static String disambiguationMode(List<DBpediaResourceOccurrence> occs) {
+        if (occs == null || occs.isEmpty())
+            return null;
+        return DisambiguationMode.nameOf(occs.get(0).context());
     }
 
 	public String getApiName() {
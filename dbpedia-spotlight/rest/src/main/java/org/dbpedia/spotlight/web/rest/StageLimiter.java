@@ -0,0 +1,86 @@
+/*
+ * Copyright 2011 DBpedia Spotlight Development Team
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  Check our project website for information on how to acknowledge the authors and how to contribute to the project: http://spotlight.dbpedia.org
+ */
+
+package org.dbpedia.spotlight.web.rest;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Bounds the number of requests that may execute a processing stage at the same time.
+ *
+ * The HTTP worker pool decides how many requests can be in progress, while a StageLimiter
+ * decides how many of them may use a given resource at once. CPU-bound work (tokenization,
+ * spotting, disambiguation) should be limited to roughly the number of cores, I/O-bound work
+ * (fetching &url, SPARQL filters) can be allowed a much higher degree of concurrency.
+ */
+public class StageLimiter {
+
+    static Log LOG = LogFactory.getLog(StageLimiter.class);
+
+    private final String name;
+    private final int maxConcurrent;
+    private final Semaphore permits;
+
+    public StageLimiter(String name, int maxConcurrent) {
+        if (maxConcurrent < 1)
+            throw new IllegalArgumentException(String.format("Stage %s needs at least one permit, got %d.", name, maxConcurrent));
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.permits = new Semaphore(maxConcurrent, true);
+    }
+
+    /**
+     * Blocks until the calling request may enter this stage. Every call must be paired
+     * with a call to {@link #exit()} in a finally block.
+     */
+    public void enter() {
+        if (!permits.tryAcquire()) {
+            LOG.debug(String.format("Stage %s is saturated (%d concurrent), waiting.", name, maxConcurrent));
+            permits.acquireUninterruptibly();
+        }
+    }
+
+    public void exit() {
+        permits.release();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int getActive() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    public int getWaiting() {
+        return permits.getQueueLength();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("StageLimiter[%s, max=%d]", name, maxConcurrent);
+    }
+
+}
@@ -39,6 +39,10 @@ public class AnnotationUnit {
     @SerializedName("@policy")
     private String policy;
 
+    @JsonProperty("@disambiguationMode")
+    @SerializedName("@disambiguationMode")
+    private String disambiguationMode;
+
     @JsonProperty("Resources")
     @SerializedName("Resources")
     private List<ResourceItem> resources;
@@ -124,6 +128,14 @@ public class AnnotationUnit {
 		this.policy = policy;
 	}
 
+	public String getDisambiguationMode() {
+		return disambiguationMode;
+	}
+
+	public void setDisambiguationMode(String disambiguationMode) {
+		this.disambiguationMode = disambiguationMode;
+	}
+
 	public List<ResourceItem> getResources() {
 		return resources;
 	}
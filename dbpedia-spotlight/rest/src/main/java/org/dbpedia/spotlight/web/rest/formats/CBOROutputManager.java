@@ -0,0 +1,182 @@
+package org.dbpedia.spotlight.web.rest.formats;
+
+import org.dbpedia.spotlight.model.DBpediaResourceOccurrence;
+import org.dbpedia.spotlight.web.rest.Server;
+import org.dbpedia.spotlight.web.rest.output.Annotation;
+import org.dbpedia.spotlight.web.rest.output.Resource;
+import org.dbpedia.spotlight.web.rest.output.Spot;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes annotations in CBOR (RFC 7049, media type application/cbor). The text is not echoed, surface forms
+ * are given by their offset and length in the text. Scores are single-precision floats.
+ *
+ * Annotations (/annotate, /disambiguate) are a map:
+ * <pre>
+ *   "v"           1
+ *   "confidence"  float
+ *   "support"     int
+ *   "types"       text
+ *   "sparql"      text
+ *   "policy"      text
+ *   "mode"        text or null, the disambiguation mode
+ *   "resources"   array of [offset, length, id, uri, support, types, similarityScore, percentageOfSecondRank, contextualScore]
+ * </pre>
+ * where id is the internal ID of the resource in the model (0 if unknown) and uri the full resource URI.
+ *
+ * Candidates (/candidates) are a map:
+ * <pre>
+ *   "v"           1
+ *   "spots"       array of [offset, length, candidates]
+ * </pre>
+ * where candidates is an array of [id, uri, support, priorScore, contextualScore, percentageOfSecondRank, finalScore, types]
+ * with id and uri as in annotations.
+ */
+public class CBOROutputManager {
+
+    public static final int VERSION = 1;
+
+    public static byte[] annotations(List<DBpediaResourceOccurrence> occs, double confidence, int support, String types,
+                                     String sparql, String policy, String disambiguationMode) {
+        CBORWriter out = new CBORWriter();
+        out.map(8);
+        out.text("v").integer(VERSION);
+        out.text("confidence").floatingPoint(confidence);
+        out.text("support").integer(support);
+        out.text("types").text(types);
+        out.text("sparql").text(sparql);
+        out.text("policy").text(policy);
+        out.text("mode").text(disambiguationMode);
+
+        out.text("resources").array(occs.size());
+        for (DBpediaResourceOccurrence occ : occs) {
+            out.array(9);
+            out.integer(occ.textOffset());
+            out.integer(occ.surfaceForm().name().length());
+            out.integer(occ.resource().id());
+            out.text(Server.getPrefixedDBpediaURL(occ.resource()));
+            out.integer(occ.resource().support());
+            out.text(occ.resource().types().mkString(","));
+            out.floatingPoint(occ.similarityScore());
+            out.floatingPoint(occ.percentageOfSecondRank());
+            out.floatingPoint(occ.contextualScore());
+        }
+        return out.toByteArray();
+    }
+
+    public static byte[] candidates(Annotation annotation) {
+        CBORWriter out = new CBORWriter();
+        List<Spot> spots = annotation.getSpots();
+
+        out.map(2);
+        out.text("v").integer(VERSION);
+        out.text("spots").array(spots == null ? 0 : spots.size());
+        if (spots != null) {
+            for (Spot spot : spots) {
+                List<Resource> resources = spot.getResources();
+                out.array(3);
+                out.integer(spot.getOffset());
+                out.integer(spot.getName().length());
+                out.array(resources == null ? 0 : resources.size());
+                if (resources != null) {
+                    for (Resource resource : resources) {
+                        out.array(8);
+                        out.integer(resource.getId());
+                        out.text(resource.getFullUri());
+                        out.integer(resource.getSupport());
+                        out.floatingPoint(resource.getPriorScore());
+                        out.floatingPoint(resource.getContextualScore());
+                        out.floatingPoint(resource.getPercentageOfSecondRank());
+                        out.floatingPoint(resource.getFinalScore());
+                        out.text(resource.getTypes());
+                    }
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Minimal CBOR encoder for the data items used above: definite-length maps and arrays,
+     * integers, text strings, single-precision floats and null.
+     */
+    static class CBORWriter {
+
+        private static final int UNSIGNED = 0;
+        private static final int NEGATIVE = 1;
+        private static final int TEXT = 3;
+        private static final int ARRAY = 4;
+        private static final int MAP = 5;
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        private void header(int majorType, long value) {
+            int major = majorType << 5;
+            if (value < 24) {
+                out.write(major | (int) value);
+            } else if (value < 0x100) {
+                out.write(major | 24);
+                out.write((int) value);
+            } else if (value < 0x10000) {
+                out.write(major | 25);
+                writeBytes(value, 2);
+            } else if (value < 0x100000000L) {
+                out.write(major | 26);
+                writeBytes(value, 4);
+            } else {
+                out.write(major | 27);
+                writeBytes(value, 8);
+            }
+        }
+
+        private void writeBytes(long value, int n) {
+            for (int i = n - 1; i >= 0; i--)
+                out.write((int) (value >>> (8 * i)) & 0xff);
+        }
+
+        CBORWriter map(int size) {
+            header(MAP, size);
+            return this;
+        }
+
+        CBORWriter array(int size) {
+            header(ARRAY, size);
+            return this;
+        }
+
+        CBORWriter integer(long value) {
+            if (value >= 0)
+                header(UNSIGNED, value);
+            else
+                header(NEGATIVE, -1 - value);
+            return this;
+        }
+
+        CBORWriter text(String value) {
+            if (value == null)
+                return nil();
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            header(TEXT, bytes.length);
+            out.write(bytes, 0, bytes.length);
+            return this;
+        }
+
+        CBORWriter floatingPoint(double value) {
+            out.write(0xfa);
+            writeBytes(Float.floatToIntBits((float) value) & 0xffffffffL, 4);
+            return this;
+        }
+
+        CBORWriter nil() {
+            out.write(0xf6);
+            return this;
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package org.dbpedia.spotlight.web.rest.formats;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbpedia.spotlight.model.DBpediaResourceOccurrence;
+import org.dbpedia.spotlight.model.SurfaceFormOccurrence;
+
+import javax.ws.rs.core.StreamingOutput;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.dbpedia.spotlight.web.rest.common.Constants.SLASH;
+
+/**
+ * Writes NIF 2.1 directly to the output as Turtle, N-Triples or JSON-LD. The context resource (with the
+ * full text) is written once, followed by one resource per entity, so that nothing is buffered besides
+ * the writer itself. Strings are identified by RFC 5147 offsets relative to the base URI, like in
+ * {@link NIFWrapper}. JSON-LD documents refer to the configured JSON-LD context, followed by the
+ * prefixes used in the document.
+ *
+ * Usage: {@link #context(String)} once, then {@link #entity} for each occurrence, then {@link #close()}.
+ */
+public class NIFStreamWriter {
+
+    private static final String NIF = "http://persistence.uni-leipzig.org/nlp2rdf/ontologies/nif-core#";
+    private static final String ITSRDF = "http://www.w3.org/2005/11/its/rdf#";
+    private static final String XSD = "http://www.w3.org/2001/XMLSchema#";
+    private static final String RDF_TYPE = "http://www.w3.org/1999/02/22-rdf-syntax-ns#type";
+
+    private static final Log LOG = LogFactory.getLog(NIFStreamWriter.class);
+
+    private enum Format { TURTLE, NTRIPLES, JSONLD }
+
+    private final Writer out;
+    private final Format format;
+    private final String baseURI;
+    private final String annotator;
+    private final String jsonContext;
+
+    private String contextURI;
+    private boolean firstNode = true;
+
+    public NIFStreamWriter(Writer out, SpotlightConfiguration configuration, String outputFormat) {
+        this(out, configuration, outputFormat, configuration.getSpotlightURL());
+    }
+
+    /**
+     * @param baseURI the URI the strings are relative to, a slash is appended if missing
+     */
+    public NIFStreamWriter(Writer out, SpotlightConfiguration configuration, String outputFormat, String baseURI) {
+        this.out = out;
+        this.format = formatOf(outputFormat);
+        this.annotator = configuration.getSpotlightURL();
+        this.jsonContext = configuration.getJsonContext();
+
+        String base = baseURI;
+        if (base != null && !base.isEmpty() && !base.endsWith(SLASH))
+            base = base.concat(SLASH);
+        this.baseURI = base;
+    }
+
+    /**
+     * Accepts both the media types and the short format names used by the resources.
+     */
+    private static Format formatOf(String outputFormat) {
+        if (outputFormat == null)
+            return Format.TURTLE;
+        if (SemanticMediaType.APPLICATION_N_TRIPLES.equalsIgnoreCase(outputFormat) || "ntriples".equalsIgnoreCase(outputFormat) || "text/plain".equalsIgnoreCase(outputFormat))
+            return Format.NTRIPLES;
+        if (SemanticMediaType.APPLICATION_LD_JSON.equalsIgnoreCase(outputFormat) || "jsonld".equalsIgnoreCase(outputFormat))
+            return Format.JSONLD;
+        return Format.TURTLE;
+    }
+
+    private String uri(int beginIndex, int endIndex) {
+        return baseURI + "#char=" + beginIndex + "," + endIndex;
+    }
+
+    public void context(String text) throws IOException {
+        contextURI = uri(0, text.length());
+
+        if (format == Format.TURTLE) {
+            out.write("@prefix nif: <" + NIF + "> .\n");
+            out.write("@prefix itsrdf: <" + ITSRDF + "> .\n");
+            out.write("@prefix xsd: <" + XSD + "> .\n\n");
+        } else if (format == Format.JSONLD) {
+            String prefixes = "{\"nif\": \"" + NIF + "\", \"itsrdf\": \"" + ITSRDF + "\", \"xsd\": \"" + XSD + "\"}";
+            if (jsonContext != null && !jsonContext.isEmpty())
+                out.write("{\n  \"@context\": [\"" + jsonEscape(jsonContext) + "\", " + prefixes + "],\n  \"@graph\": [");
+            else
+                out.write("{\n  \"@context\": " + prefixes + ",\n  \"@graph\": [");
+        }
+
+        begin(contextURI, "Context");
+        property("isString", quote(text), false);
+        offsets(0, text.length());
+        end();
+    }
+
+    public void entity(DBpediaResourceOccurrence occ) throws IOException {
+        entity(occ.surfaceForm().name(), occ.textOffset(), occ.resource().getFullUri());
+    }
+
+    public void entity(SurfaceFormOccurrence occ) throws IOException {
+        entity(occ.surfaceForm().name(), occ.textOffset(), null);
+    }
+
+    private void entity(String mention, int beginIndex, String identRef) throws IOException {
+        int endIndex = beginIndex + mention.length();
+
+        begin(uri(beginIndex, endIndex), "Phrase");
+        property("anchorOf", quote(mention), false);
+        offsets(beginIndex, endIndex);
+        reference(NIF, "referenceContext", contextURI);
+        reference(ITSRDF, "taAnnotatorsRef", annotator);
+        if (identRef != null)
+            reference(ITSRDF, "taIdentRef", identRef);
+        end();
+    }
+
+    public void close() throws IOException {
+        if (format == Format.JSONLD)
+            out.write("\n  ]\n}\n");
+        out.flush();
+    }
+
+    /* Format-specific building blocks: */
+
+    private String subject;
+
+    private void begin(String uri, String type) throws IOException {
+        subject = uri;
+
+        switch (format) {
+            case TURTLE:
+                out.write("<" + uri + ">\n        a nif:String , nif:RFC5147String , nif:" + type);
+                break;
+            case NTRIPLES:
+                for (String t : new String[]{"String", "RFC5147String", type})
+                    out.write("<" + uri + "> <" + RDF_TYPE + "> <" + NIF + t + "> .\n");
+                break;
+            case JSONLD:
+                out.write(firstNode ? "\n" : ",\n");
+                out.write("    {\"@id\": \"" + jsonEscape(uri) + "\", \"@type\": [\"nif:String\", \"nif:RFC5147String\", \"nif:" + type + "\"]");
+                break;
+        }
+        firstNode = false;
+    }
+
+    private void offsets(int beginIndex, int endIndex) throws IOException {
+        property("beginIndex", typed(beginIndex), true);
+        property("endIndex", typed(endIndex), true);
+    }
+
+    private String typed(int value) {
+        return format == Format.JSONLD ? String.valueOf(value) : "\"" + value + "\"^^<" + XSD + "nonNegativeInteger>";
+    }
+
+    /**
+     * Writes a literal property of the nif namespace. The value is already quoted/typed for the format.
+     */
+    private void property(String name, String value, boolean numeric) throws IOException {
+        switch (format) {
+            case TURTLE:
+                out.write(" ;\n        nif:" + name + " " + value);
+                break;
+            case NTRIPLES:
+                out.write("<" + subject + "> <" + NIF + name + "> " + value + " .\n");
+                break;
+            case JSONLD:
+                out.write(", \"nif:" + name + "\": " + (numeric ? "{\"@value\": \"" + value + "\", \"@type\": \"xsd:nonNegativeInteger\"}" : value));
+                break;
+        }
+    }
+
+    private void reference(String namespace, String name, String uri) throws IOException {
+        switch (format) {
+            case TURTLE:
+                out.write(" ;\n        " + (namespace.equals(NIF) ? "nif:" : "itsrdf:") + name + " <" + uri + ">");
+                break;
+            case NTRIPLES:
+                out.write("<" + subject + "> <" + namespace + name + "> <" + uri + "> .\n");
+                break;
+            case JSONLD:
+                out.write(", \"" + (namespace.equals(NIF) ? "nif:" : "itsrdf:") + name + "\": {\"@id\": \"" + jsonEscape(uri) + "\"}");
+                break;
+        }
+    }
+
+    private void end() throws IOException {
+        switch (format) {
+            case TURTLE:
+                out.write(" .\n\n");
+                break;
+            case NTRIPLES:
+                break;
+            case JSONLD:
+                out.write("}");
+                break;
+        }
+    }
+
+    private String quote(String value) {
+        if (format == Format.JSONLD)
+            return "\"" + jsonEscape(value) + "\"";
+        return "\"" + rdfEscape(value) + "\"^^<" + XSD + "string>";
+    }
+
+    static String rdfEscape(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 16);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\': sb.append("\\\\"); break;
+                case '"':  sb.append("\\\""); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:   sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    static String jsonEscape(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 16);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\': sb.append("\\\\"); break;
+                case '"':  sb.append("\\\""); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20)
+                        sb.append(String.format("\\u%04x", (int) c));
+                    else
+                        sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the context and all annotations of a text.
+     */
+    public static void write(Writer out, SpotlightConfiguration configuration, String outputFormat, String baseURI, String text,
+                             List<DBpediaResourceOccurrence> occs) throws IOException {
+        NIFStreamWriter writer = new NIFStreamWriter(out, configuration, outputFormat, baseURI);
+        writer.context(text);
+        for (DBpediaResourceOccurrence occ : occs)
+            writer.entity(occ);
+        writer.close();
+    }
+
+    /**
+     * Writes the context and all spots of a text.
+     */
+    public static void writeSpots(Writer out, SpotlightConfiguration configuration, String outputFormat, String text,
+                                  List<SurfaceFormOccurrence> spots) throws IOException {
+        NIFStreamWriter writer = new NIFStreamWriter(out, configuration, outputFormat);
+        writer.context(text);
+        for (SurfaceFormOccurrence spot : spots)
+            writer.entity(spot);
+        writer.close();
+    }
+
+    private interface Body {
+        void write(Writer out) throws IOException;
+    }
+
+    /**
+     * Returns a response entity that writes the body when the response is sent. The annotations must be
+     * computed before, since the status has been sent by then and errors can no longer be reported to the
+     * client: they are logged and rethrown so that the container aborts the response. The document is not
+     * closed in that case, a truncated JSON-LD document is invalid.
+     */
+    private static StreamingOutput streaming(final Body body) {
+        return output -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            try {
+                body.write(writer);
+            } catch (IOException | RuntimeException e) {
+                LOG.error("Error while streaming NIF, the response is incomplete: " + e.getMessage(), e);
+                throw e;
+            }
+        };
+    }
+
+    /**
+     * Streams the context and all annotations of a text, see {@link #write}.
+     */
+    public static StreamingOutput streaming(final SpotlightConfiguration configuration, final String outputFormat, final String baseURI,
+                                            final String text, final List<DBpediaResourceOccurrence> occs) {
+        return streaming(out -> write(out, configuration, outputFormat, baseURI, text, occs));
+    }
+
+    /**
+     * Streams the context and all spots of a text, see {@link #writeSpots}.
+     */
+    public static StreamingOutput streamingSpots(final SpotlightConfiguration configuration, final String outputFormat,
+                                                 final String text, final List<SurfaceFormOccurrence> spots) {
+        return streaming(out -> writeSpots(out, configuration, outputFormat, text, spots));
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2011 DBpedia Spotlight Development Team
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  Check our project website for information on how to acknowledge the authors and how to contribute to the project: http://spotlight.dbpedia.org
+ */
+
+package org.dbpedia.spotlight.web.rest.formats;
+
+import org.dbpedia.spotlight.util.Distribution;
+
+import java.util.Arrays;
+
+/**
+ * Writes metrics in the Prometheus text exposition format (version 0.0.4).
+ * Every metric family starts with {@link #family(String, String, String)}, followed by its samples.
+ */
+public class PrometheusWriter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final StringBuilder out = new StringBuilder();
+
+    public PrometheusWriter family(String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    /**
+     * Writes one sample.
+     *
+     * @param labels alternating label names and values
+     */
+    public PrometheusWriter sample(String name, double value, String... labels) {
+        out.append(name);
+        if (labels.length > 0) {
+            out.append('{');
+            for (int i = 0; i + 1 < labels.length; i += 2) {
+                if (i > 0)
+                    out.append(',');
+                out.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+            }
+            out.append('}');
+        }
+        out.append(' ').append(format(value)).append('\n');
+        return this;
+    }
+
+    /**
+     * Writes the quantiles, sum and count of a distribution as samples of a summary. Values are multiplied
+     * by scale, e.g. 1e-9 to report nanoseconds as seconds.
+     *
+     * @param labels alternating label names and values
+     */
+    public PrometheusWriter summary(String name, Distribution distribution, double scale, String... labels) {
+        String[] quantileLabels = Arrays.copyOf(labels, labels.length + 2);
+        quantileLabels[labels.length] = "quantile";
+        for (double q : QUANTILES) {
+            long value = distribution.count() > 0 ? distribution.quantile(q) : 0;
+            quantileLabels[labels.length + 1] = String.valueOf(q);
+            sample(name, value * scale, quantileLabels);
+        }
+        sample(name + "_sum", distribution.sum() * scale, labels);
+        sample(name + "_count", distribution.count(), labels);
+        return this;
+    }
+
+    static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    static String format(double value) {
+        if (Double.isNaN(value))
+            return "NaN";
+        if (Double.isInfinite(value))
+            return value > 0 ? "+Inf" : "-Inf";
+        if (value == Math.rint(value) && Math.abs(value) < 1e15)
+            return String.valueOf((long) value);
+        return String.valueOf(value);
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+}
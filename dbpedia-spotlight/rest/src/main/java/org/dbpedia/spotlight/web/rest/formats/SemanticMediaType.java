@@ -6,6 +6,7 @@ public final class SemanticMediaType {
     public static final String TEXT_TURTLE = "text/turtle";
     public static final String APPLICATION_N_TRIPLES = "application/n-triples";
     public static final String APPLICATION_LD_JSON = "application/ld+json";
+    public static final String APPLICATION_CBOR = "application/cbor";
 
     private SemanticMediaType() {
     }
@@ -55,6 +55,10 @@ public class Annotation {
         this.spots = spots;
     }
 
+    public List<Spot> getSpots() {
+        return spots;
+    }
+
 
     private static OutputSerializer serializer = new OutputSerializer();
     public String toXML() {
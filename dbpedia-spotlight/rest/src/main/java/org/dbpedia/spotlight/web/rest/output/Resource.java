@@ -20,6 +20,7 @@ import com.thoughtworks.xstream.annotations.XStreamAlias;
 import com.thoughtworks.xstream.annotations.XStreamAsAttribute;
 import org.dbpedia.extraction.util.WikiUtil;
 import org.dbpedia.spotlight.model.DBpediaResourceOccurrence;
+import org.dbpedia.spotlight.web.rest.Server;
 
 @XStreamAlias("resource")
 public class Resource {
@@ -48,6 +49,11 @@ public class Resource {
     @XStreamAsAttribute
     private String types;
 
+    // Not serialized to XML/JSON, used by the CBOR output:
+    private transient int id;
+
+    private transient String fullUri;
+
     public void setUri(String uri) {
         this.uri = /*DBpediaResource.DBPEDIA_RESOURCE_PREFIX() +*/ uri;
         this.label = WikiUtil.wikiDecode(uri);
@@ -77,9 +83,47 @@ public class Resource {
         this.types = types;
     }
 
+    public String getUri() {
+        return uri;
+    }
+
+    public double getContextualScore() {
+        return contextualScore;
+    }
+
+    public double getPercentageOfSecondRank() {
+        return percentageOfSecondRank;
+    }
+
+    public int getSupport() {
+        return support;
+    }
+
+    public double getPriorScore() {
+        return priorScore;
+    }
+
+    public double getFinalScore() {
+        return finalScore;
+    }
+
+    public String getTypes() {
+        return types;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getFullUri() {
+        return fullUri;
+    }
+
     public static Resource getInstance(DBpediaResourceOccurrence occ) {
         Resource resource = new Resource();
         resource.setUri(occ.resource().uri());
+        resource.id = occ.resource().id();
+        resource.fullUri = Server.getPrefixedDBpediaURL(occ.resource());
         resource.setContextualScore(occ.contextualScore());
         resource.setPercentageOfSecondRank(occ.percentageOfSecondRank());
         resource.setSupport(occ.resource().support());
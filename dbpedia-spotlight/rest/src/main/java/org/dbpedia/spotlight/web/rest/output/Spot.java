@@ -54,6 +54,18 @@ public class Spot {
         this.resources = resources;
     }
 
+    public String getName() {
+        return name;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public List<Resource> getResources() {
+        return resources;
+    }
+
     public void setResource(Resource resource) {
         List<Resource> r = new LinkedList<Resource>();
         r.add(resource);
@@ -66,7 +78,7 @@ public class Spot {
         spot.setOffset(sfOcc.textOffset());
 
         String typeFeature = null;
-        if(!sfOcc.features().isEmpty())
+        if(sfOcc.hasFeatures())
             typeFeature = (String) sfOcc.featureValueJava("type");
 
         if (typeFeature != null)
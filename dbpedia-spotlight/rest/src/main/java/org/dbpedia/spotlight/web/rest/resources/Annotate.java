@@ -23,6 +23,7 @@ import org.dbpedia.spotlight.model.SpotlightConfiguration;
 import org.dbpedia.spotlight.web.rest.Server;
 import org.dbpedia.spotlight.web.rest.ServerUtils;
 import org.dbpedia.spotlight.web.rest.SpotlightInterface;
+import org.dbpedia.spotlight.web.rest.formats.SemanticMediaType;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.*;
@@ -73,7 +74,7 @@ public class Annotate {
             return ServerUtils.ok(response);
         } catch (Exception e) {
             e.printStackTrace();
-            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST). entity(ServerUtils.print(e)).type(MediaType.TEXT_HTML).build());
+            throw new WebApplicationException(ServerUtils.errorStatus(e).entity(ServerUtils.print(e)).type(MediaType.TEXT_HTML).build());
         }
     }
 
@@ -95,7 +96,7 @@ public class Annotate {
         try {
             return ServerUtils.ok(annotationInterface.getRDFa(text, inUrl, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, clientIp, spotterName, disambiguatorName));
         } catch (Exception e) {
-            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST). entity(ServerUtils.print(e)).type(MediaType.APPLICATION_XHTML_XML).build());
+            throw new WebApplicationException(ServerUtils.errorStatus(e).entity(ServerUtils.print(e)).type(MediaType.APPLICATION_XHTML_XML).build());
         }
     }
 
@@ -115,9 +116,11 @@ public class Annotate {
         String clientIp = request.getRemoteAddr();
 
         try {
-	    return ServerUtils.ok(annotationInterface.getXML(text, inUrl, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, clientIp, spotterName, disambiguatorName));
+	    return ServerUtils.cached(request, text, inUrl,
+                    new Object[]{"/annotate", "XML", text, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, spotterName, disambiguatorName},
+                    () -> annotationInterface.getXML(text, inUrl, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, clientIp, spotterName, disambiguatorName));
        } catch (Exception e) {
-            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST). entity(ServerUtils.print(e)).type(MediaType.TEXT_XML).build());
+            throw new WebApplicationException(ServerUtils.errorStatus(e).entity(ServerUtils.print(e)).type(MediaType.TEXT_XML).build());
         }
     }
 
@@ -149,7 +152,7 @@ public class Annotate {
 	try {
 	    return ServerUtils.ok(annotationInterface.getNIF(text, inUrl, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, clientIp, spotterName, disambiguatorName, format, prefix, request.getRequestURL().toString()));
        } catch (Exception e) {
-            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST). entity(ServerUtils.print(e)).type(accept).build());
+            throw new WebApplicationException(ServerUtils.errorStatus(e).entity(ServerUtils.print(e)).type(accept).build());
         }
     }
     
@@ -169,9 +172,35 @@ public class Annotate {
         String clientIp = request.getRemoteAddr();
 
         try {
-            return ServerUtils.ok(annotationInterface.getJSON(text, inUrl, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, clientIp, spotterName, disambiguatorName));
+            return ServerUtils.cached(request, text, inUrl,
+                    new Object[]{"/annotate", "JSON", text, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, spotterName, disambiguatorName},
+                    () -> annotationInterface.getJSON(text, inUrl, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, clientIp, spotterName, disambiguatorName));
        } catch (Exception e) {
-            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST). entity(ServerUtils.print(e)).type(MediaType.APPLICATION_JSON).build());
+            throw new WebApplicationException(ServerUtils.errorStatus(e).entity(ServerUtils.print(e)).type(MediaType.APPLICATION_JSON).build());
+        }
+    }
+
+    @GET
+    @Produces(SemanticMediaType.APPLICATION_CBOR)
+    public Response getCBOR(@DefaultValue(SpotlightConfiguration.DEFAULT_TEXT) @QueryParam("text") String text,
+                            @DefaultValue(SpotlightConfiguration.DEFAULT_URL) @QueryParam("url") String inUrl,
+                            @DefaultValue(SpotlightConfiguration.DEFAULT_CONFIDENCE) @QueryParam("confidence") Double confidence,
+                            @DefaultValue(SpotlightConfiguration.DEFAULT_SUPPORT) @QueryParam("support") int support,
+                            @DefaultValue(SpotlightConfiguration.DEFAULT_TYPES) @QueryParam("types") String dbpediaTypes,
+                            @DefaultValue(SpotlightConfiguration.DEFAULT_SPARQL) @QueryParam("sparql") String sparqlQuery,
+                            @DefaultValue(SpotlightConfiguration.DEFAULT_POLICY) @QueryParam("policy") String policy,
+                            @DefaultValue(SpotlightConfiguration.DEFAULT_COREFERENCE_RESOLUTION) @QueryParam("coreferenceResolution") boolean coreferenceResolution,
+                            @DefaultValue("Default") @QueryParam("spotter") String spotterName,
+                            @DefaultValue("Default") @QueryParam("disambiguator") String disambiguatorName,
+                            @Context HttpServletRequest request) {
+        String clientIp = request.getRemoteAddr();
+
+        try {
+            return ServerUtils.cached(request, text, inUrl,
+                    new Object[]{"/annotate", "CBOR", text, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, spotterName, disambiguatorName},
+                    () -> annotationInterface.getCBOR(text, inUrl, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, clientIp, spotterName, disambiguatorName));
+        } catch (Exception e) {
+            throw new WebApplicationException(ServerUtils.errorStatus(e).entity(ServerUtils.print(e)).type(MediaType.TEXT_PLAIN).build());
         }
     }
 
@@ -275,4 +304,23 @@ public class Annotate {
         return getJSON(text,inUrl,confidence,support,dbpediaTypes,sparqlQuery,policy,coreferenceResolution,spotter,disambiguatorName,request);
       }
 
+    @POST
+    @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
+    @Produces(SemanticMediaType.APPLICATION_CBOR)
+    public Response postCBOR(
+      @DefaultValue(SpotlightConfiguration.DEFAULT_TEXT) @FormParam("text") String text,
+      @DefaultValue(SpotlightConfiguration.DEFAULT_URL) @FormParam("url") String inUrl,
+      @DefaultValue(SpotlightConfiguration.DEFAULT_CONFIDENCE) @FormParam("confidence") Double confidence,
+      @DefaultValue(SpotlightConfiguration.DEFAULT_SUPPORT) @FormParam("support") int support,
+      @DefaultValue(SpotlightConfiguration.DEFAULT_TYPES) @FormParam("types") String dbpediaTypes,
+      @DefaultValue(SpotlightConfiguration.DEFAULT_SPARQL) @FormParam("sparql") String sparqlQuery,
+      @DefaultValue(SpotlightConfiguration.DEFAULT_POLICY) @FormParam("policy") String policy,
+      @DefaultValue(SpotlightConfiguration.DEFAULT_COREFERENCE_RESOLUTION) @FormParam("coreferenceResolution") boolean coreferenceResolution,
+      @DefaultValue("Default") @FormParam("spotter") String spotter,
+      @DefaultValue("Default") @FormParam("disambiguator") String disambiguatorName,
+      @Context HttpServletRequest request
+      ) {
+        return getCBOR(text,inUrl,confidence,support,dbpediaTypes,sparqlQuery,policy,coreferenceResolution,spotter,disambiguatorName,request);
+    }
+
 }
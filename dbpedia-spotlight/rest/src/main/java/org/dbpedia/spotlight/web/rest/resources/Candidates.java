@@ -25,16 +25,22 @@ import org.apache.commons.logging.LogFactory;
 import org.dbpedia.spotlight.disambiguate.ParagraphDisambiguatorJ;
 import org.dbpedia.spotlight.exceptions.InputException;
 import org.dbpedia.spotlight.exceptions.ItemNotFoundException;
+import org.dbpedia.spotlight.exceptions.OverloadException;
 import org.dbpedia.spotlight.exceptions.SearchException;
 import org.dbpedia.spotlight.exceptions.SpottingException;
+import org.dbpedia.spotlight.exceptions.TimeoutException;
 import org.dbpedia.spotlight.filter.annotations.FilterPolicy$;
 import org.dbpedia.spotlight.filter.visitor.FilterElement;
 import org.dbpedia.spotlight.filter.visitor.FilterOccsImpl;
 import org.dbpedia.spotlight.filter.visitor.OccsFilter;
 import org.dbpedia.spotlight.model.*;
 import org.dbpedia.spotlight.spot.Spotter;
+import org.dbpedia.spotlight.util.Deadline;
+import org.dbpedia.spotlight.web.rest.AdmissionController;
 import org.dbpedia.spotlight.web.rest.Server;
 import org.dbpedia.spotlight.web.rest.ServerUtils;
+import org.dbpedia.spotlight.web.rest.formats.CBOROutputManager;
+import org.dbpedia.spotlight.web.rest.formats.SemanticMediaType;
 import org.dbpedia.spotlight.web.rest.output.Annotation;
 import org.dbpedia.spotlight.web.rest.output.Resource;
 import org.dbpedia.spotlight.web.rest.output.Spot;
@@ -73,7 +79,7 @@ public class Candidates {
     // Annotation interface
     public Annotation process(String text, double confidence, int support, String ontologyTypesString,
                               String sparqlQuery, boolean blacklist, boolean coreferenceResolution, Spotter spotter, ParagraphDisambiguatorJ disambiguator)
-            throws SearchException, ItemNotFoundException, InputException, SpottingException {
+            throws SearchException, ItemNotFoundException, InputException, SpottingException, OverloadException {
 
         Annotation annotation = new Annotation(text);
         List<Spot> spots = new LinkedList<Spot>();
@@ -81,16 +87,30 @@ public class Candidates {
         Text textObject = new Text(text);
         textObject.setFeature(new Score("confidence", confidence));
 
-        if(Server.getTokenizer() != null)
-            Server.getTokenizer().tokenizeMaybe(textObject);
+        AdmissionController admission = Server.getAdmissionController();
+        admission.admit(text.length());
+        Deadline.set(textObject, admission.getRequestTimeoutMillis());
 
-        List<SurfaceFormOccurrence> entityMentions = spotter.extract(textObject);
-        if (entityMentions.size()==0) return annotation; //nothing to disambiguate
-        Paragraph paragraph = Factory.paragraph().fromJ(entityMentions);
-        LOG.debug(String.format("Spotted %d entity mentions.",entityMentions.size()));
-
-        Map<SurfaceFormOccurrence,List<DBpediaResourceOccurrence>> entityCandidates = disambiguator.bestK(paragraph,k);
-        LOG.debug(String.format("Disambiguated %d candidates with %s.",entityCandidates.size(),disambiguator.name()));
+        Map<SurfaceFormOccurrence,List<DBpediaResourceOccurrence>> entityCandidates;
+        Server.getAnnotateStage().enter();
+        try {
+            if(Server.getTokenizer() != null)
+                Server.getTokenizer().tokenizeMaybe(textObject);
+
+            List<SurfaceFormOccurrence> entityMentions = spotter.extract(textObject);
+            if (entityMentions.size()==0) return annotation; //nothing to disambiguate
+            Paragraph paragraph = Factory.paragraph().fromJ(entityMentions);
+            LOG.debug(String.format("Spotted %d entity mentions.",entityMentions.size()));
+
+            entityCandidates = disambiguator.bestK(paragraph,k);
+            LOG.debug(String.format("Disambiguated %d candidates with %s.",entityCandidates.size(),disambiguator.name()));
+        } catch (TimeoutException e) {
+            admission.recordTimeout();
+            throw e;
+        } finally {
+            Server.getAnnotateStage().exit();
+            admission.release(text.length());
+        }
 
         Enumeration.Value listColor = blacklist ? FilterPolicy$.MODULE$.Blacklist() : FilterPolicy$.MODULE$.Whitelist();
 
@@ -98,7 +118,7 @@ public class Candidates {
           To solve it, this feature for this argument (Candidates) is disabled, setting coreferenceResolution to false ever. Ignoring the user's configuration.
         */
         Boolean unableCoreferenceResolution = false;
-        FilterElement filter = new OccsFilter(confidence, support, ontologyTypesString, sparqlQuery, blacklist, unableCoreferenceResolution, Server.getSimilarityThresholds(), Server.getSparqlExecute());
+        FilterElement filter = new OccsFilter(confidence, support, ontologyTypesString, sparqlQuery, blacklist, unableCoreferenceResolution, Server.getSimilarityThresholds(), Server.getSparqlExecute(), Server.getTypeMaskCompiler());
 
         Map<SurfaceFormOccurrence,List<DBpediaResourceOccurrence>> filteredEntityCandidates = new HashMap<SurfaceFormOccurrence,List<DBpediaResourceOccurrence>>();;
 
@@ -141,7 +161,7 @@ public class Candidates {
 //            String response = candidatesInterface.getHTML(text, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, clientIp);
 //            return ServerUtils.ok(response);
 //        } catch (Exception e) {
-//            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST). entity(e.getMessage()).type(MediaType.TEXT_HTML).build());
+//            throw new WebApplicationException(ServerUtils.errorStatus(e).entity(e.getMessage()).type(MediaType.TEXT_HTML).build());
 //        }
 //    }
 //
@@ -161,7 +181,7 @@ public class Candidates {
 //        try {
 //            return ServerUtils.ok(candidatesInterface.getRDFa(text, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, clientIp));
 //        } catch (Exception e) {
-//            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST). entity(e.getMessage()).type(MediaType.APPLICATION_XHTML_XML).build());
+//            throw new WebApplicationException(ServerUtils.errorStatus(e).entity(e.getMessage()).type(MediaType.APPLICATION_XHTML_XML).build());
 //        }
 //    }
 
@@ -187,7 +207,7 @@ public class Candidates {
             String content = a.toXML();
             return ServerUtils.ok(content);
         } catch (Exception e) {
-            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST). entity(e.getMessage()).type(MediaType.TEXT_XML).build());
+            throw new WebApplicationException(ServerUtils.errorStatus(e).entity(e.getMessage()).type(MediaType.TEXT_XML).build());
         }
     }
 
@@ -213,7 +233,32 @@ public class Candidates {
             String content = a.toJSON();
             return ServerUtils.ok(content);
         } catch (Exception e) {
-            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST). entity(e.getMessage()).type(MediaType.APPLICATION_JSON).build());
+            throw new WebApplicationException(ServerUtils.errorStatus(e).entity(e.getMessage()).type(MediaType.APPLICATION_JSON).build());
+        }
+    }
+
+    @GET
+    @Produces(SemanticMediaType.APPLICATION_CBOR)
+    public Response getCBOR(@DefaultValue(SpotlightConfiguration.DEFAULT_TEXT) @QueryParam("text") String text,
+                            @DefaultValue(SpotlightConfiguration.DEFAULT_URL) @QueryParam("url") String inUrl,
+                            @DefaultValue(SpotlightConfiguration.DEFAULT_CONFIDENCE) @QueryParam("confidence") Double confidence,
+                            @DefaultValue(SpotlightConfiguration.DEFAULT_SUPPORT) @QueryParam("support") int support,
+                            @DefaultValue(SpotlightConfiguration.DEFAULT_TYPES) @QueryParam("types") String dbpediaTypes,
+                            @DefaultValue(SpotlightConfiguration.DEFAULT_SPARQL) @QueryParam("sparql") String sparqlQuery,
+                            @DefaultValue(SpotlightConfiguration.DEFAULT_POLICY) @QueryParam("policy") String policy,
+                            @DefaultValue(SpotlightConfiguration.DEFAULT_COREFERENCE_RESOLUTION) @QueryParam("coreferenceResolution") boolean coreferenceResolution,
+                            @DefaultValue("Default") @QueryParam("spotter") String spotter,
+                            @DefaultValue("Default") @QueryParam("disambiguator") String disambiguatorName,
+                            @Context HttpServletRequest request) {
+        String clientIp = request.getRemoteAddr();
+
+        try {
+            String textToProcess = ServerUtils.getTextToProcess(text, inUrl);
+            Annotation a = getAnnotation(textToProcess, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, spotter, disambiguatorName, clientIp);
+            LOG.debug("CBOR format");
+            return ServerUtils.ok(CBOROutputManager.candidates(a));
+        } catch (Exception e) {
+            throw new WebApplicationException(ServerUtils.errorStatus(e).entity(e.getMessage()).type(MediaType.TEXT_PLAIN).build());
         }
     }
 
@@ -288,6 +333,25 @@ public class Candidates {
         return getJSON(text,inUrl,confidence,support,dbpediaTypes,sparqlQuery,policy,coreferenceResolution,spotter,disambiguatorName,request);
     }
 
+    @POST
+    @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
+    @Produces(SemanticMediaType.APPLICATION_CBOR)
+    public Response postCBOR(
+            @DefaultValue(SpotlightConfiguration.DEFAULT_TEXT) @FormParam("text") String text,
+            @DefaultValue(SpotlightConfiguration.DEFAULT_URL) @FormParam("url") String inUrl,
+            @DefaultValue(SpotlightConfiguration.DEFAULT_CONFIDENCE) @FormParam("confidence") Double confidence,
+            @DefaultValue(SpotlightConfiguration.DEFAULT_SUPPORT) @FormParam("support") int support,
+            @DefaultValue(SpotlightConfiguration.DEFAULT_TYPES) @FormParam("types") String dbpediaTypes,
+            @DefaultValue(SpotlightConfiguration.DEFAULT_SPARQL) @FormParam("sparql") String sparqlQuery,
+            @DefaultValue(SpotlightConfiguration.DEFAULT_POLICY) @FormParam("policy") String policy,
+            @DefaultValue(SpotlightConfiguration.DEFAULT_COREFERENCE_RESOLUTION) @FormParam("coreferenceResolution") boolean coreferenceResolution,
+            @DefaultValue("Default") @FormParam("spotter") String spotter,
+            @DefaultValue("Default") @FormParam("disambiguator") String disambiguatorName,
+            @Context HttpServletRequest request
+    ) {
+        return getCBOR(text,inUrl,confidence,support,dbpediaTypes,sparqlQuery,policy,coreferenceResolution,spotter,disambiguatorName,request);
+    }
+
     public Annotation getAnnotation(String text,
                                     double confidence,
                                     int support,
@@ -297,7 +361,7 @@ public class Candidates {
                                     boolean coreferenceResolution,
                                     String spotterName,
                                     String disambiguatorName,
-                                    String clientIp) throws SearchException, InputException, ItemNotFoundException, SpottingException, MalformedURLException, BoilerpipeProcessingException {
+                                    String clientIp) throws SearchException, InputException, ItemNotFoundException, SpottingException, OverloadException, MalformedURLException, BoilerpipeProcessingException {
 
         LOG.debug("******************************** Parameters ********************************");
         //announceAPI();
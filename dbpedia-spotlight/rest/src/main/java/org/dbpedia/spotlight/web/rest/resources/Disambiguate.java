@@ -23,6 +23,7 @@ import org.dbpedia.spotlight.model.SpotterConfiguration.SpotterPolicy;
 import org.dbpedia.spotlight.web.rest.Server;
 import org.dbpedia.spotlight.web.rest.ServerUtils;
 import org.dbpedia.spotlight.web.rest.SpotlightInterface;
+import org.dbpedia.spotlight.web.rest.formats.SemanticMediaType;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.*;
@@ -64,7 +65,7 @@ public class Disambiguate {
             return ServerUtils.ok(disambigInterface.getHTML(text, inUrl, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, clientIp, SpotterPolicy.SpotXmlParser.name(), disambiguatorName));
         } catch (Exception e) {
             e.printStackTrace();
-            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST). entity(ServerUtils.print(e)).type(MediaType.TEXT_HTML).build());
+            throw new WebApplicationException(ServerUtils.errorStatus(e).entity(ServerUtils.print(e)).type(MediaType.TEXT_HTML).build());
         }
     }
 
@@ -86,7 +87,7 @@ public class Disambiguate {
             return ServerUtils.ok(disambigInterface.getRDFa(text, inUrl, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, clientIp, SpotterPolicy.SpotXmlParser.name(), disambiguatorName));
         } catch (Exception e) {
             e.printStackTrace();
-            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST). entity(ServerUtils.print(e)).type(MediaType.APPLICATION_XHTML_XML).build());
+            throw new WebApplicationException(ServerUtils.errorStatus(e).entity(ServerUtils.print(e)).type(MediaType.APPLICATION_XHTML_XML).build());
         }
     }
 
@@ -106,10 +107,12 @@ public class Disambiguate {
         String clientIp = request.getRemoteAddr();
 
         try {
-            return ServerUtils.ok(disambigInterface.getXML(text, inUrl, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, clientIp, SpotterPolicy.SpotXmlParser.name(), disambiguatorName));
+            return ServerUtils.cached(request, text, inUrl,
+                    new Object[]{"/disambiguate", "XML", text, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, SpotterPolicy.SpotXmlParser.name(), disambiguatorName},
+                    () -> disambigInterface.getXML(text, inUrl, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, clientIp, SpotterPolicy.SpotXmlParser.name(), disambiguatorName));
         } catch (Exception e) {
             e.printStackTrace();
-            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST). entity(ServerUtils.print(e)).type(MediaType.TEXT_XML).build());
+            throw new WebApplicationException(ServerUtils.errorStatus(e).entity(ServerUtils.print(e)).type(MediaType.TEXT_XML).build());
         }
     }
 
@@ -144,7 +147,7 @@ public class Disambiguate {
             return ServerUtils.ok(disambigInterface.getNIF(text, inUrl, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, clientIp, SpotterPolicy.SpotXmlParser.name(), disambiguatorName, format, prefix, request.getRequestURL().toString()));
         } catch (Exception e) {
             e.printStackTrace();
-            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST). entity(ServerUtils.print(e)).type(accept).build());
+            throw new WebApplicationException(ServerUtils.errorStatus(e).entity(ServerUtils.print(e)).type(accept).build());
         }
     }
 
@@ -164,10 +167,37 @@ public class Disambiguate {
         String clientIp = request.getRemoteAddr();
 
         try {
-            return ServerUtils.ok(disambigInterface.getJSON(text, inUrl, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, clientIp, SpotterPolicy.SpotXmlParser.name(), disambiguatorName));
+            return ServerUtils.cached(request, text, inUrl,
+                    new Object[]{"/disambiguate", "JSON", text, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, SpotterPolicy.SpotXmlParser.name(), disambiguatorName},
+                    () -> disambigInterface.getJSON(text, inUrl, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, clientIp, SpotterPolicy.SpotXmlParser.name(), disambiguatorName));
         } catch (Exception e) {
             e.printStackTrace();
-            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST). entity(ServerUtils.print(e)).type(MediaType.APPLICATION_JSON).build());
+            throw new WebApplicationException(ServerUtils.errorStatus(e).entity(ServerUtils.print(e)).type(MediaType.APPLICATION_JSON).build());
+        }
+    }
+
+    @GET
+    @Produces(SemanticMediaType.APPLICATION_CBOR)
+    public Response getCBOR(@DefaultValue(SpotlightConfiguration.DEFAULT_TEXT) @QueryParam("text") String text,
+                            @DefaultValue(SpotlightConfiguration.DEFAULT_URL) @QueryParam("url") String inUrl,
+                            @DefaultValue(SpotlightConfiguration.DEFAULT_CONFIDENCE) @QueryParam("confidence") Double confidence,
+                            @DefaultValue(SpotlightConfiguration.DEFAULT_SUPPORT) @QueryParam("support") int support,
+                            @DefaultValue(SpotlightConfiguration.DEFAULT_TYPES) @QueryParam("types") String dbpediaTypes,
+                            @DefaultValue(SpotlightConfiguration.DEFAULT_SPARQL) @QueryParam("sparql") String sparqlQuery,
+                            @DefaultValue(SpotlightConfiguration.DEFAULT_POLICY) @QueryParam("policy") String policy,
+                            @DefaultValue(SpotlightConfiguration.DEFAULT_COREFERENCE_RESOLUTION) @QueryParam("coreferenceResolution") boolean coreferenceResolution,
+                            @DefaultValue("Default") @QueryParam("disambiguator") String disambiguatorName,
+                            @Context HttpServletRequest request
+    ) {
+        String clientIp = request.getRemoteAddr();
+
+        try {
+            return ServerUtils.cached(request, text, inUrl,
+                    new Object[]{"/disambiguate", "CBOR", text, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, SpotterPolicy.SpotXmlParser.name(), disambiguatorName},
+                    () -> disambigInterface.getCBOR(text, inUrl, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, clientIp, SpotterPolicy.SpotXmlParser.name(), disambiguatorName));
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new WebApplicationException(ServerUtils.errorStatus(e).entity(ServerUtils.print(e)).type(MediaType.TEXT_PLAIN).build());
         }
     }
 
@@ -193,7 +223,7 @@ public class Disambiguate {
             return ServerUtils.ok(disambigInterface.getHTML(text, inUrl, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, clientIp, SpotterPolicy.SpotXmlParser.name(), disambiguatorName));
         } catch (Exception e) {
             e.printStackTrace();
-            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST). entity(ServerUtils.print(e)).type(MediaType.TEXT_HTML).build());
+            throw new WebApplicationException(ServerUtils.errorStatus(e).entity(ServerUtils.print(e)).type(MediaType.TEXT_HTML).build());
         }
 
     }
@@ -218,7 +248,7 @@ public class Disambiguate {
             return ServerUtils.ok(disambigInterface.getHTML(text, inUrl, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, clientIp, SpotterPolicy.SpotXmlParser.name(), disambiguatorName));
         } catch (Exception e) {
             e.printStackTrace();
-            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST). entity(ServerUtils.print(e)).type(MediaType.TEXT_HTML).build());
+            throw new WebApplicationException(ServerUtils.errorStatus(e).entity(ServerUtils.print(e)).type(MediaType.TEXT_HTML).build());
         }
 
     }
@@ -240,10 +270,12 @@ public class Disambiguate {
       ) {
         try {
             String clientIp = request.getRemoteAddr();
-            return ServerUtils.ok(disambigInterface.getXML(text, inUrl, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, clientIp, SpotterPolicy.SpotXmlParser.name(), disambiguatorName));
+            return ServerUtils.cached(request, text, inUrl,
+                    new Object[]{"/disambiguate", "XML", text, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, SpotterPolicy.SpotXmlParser.name(), disambiguatorName},
+                    () -> disambigInterface.getXML(text, inUrl, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, clientIp, SpotterPolicy.SpotXmlParser.name(), disambiguatorName));
         } catch (Exception e) {
             e.printStackTrace();
-            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST). entity(ServerUtils.print(e)).type(MediaType.TEXT_XML).build());
+            throw new WebApplicationException(ServerUtils.errorStatus(e).entity(ServerUtils.print(e)).type(MediaType.TEXT_XML).build());
         }
 
     }
@@ -286,10 +318,38 @@ public class Disambiguate {
       ) {
         String clientIp = request.getRemoteAddr();
         try {
-            return ServerUtils.ok(disambigInterface.getJSON(text, inUrl, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, clientIp, SpotterPolicy.SpotXmlParser.name(), disambiguatorName));
+            return ServerUtils.cached(request, text, inUrl,
+                    new Object[]{"/disambiguate", "JSON", text, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, SpotterPolicy.SpotXmlParser.name(), disambiguatorName},
+                    () -> disambigInterface.getJSON(text, inUrl, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, clientIp, SpotterPolicy.SpotXmlParser.name(), disambiguatorName));
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new WebApplicationException(ServerUtils.errorStatus(e).entity(ServerUtils.print(e)).type(MediaType.APPLICATION_JSON).build());
+        }
+      }
+
+    @POST
+    @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
+    @Produces(SemanticMediaType.APPLICATION_CBOR)
+    public Response postCBOR(
+      @DefaultValue(SpotlightConfiguration.DEFAULT_TEXT) @FormParam("text") String text,
+      @DefaultValue(SpotlightConfiguration.DEFAULT_URL) @FormParam("url") String inUrl,
+      @DefaultValue(SpotlightConfiguration.DEFAULT_CONFIDENCE) @FormParam("confidence") Double confidence,
+      @DefaultValue(SpotlightConfiguration.DEFAULT_SUPPORT) @FormParam("support") int support,
+      @DefaultValue(SpotlightConfiguration.DEFAULT_TYPES) @FormParam("types") String dbpediaTypes,
+      @DefaultValue(SpotlightConfiguration.DEFAULT_SPARQL) @FormParam("sparql") String sparqlQuery,
+      @DefaultValue(SpotlightConfiguration.DEFAULT_POLICY) @FormParam("policy") String policy,
+      @DefaultValue(SpotlightConfiguration.DEFAULT_COREFERENCE_RESOLUTION) @FormParam("coreferenceResolution") boolean coreferenceResolution,
+      @DefaultValue("Default") @FormParam("disambiguator") String disambiguatorName,
+      @Context HttpServletRequest request
+      ) {
+        String clientIp = request.getRemoteAddr();
+        try {
+            return ServerUtils.cached(request, text, inUrl,
+                    new Object[]{"/disambiguate", "CBOR", text, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, SpotterPolicy.SpotXmlParser.name(), disambiguatorName},
+                    () -> disambigInterface.getCBOR(text, inUrl, confidence, support, dbpediaTypes, sparqlQuery, policy, coreferenceResolution, clientIp, SpotterPolicy.SpotXmlParser.name(), disambiguatorName));
         } catch (Exception e) {
             e.printStackTrace();
-            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST). entity(ServerUtils.print(e)).type(MediaType.APPLICATION_JSON).build());
+            throw new WebApplicationException(ServerUtils.errorStatus(e).entity(ServerUtils.print(e)).type(MediaType.TEXT_PLAIN).build());
         }
       }
 }
@@ -26,7 +26,7 @@ import org.dbpedia.spotlight.model.Text;
 import org.dbpedia.spotlight.web.rest.Server;
 import org.dbpedia.spotlight.web.rest.ServerUtils;
 import org.dbpedia.spotlight.web.rest.SpotlightInterface;
-import org.dbpedia.spotlight.web.rest.formats.NIFWrapper;
+import org.dbpedia.spotlight.web.rest.formats.NIFStreamWriter;
 import org.dbpedia.spotlight.web.rest.formats.SemanticMediaType;
 import org.dbpedia.spotlight.web.rest.output.Annotation;
 
@@ -75,7 +75,7 @@ public class Spot {
             return ServerUtils.ok(response);
         } catch (Exception e) {
             e.printStackTrace();
-            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST). entity(ServerUtils.print(e)).type(MediaType.TEXT_HTML).build());
+            throw new WebApplicationException(ServerUtils.errorStatus(e).entity(ServerUtils.print(e)).type(MediaType.TEXT_HTML).build());
         }
     }
 
@@ -113,13 +113,10 @@ public class Spot {
         try {
             String textToProcess = ServerUtils.getTextToProcess(text, inUrl);
             List<SurfaceFormOccurrence> spots = annotationInterface.spot(spotterName, new Text(textToProcess));
-            NIFWrapper nif = new NIFWrapper(org.dbpedia.spotlight.web.rest.formats.SpotlightConfiguration.configuration());
-            nif.entity(spots);
-	        String response = nif.getNIF(format);
-            return ServerUtils.ok(response);
+            return ServerUtils.ok(NIFStreamWriter.streamingSpots(org.dbpedia.spotlight.web.rest.formats.SpotlightConfiguration.configuration(), format, textToProcess, spots));
         } catch (Exception e) {
             e.printStackTrace();
-            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST). entity(ServerUtils.print(e)).type(accept).build());
+            throw new WebApplicationException(ServerUtils.errorStatus(e).entity(ServerUtils.print(e)).type(accept).build());
         }
     }
     
@@ -141,7 +138,7 @@ public class Spot {
             return ServerUtils.ok(response);
         } catch (Exception e) {
             e.printStackTrace();
-            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST). entity(ServerUtils.print(e)).type(MediaType.TEXT_HTML).build());
+            throw new WebApplicationException(ServerUtils.errorStatus(e).entity(ServerUtils.print(e)).type(MediaType.TEXT_HTML).build());
         }
     }
 
@@ -164,7 +161,7 @@ public class Spot {
             return ServerUtils.ok(response);
         } catch (Exception e) {
             e.printStackTrace();
-            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST). entity(ServerUtils.print(e)).type(MediaType.TEXT_HTML).build());
+            throw new WebApplicationException(ServerUtils.errorStatus(e).entity(ServerUtils.print(e)).type(MediaType.TEXT_HTML).build());
         }
     }
 
@@ -201,7 +198,7 @@ public class Spot {
             return ServerUtils.ok(response);
         } catch (Exception e) {
             e.printStackTrace();
-            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST). entity(ServerUtils.print(e)).type(MediaType.TEXT_HTML).build());
+            throw new WebApplicationException(ServerUtils.errorStatus(e).entity(ServerUtils.print(e)).type(MediaType.TEXT_HTML).build());
         }
     }
 
@@ -0,0 +1,62 @@
+package org.dbpedia.spotlight.web.rest;
+
+import org.dbpedia.spotlight.exceptions.OverloadException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AdmissionControllerTest {
+
+    @Test
+    public void requestsOverInFlightLimitMustBeShed() throws OverloadException {
+        //Arrange
+        AdmissionController admission = new AdmissionController(2, 0, 0);
+        admission.admit(10);
+        admission.admit(10);
+
+        //Act
+        try {
+            admission.admit(10);
+            Assert.fail("Third request should have been rejected.");
+        } catch (OverloadException e) {
+            Assert.assertFalse(e.isCharacterBudgetExceeded());
+        }
+
+        //Check
+        Assert.assertEquals(2, admission.getInFlight());
+        Assert.assertEquals(1, admission.getShed());
+    }
+
+    @Test
+    public void requestsOverCharacterBudgetMustBeShed() throws OverloadException {
+        //Arrange
+        AdmissionController admission = new AdmissionController(0, 100, 0);
+        admission.admit(80);
+
+        //Act
+        try {
+            admission.admit(30);
+            Assert.fail("Request should have been rejected.");
+        } catch (OverloadException e) {
+            Assert.assertTrue(e.isCharacterBudgetExceeded());
+        }
+
+        //Check
+        Assert.assertEquals(80, admission.getQueuedCharacters());
+    }
+
+    @Test
+    public void largeTextMustBeAdmittedWhenIdle() throws OverloadException {
+        //Arrange
+        AdmissionController admission = new AdmissionController(0, 100, 0);
+
+        //Act
+        admission.admit(500);
+        admission.release(500);
+
+        //Check
+        Assert.assertEquals(0, admission.getQueuedCharacters());
+        Assert.assertEquals(0, admission.getInFlight());
+        Assert.assertEquals(1, admission.getAdmitted());
+    }
+
+}
@@ -0,0 +1,45 @@
+package org.dbpedia.spotlight.web.rest;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ResponseCacheTest {
+
+    @Test
+    public void leastRecentlyUsedEntriesMustBeEvictedOverByteBudget() {
+        //Arrange
+        ResponseCache cache = new ResponseCache(10, 100);
+        cache.put("a", new byte[4]);
+        cache.put("b", new byte[4]);
+        cache.get("a");
+
+        //Act
+        cache.put("c", new byte[4]);
+
+        //Check
+        Assert.assertNotNull(cache.get("a"));
+        Assert.assertNull(cache.get("b"));
+        Assert.assertNotNull(cache.get("c"));
+        Assert.assertEquals(8, cache.getBytes());
+        Assert.assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    public void requestsWithUrlOrLongTextMustNotBeCached() {
+        //Arrange
+        ResponseCache cache = new ResponseCache(1000, 5);
+
+        //Check
+        Assert.assertFalse(cache.admits("Berlin", ""));
+        Assert.assertTrue(cache.admits("Rome", ""));
+        Assert.assertFalse(cache.admits("Rome", "http://example.org/"));
+        Assert.assertFalse(ResponseCache.disabled().admits("Rome", ""));
+    }
+
+    @Test
+    public void keyMustDependOnEveryParameter() {
+        Assert.assertEquals(ResponseCache.key("/annotate", "XML", "Berlin", 0.5), ResponseCache.key("/annotate", "XML", "Berlin", 0.5));
+        Assert.assertFalse(ResponseCache.key("/annotate", "XML", "Berlin", 0.5).equals(ResponseCache.key("/annotate", "JSON", "Berlin", 0.5)));
+        Assert.assertFalse(ResponseCache.key("ab", "c").equals(ResponseCache.key("a", "bc")));
+    }
+}
@@ -1,6 +1,7 @@
 package org.dbpedia.spotlight.web.rest;
 
 import org.dbpedia.spotlight.exceptions.InputException;
+import org.dbpedia.spotlight.util.Trace;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -62,4 +63,19 @@ public class ServerUtilsTest {
         //Act
         ServerUtils.ok(null);
     }
+
+    @Test
+    public void traceMustBeFormattedAsServerTiming() {
+        //Arrange
+        Trace trace = new Trace();
+        trace.time("spot", 1500000L);
+        trace.time("filter", 250000L);
+        trace.time("spot", 500000L);
+        trace.count("sentences", 2);
+        trace.count("chunks", 5);
+
+        //Check
+        Assert.assertEquals("spot;dur=2.000, filter;dur=0.250, total;dur=3.000", ServerUtils.serverTiming(trace, 3000000L));
+        Assert.assertEquals("sentences=2, chunks=5", ServerUtils.counters(trace));
+    }
 }
@@ -0,0 +1,93 @@
+package org.dbpedia.spotlight.web.rest.formats;
+
+
+import org.dbpedia.spotlight.model.DBpediaResource;
+import org.dbpedia.spotlight.model.DBpediaResourceOccurrence;
+import org.dbpedia.spotlight.model.SurfaceForm;
+import org.dbpedia.spotlight.model.Text;
+import org.dbpedia.spotlight.web.rest.Server;
+import org.dbpedia.spotlight.web.rest.output.Annotation;
+import org.dbpedia.spotlight.web.rest.output.Resource;
+import org.dbpedia.spotlight.web.rest.output.Spot;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CBOROutputManagerTest {
+
+    @Test
+    public void dataItemsMustBeEncodedAsInRFC7049() {
+        // Arrange
+        CBOROutputManager.CBORWriter writer = new CBOROutputManager.CBORWriter();
+
+        // Run
+        writer.integer(10).integer(500).integer(-1).text("a").floatingPoint(1.0).nil().array(2).map(1);
+
+        // Check
+        assertArrayEquals(new byte[]{
+                0x0a,
+                0x19, 0x01, (byte) 0xf4,
+                0x20,
+                0x61, 0x61,
+                (byte) 0xfa, 0x3f, (byte) 0x80, 0x00, 0x00,
+                (byte) 0xf6,
+                (byte) 0x82,
+                (byte) 0xa1
+        }, writer.toByteArray());
+    }
+
+    @Test
+    public void candidatesWithoutSpotsMustBeAnEmptySpotArray() {
+        // Arrange
+        Annotation annotation = new Annotation("text");
+
+        // Run
+        byte[] result = CBOROutputManager.candidates(annotation);
+
+        // Check: {"v": 1, "spots": []}
+        assertArrayEquals(new byte[]{
+                (byte) 0xa2,
+                0x61, 'v', 0x01,
+                0x65, 's', 'p', 'o', 't', 's', (byte) 0x80
+        }, result);
+    }
+
+    @Test
+    public void candidatesMustBeIdentifiedLikeAnnotations() {
+        // Arrange
+        DBpediaResource berlin = new DBpediaResource("Berlin", 100);
+        berlin.id_$eq(5);
+        DBpediaResourceOccurrence occ = new DBpediaResourceOccurrence(berlin, new SurfaceForm("Berlin"), new Text("Berlin"), 0);
+
+        Spot spot = Spot.getInstance(occ);
+        spot.setResources(Collections.singletonList(Resource.getInstance(occ)));
+        Annotation annotation = new Annotation("Berlin");
+        annotation.setSpots(Collections.singletonList(spot));
+
+        // Run
+        byte[] candidates = CBOROutputManager.candidates(annotation);
+        byte[] annotations = CBOROutputManager.annotations(Collections.singletonList(occ), 0.5, 0, "", "", "whitelist", null);
+
+        // Check: both start the resource with [..., 5, "<namespace>Berlin", ...]
+        byte[] id = new CBOROutputManager.CBORWriter().integer(5).text(Server.getPrefixedDBpediaURL(berlin)).toByteArray();
+        assertTrue(indexOf(candidates, new CBOROutputManager.CBORWriter().array(8).toByteArray(), id) >= 0);
+        assertTrue(indexOf(annotations, new byte[0], id) >= 0);
+    }
+
+    private static int indexOf(byte[] data, byte[] prefix, byte[] part) {
+        byte[] pattern = new byte[prefix.length + part.length];
+        System.arraycopy(prefix, 0, pattern, 0, prefix.length);
+        System.arraycopy(part, 0, pattern, prefix.length, part.length);
+        outer:
+        for (int i = 0; i + pattern.length <= data.length; i++) {
+            for (int j = 0; j < pattern.length; j++)
+                if (data[i + j] != pattern[j])
+                    continue outer;
+            return i;
+        }
+        return -1;
+    }
+}
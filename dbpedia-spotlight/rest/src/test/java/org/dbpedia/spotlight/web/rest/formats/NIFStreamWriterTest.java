@@ -0,0 +1,117 @@
+package org.dbpedia.spotlight.web.rest.formats;
+
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.dbpedia.spotlight.model.DBpediaResource;
+import org.dbpedia.spotlight.model.DBpediaResourceOccurrence;
+import org.dbpedia.spotlight.model.SurfaceForm;
+import org.dbpedia.spotlight.model.Text;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NIFStreamWriterTest {
+
+    @Test
+    public void contextMustBeWrittenOnceWithEscapedText() throws Exception {
+        // Arrange
+        StringWriter out = new StringWriter();
+        NIFStreamWriter writer = new NIFStreamWriter(out, SpotlightConfiguration.configuration(), "ntriples");
+
+        // Run
+        writer.context("Berlin \"is\"\nbig");
+        writer.close();
+
+        // Check
+        String nif = out.toString();
+        assertTrue(nif.contains("<http://www.dbpedia-spotlight.com/#char=0,15> <http://persistence.uni-leipzig.org/nlp2rdf/ontologies/nif-core#isString> \"Berlin \\\"is\\\"\\nbig\""));
+        assertEquals(1, nif.split("nif-core#isString").length - 1);
+    }
+
+    @Test
+    public void jsonldMustBeAClosedDocument() throws Exception {
+        // Arrange
+        StringWriter out = new StringWriter();
+        NIFStreamWriter writer = new NIFStreamWriter(out, SpotlightConfiguration.configuration(), SemanticMediaType.APPLICATION_LD_JSON);
+
+        // Run
+        writer.context("Berlin");
+        writer.close();
+
+        // Check
+        String nif = out.toString().trim();
+        assertTrue(nif.startsWith("{"));
+        assertTrue(nif.endsWith("]\n}"));
+    }
+
+    @Test
+    public void jsonldMustReferToTheConfiguredContext() throws Exception {
+        // Arrange
+        StringWriter out = new StringWriter();
+        SpotlightConfiguration configuration = SpotlightConfiguration.configuration();
+        NIFStreamWriter writer = new NIFStreamWriter(out, configuration, SemanticMediaType.APPLICATION_LD_JSON);
+
+        // Run
+        writer.context("Berlin");
+        writer.close();
+
+        // Check
+        assertTrue(out.toString().contains("\"@context\": [\"" + configuration.getJsonContext() + "\", {"));
+    }
+
+    @Test
+    public void outputMustBeEquivalentToNIFWrapper() throws Exception {
+        // Arrange: a local JSON-LD context, so that parsing does not need the network
+        File contextFile = File.createTempFile("nif-context", ".jsonld");
+        contextFile.deleteOnExit();
+        Files.write(contextFile.toPath(), ("{\"@context\": {" +
+                "\"nif\": \"http://persistence.uni-leipzig.org/nlp2rdf/ontologies/nif-core#\", " +
+                "\"itsrdf\": \"http://www.w3.org/2005/11/its/rdf#\"}}").getBytes(StandardCharsets.UTF_8));
+        SpotlightConfiguration configuration = SpotlightConfiguration.configuration();
+        configuration.setJsonContext(contextFile.toURI().toString());
+
+        String text = "Berlin is the capital of Germany, Paris the capital of France.";
+        List<DBpediaResourceOccurrence> occs = new ArrayList<>();
+        for (String name : new String[]{"Berlin", "Germany", "Paris", "France"})
+            occs.add(new DBpediaResourceOccurrence(new DBpediaResource(name), new SurfaceForm(name), new Text(text), text.indexOf(name)));
+
+        String[] formats = {SemanticMediaType.TEXT_TURTLE, SemanticMediaType.APPLICATION_N_TRIPLES, SemanticMediaType.APPLICATION_LD_JSON};
+        Lang[] languages = {Lang.TURTLE, Lang.NTRIPLES, Lang.JSONLD};
+        String prefix = "http://example.org/rest/annotate/?text=Berlin";
+
+        for (int i = 0; i < formats.length; i++) {
+            for (String baseURI : new String[]{configuration.getSpotlightURL(), prefix}) {
+                // Run
+                NIFWrapper wrapper = new NIFWrapper(configuration, baseURI);
+                wrapper.entityFromResource(occs);
+                Model expected = parse(wrapper.getNIF(formats[i]), languages[i]);
+
+                StringWriter out = new StringWriter();
+                NIFStreamWriter.write(out, configuration, formats[i], baseURI, text, occs);
+                Model actual = parse(out.toString(), languages[i]);
+
+                // Check
+                assertEquals(formats[i] + " relative to " + baseURI, expected.size(), actual.size());
+                assertTrue(formats[i] + " relative to " + baseURI, expected.isIsomorphicWith(actual));
+            }
+        }
+    }
+
+    private static Model parse(String nif, Lang language) {
+        Model model = ModelFactory.createDefaultModel();
+        RDFDataMgr.read(model, new StringReader(nif), null, language);
+        return model;
+    }
+}
@@ -0,0 +1,41 @@
+package org.dbpedia.spotlight.web.rest.formats;
+
+import org.dbpedia.spotlight.util.Distribution;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PrometheusWriterTest {
+
+    @Test
+    public void samplesMustHaveEscapedLabels() {
+        //Arrange
+        PrometheusWriter writer = new PrometheusWriter();
+
+        //Act
+        writer.family("jvm_gc_collection_seconds_count", "counter", "Collections.");
+        writer.sample("jvm_gc_collection_seconds_count", 3, "gc", "PS \"Scavenge\"");
+
+        //Check
+        Assert.assertEquals("# HELP jvm_gc_collection_seconds_count Collections.\n"
+                + "# TYPE jvm_gc_collection_seconds_count counter\n"
+                + "jvm_gc_collection_seconds_count{gc=\"PS \\\"Scavenge\\\"\"} 3\n", writer.toString());
+    }
+
+    @Test
+    public void summaryMustHaveQuantilesSumAndCount() {
+        //Arrange
+        Distribution spots = new Distribution("spots", "Spots", 1000L);
+        spots.record(2);
+        spots.record(2);
+        PrometheusWriter writer = new PrometheusWriter();
+
+        //Act
+        writer.summary("spots", spots, 1.0, "api", "annotate");
+
+        //Check
+        String text = writer.toString();
+        Assert.assertTrue(text.contains("spots{api=\"annotate\",quantile=\"0.5\"} 2\n"));
+        Assert.assertTrue(text.contains("spots_sum{api=\"annotate\"} 4\n"));
+        Assert.assertTrue(text.contains("spots_count{api=\"annotate\"} 2\n"));
+    }
+}